@@ -0,0 +1,284 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.backup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.wal.EntityChange;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+
+/**
+ * Takes consistent backups of all filesystem stores while they stay available, and streams each backup as a single ZIP archive.
+ * <p>
+ * Entity files and containers are never modified in place but replaced as a whole, so a hard link to a stored file keeps its content no matter what
+ * is written afterwards. A backup first links all stored files into a staging directory next to them, without holding up any writer, while listening
+ * for the changes applied in the meantime. It then briefly holds back new commits through {@link FileSystemUnitOfWork#runBetweenCommits} and links
+ * the current files of the entities changed during the first pass once more. The staged files thereby form a cut across all stores that contains each
+ * commit completely or not at all, and writers only wait for the second pass, which is proportional to the number of changes made during the first.
+ * Streaming the archive happens afterwards, again without holding up writers, and the staging directories are removed once it is written. Files are
+ * copied instead of linked where the file system does not support hard links.
+ * </p>
+ * <p>
+ * The archive holds each stored file under {@code <store>/<file name>}, along with a {@value #MANIFEST_NAME} entry describing the backup. To restore
+ * a store, its files are extracted into the working directory of a stopped instance; files that belong on another volume are moved there at startup.
+ * Only one backup per working directory may be taken at a time.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class OnlineBackup implements OnlineBackupMXBean, Closeable {
+
+  public static final String OBJECT_NAME = "org.example.graphql.filesystem:type=OnlineBackup";
+  public static final String MANIFEST_NAME = "backup.properties";
+
+  private static final Logger logger = Logger.getLogger(OnlineBackup.class.getName());
+  private static final String STAGING_DIR_NAME = ".backup";
+
+  private final FileSystemUnitOfWork unitOfWork;
+  private final List<FileSystemStorage<?>> storages;
+  private volatile Instant lastBackupTime;
+  private ObjectName objectName;
+
+  /**
+   * @param unitOfWork The unit of work all storages record their changes with.
+   * @param storages   The storages to back up.
+   */
+  public OnlineBackup(FileSystemUnitOfWork unitOfWork, List<FileSystemStorage<?>> storages) {
+    this.unitOfWork = unitOfWork;
+    this.storages = List.copyOf(storages);
+  }
+
+  /**
+   * Registers the management interface, which allows taking backups through JMX.
+   */
+  public void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(this, name);
+        objectName = name;
+      }
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Unable to register backup management interface", e);
+    }
+  }
+
+  @Override
+  public String backupTo(String file) throws IOException {
+    Path target = Paths.get(file);
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    Instant pointInTime;
+    try (OutputStream out = Files.newOutputStream(temp)) {
+      pointInTime = writeArchive(out);
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    return pointInTime.toString();
+  }
+
+  @Override
+  public String getLastBackupTime() {
+    Instant time = lastBackupTime;
+    return time != null ? time.toString() : null;
+  }
+
+  /**
+   * Takes a backup of all stores and writes it to the given stream as a ZIP archive. The stream is not closed.
+   *
+   * @param out The stream to write the archive to.
+   * @return The point in time the backup reflects.
+   * @throws IOException if the stored files cannot be staged or the archive cannot be written.
+   */
+  public synchronized Instant writeArchive(OutputStream out) throws IOException {
+    Map<String, Set<Long>> changedIds = new ConcurrentHashMap<>();
+    Consumer<EntityChange> listener = change -> changedIds.computeIfAbsent(change.store(), store -> ConcurrentHashMap.newKeySet()).add(change.id());
+    Map<FileSystemStorage<?>, Map<Long, Path>> staged = new LinkedHashMap<>();
+    Set<Path> stagingDirs = new HashSet<>();
+    unitOfWork.addAppliedListener(listener);
+    try {
+      Map<FileSystemStorage<?>, Set<Long>> missed = new LinkedHashMap<>();
+      for (FileSystemStorage<?> storage : storages) {
+        Map<Long, Path> links = new TreeMap<>();
+        Set<Long> missedFiles = new HashSet<>();
+        for (Map.Entry<Long, Path> file : storage.listStoredFiles().entrySet()) {
+          try {
+            links.put(file.getKey(), stage(storage, file.getValue(), stagingDirs));
+          } catch (NoSuchFileException e) {
+            // Deleted or moved to another volume since it was listed
+            missedFiles.add(file.getKey());
+          }
+        }
+        staged.put(storage, links);
+        missed.put(storage, missedFiles);
+      }
+      Instant pointInTime = unitOfWork.runBetweenCommits(() -> {
+        for (FileSystemStorage<?> storage : storages) {
+          Set<Long> fileIds = missed.get(storage);
+          changedIds.getOrDefault(storage.getName(), Set.of()).forEach(id -> fileIds.add(storage.storedFileIdOf(id)));
+          for (Long fileId : fileIds) {
+            restage(storage, fileId, staged.get(storage), stagingDirs);
+          }
+        }
+        return Instant.now();
+      });
+      writeZip(out, staged, pointInTime);
+      lastBackupTime = pointInTime;
+      logger.info("Wrote backup of " + storages.size() + " stores as of " + pointInTime);
+      return pointInTime;
+    } finally {
+      unitOfWork.removeAppliedListener(listener);
+      stagingDirs.forEach(OnlineBackup::deleteRecursively);
+    }
+  }
+
+  /**
+   * Links the given stored file into the staging directory next to it, which is created and emptied on first use.
+   *
+   * @return The staged file.
+   */
+  private static Path stage(FileSystemStorage<?> storage, Path file, Set<Path> stagingDirs) throws IOException {
+    Path stagingDir = file.resolveSibling(STAGING_DIR_NAME).resolve(storage.getName());
+    if (stagingDirs.add(stagingDir)) {
+      // Left behind by a backup that was interrupted
+      deleteRecursively(stagingDir);
+      Files.createDirectories(stagingDir);
+    }
+    Path link = stagingDir.resolve(file.getFileName());
+    try {
+      Files.createLink(link, file);
+    } catch (NoSuchFileException e) {
+      throw e;
+    } catch (UnsupportedOperationException | FileSystemException e) {
+      Files.copy(file, link);
+    }
+    return link;
+  }
+
+  /**
+   * Replaces the staged file of the given ID with the file currently stored under it, or removes it if there is none.
+   */
+  private static void restage(FileSystemStorage<?> storage, long fileId, Map<Long, Path> links, Set<Path> stagingDirs) throws IOException {
+    Path previous = links.remove(fileId);
+    if (previous != null) {
+      Files.deleteIfExists(previous);
+    }
+    // Only a running rebalance moves files while commits are held back, and it creates the moved file before deleting the old one
+    Path file;
+    while ((file = storage.findStoredFile(fileId)) != null) {
+      try {
+        links.put(fileId, stage(storage, file, stagingDirs));
+        return;
+      } catch (NoSuchFileException e) {
+        // Moved in the meantime
+      }
+    }
+  }
+
+  private void writeZip(OutputStream out, Map<FileSystemStorage<?>, Map<Long, Path>> staged, Instant pointInTime) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(out);
+    zip.setLevel(Deflater.BEST_SPEED);
+    StringBuilder manifest = new StringBuilder()
+        .append("time=").append(pointInTime).append('\n')
+        .append("stores=").append(String.join(",", storages.stream().map(FileSystemStorage::getName).toList())).append('\n');
+    staged.forEach((storage, links) -> manifest.append(storage.getName()).append(".files=").append(links.size()).append('\n'));
+    zip.putNextEntry(new ZipEntry(MANIFEST_NAME));
+    zip.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+    zip.closeEntry();
+    for (Map.Entry<FileSystemStorage<?>, Map<Long, Path>> store : staged.entrySet()) {
+      for (Path link : store.getValue().values()) {
+        ZipEntry entry = new ZipEntry(store.getKey().getName() + "/" + link.getFileName());
+        entry.setLastModifiedTime(Files.getLastModifiedTime(link));
+        zip.putNextEntry(entry);
+        Files.copy(link, zip);
+        zip.closeEntry();
+      }
+    }
+    zip.finish();
+    zip.flush();
+  }
+
+  private static void deleteRecursively(Path dir) {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(path);
+      }
+      Path parent = dir.getParent();
+      if (parent.getFileName().toString().equals(STAGING_DIR_NAME)) {
+        try (Stream<Path> siblings = Files.list(parent)) {
+          if (siblings.findAny().isEmpty()) {
+            Files.deleteIfExists(parent);
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Error while removing backup staging directory " + dir, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException e) {
+        logger.log(Level.FINE, "Unable to unregister backup management interface", e);
+      }
+    }
+  }
+}
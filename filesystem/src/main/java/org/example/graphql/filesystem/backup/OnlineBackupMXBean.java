@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.backup;
+
+import java.io.IOException;
+
+/**
+ * Management interface of an {@link OnlineBackup}, registered with the platform MBean server as {@value OnlineBackup#OBJECT_NAME}.
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public interface OnlineBackupMXBean {
+
+  /**
+   * Writes a backup of all stores to the given file.
+   *
+   * @param file The path of the archive to write; replaced if it exists.
+   * @return The point in time the backup reflects, in ISO-8601 format.
+   * @throws IOException if the backup cannot be taken or written.
+   */
+  String backupTo(String file) throws IOException;
+
+  /**
+   * @return The point in time the last backup reflects, in ISO-8601 format, or {@code null} if no backup was taken yet.
+   */
+  String getLastBackupTime();
+}
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of reusable, growable byte buffers used when encoding and decoding entity files. Reusing buffers avoids allocating a fresh array for
+ * every read and write of an entity.
+ * <p>
+ * Buffers are handed out by {@link #acquire()} and returned to the pool by {@link PooledBuffer#release()}. Closing a buffer has no effect, as with
+ * any {@link ByteArrayOutputStream}, so buffers may safely be passed to serializers that close their target. Buffers that grew beyond the retain
+ * limit are dropped instead of being pooled, so a single large entity does not pin memory forever.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class BufferPool {
+
+  private static final int INITIAL_CAPACITY = 4 * 1024;
+
+  private final Queue<PooledBuffer> buffers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+  private final int maxPooled;
+  private final int maxRetainedCapacity;
+
+  public BufferPool(int maxPooled, int maxRetainedCapacity) {
+    this.maxPooled = maxPooled;
+    this.maxRetainedCapacity = maxRetainedCapacity;
+  }
+
+  public PooledBuffer acquire() {
+    PooledBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      return new PooledBuffer(this);
+    }
+    pooled.decrementAndGet();
+    return buffer;
+  }
+
+  private void release(PooledBuffer buffer) {
+    if (buffer.capacity() > maxRetainedCapacity) {
+      return;
+    }
+    if (pooled.incrementAndGet() > maxPooled) {
+      pooled.decrementAndGet();
+      return;
+    }
+    buffer.reset();
+    buffers.offer(buffer);
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its backing array and can be returned to the owning {@link BufferPool} once it is no longer needed.
+   */
+  public static final class PooledBuffer extends ByteArrayOutputStream {
+
+    private final BufferPool owner;
+
+    private PooledBuffer(BufferPool owner) {
+      super(INITIAL_CAPACITY);
+      this.owner = owner;
+    }
+
+    /**
+     * @return The backing array. Only the first {@link #size()} bytes are valid.
+     */
+    public byte[] array() {
+      return buf;
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+
+    /**
+     * Appends all remaining bytes of the given stream to this buffer.
+     */
+    public PooledBuffer readFrom(InputStream in) throws IOException {
+      while (true) {
+        if (count == buf.length) {
+          ensureSpare(buf.length);
+        }
+        int read = in.read(buf, count, buf.length - count);
+        if (read < 0) {
+          return this;
+        }
+        count += read;
+      }
+    }
+
+    /**
+     * Appends all remaining bytes of the given buffer to this buffer, without moving its position.
+     */
+    public PooledBuffer readFrom(ByteBuffer source) {
+      int length = source.remaining();
+      if (buf.length - count < length) {
+        ensureSpare(length);
+      }
+      source.get(source.position(), buf, count, length);
+      count += length;
+      return this;
+    }
+
+    private void ensureSpare(int additional) {
+      byte[] grown = new byte[buf.length + Math.max(additional, INITIAL_CAPACITY)];
+      System.arraycopy(buf, 0, grown, 0, count);
+      buf = grown;
+    }
+
+    /**
+     * Returns this buffer to the pool. The buffer must not be used afterwards.
+     */
+    public void release() {
+      owner.release(this);
+    }
+  }
+}
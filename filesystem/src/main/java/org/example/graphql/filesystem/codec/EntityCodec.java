@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * Converts entities extending {@link AbstractPersistentObject} to and from the on-disk representation of a single storage format.
+ * <p>
+ * Each codec owns a file extension and is able to recognize its own format from the leading bytes of a file, which allows files written in different
+ * formats to coexist within the same working directory.
+ * </p>
+ *
+ * @param <T> The type of entity this codec handles.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public interface EntityCodec<T extends AbstractPersistentObject> {
+
+  /**
+   * @return The file extension (including the leading dot) used for files written by this codec.
+   */
+  String getFileExtension();
+
+  /**
+   * Checks whether the given leading bytes of a file were written in the format of this codec.
+   *
+   * @param data   The buffer holding the start of the file.
+   * @param offset The position of the first byte of the file in {@code data}.
+   * @param length The number of valid bytes in {@code data} starting at {@code offset}.
+   * @return {@code true} if this codec is able to decode the data.
+   */
+  boolean canDecode(byte[] data, int offset, int length);
+
+  void encode(T entity, OutputStream out) throws IOException;
+
+  T decode(byte[] data, int offset, int length) throws IOException;
+
+  T decode(InputStream in) throws IOException;
+}
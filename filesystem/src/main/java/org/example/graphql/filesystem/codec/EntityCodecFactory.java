@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import java.util.List;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * Creates {@link EntityCodecRegistry} instances for entity types. All registries created by one factory share the same Jackson mappers
+ * and the same {@link BufferPool}, so serializer caches and buffers are reused across entity types.
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class EntityCodecFactory {
+
+  private final ObjectMapper jsonMapper;
+  private final ObjectMapper smileMapper;
+  private final BufferPool bufferPool;
+  private final EntityFormat writeFormat;
+
+  /**
+   * @param writeFormat The format new entity files are written in. Files in any other supported format remain readable.
+   * @param bufferPool  The pool providing encode and decode buffers.
+   */
+  public EntityCodecFactory(EntityFormat writeFormat, BufferPool bufferPool) {
+    this.jsonMapper = new ObjectMapper();
+    this.smileMapper = new SmileMapper();
+    this.bufferPool = bufferPool;
+    this.writeFormat = writeFormat;
+  }
+
+  public <T extends AbstractPersistentObject> EntityCodecRegistry<T> create(Class<T> type) {
+    EntityCodec<T> json = JacksonEntityCodec.json(jsonMapper, type);
+    EntityCodec<T> smile = JacksonEntityCodec.smile(smileMapper, type);
+    return switch (writeFormat) {
+      case JSON -> new EntityCodecRegistry<>(json, List.of(smile), bufferPool);
+      case SMILE -> new EntityCodecRegistry<>(smile, List.of(json), bufferPool);
+    };
+  }
+
+  /**
+   * The formats entity files can be written in.
+   */
+  public enum EntityFormat {
+    /**
+     * Human-readable text JSON.
+     */
+    JSON,
+    /**
+     * Binary, JSON-compatible Smile encoding, which is smaller and faster to parse than text JSON.
+     */
+    SMILE
+  }
+}
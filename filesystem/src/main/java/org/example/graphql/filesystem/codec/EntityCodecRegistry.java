@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.example.graphql.filesystem.codec.BufferPool.PooledBuffer;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * Holds the {@link EntityCodec}s known for a single entity type. New entities are always written with the preferred codec, while files are decoded
+ * with whichever registered codec recognizes their content. This keeps files written in an older format readable after the preferred format has been
+ * changed.
+ *
+ * @param <T> The type of entity handled by the registered codecs.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class EntityCodecRegistry<T extends AbstractPersistentObject> {
+
+  private final EntityCodec<T> writeCodec;
+  private final List<EntityCodec<T>> codecs;
+  private final List<String> fileExtensions;
+  private final BufferPool bufferPool;
+
+  /**
+   * @param writeCodec   The codec used for writing entities.
+   * @param legacyCodecs Further codecs that are only used for reading existing files.
+   * @param bufferPool   The pool providing buffers for encoding and decoding.
+   */
+  public EntityCodecRegistry(EntityCodec<T> writeCodec, List<EntityCodec<T>> legacyCodecs, BufferPool bufferPool) {
+    List<EntityCodec<T>> all = new ArrayList<>();
+    all.add(writeCodec);
+    all.addAll(legacyCodecs);
+    this.writeCodec = writeCodec;
+    this.codecs = Collections.unmodifiableList(all);
+    this.fileExtensions = all.stream().map(EntityCodec::getFileExtension).toList();
+    this.bufferPool = bufferPool;
+  }
+
+  public EntityCodec<T> getWriteCodec() {
+    return writeCodec;
+  }
+
+  /**
+   * @return The file extensions of all registered codecs, starting with the extension of the write codec.
+   */
+  public List<String> getFileExtensions() {
+    return fileExtensions;
+  }
+
+  public PooledBuffer acquireBuffer() {
+    return bufferPool.acquire();
+  }
+
+  /**
+   * Encodes the entity with the write codec into a pooled buffer. The caller is responsible for releasing the returned buffer.
+   */
+  public PooledBuffer encode(T entity) throws IOException {
+    PooledBuffer buffer = bufferPool.acquire();
+    try {
+      writeCodec.encode(entity, buffer);
+      return buffer;
+    } catch (IOException | RuntimeException e) {
+      buffer.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Decodes an entity, detecting the format from the leading bytes of the data.
+   *
+   * @throws IOException if no registered codec recognizes the data or decoding fails.
+   */
+  public T decode(byte[] data, int offset, int length) throws IOException {
+    return codecFor(data, offset, length).decode(data, offset, length);
+  }
+
+  public T decode(PooledBuffer buffer) throws IOException {
+    return decode(buffer.array(), 0, buffer.size());
+  }
+
+  /**
+   * Decodes an entity from the remaining bytes of the given buffer, which may be a view into a memory-mapped file. The position of the buffer is left
+   * unchanged.
+   */
+  public T decode(ByteBuffer data) throws IOException {
+    PooledBuffer buffer = bufferPool.acquire();
+    try {
+      return decode(buffer.readFrom(data));
+    } finally {
+      buffer.release();
+    }
+  }
+
+  /**
+   * Detects the codec an encoded entity was written with from its leading bytes.
+   *
+   * @throws IOException if no registered codec recognizes the data.
+   */
+  public EntityCodec<T> codecFor(byte[] data, int offset, int length) throws IOException {
+    for (EntityCodec<T> codec : codecs) {
+      if (codec.canDecode(data, offset, length)) {
+        return codec;
+      }
+    }
+    throw new IOException("Unrecognized entity format");
+  }
+}
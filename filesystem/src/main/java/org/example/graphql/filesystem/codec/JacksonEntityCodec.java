@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * {@link EntityCodec} backed by Jackson. The {@link ObjectReader} and {@link ObjectWriter} are resolved once per entity type at construction, so
+ * no type introspection or serializer lookup happens on the read and write paths. The same class serves the text JSON format and the binary Smile
+ * format, depending on the {@link ObjectMapper} it is created with.
+ *
+ * @param <T> The type of entity this codec handles.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class JacksonEntityCodec<T extends AbstractPersistentObject> implements EntityCodec<T> {
+
+  /**
+   * Header every Smile document starts with when {@code SmileGenerator.Feature.WRITE_HEADER} is enabled, which is the default.
+   */
+  private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+  private final ObjectReader reader;
+  private final ObjectWriter writer;
+  private final String fileExtension;
+  private final boolean binary;
+
+  private JacksonEntityCodec(ObjectMapper mapper, Class<T> type, String fileExtension, boolean binary) {
+    this.reader = mapper.readerFor(type);
+    this.writer = mapper.writerFor(type);
+    this.fileExtension = fileExtension;
+    this.binary = binary;
+  }
+
+  public static <T extends AbstractPersistentObject> JacksonEntityCodec<T> json(ObjectMapper jsonMapper, Class<T> type) {
+    return new JacksonEntityCodec<>(jsonMapper, type, ".json", false);
+  }
+
+  public static <T extends AbstractPersistentObject> JacksonEntityCodec<T> smile(ObjectMapper smileMapper, Class<T> type) {
+    return new JacksonEntityCodec<>(smileMapper, type, ".smile", true);
+  }
+
+  @Override
+  public String getFileExtension() {
+    return fileExtension;
+  }
+
+  @Override
+  public boolean canDecode(byte[] data, int offset, int length) {
+    return binary ? startsWithSmileHeader(data, offset, length) : startsWithJsonObject(data, offset, length);
+  }
+
+  private static boolean startsWithSmileHeader(byte[] data, int offset, int length) {
+    if (length < SMILE_HEADER.length) {
+      return false;
+    }
+    for (int i = 0; i < SMILE_HEADER.length; i++) {
+      if (data[offset + i] != SMILE_HEADER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWithJsonObject(byte[] data, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      if (!Character.isWhitespace(data[i])) {
+        return data[i] == '{';
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void encode(T entity, OutputStream out) throws IOException {
+    writer.writeValue(out, entity);
+  }
+
+  @Override
+  public T decode(byte[] data, int offset, int length) throws IOException {
+    return reader.readValue(data, offset, length);
+  }
+
+  @Override
+  public T decode(InputStream in) throws IOException {
+    return reader.readValue(in);
+  }
+}
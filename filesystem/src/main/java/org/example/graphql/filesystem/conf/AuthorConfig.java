@@ -24,11 +24,24 @@
 
 package org.example.graphql.filesystem.conf;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.index.IndexKeyType;
+import org.example.graphql.filesystem.index.SecondaryIndex;
 import org.example.graphql.filesystem.models.FileSystemAuthor;
+import org.example.graphql.filesystem.pack.PackedEntityStore;
+import org.example.graphql.filesystem.persistence.AsyncFileSystemStorage;
+import org.example.graphql.filesystem.persistence.EncodedEntityCache;
 import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.snapshot.SnapshotStore;
+import org.example.graphql.filesystem.utils.AsyncFileReader;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
 import org.example.graphql.filesystem.utils.DirectoryManager;
 import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -41,35 +54,120 @@ import org.springframework.context.annotation.Configuration;
  * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.09
  * @since 05-02-2024
  */
 @Configuration
 public class AuthorConfig {
 
   @Value("${filesystem.authors.working-dir:/tmp/authors}")
-  private String workingDir;
+  private List<String> workingDirs;
+
+  @Value("${filesystem.snapshot.enabled:true}")
+  private boolean snapshotsEnabled;
+
+  @Value("${filesystem.watch.enabled:${filesystem.shared.enabled:false}}")
+  private boolean watchEnabled;
+
+  @Value("${filesystem.cache.max-entries:0}")
+  private int cacheMaxEntries;
+
+  @Value("${filesystem.shared.enabled:false}")
+  private boolean sharedEnabled;
+
+  @Value("${filesystem.instance-id:}")
+  private String instanceId;
+
+  @Value("${filesystem.shared.lock-shards:256}")
+  private int lockShards;
+
+  @Value("${filesystem.shared.id-range-size:1000}")
+  private int idRangeSize;
+
+  @Value("${filesystem.pack.enabled:false}")
+  private boolean packEnabled;
+
+  @Value("${filesystem.pack.entities-per-container:256}")
+  private int entitiesPerContainer;
+
+  @Value("${filesystem.pack.compression:DEFLATE}")
+  private PackedEntityStore.Compression packCompression;
+
+  private final EntityCodecFactory codecFactory;
+
+  private final AtomicFileWriter fileWriter;
+
+  private final FileSystemUnitOfWork unitOfWork;
+
+  private final AsyncFileReader asyncFileReader;
+
+  @Autowired
+  public AuthorConfig(EntityCodecFactory codecFactory, AtomicFileWriter fileWriter, FileSystemUnitOfWork unitOfWork,
+      AsyncFileReader asyncFileReader) {
+    this.codecFactory = codecFactory;
+    this.fileWriter = fileWriter;
+    this.unitOfWork = unitOfWork;
+    this.asyncFileReader = asyncFileReader;
+  }
 
   /**
    * Creates and configures a {@link DirectoryManager} bean for managing the directory where author data is stored. The working directory path is
-   * determined by application properties, with a default fallback to "/tmp/authors".
+   * determined by application properties, with a default fallback to "/tmp/authors". A comma-separated list of directories stripes the entity files
+   * across all of them, with the first one serving as the working directory.
+   *
+   * <p>
+   * If the working directory is shared between processes, the manager additionally guards entity writes with file locks, and directories holding
+   * process-local state are resolved per instance.
+   * </p>
    *
    * @return A {@link DirectoryManager} instance for author data.
+   * @throws IOException if the lock file of a shared working directory cannot be opened.
+   */
+  @Bean
+  public DirectoryManager authorDirManager() throws IOException {
+    return sharedEnabled ? new DirectoryManager(workingDirs, instanceId, lockShards) : new DirectoryManager(workingDirs);
+  }
+
+  /**
+   * Provides the {@link EntityCodecRegistry} bean holding the codecs {@link FileSystemAuthor} files are written and read with. The registry is built
+   * once, so readers and writers for the entity type are reused for every request.
+   *
+   * @return An {@link EntityCodecRegistry} for {@link FileSystemAuthor} entities.
    */
   @Bean
-  public DirectoryManager authorDirManager() {
-    return new DirectoryManager(workingDir);
+  public EntityCodecRegistry<FileSystemAuthor> authorCodecs() {
+    return codecFactory.create(FileSystemAuthor.class);
   }
 
   /**
    * Creates a {@link IdGenerator} bean that relies on the {@link DirectoryManager} bean for managing unique ID generation for authors. This setup
    * ensures that ID generation is consistent and based on the file system storage specifics for authors.
    *
+   * <p>
+   * In a shared working directory, IDs are leased in ranges from a file-locked counter, so processes never hand out the same ID.
+   * </p>
+   *
    * @return An {@link IdGenerator} instance for generating unique IDs for authors.
+   * @throws IOException if the directory manager cannot be created.
+   */
+  @Bean
+  public IdGenerator authorIdGenerator() throws IOException {
+    DirectoryManager dirManager = authorDirManager();
+    List<String> extensions = authorCodecs().getFileExtensions();
+    return sharedEnabled ? new IdGenerator(dirManager, extensions, dirManager.getWorkingDir().resolve(".ids"), idRangeSize)
+        : new IdGenerator(dirManager, extensions);
+  }
+
+  /**
+   * Provides the {@link SecondaryIndex} bean mapping the last name of authors to their IDs.
+   *
+   * @return A {@link SecondaryIndex} over {@link FileSystemAuthor#getLastName()}.
+   * @throws IOException if the index files cannot be opened.
    */
   @Bean
-  public IdGenerator authorIdGenerator() {
-    return new IdGenerator(authorDirManager());
+  public SecondaryIndex<FileSystemAuthor, String> authorLastNameIndex() throws IOException {
+    return new SecondaryIndex<>("lastName", authorDirManager().resolveInstanceDir(".index"), IndexKeyType.STRING,
+        FileSystemAuthor::getLastName, fileWriter);
   }
 
   /**
@@ -77,10 +175,29 @@ public class AuthorConfig {
    * directory management and ID generation facilities to provide persistent storage capabilities.
    *
    * @return A {@link FileSystemStorage} instance configured for storing and managing {@link FileSystemAuthor} entities.
+   * @throws IOException if snapshots are enabled and the snapshot directory cannot be opened, or the working directory cannot be watched.
+   */
+  @Bean
+  public FileSystemStorage<FileSystemAuthor> authorStorage() throws IOException {
+    SnapshotStore snapshots = snapshotsEnabled ? new SnapshotStore(authorDirManager().resolveInstanceDir(".snapshot")) : null;
+    EncodedEntityCache cache = cacheMaxEntries > 0 ? new EncodedEntityCache(cacheMaxEntries) : null;
+    PackedEntityStore packs = packEnabled ? new PackedEntityStore(authorDirManager(), fileWriter, entitiesPerContainer, packCompression) : null;
+    FileSystemStorage<FileSystemAuthor> storage = new FileSystemStorage<>("authors", authorCodecs(), authorDirManager(), authorIdGenerator(),
+        fileWriter, unitOfWork, snapshots, List.of(authorLastNameIndex()), cache, packs);
+    if (watchEnabled) {
+      storage.startWatching();
+    }
+    return storage;
+  }
+
+  /**
+   * Provides the asynchronous variant of the {@link FileSystemStorage} for {@link FileSystemAuthor} entities, used for batched lookups.
+   *
+   * @return An {@link AsyncFileSystemStorage} sharing its state with {@link #authorStorage()}.
+   * @throws IOException if the underlying storage cannot be created.
    */
   @Bean
-  public FileSystemStorage<FileSystemAuthor> authorStorage() {
-    return new FileSystemStorage<>(new ObjectMapper(), authorDirManager(),
-        authorIdGenerator(), FileSystemAuthor.class);
+  public AsyncFileSystemStorage<FileSystemAuthor> authorAsyncStorage() throws IOException {
+    return new AsyncFileSystemStorage<>(authorStorage(), asyncFileReader);
   }
 }
@@ -24,11 +24,28 @@
 
 package org.example.graphql.filesystem.conf;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.index.IndexKeyType;
+import org.example.graphql.filesystem.index.IntColumn;
+import org.example.graphql.filesystem.index.InvertedIndex;
+import org.example.graphql.filesystem.index.LongColumn;
+import org.example.graphql.filesystem.index.SecondaryIndex;
 import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.pack.PackedEntityStore;
+import org.example.graphql.filesystem.persistence.AsyncFileSystemStorage;
+import org.example.graphql.filesystem.persistence.EncodedEntityCache;
 import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.snapshot.SnapshotStore;
+import org.example.graphql.filesystem.utils.AsyncFileReader;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
 import org.example.graphql.filesystem.utils.DirectoryManager;
 import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.example.graphql.server.services.SearchTerms;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -41,35 +58,166 @@ import org.springframework.context.annotation.Configuration;
  * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.11
  * @since 05-02-2024
  */
 @Configuration
 public class BookConfig {
 
   @Value("${filesystem.books.working-dir:/tmp/books}")
-  private String workingDir;
+  private List<String> workingDirs;
+
+  @Value("${filesystem.snapshot.enabled:true}")
+  private boolean snapshotsEnabled;
+
+  @Value("${filesystem.watch.enabled:${filesystem.shared.enabled:false}}")
+  private boolean watchEnabled;
+
+  @Value("${filesystem.cache.max-entries:0}")
+  private int cacheMaxEntries;
+
+  @Value("${filesystem.shared.enabled:false}")
+  private boolean sharedEnabled;
+
+  @Value("${filesystem.instance-id:}")
+  private String instanceId;
+
+  @Value("${filesystem.shared.lock-shards:256}")
+  private int lockShards;
+
+  @Value("${filesystem.shared.id-range-size:1000}")
+  private int idRangeSize;
+
+  @Value("${filesystem.pack.enabled:false}")
+  private boolean packEnabled;
+
+  @Value("${filesystem.pack.entities-per-container:256}")
+  private int entitiesPerContainer;
+
+  @Value("${filesystem.pack.compression:DEFLATE}")
+  private PackedEntityStore.Compression packCompression;
+
+  private final EntityCodecFactory codecFactory;
+
+  private final AtomicFileWriter fileWriter;
+
+  private final FileSystemUnitOfWork unitOfWork;
+
+  private final AsyncFileReader asyncFileReader;
+
+  @Autowired
+  public BookConfig(EntityCodecFactory codecFactory, AtomicFileWriter fileWriter, FileSystemUnitOfWork unitOfWork,
+      AsyncFileReader asyncFileReader) {
+    this.codecFactory = codecFactory;
+    this.fileWriter = fileWriter;
+    this.unitOfWork = unitOfWork;
+    this.asyncFileReader = asyncFileReader;
+  }
 
   /**
    * Creates and configures a {@link DirectoryManager} bean for managing the directory where book data is stored. The working directory path is
-   * determined by application properties, with a default fallback to "/tmp/books".
+   * determined by application properties, with a default fallback to "/tmp/books". A comma-separated list of directories stripes the entity files
+   * across all of them, with the first one serving as the working directory.
+   *
+   * <p>
+   * If the working directory is shared between processes, the manager additionally guards entity writes with file locks, and directories holding
+   * process-local state are resolved per instance.
+   * </p>
    *
    * @return A {@link DirectoryManager} instance dedicated to book data management.
+   * @throws IOException if the lock file of a shared working directory cannot be opened.
+   */
+  @Bean
+  public DirectoryManager bookDirManager() throws IOException {
+    return sharedEnabled ? new DirectoryManager(workingDirs, instanceId, lockShards) : new DirectoryManager(workingDirs);
+  }
+
+  /**
+   * Provides the {@link EntityCodecRegistry} bean holding the codecs {@link FileSystemBook} files are written and read with. The registry is built
+   * once, so readers and writers for the entity type are reused for every request.
+   *
+   * @return An {@link EntityCodecRegistry} for {@link FileSystemBook} entities.
    */
   @Bean
-  public DirectoryManager bookDirManager() {
-    return new DirectoryManager(workingDir);
+  public EntityCodecRegistry<FileSystemBook> bookCodecs() {
+    return codecFactory.create(FileSystemBook.class);
   }
 
   /**
    * Provides a {@link IdGenerator} bean specifically for book entity ID generation. Utilizes the {@link DirectoryManager} bean for directory
    * management to ensure unique ID generation is aligned with the file system storage strategy for books.
    *
+   * <p>
+   * In a shared working directory, IDs are leased in ranges from a file-locked counter, so processes never hand out the same ID.
+   * </p>
+   *
    * @return An {@link IdGenerator} instance for book entities.
+   * @throws IOException if the directory manager cannot be created.
+   */
+  @Bean
+  public IdGenerator bookIdGenerator() throws IOException {
+    DirectoryManager dirManager = bookDirManager();
+    List<String> extensions = bookCodecs().getFileExtensions();
+    return sharedEnabled ? new IdGenerator(dirManager, extensions, dirManager.getWorkingDir().resolve(".ids"), idRangeSize)
+        : new IdGenerator(dirManager, extensions);
+  }
+
+  /**
+   * Provides the {@link SecondaryIndex} bean mapping the published year of books to their IDs.
+   *
+   * @return A {@link SecondaryIndex} over {@link FileSystemBook#getPublishedYear()}.
+   * @throws IOException if the index files cannot be opened.
    */
   @Bean
-  public IdGenerator bookIdGenerator() {
-    return new IdGenerator(bookDirManager());
+  public SecondaryIndex<FileSystemBook, Integer> bookPublishedYearIndex() throws IOException {
+    return new SecondaryIndex<>("publishedYear", bookDirManager().resolveInstanceDir(".index"), IndexKeyType.INT,
+        FileSystemBook::getPublishedYear, fileWriter);
+  }
+
+  /**
+   * Provides the {@link SecondaryIndex} bean mapping the author ID of books to their IDs. Books without an author are not indexed.
+   *
+   * @return A {@link SecondaryIndex} over the ID of {@link FileSystemBook#getAuthor()}.
+   * @throws IOException if the index files cannot be opened.
+   */
+  @Bean
+  public SecondaryIndex<FileSystemBook, Long> bookAuthorIndex() throws IOException {
+    return new SecondaryIndex<>("authorId", bookDirManager().resolveInstanceDir(".index"), IndexKeyType.LONG,
+        book -> book.getAuthor() != null ? book.getAuthor().getId() : null, fileWriter);
+  }
+
+  /**
+   * Provides the {@link InvertedIndex} bean mapping the words of book titles and author names to the IDs of the books containing them.
+   *
+   * @return An {@link InvertedIndex} over the {@link SearchTerms} of books.
+   * @throws IOException if the index files cannot be opened.
+   */
+  @Bean
+  public InvertedIndex<FileSystemBook> bookSearchIndex() throws IOException {
+    return new InvertedIndex<>("search", bookDirManager().resolveInstanceDir(".index"), SearchTerms::of, fileWriter);
+  }
+
+  /**
+   * Provides the {@link IntColumn} bean projecting the published year of books, which counts and sorts books by year without reading them.
+   *
+   * @return An {@link IntColumn} over {@link FileSystemBook#getPublishedYear()}.
+   * @throws IOException if the column file cannot be opened.
+   */
+  @Bean
+  public IntColumn<FileSystemBook> bookPublishedYearColumn() throws IOException {
+    return new IntColumn<>("publishedYear", bookDirManager().resolveInstanceDir(".index"), FileSystemBook::getPublishedYear);
+  }
+
+  /**
+   * Provides the {@link LongColumn} bean projecting the author ID of books. Books without an author have no value.
+   *
+   * @return A {@link LongColumn} over the ID of {@link FileSystemBook#getAuthor()}.
+   * @throws IOException if the column file cannot be opened.
+   */
+  @Bean
+  public LongColumn<FileSystemBook> bookAuthorIdColumn() throws IOException {
+    return new LongColumn<>("authorId", bookDirManager().resolveInstanceDir(".index"),
+        book -> book.getAuthor() != null ? book.getAuthor().getId() : null);
   }
 
   /**
@@ -77,10 +225,30 @@ public class BookConfig {
    * comprehensive storage management. This bean is essential for persisting book data within the filesystem.
    *
    * @return A {@link FileSystemStorage} instance tailored for {@link FileSystemBook} entities.
+   * @throws IOException if snapshots are enabled and the snapshot directory cannot be opened, or the working directory cannot be watched.
+   */
+  @Bean
+  public FileSystemStorage<FileSystemBook> bookStorage() throws IOException {
+    SnapshotStore snapshots = snapshotsEnabled ? new SnapshotStore(bookDirManager().resolveInstanceDir(".snapshot")) : null;
+    EncodedEntityCache cache = cacheMaxEntries > 0 ? new EncodedEntityCache(cacheMaxEntries) : null;
+    PackedEntityStore packs = packEnabled ? new PackedEntityStore(bookDirManager(), fileWriter, entitiesPerContainer, packCompression) : null;
+    FileSystemStorage<FileSystemBook> storage = new FileSystemStorage<>("books", bookCodecs(), bookDirManager(), bookIdGenerator(),
+        fileWriter, unitOfWork, snapshots, List.of(bookPublishedYearIndex(), bookAuthorIndex(), bookSearchIndex(),
+            bookPublishedYearColumn(), bookAuthorIdColumn()), cache, packs);
+    if (watchEnabled) {
+      storage.startWatching();
+    }
+    return storage;
+  }
+
+  /**
+   * Provides the asynchronous variant of the {@link FileSystemStorage} for {@link FileSystemBook} entities, used for batched lookups.
+   *
+   * @return An {@link AsyncFileSystemStorage} sharing its state with {@link #bookStorage()}.
+   * @throws IOException if the underlying storage cannot be created.
    */
   @Bean
-  public FileSystemStorage<FileSystemBook> bookStorage() {
-    return new FileSystemStorage<>(new ObjectMapper(), bookDirManager(), bookIdGenerator(),
-        FileSystemBook.class);
+  public AsyncFileSystemStorage<FileSystemBook> bookAsyncStorage() throws IOException {
+    return new AsyncFileSystemStorage<>(bookStorage(), asyncFileReader);
   }
 }
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.conf;
+
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration class for the entity codecs shared by all filesystem storages.
+ * <p>
+ * The format new entity files are written in is configurable through the {@code filesystem.codec.format} property and defaults to the binary Smile
+ * format. Existing files in other formats stay readable.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+@Configuration
+public class CodecConfig {
+
+  @Value("${filesystem.codec.format:smile}")
+  private EntityFormat writeFormat;
+
+  @Value("${filesystem.codec.pooled-buffers:64}")
+  private int pooledBuffers;
+
+  @Value("${filesystem.codec.max-pooled-buffer-size:65536}")
+  private int maxPooledBufferSize;
+
+  /**
+   * Creates the {@link EntityCodecFactory} bean from which {@link BookConfig} and {@link AuthorConfig} obtain their per-type codecs.
+   *
+   * @return An {@link EntityCodecFactory} sharing its mappers and buffer pool among all entity types.
+   */
+  @Bean
+  public EntityCodecFactory entityCodecFactory() {
+    return new EntityCodecFactory(writeFormat, new BufferPool(pooledBuffers, maxPooledBufferSize));
+  }
+}
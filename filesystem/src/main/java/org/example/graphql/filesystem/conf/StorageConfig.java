@@ -0,0 +1,208 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.conf;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import org.example.graphql.filesystem.backup.OnlineBackup;
+import org.example.graphql.filesystem.pack.PackedEntityStore;
+import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.replication.ReplicationFollower;
+import org.example.graphql.filesystem.replication.ReplicationLog;
+import org.example.graphql.filesystem.replication.ReplicationRole;
+import org.example.graphql.filesystem.snapshot.SnapshotScheduler;
+import org.example.graphql.filesystem.snapshot.SnapshotStore;
+import org.example.graphql.filesystem.utils.AsyncFileReader;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.example.graphql.filesystem.wal.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration class for the write path shared by all filesystem storages.
+ * <p>
+ * By default, changes are written directly to the entity files, and whether each file is forced to disk is configurable through the
+ * {@code filesystem.fsync} property. With {@code filesystem.wal.enabled=true}, all changes are recorded in a {@link WriteAheadLog} located in
+ * {@code filesystem.wal.dir} instead, which makes mutations durable with a single, group-committed fsync. The log is locked by the process using it,
+ * so every process needs a directory of its own. Writes are atomic either way.
+ * </p>
+ * <p>
+ * Unless {@code filesystem.snapshot.enabled=false}, each storage keeps a {@link SnapshotStore} next to its entity files, and a new snapshot is taken
+ * every {@code filesystem.snapshot.interval}.
+ * </p>
+ * <p>
+ * With {@code filesystem.pack.enabled=true}, entities are stored in container files of {@code filesystem.pack.entities-per-container} entities each,
+ * compressed according to {@code filesystem.pack.compression}. Every write replaces its whole container, so containers hold at most
+ * {@value PackedEntityStore#MAX_ENTITIES_PER_CONTAINER} entities.
+ * </p>
+ * <p>
+ * With {@code filesystem.replication.role=primary}, every applied change is appended to a {@link ReplicationLog} in
+ * {@code filesystem.replication.dir}. Instances with {@code filesystem.replication.role=follower} tail that directory, apply the changes to their own
+ * working directories and reject writes of their own; their lag is exposed as the {@value ReplicationFollower#OBJECT_NAME} MBean.
+ * </p>
+ * <p>
+ * Consistent backups of all stores can be taken while they stay available through the {@value OnlineBackup#OBJECT_NAME} MBean.
+ * </p>
+ * <p>
+ * Several processes may share the same working directories with {@code filesystem.shared.enabled=true}. Every process then needs its own
+ * {@code filesystem.instance-id} and {@code filesystem.wal.dir}. Shared working directories are watched for the changes of the other processes unless
+ * {@code filesystem.watch.enabled=false}; unshared ones are only watched with {@code filesystem.watch.enabled=true}, since all their changes are
+ * made by this process.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.05
+ * @since 19-10-2026
+ */
+@Configuration
+public class StorageConfig {
+
+  @Value("${filesystem.fsync:false}")
+  private boolean fsync;
+
+  @Value("${filesystem.wal.enabled:false}")
+  private boolean walEnabled;
+
+  @Value("${filesystem.wal.dir:/tmp/bookstore-wal}")
+  private String walDir;
+
+  @Value("${filesystem.wal.checkpoint-bytes:16777216}")
+  private long walCheckpointBytes;
+
+  @Value("${filesystem.async.io-threads:4}")
+  private int asyncIoThreads;
+
+  @Value("${filesystem.async.max-in-flight:64}")
+  private int asyncMaxInFlight;
+
+  @Value("${filesystem.snapshot.enabled:true}")
+  private boolean snapshotsEnabled;
+
+  @Value("${filesystem.snapshot.interval:10m}")
+  private Duration snapshotInterval;
+
+  @Value("${filesystem.replication.role:NONE}")
+  private ReplicationRole replicationRole;
+
+  @Value("${filesystem.replication.dir:/tmp/bookstore-replication}")
+  private String replicationDir;
+
+  @Value("${filesystem.replication.segment-bytes:67108864}")
+  private long replicationSegmentBytes;
+
+  @Value("${filesystem.replication.retention:24h}")
+  private Duration replicationRetention;
+
+  @Value("${filesystem.replication.poll-interval:100ms}")
+  private Duration replicationPollInterval;
+
+  /**
+   * Creates the {@link AtomicFileWriter} bean used by all storages to replace entity files.
+   *
+   * @return An {@link AtomicFileWriter} honoring the configured fsync setting.
+   */
+  @Bean
+  public AtomicFileWriter atomicFileWriter() {
+    return new AtomicFileWriter(fsync);
+  }
+
+  /**
+   * Creates the {@link AsyncFileReader} bean shared by the asynchronous variants of all storages. The number of I/O threads and the number of reads
+   * in flight are configurable through {@code filesystem.async.io-threads} and {@code filesystem.async.max-in-flight}.
+   *
+   * @return An {@link AsyncFileReader} with the configured bounds.
+   */
+  @Bean
+  public AsyncFileReader asyncFileReader() {
+    return new AsyncFileReader(asyncIoThreads, asyncMaxInFlight);
+  }
+
+  /**
+   * Creates the {@link FileSystemUnitOfWork} bean, which is also picked up by the GraphQL resolvers to group the changes of each mutation. The
+   * write-ahead log is closed, and thereby checkpointed, when the application context shuts down.
+   *
+   * @return A {@link FileSystemUnitOfWork} committing through the write-ahead log, if enabled, and shipping changes if this instance is a replication
+   *     primary.
+   * @throws IOException if the write-ahead log or the replication log cannot be opened.
+   */
+  @Bean
+  public FileSystemUnitOfWork unitOfWork() throws IOException {
+    WriteAheadLog writeAheadLog = walEnabled ? new WriteAheadLog(Paths.get(walDir), walCheckpointBytes) : null;
+    ReplicationLog replicationLog = replicationRole == ReplicationRole.PRIMARY
+        ? new ReplicationLog(Paths.get(replicationDir), replicationSegmentBytes, replicationRetention)
+        : null;
+    return new FileSystemUnitOfWork(writeAheadLog, replicationLog, replicationRole == ReplicationRole.FOLLOWER);
+  }
+
+  /**
+   * Creates the {@link ReplicationFollower} bean applying the changes of the primary to all storages, if this instance is a replication follower. The
+   * follower keeps its position next to the write-ahead log.
+   *
+   * @param unitOfWork The unit of work the storages registered with.
+   * @param storages   All filesystem storages of the application.
+   * @return A started {@link ReplicationFollower}, or {@code null} if this instance is not a follower.
+   * @throws IOException if the position file cannot be opened.
+   */
+  @Bean
+  public ReplicationFollower replicationFollower(FileSystemUnitOfWork unitOfWork, List<FileSystemStorage<?>> storages) throws IOException {
+    if (replicationRole != ReplicationRole.FOLLOWER) {
+      return null;
+    }
+    ReplicationFollower follower = new ReplicationFollower(Paths.get(replicationDir), Paths.get(walDir).resolve("replication.position"), unitOfWork,
+        replicationPollInterval);
+    storages.forEach(storage -> storage.setReplicationFollower(follower));
+    follower.start();
+    return follower;
+  }
+
+  /**
+   * Creates the {@link SnapshotScheduler} bean that periodically snapshots all storages, if snapshots are enabled.
+   *
+   * @param storages All filesystem storages of the application.
+   * @return A {@link SnapshotScheduler} for the given storages, or a scheduler without storages if snapshots are disabled.
+   */
+  @Bean
+  public SnapshotScheduler snapshotScheduler(List<FileSystemStorage<?>> storages) {
+    return new SnapshotScheduler(snapshotsEnabled ? storages : List.of(), snapshotInterval);
+  }
+
+  /**
+   * Creates the {@link OnlineBackup} bean taking backups of all storages, and registers its management interface.
+   *
+   * @param unitOfWork The unit of work the storages record their changes with.
+   * @param storages   All filesystem storages of the application.
+   * @return An {@link OnlineBackup} of the given storages.
+   */
+  @Bean
+  public OnlineBackup onlineBackup(FileSystemUnitOfWork unitOfWork, List<FileSystemStorage<?>> storages) {
+    OnlineBackup backup = new OnlineBackup(unitOfWork, storages);
+    backup.registerMBean();
+    return backup;
+  }
+}
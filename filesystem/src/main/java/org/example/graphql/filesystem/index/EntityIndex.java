@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * An index over the entities of a store, kept up to date by the {@link org.example.graphql.filesystem.persistence.FileSystemStorage} along with every
+ * applied change and rebuilt from the data if it could not be loaded.
+ *
+ * @param <T> The type of entity indexed.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public interface EntityIndex<T extends AbstractPersistentObject> extends Closeable {
+
+  String getName();
+
+  /**
+   * @return {@code false} if the index could not be loaded from its files, so it needs to be rebuilt from the data.
+   */
+  boolean isLoaded();
+
+  /**
+   * Indexes the entity with the given ID, replacing whatever was indexed for it before.
+   *
+   * @throws IOException if the change cannot be journaled.
+   */
+  void put(long id, T entity) throws IOException;
+
+  /**
+   * Removes the entity with the given ID from the index.
+   *
+   * @throws IOException if the change cannot be journaled.
+   */
+  void remove(long id) throws IOException;
+
+  /**
+   * Replaces the content of the index with the given entities.
+   *
+   * @param entities All entities of the store.
+   * @throws IOException if the index file cannot be written.
+   */
+  void rebuild(Collection<T> entities) throws IOException;
+
+  /**
+   * Forces the journal to disk.
+   *
+   * @throws IOException if the journal cannot be forced.
+   */
+  void force() throws IOException;
+}
@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * A {@link MappedColumn} of {@code int} values, such as the published year of books. {@link #MISSING} marks IDs without a value and cannot be stored.
+ *
+ * @param <T> The type of entity projected.
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public class IntColumn<T extends AbstractPersistentObject> extends MappedColumn<T> {
+
+  public static final int MISSING = Integer.MIN_VALUE;
+
+  private static final int MAX_HISTOGRAM_ARRAY = 1 << 16;
+
+  private final Function<T, Integer> valueExtractor;
+
+  /**
+   * @param name           The name of the column, used for its file name.
+   * @param dir            The directory holding the column file; created if missing.
+   * @param valueExtractor Returns the projected property of an entity, or {@code null} if the entity has none.
+   * @throws IOException if the column file cannot be opened or mapped.
+   */
+  public IntColumn(String name, Path dir, Function<T, Integer> valueExtractor) throws IOException {
+    super(name, dir, Integer.BYTES);
+    this.valueExtractor = valueExtractor;
+  }
+
+  /**
+   * @return The value stored for the given ID, or {@link #MISSING} if there is none.
+   */
+  public int get(long id) {
+    MappedByteBuffer buffer = buffer();
+    return id >= 0 && id < (buffer.capacity() - HEADER_SIZE) / Integer.BYTES ? buffer.getInt(offsetOf(id)) : MISSING;
+  }
+
+  /**
+   * @return The number of IDs whose value matches the predicate.
+   */
+  public long count(IntPredicate predicate) {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Integer.BYTES;
+    long count = 0;
+    for (int id = 0; id < capacity; id++) {
+      int value = buffer.getInt(HEADER_SIZE + id * Integer.BYTES);
+      if (value != MISSING && predicate.test(value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return The IDs whose value matches the predicate, in ascending order.
+   */
+  public long[] filter(IntPredicate predicate) {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Integer.BYTES;
+    return collectIds(capacity, id -> {
+      int value = buffer.getInt(HEADER_SIZE + (int) id * Integer.BYTES);
+      return value != MISSING && predicate.test(value);
+    });
+  }
+
+  /**
+   * @return The number of IDs per value, ordered by value.
+   */
+  public Map<Integer, Long> histogram() {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Integer.BYTES;
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int id = 0; id < capacity; id++) {
+      int value = buffer.getInt(HEADER_SIZE + id * Integer.BYTES);
+      if (value != MISSING) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+    }
+    Map<Integer, Long> histogram = new TreeMap<>();
+    if (min > max) {
+      return histogram;
+    }
+    if ((long) max - min < MAX_HISTOGRAM_ARRAY) {
+      long[] counts = new long[max - min + 1];
+      for (int id = 0; id < capacity; id++) {
+        int value = buffer.getInt(HEADER_SIZE + id * Integer.BYTES);
+        if (value != MISSING) {
+          counts[value - min]++;
+        }
+      }
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          histogram.put(min + i, counts[i]);
+        }
+      }
+      return histogram;
+    }
+    // Values too spread out for an array of counters
+    for (int id = 0; id < capacity; id++) {
+      int value = buffer.getInt(HEADER_SIZE + id * Integer.BYTES);
+      if (value != MISSING) {
+        histogram.merge(value, 1L, Long::sum);
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * @param descending Whether the largest values come first.
+   * @param limit      The maximum number of IDs to return.
+   * @return The IDs having a value, ordered by value and then by ID.
+   */
+  public long[] sortedIds(boolean descending, int limit) {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Integer.BYTES;
+    return selectIds(capacity, id -> buffer.getInt(HEADER_SIZE + (int) id * Integer.BYTES) != MISSING, (a, b) -> {
+      int order = Integer.compare(buffer.getInt(HEADER_SIZE + (int) a * Integer.BYTES), buffer.getInt(HEADER_SIZE + (int) b * Integer.BYTES));
+      return descending ? -order : order;
+    }, limit);
+  }
+
+  @Override
+  protected void clear(MappedByteBuffer buffer, int fromId, int toId) {
+    for (int id = fromId; id < toId; id++) {
+      buffer.putInt(HEADER_SIZE + id * Integer.BYTES, MISSING);
+    }
+  }
+
+  @Override
+  protected boolean write(MappedByteBuffer buffer, long id, T entity) {
+    Integer value = valueExtractor.apply(entity);
+    if (value == null || value == MISSING) {
+      return false;
+    }
+    buffer.putInt(offsetOf(id), value);
+    return true;
+  }
+}
@@ -0,0 +1,410 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+
+/**
+ * A persistent inverted index mapping the terms of the entities of a store, such as the words of book titles, to the sorted IDs of the entities
+ * containing them. A search for several terms leapfrogs through the posting lists in ID order, letting each list skip ahead to the candidate of the
+ * others, and stops as soon as enough matches are found. The cost of a search thus depends on the number of results requested and the number of
+ * near misses, but not on the number of entities.
+ * <p>
+ * The index is persisted as an index file ({@code <name>.inv}) and a journal ({@code <name>.journal}) of the changes made since, which is replayed
+ * and compacted the same way as for a {@link SecondaryIndex}. In the index file, each posting list is stored as the gaps between consecutive IDs,
+ * encoded as variable-length integers, which takes a byte or two per posting for densely assigned IDs.
+ * </p>
+ * <p>
+ * Like a {@link SecondaryIndex}, changes are journaled before the entity file is written, so callers must check the entities they load for a search
+ * with {@link #matches(AbstractPersistentObject, Set)}.
+ * </p>
+ *
+ * @param <T> The type of entity indexed.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class InvertedIndex<T extends AbstractPersistentObject> implements EntityIndex<T> {
+
+  private static final Logger logger = Logger.getLogger(InvertedIndex.class.getName());
+  private static final int MAGIC = 0x46534949;
+  private static final int VERSION = 1;
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  private static final int MIN_COMPACTION_ENTRIES = 1024;
+
+  private final String name;
+  private final Function<T, Set<String>> termExtractor;
+  private final AtomicFileWriter fileWriter;
+  private final Path indexFile;
+  private final Path journalFile;
+  private volatile Map<String, NavigableSet<Long>> idsByTerm = new ConcurrentHashMap<>();
+  private Map<Long, Set<String>> termsById = new ConcurrentHashMap<>();
+  private DataOutputStream journal;
+  private FileChannel journalChannel;
+  private int journalEntries;
+  private boolean loaded;
+
+  /**
+   * Opens the index, loading its index file and replaying its journal if present.
+   *
+   * @param name          The name of the index, used for its file names.
+   * @param dir           The directory holding the index files; created if missing.
+   * @param termExtractor Returns the terms an entity is found by.
+   * @param fileWriter    The {@link AtomicFileWriter} used to replace the index file.
+   * @throws IOException if the index directory or journal cannot be opened.
+   */
+  public InvertedIndex(String name, Path dir, Function<T, Set<String>> termExtractor, AtomicFileWriter fileWriter) throws IOException {
+    this.name = name;
+    this.termExtractor = termExtractor;
+    this.fileWriter = fileWriter;
+    Files.createDirectories(dir);
+    this.indexFile = dir.resolve(name + ".inv");
+    this.journalFile = dir.resolve(name + ".journal");
+    try {
+      this.loaded = load();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Discarding unreadable index '" + name + "'", e);
+      idsByTerm = new ConcurrentHashMap<>();
+      termsById = new ConcurrentHashMap<>();
+      this.loaded = false;
+    }
+    openJournal();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Returns the IDs of the first entities, in ascending order, that contain all of the given terms.
+   *
+   * @param terms The terms to search for; no entity matches an empty set of terms.
+   * @param limit The maximum number of IDs to return.
+   * @return The matching IDs, at most {@code limit} of them.
+   */
+  public List<Long> search(Set<String> terms, int limit) {
+    if (terms.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    List<NavigableSet<Long>> postings = new ArrayList<>(terms.size());
+    for (String term : terms) {
+      NavigableSet<Long> ids = idsByTerm.get(term);
+      if (ids == null) {
+        return List.of();
+      }
+      postings.add(ids);
+    }
+    List<Long> result = new ArrayList<>(Math.min(limit, 64));
+    long candidate = Long.MIN_VALUE;
+    // The number of consecutive posting lists containing the candidate
+    int agreeing = 0;
+    for (int i = 0; ; i = (i + 1) % postings.size()) {
+      Long id = postings.get(i).ceiling(candidate);
+      if (id == null) {
+        break;
+      }
+      if (id == candidate) {
+        agreeing++;
+      } else {
+        candidate = id;
+        agreeing = 1;
+      }
+      if (agreeing == postings.size()) {
+        result.add(candidate);
+        if (result.size() == limit || candidate == Long.MAX_VALUE) {
+          break;
+        }
+        candidate++;
+        agreeing = 0;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return {@code true} if the entity contains all of the given terms, which is used to verify the entities loaded for the IDs of a search.
+   */
+  public boolean matches(T entity, Set<String> terms) {
+    return !terms.isEmpty() && termExtractor.apply(entity).containsAll(terms);
+  }
+
+  @Override
+  public synchronized void put(long id, T entity) throws IOException {
+    Set<String> terms = Set.copyOf(termExtractor.apply(entity));
+    if (terms.isEmpty()) {
+      remove(id);
+      return;
+    }
+    if (terms.equals(termsById.get(id))) {
+      return;
+    }
+    journal.writeByte(PUT);
+    journal.writeLong(id);
+    writeTerms(journal, terms);
+    journal.flush();
+    applyPut(id, terms);
+    journalChanged();
+  }
+
+  @Override
+  public synchronized void remove(long id) throws IOException {
+    if (!termsById.containsKey(id)) {
+      return;
+    }
+    journal.writeByte(REMOVE);
+    journal.writeLong(id);
+    journal.flush();
+    applyRemove(id);
+    journalChanged();
+  }
+
+  @Override
+  public synchronized void rebuild(Collection<T> entities) throws IOException {
+    Map<String, NavigableSet<Long>> rebuilt = new ConcurrentHashMap<>();
+    Map<Long, Set<String>> rebuiltTerms = new ConcurrentHashMap<>();
+    entities.parallelStream().forEach(entity -> {
+      Set<String> terms = Set.copyOf(termExtractor.apply(entity));
+      if (!terms.isEmpty()) {
+        rebuiltTerms.put(entity.getId(), terms);
+        terms.forEach(term -> rebuilt.computeIfAbsent(term, t -> new ConcurrentSkipListSet<>()).add(entity.getId()));
+      }
+    });
+    idsByTerm = rebuilt;
+    termsById = rebuiltTerms;
+    compact();
+    loaded = true;
+    logger.info("Rebuilt index '" + name + "' with " + rebuiltTerms.size() + " entries and " + rebuilt.size() + " terms");
+  }
+
+  @Override
+  public synchronized void force() throws IOException {
+    if (journalChannel.isOpen()) {
+      journalChannel.force(false);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    journal.close();
+  }
+
+  private void applyPut(long id, Set<String> terms) {
+    Set<String> previous = termsById.put(id, terms);
+    if (previous != null) {
+      for (String term : previous) {
+        if (!terms.contains(term)) {
+          removeId(term, id);
+        }
+      }
+    }
+    for (String term : terms) {
+      idsByTerm.computeIfAbsent(term, t -> new ConcurrentSkipListSet<>()).add(id);
+    }
+  }
+
+  private void applyRemove(long id) {
+    Set<String> previous = termsById.remove(id);
+    if (previous != null) {
+      previous.forEach(term -> removeId(term, id));
+    }
+  }
+
+  private void removeId(String term, long id) {
+    idsByTerm.computeIfPresent(term, (t, ids) -> {
+      ids.remove(id);
+      return ids.isEmpty() ? null : ids;
+    });
+  }
+
+  private void journalChanged() throws IOException {
+    journalEntries++;
+    if (journalEntries > Math.max(MIN_COMPACTION_ENTRIES, termsById.size())) {
+      compact();
+    }
+  }
+
+  /**
+   * Writes the complete index to the index file, with the posting lists delta-encoded, and resets the journal.
+   */
+  private void compact() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    Map<String, NavigableSet<Long>> sorted = new TreeMap<>(idsByTerm);
+    out.writeInt(sorted.size());
+    for (Map.Entry<String, NavigableSet<Long>> entry : sorted.entrySet()) {
+      List<Long> ids = List.copyOf(entry.getValue());
+      out.writeUTF(entry.getKey());
+      writeVarLong(out, ids.size());
+      long previous = 0;
+      for (Long id : ids) {
+        writeVarLong(out, id - previous);
+        previous = id;
+      }
+    }
+    out.flush();
+    fileWriter.write(indexFile, bytes.toByteArray(), bytes.size(), true);
+    journal.close();
+    Files.write(journalFile, new byte[0]);
+    journalEntries = 0;
+    openJournal();
+  }
+
+  private boolean load() throws IOException {
+    if (!Files.exists(indexFile)) {
+      return false;
+    }
+    Map<Long, Set<String>> terms = new TreeMap<>();
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(indexFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unrecognized index file " + indexFile);
+      }
+      int termCount = in.readInt();
+      for (int i = 0; i < termCount; i++) {
+        String term = in.readUTF();
+        long idCount = readVarLong(in);
+        NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+        long id = 0;
+        for (long j = 0; j < idCount; j++) {
+          id += readVarLong(in);
+          ids.add(id);
+          terms.computeIfAbsent(id, k -> new HashSet<>()).add(term);
+        }
+        idsByTerm.put(term, ids);
+      }
+    }
+    terms.forEach((id, idTerms) -> termsById.put(id, Set.copyOf(idTerms)));
+    replayJournal();
+    return true;
+  }
+
+  private void replayJournal() throws IOException {
+    if (!Files.exists(journalFile)) {
+      return;
+    }
+    byte[] data = Files.readAllBytes(journalFile);
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+    DataInputStream in = new DataInputStream(bytes);
+    int valid = 0;
+    try {
+      while (bytes.available() > 0) {
+        byte op = in.readByte();
+        long id = in.readLong();
+        if (op == PUT) {
+          applyPut(id, readTerms(in));
+        } else if (op == REMOVE) {
+          applyRemove(id);
+        } else {
+          throw new EOFException("Unknown journal entry " + op);
+        }
+        valid = data.length - bytes.available();
+        journalEntries++;
+      }
+    } catch (EOFException e) {
+      // A torn entry at the end stems from an interrupted append
+      logger.warning("Discarding incomplete journal entry of index '" + name + "'");
+      try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+        channel.truncate(valid);
+      }
+    }
+  }
+
+  private void openJournal() throws IOException {
+    journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    journal = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(journalChannel)));
+  }
+
+  private static void writeTerms(DataOutput out, Set<String> terms) throws IOException {
+    writeVarLong(out, terms.size());
+    for (String term : terms) {
+      out.writeUTF(term);
+    }
+  }
+
+  private static Set<String> readTerms(DataInput in) throws IOException {
+    long count = readVarLong(in);
+    List<String> terms = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      terms.add(in.readUTF());
+    }
+    return Set.copyOf(terms);
+  }
+
+  private static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer");
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * A {@link MappedColumn} of {@code long} values, such as the author ID of books. {@link #MISSING} marks IDs without a value and cannot be stored.
+ *
+ * @param <T> The type of entity projected.
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public class LongColumn<T extends AbstractPersistentObject> extends MappedColumn<T> {
+
+  public static final long MISSING = Long.MIN_VALUE;
+
+  private final Function<T, Long> valueExtractor;
+
+  /**
+   * @param name           The name of the column, used for its file name.
+   * @param dir            The directory holding the column file; created if missing.
+   * @param valueExtractor Returns the projected property of an entity, or {@code null} if the entity has none.
+   * @throws IOException if the column file cannot be opened or mapped.
+   */
+  public LongColumn(String name, Path dir, Function<T, Long> valueExtractor) throws IOException {
+    super(name, dir, Long.BYTES);
+    this.valueExtractor = valueExtractor;
+  }
+
+  /**
+   * @return The value stored for the given ID, or {@link #MISSING} if there is none.
+   */
+  public long get(long id) {
+    MappedByteBuffer buffer = buffer();
+    return id >= 0 && id < (buffer.capacity() - HEADER_SIZE) / Long.BYTES ? buffer.getLong(offsetOf(id)) : MISSING;
+  }
+
+  /**
+   * @return The number of IDs whose value matches the predicate.
+   */
+  public long count(LongPredicate predicate) {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Long.BYTES;
+    long count = 0;
+    for (int id = 0; id < capacity; id++) {
+      long value = buffer.getLong(HEADER_SIZE + id * Long.BYTES);
+      if (value != MISSING && predicate.test(value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return The IDs whose value matches the predicate, in ascending order.
+   */
+  public long[] filter(LongPredicate predicate) {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Long.BYTES;
+    return collectIds(capacity, id -> {
+      long value = buffer.getLong(HEADER_SIZE + (int) id * Long.BYTES);
+      return value != MISSING && predicate.test(value);
+    });
+  }
+
+  /**
+   * @return The number of IDs per value, ordered by value.
+   */
+  public Map<Long, Long> histogram() {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Long.BYTES;
+    Map<Long, long[]> counts = new HashMap<>();
+    long previous = MISSING;
+    long[] counter = null;
+    for (int id = 0; id < capacity; id++) {
+      long value = buffer.getLong(HEADER_SIZE + id * Long.BYTES);
+      if (value == MISSING) {
+        continue;
+      }
+      // Consecutive IDs often share a value, which saves the lookup
+      if (value != previous || counter == null) {
+        counter = counts.computeIfAbsent(value, v -> new long[1]);
+        previous = value;
+      }
+      counter[0]++;
+    }
+    Map<Long, Long> histogram = new TreeMap<>();
+    counts.forEach((value, count) -> histogram.put(value, count[0]));
+    return histogram;
+  }
+
+  /**
+   * @param descending Whether the largest values come first.
+   * @param limit      The maximum number of IDs to return.
+   * @return The IDs having a value, ordered by value and then by ID.
+   */
+  public long[] sortedIds(boolean descending, int limit) {
+    MappedByteBuffer buffer = buffer();
+    int capacity = (buffer.capacity() - HEADER_SIZE) / Long.BYTES;
+    return selectIds(capacity, id -> buffer.getLong(HEADER_SIZE + (int) id * Long.BYTES) != MISSING, (a, b) -> {
+      int order = Long.compare(buffer.getLong(HEADER_SIZE + (int) a * Long.BYTES), buffer.getLong(HEADER_SIZE + (int) b * Long.BYTES));
+      return descending ? -order : order;
+    }, limit);
+  }
+
+  @Override
+  protected void clear(MappedByteBuffer buffer, int fromId, int toId) {
+    for (int id = fromId; id < toId; id++) {
+      buffer.putLong(HEADER_SIZE + id * Long.BYTES, MISSING);
+    }
+  }
+
+  @Override
+  protected boolean write(MappedByteBuffer buffer, long id, T entity) {
+    Long value = valueExtractor.apply(entity);
+    if (value == null || value == MISSING) {
+      return false;
+    }
+    buffer.putLong(offsetOf(id), value);
+    return true;
+  }
+}
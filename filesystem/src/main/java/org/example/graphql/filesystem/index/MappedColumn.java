@@ -0,0 +1,328 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.LongPredicate;
+import java.util.logging.Logger;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+
+/**
+ * A columnar projection of one property of the entities of a store, kept as a dense array of primitives indexed by entity ID in a memory-mapped file
+ * ({@code <name>.col}). Scans over the column are plain loops over the mapped memory and never touch the entity files.
+ * <p>
+ * Like the other {@link EntityIndex}es, the column is updated before the entity file is written and thus may run ahead of the files after a crash,
+ * until the write-ahead log has been replayed. Values are written to the mapped memory directly and reach the disk on {@link #force()} at the latest.
+ * The file grows by doubling as larger IDs are stored, up to about 2 GiB; slots of entities without a value hold a marker defined by the subclass.
+ * </p>
+ * <p>
+ * An ID beyond that size, or a negative one, cannot be stored. Rather than failing the change that brought it, the column then reports itself as not
+ * loaded, so queries fall back to reading the entities, and it is rebuilt on the next start, which keeps it unloaded as long as the ID exists.
+ * </p>
+ * <p>
+ * File layout: {@code int magic, int version, int width, int reserved}, followed by one value of {@code width} bytes per ID. The magic number is only
+ * written once the column is complete, so a column whose rebuild was interrupted is rebuilt again.
+ * </p>
+ *
+ * @param <T> The type of entity projected.
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public abstract class MappedColumn<T extends AbstractPersistentObject> implements EntityIndex<T> {
+
+  protected static final int HEADER_SIZE = 16;
+
+  private static final Logger logger = Logger.getLogger(MappedColumn.class.getName());
+  private static final int MAGIC = 0x4653434C;
+  private static final int VERSION = 1;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final String name;
+  private final int width;
+  private final FileChannel channel;
+  private volatile MappedByteBuffer buffer;
+  private volatile boolean loaded;
+
+  /**
+   * Opens the column, mapping its file if present.
+   *
+   * @param name  The name of the column, used for its file name.
+   * @param dir   The directory holding the column file; created if missing.
+   * @param width The number of bytes per value.
+   * @throws IOException if the column file cannot be opened or mapped.
+   */
+  protected MappedColumn(String name, Path dir, int width) throws IOException {
+    this.name = name;
+    this.width = width;
+    Files.createDirectories(dir);
+    Path file = dir.resolve(name + ".col");
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = channel.size();
+    if (size >= HEADER_SIZE && (size - HEADER_SIZE) % width == 0) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      loaded = buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getInt(8) == width;
+    }
+    if (!loaded) {
+      if (size > 0) {
+        logger.warning("Discarding incomplete column '" + name + "'");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) INITIAL_CAPACITY * width);
+      clear(buffer, 0, INITIAL_CAPACITY);
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * @return The number of IDs the column currently has slots for, starting at ID 0.
+   */
+  public int capacity() {
+    return (buffer.capacity() - HEADER_SIZE) / width;
+  }
+
+  /**
+   * @return The mapped column file; replaced whenever the column grows, so readers should fetch it once per scan.
+   */
+  protected MappedByteBuffer buffer() {
+    return buffer;
+  }
+
+  /**
+   * @return The offset of the value of the given ID within the mapped file.
+   */
+  protected int offsetOf(long id) {
+    return HEADER_SIZE + (int) id * width;
+  }
+
+  /**
+   * Marks the slots between {@code fromId}, inclusive, and {@code toId}, exclusive, as holding no value.
+   */
+  protected abstract void clear(MappedByteBuffer buffer, int fromId, int toId);
+
+  /**
+   * Writes the value of the given entity to its slot, which is guaranteed to exist.
+   *
+   * @return {@code false} if the entity has no value, so its slot has to be cleared instead.
+   */
+  protected abstract boolean write(MappedByteBuffer buffer, long id, T entity);
+
+  @Override
+  public synchronized void put(long id, T entity) throws IOException {
+    if (!ensureCapacity(id)) {
+      if (loaded || buffer.getInt(0) == MAGIC) {
+        logger.warning("ID " + id + " is out of the range of column '" + name + "', which is not used until it is rebuilt");
+      }
+      loaded = false;
+      // Also rebuild the column after a restart
+      buffer.putInt(0, 0);
+      return;
+    }
+    if (!write(buffer, id, entity)) {
+      clear(buffer, (int) id, (int) id + 1);
+    }
+  }
+
+  @Override
+  public synchronized void remove(long id) {
+    if (id >= 0 && id < capacity()) {
+      clear(buffer, (int) id, (int) id + 1);
+    }
+  }
+
+  @Override
+  public synchronized void rebuild(Collection<T> entities) throws IOException {
+    buffer.putInt(0, 0);
+    buffer.force();
+    clear(buffer, 0, capacity());
+    loaded = false;
+    for (T entity : entities) {
+      if (!ensureCapacity(entity.getId())) {
+        logger.warning("Column '" + name + "' is not used, since ID " + entity.getId() + " is out of its range");
+        return;
+      }
+      put(entity.getId(), entity);
+    }
+    buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, width);
+    buffer.force();
+    loaded = true;
+    logger.info("Rebuilt column '" + name + "' with " + entities.size() + " entries");
+  }
+
+  @Override
+  public synchronized void force() {
+    buffer.force();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    buffer.force();
+    channel.close();
+  }
+
+  /**
+   * Grows the column to have a slot for the given ID.
+   *
+   * @return {@code false} if the ID is out of the range of the column.
+   */
+  private boolean ensureCapacity(long id) throws IOException {
+    if (id < 0 || HEADER_SIZE + (id + 1) * width > Integer.MAX_VALUE) {
+      return false;
+    }
+    int capacity = capacity();
+    if (id < capacity) {
+      return true;
+    }
+    long newCapacity = capacity;
+    while (newCapacity <= id) {
+      newCapacity *= 2;
+    }
+    newCapacity = Math.min(newCapacity, (Integer.MAX_VALUE - HEADER_SIZE) / width);
+    MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + newCapacity * width);
+    clear(grown, capacity, (int) newCapacity);
+    buffer = grown;
+    return true;
+  }
+
+  /**
+   * Collects the IDs, in ascending order, for which the given predicate holds.
+   */
+  protected long[] collectIds(int capacity, LongPredicate predicate) {
+    long[] ids = new long[64];
+    int count = 0;
+    for (int id = 0; id < capacity; id++) {
+      if (predicate.test(id)) {
+        if (count == ids.length) {
+          ids = Arrays.copyOf(ids, count * 2);
+        }
+        ids[count++] = id;
+      }
+    }
+    return Arrays.copyOf(ids, count);
+  }
+
+  /**
+   * Selects the first IDs in the order of their values, keeping only {@code limit} candidates in a heap rather than sorting all IDs.
+   *
+   * @param capacity   The number of IDs to consider, starting at ID 0.
+   * @param present    Whether an ID has a value.
+   * @param comparator Compares two IDs by their values; IDs with equal values are ordered by ID.
+   * @param limit      The maximum number of IDs to return.
+   * @return The first {@code limit} IDs in sorted order.
+   */
+  protected static long[] selectIds(int capacity, LongPredicate present, IdComparator comparator, int limit) {
+    if (limit <= 0) {
+      return new long[0];
+    }
+    IdComparator order = (a, b) -> {
+      int byValue = comparator.compare(a, b);
+      return byValue != 0 ? byValue : Long.compare(a, b);
+    };
+    // A heap whose root is the last of the IDs selected so far
+    long[] heap = new long[Math.min(limit, 64)];
+    int size = 0;
+    for (int id = 0; id < capacity; id++) {
+      if (!present.test(id)) {
+        continue;
+      }
+      if (size < limit) {
+        if (size == heap.length) {
+          heap = Arrays.copyOf(heap, (int) Math.min((long) size * 2, limit));
+        }
+        heap[size] = id;
+        siftUp(heap, size++, order);
+      } else if (order.compare(id, heap[0]) < 0) {
+        heap[0] = id;
+        siftDown(heap, 0, size, order);
+      }
+    }
+    // Repeatedly moving the root behind the shrinking heap leaves the IDs in order
+    for (int end = size - 1; end > 0; end--) {
+      long last = heap[0];
+      heap[0] = heap[end];
+      heap[end] = last;
+      siftDown(heap, 0, end, order);
+    }
+    return Arrays.copyOf(heap, size);
+  }
+
+  private static void siftUp(long[] heap, int index, IdComparator order) {
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (order.compare(heap[index], heap[parent]) <= 0) {
+        return;
+      }
+      long swap = heap[index];
+      heap[index] = heap[parent];
+      heap[parent] = swap;
+      index = parent;
+    }
+  }
+
+  private static void siftDown(long[] heap, int index, int size, IdComparator order) {
+    while (true) {
+      int largest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && order.compare(heap[left], heap[largest]) > 0) {
+        largest = left;
+      }
+      if (right < size && order.compare(heap[right], heap[largest]) > 0) {
+        largest = right;
+      }
+      if (largest == index) {
+        return;
+      }
+      long swap = heap[index];
+      heap[index] = heap[largest];
+      heap[largest] = swap;
+      index = largest;
+    }
+  }
+
+  /**
+   * Compares two IDs by the values stored for them.
+   */
+  @FunctionalInterface
+  protected interface IdComparator {
+
+    int compare(long a, long b);
+  }
+}
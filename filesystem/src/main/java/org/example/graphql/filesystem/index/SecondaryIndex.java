@@ -0,0 +1,366 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+
+/**
+ * A persistent secondary index mapping a property of the entities of a store to the IDs of the entities having that value, for example the published
+ * year of books. Lookups and range scans are answered from sorted in-memory structures and never touch the entity files.
+ * <p>
+ * The index is persisted as a sorted index file ({@code <name>.idx}), holding every key with its sorted list of IDs, and a journal
+ * ({@code <name>.journal}) of the changes made since the index file was written. Changes are appended to the journal as entities are saved and
+ * deleted; once the journal outgrows the index, the index file is rewritten and the journal reset. Journal entries are idempotent, so replaying a
+ * journal on top of a newer index file is harmless.
+ * </p>
+ * <p>
+ * Changes are journaled before the entity file is written. Lookups may therefore return IDs of entities that do not exist or no longer match, and
+ * callers must check the entities they load against the key.
+ * </p>
+ *
+ * @param <T> The type of entity indexed.
+ * @param <K> The type of the indexed property.
+ * @author Alexander Kombeiz
+ * @version 1.02
+ * @since 19-10-2026
+ */
+public class SecondaryIndex<T extends AbstractPersistentObject, K extends Comparable<K>> implements EntityIndex<T> {
+
+  private static final Logger logger = Logger.getLogger(SecondaryIndex.class.getName());
+  private static final int MAGIC = 0x46534958;
+  private static final int VERSION = 1;
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  private static final int MIN_COMPACTION_ENTRIES = 1024;
+
+  private final String name;
+  private final IndexKeyType<K> keyType;
+  private final Function<T, K> keyExtractor;
+  private final AtomicFileWriter fileWriter;
+  private final Path indexFile;
+  private final Path journalFile;
+  private volatile ConcurrentSkipListMap<K, NavigableSet<Long>> idsByKey = new ConcurrentSkipListMap<>();
+  private Map<Long, K> keysById = new ConcurrentHashMap<>();
+  private DataOutputStream journal;
+  private FileChannel journalChannel;
+  private int journalEntries;
+  private boolean loaded;
+
+  /**
+   * Opens the index, loading its index file and replaying its journal if present.
+   *
+   * @param name         The name of the index, used for its file names.
+   * @param dir          The directory holding the index files; created if missing.
+   * @param keyType      The type of the indexed property.
+   * @param keyExtractor Returns the indexed property of an entity, or {@code null} if the entity is not to be indexed.
+   * @param fileWriter   The {@link AtomicFileWriter} used to replace the index file.
+   * @throws IOException if the index directory or journal cannot be opened.
+   */
+  public SecondaryIndex(String name, Path dir, IndexKeyType<K> keyType, Function<T, K> keyExtractor, AtomicFileWriter fileWriter)
+      throws IOException {
+    this.name = name;
+    this.keyType = keyType;
+    this.keyExtractor = keyExtractor;
+    this.fileWriter = fileWriter;
+    Files.createDirectories(dir);
+    this.indexFile = dir.resolve(name + ".idx");
+    this.journalFile = dir.resolve(name + ".journal");
+    try {
+      this.loaded = load();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Discarding unreadable index '" + name + "'", e);
+      idsByKey = new ConcurrentSkipListMap<>();
+      keysById = new ConcurrentHashMap<>();
+      this.loaded = false;
+    }
+    openJournal();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return {@code false} if no index file existed or it could not be read, so the index needs to be rebuilt from the data.
+   */
+  @Override
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  public K keyOf(T entity) {
+    return keyExtractor.apply(entity);
+  }
+
+  /**
+   * @return The IDs of the entities indexed under the given key, in ascending order.
+   */
+  public List<Long> get(K key) {
+    NavigableSet<Long> ids = idsByKey.get(key);
+    return ids == null ? List.of() : List.copyOf(ids);
+  }
+
+  /**
+   * @return The IDs of the entities indexed under keys between {@code from} and {@code to}, both inclusive, ordered by key and then by ID.
+   */
+  public List<Long> getRange(K from, K to) {
+    if (from.compareTo(to) > 0) {
+      return List.of();
+    }
+    return idsByKey.subMap(from, true, to, true).values().stream()
+        .flatMap(Collection::stream)
+        .toList();
+  }
+
+  /**
+   * Indexes the entity with the given ID under its current key, replacing any previous key.
+   *
+   * @throws IOException if the change cannot be journaled.
+   */
+  @Override
+  public synchronized void put(long id, T entity) throws IOException {
+    K key = keyOf(entity);
+    if (key == null) {
+      remove(id);
+      return;
+    }
+    if (key.equals(keysById.get(id))) {
+      return;
+    }
+    journal.writeByte(PUT);
+    journal.writeLong(id);
+    keyType.write(journal, key);
+    journal.flush();
+    applyPut(id, key);
+    journalChanged();
+  }
+
+  /**
+   * Removes the entity with the given ID from the index.
+   *
+   * @throws IOException if the change cannot be journaled.
+   */
+  @Override
+  public synchronized void remove(long id) throws IOException {
+    if (!keysById.containsKey(id)) {
+      return;
+    }
+    journal.writeByte(REMOVE);
+    journal.writeLong(id);
+    journal.flush();
+    applyRemove(id);
+    journalChanged();
+  }
+
+  /**
+   * Replaces the content of the index with the keys of the given entities. The entities are indexed in parallel.
+   *
+   * @param entities All entities of the store.
+   * @throws IOException if the index file cannot be written.
+   */
+  @Override
+  public synchronized void rebuild(Collection<T> entities) throws IOException {
+    ConcurrentSkipListMap<K, NavigableSet<Long>> rebuilt = entities.parallelStream()
+        .filter(entity -> keyOf(entity) != null)
+        .collect(Collectors.groupingByConcurrent(this::keyOf, ConcurrentSkipListMap::new,
+            Collectors.mapping(AbstractPersistentObject::getId, Collectors.<Long, NavigableSet<Long>>toCollection(ConcurrentSkipListSet::new))));
+    Map<Long, K> rebuiltKeys = new ConcurrentHashMap<>();
+    rebuilt.forEach((key, ids) -> ids.forEach(id -> rebuiltKeys.put(id, key)));
+    idsByKey = rebuilt;
+    keysById = rebuiltKeys;
+    compact();
+    loaded = true;
+    logger.info("Rebuilt index '" + name + "' with " + rebuiltKeys.size() + " entries");
+  }
+
+  /**
+   * Forces the journal to disk. Does nothing once the index has been closed.
+   *
+   * @throws IOException if the journal cannot be forced.
+   */
+  @Override
+  public synchronized void force() throws IOException {
+    if (journalChannel.isOpen()) {
+      journalChannel.force(false);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    journal.close();
+  }
+
+  private void applyPut(long id, K key) {
+    K previous = keysById.put(id, key);
+    if (previous != null) {
+      removeId(previous, id);
+    }
+    idsByKey.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(id);
+  }
+
+  private void applyRemove(long id) {
+    K previous = keysById.remove(id);
+    if (previous != null) {
+      removeId(previous, id);
+    }
+  }
+
+  private void removeId(K key, long id) {
+    idsByKey.computeIfPresent(key, (k, ids) -> {
+      ids.remove(id);
+      return ids.isEmpty() ? null : ids;
+    });
+  }
+
+  private void journalChanged() throws IOException {
+    journalEntries++;
+    if (journalEntries > Math.max(MIN_COMPACTION_ENTRIES, keysById.size())) {
+      compact();
+    }
+  }
+
+  /**
+   * Writes the complete index to the index file and resets the journal.
+   */
+  private void compact() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(idsByKey.size());
+    for (Map.Entry<K, NavigableSet<Long>> entry : idsByKey.entrySet()) {
+      List<Long> ids = List.copyOf(entry.getValue());
+      keyType.write(out, entry.getKey());
+      out.writeInt(ids.size());
+      for (Long id : ids) {
+        out.writeLong(id);
+      }
+    }
+    out.flush();
+    fileWriter.write(indexFile, bytes.toByteArray(), bytes.size(), true);
+    journal.close();
+    Files.write(journalFile, new byte[0]);
+    journalEntries = 0;
+    openJournal();
+  }
+
+  private boolean load() throws IOException {
+    if (!Files.exists(indexFile)) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(indexFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unrecognized index file " + indexFile);
+      }
+      int keyCount = in.readInt();
+      for (int i = 0; i < keyCount; i++) {
+        K key = keyType.read(in);
+        int idCount = in.readInt();
+        for (int j = 0; j < idCount; j++) {
+          applyPut(in.readLong(), key);
+        }
+      }
+    }
+    replayJournal();
+    return true;
+  }
+
+  private void replayJournal() throws IOException {
+    if (!Files.exists(journalFile)) {
+      return;
+    }
+    byte[] data = Files.readAllBytes(journalFile);
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+    DataInputStream in = new DataInputStream(bytes);
+    int valid = 0;
+    try {
+      while (bytes.available() > 0) {
+        byte op = in.readByte();
+        long id = in.readLong();
+        if (op == PUT) {
+          applyPut(id, keyType.read(in));
+        } else if (op == REMOVE) {
+          applyRemove(id);
+        } else {
+          throw new EOFException("Unknown journal entry " + op);
+        }
+        valid = data.length - bytes.available();
+        journalEntries++;
+      }
+    } catch (EOFException e) {
+      // A torn entry at the end stems from an interrupted append
+      logger.warning("Discarding incomplete journal entry of index '" + name + "'");
+      try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+        channel.truncate(valid);
+      }
+    }
+  }
+
+  private void openJournal() throws IOException {
+    journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    journal = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(journalChannel)));
+  }
+
+  /**
+   * @return {@code true} if the entity is indexed under the given key, which is used to verify the entities loaded for the IDs of a lookup.
+   */
+  public boolean matches(T entity, K key) {
+    return Objects.equals(keyOf(entity), key);
+  }
+
+  /**
+   * @return {@code true} if the entity is indexed under a key between {@code from} and {@code to}, both inclusive.
+   */
+  public boolean matchesRange(T entity, K from, K to) {
+    K key = keyOf(entity);
+    return key != null && key.compareTo(from) >= 0 && key.compareTo(to) <= 0;
+  }
+}
@@ -24,6 +24,7 @@
 
 package org.example.graphql.filesystem.models;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -37,11 +38,12 @@ import org.example.graphql.server.models.Book;
  * properties and implements the {@link Book} interface to provide book-specific attributes and behavior.
  * <p>
  * This class encapsulates data for books, including title, publication year, and a reference to the {@link Author} of the book. It is designed to be
- * used in contexts where books are managed and stored in a file system.
+ * used in contexts where books are managed and stored in a file system. The author field is annotated with {@link JsonDeserialize} to indicate that
+ * it should be deserialized as a {@link FileSystemAuthor} object.
  * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.01
  * @since 02-02-2024
  */
 @NoArgsConstructor
@@ -54,5 +56,6 @@ public class FileSystemBook extends AbstractPersistentObject implements Book {
 
   int publishedYear;
 
+  @JsonDeserialize(as = FileSystemAuthor.class)
   Author author;
 }
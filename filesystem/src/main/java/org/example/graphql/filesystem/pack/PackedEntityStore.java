@@ -0,0 +1,490 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.pack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.utils.DirectoryManager;
+
+/**
+ * Stores many small encoded entities together in container files instead of one file per entity. Entity IDs are assigned to containers in
+ * consecutive ranges of {@code entitiesPerContainer}, so container {@code n} holds the IDs from {@code n * entitiesPerContainer} up to the next range
+ * and is stored as {@code n.pack} in the working directory. A few hundred bytes per entity then no longer occupy a whole file system block and inode
+ * each, and the page cache holds correspondingly more entities.
+ * <p>
+ * Container layout: {@code int magic, byte version, byte compression, int entryCount, int blockCount}, followed by a directory of {@code entryCount}
+ * entries {@code long id, int block, int offset, int length} sorted by ID, a block table of {@code blockCount} entries {@code int storedLength,
+ * int rawLength}, and the blocks themselves. Entities are appended to blocks of up to {@value #BLOCK_SIZE} bytes, never spanning two blocks, and each
+ * block is compressed on its own, so reading a single entity only inflates the block containing it. A block whose stored length equals its raw length
+ * is stored uncompressed, which is the case for all blocks without compression and for blocks that did not compress.
+ * </p>
+ * <p>
+ * Containers are replaced as a whole through the {@link AtomicFileWriter}, so readers never observe a partially written container and need no
+ * locking. Writers of the same container are serialized in memory; callers sharing the directory with other processes have to lock the container
+ * returned by {@link #containerOf(long)} as well.
+ * </p>
+ * <p>
+ * Since every write reads, re-encodes and replaces its whole container, its cost grows with the size of the container rather than with the size of
+ * the entity. In exchange, readers need no locks and containers need no log of their own to survive crashes. Containers are therefore kept small:
+ * {@code entitiesPerContainer} is limited to {@value #MAX_ENTITIES_PER_CONTAINER}, and at the default of 256 entities of a few hundred bytes, a write
+ * replaces well under 100 KiB. Writes of many entities should go through {@link #putAll(Map, boolean)}, which replaces each container only once.
+ * </p>
+ * <p>
+ * Container files are placed on the volumes of the {@link DirectoryManager} by their container number. While containers are moved between volumes,
+ * they are looked up on all volumes, and writing a container removes copies left on other volumes.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.02
+ * @since 19-10-2026
+ */
+public class PackedEntityStore {
+
+  public static final String EXTENSION = ".pack";
+  public static final int MAX_ENTITIES_PER_CONTAINER = 4096;
+
+  private static final Logger logger = Logger.getLogger(PackedEntityStore.class.getName());
+  private static final int MAGIC = 0x4653504B;
+  private static final byte VERSION = 1;
+  private static final int HEADER_SIZE = 14;
+  private static final int ENTRY_SIZE = 20;
+  private static final int BLOCK_ENTRY_SIZE = 8;
+  private static final int BLOCK_SIZE = 16 * 1024;
+  private static final int WRITE_LOCKS = 64;
+
+  private final DirectoryManager dirManager;
+  private final AtomicFileWriter fileWriter;
+  private final int entitiesPerContainer;
+  private final Compression compression;
+  private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCKS];
+
+  /**
+   * @param dirManager           The working directory the containers are stored in.
+   * @param fileWriter           The writer used to replace containers.
+   * @param entitiesPerContainer The number of consecutive IDs sharing a container, at most {@value #MAX_ENTITIES_PER_CONTAINER}.
+   * @param compression          The compression applied to newly written blocks; existing containers are readable regardless of this setting.
+   */
+  public PackedEntityStore(DirectoryManager dirManager, AtomicFileWriter fileWriter, int entitiesPerContainer, Compression compression) {
+    if (entitiesPerContainer < 1 || entitiesPerContainer > MAX_ENTITIES_PER_CONTAINER) {
+      throw new IllegalArgumentException(
+          "Containers must hold between 1 and " + MAX_ENTITIES_PER_CONTAINER + " entities, not " + entitiesPerContainer);
+    }
+    this.dirManager = dirManager;
+    this.fileWriter = fileWriter;
+    this.entitiesPerContainer = entitiesPerContainer;
+    this.compression = compression;
+    for (int i = 0; i < WRITE_LOCKS; i++) {
+      writeLocks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * @return The number of the container the entity with the given ID is stored in.
+   */
+  public long containerOf(long id) {
+    return Math.floorDiv(id, entitiesPerContainer);
+  }
+
+  /**
+   * @return The lowest ID stored in the container with the given number.
+   */
+  public long firstIdOf(long container) {
+    return container * entitiesPerContainer;
+  }
+
+  /**
+   * Reads a single encoded entity. Only the header, the directory and the block containing the entity are read from the container.
+   *
+   * @return The encoded entity, or {@code null} if it is not stored.
+   * @throws IOException if the container cannot be read.
+   */
+  public byte[] read(long id) throws IOException {
+    for (Path file : dirManager.resolveEntityFileCandidates(containerOf(id), EXTENSION)) {
+      try {
+        return read(file, id);
+      } catch (NoSuchFileException e) {
+        // Try the next volume
+      }
+    }
+    return null;
+  }
+
+  private byte[] read(Path file, long id) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+      int entryCount = checkHeader(header);
+      int blockCount = header.getInt(10);
+      ByteBuffer tables = readFully(channel, HEADER_SIZE, entryCount * ENTRY_SIZE + blockCount * BLOCK_ENTRY_SIZE);
+      int entry = findEntry(tables, entryCount, id);
+      if (entry < 0) {
+        return null;
+      }
+      int block = tables.getInt(entry * ENTRY_SIZE + 8);
+      int offset = tables.getInt(entry * ENTRY_SIZE + 12);
+      int length = tables.getInt(entry * ENTRY_SIZE + 16);
+      int blockTable = entryCount * ENTRY_SIZE;
+      long position = HEADER_SIZE + tables.limit();
+      for (int i = 0; i < block; i++) {
+        position += tables.getInt(blockTable + i * BLOCK_ENTRY_SIZE);
+      }
+      int storedLength = tables.getInt(blockTable + block * BLOCK_ENTRY_SIZE);
+      int rawLength = tables.getInt(blockTable + block * BLOCK_ENTRY_SIZE + 4);
+      if (storedLength == rawLength) {
+        byte[] data = new byte[length];
+        readFully(channel, position + offset, length).get(data);
+        return data;
+      }
+      byte[] raw = inflate(readFully(channel, position, storedLength).array(), 0, storedLength, rawLength);
+      byte[] data = new byte[length];
+      System.arraycopy(raw, offset, data, 0, length);
+      return data;
+    }
+  }
+
+  /**
+   * Passes the ID of every stored entity to the consumer. Only the directories of the containers are read.
+   */
+  public void forEachId(LongConsumer consumer) {
+    for (Path container : dirManager.listEntityFiles(List.of(EXTENSION)).values()) {
+      try (FileChannel channel = FileChannel.open(container, StandardOpenOption.READ)) {
+        int entryCount = checkHeader(readFully(channel, 0, HEADER_SIZE));
+        ByteBuffer directory = readFully(channel, HEADER_SIZE, entryCount * ENTRY_SIZE);
+        for (int i = 0; i < entryCount; i++) {
+          consumer.accept(directory.getLong(i * ENTRY_SIZE));
+        }
+      } catch (NoSuchFileException e) {
+        // Deleted after the directory was listed
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error while reading container " + container, e);
+      }
+    }
+  }
+
+  /**
+   * Passes every stored entity to the consumer, reading one container after the other. If containers are striped across several volumes, the volumes
+   * are read in parallel, so the consumer must be thread-safe.
+   */
+  public void forEach(BiConsumer<Long, byte[]> consumer) {
+    Collection<Path> containers = dirManager.listEntityFiles(List.of(EXTENSION)).values();
+    containers.stream()
+        .collect(Collectors.groupingBy(Path::getParent))
+        .values()
+        .parallelStream()
+        .forEach(volumeContainers -> {
+          for (Path container : volumeContainers) {
+            try {
+              NavigableMap<Long, byte[]> content = readExistingContainer(container);
+              if (content != null) {
+                content.forEach(consumer);
+              }
+            } catch (IOException e) {
+              logger.log(Level.SEVERE, "Error while reading container " + container, e);
+            }
+          }
+        });
+  }
+
+  /**
+   * @return The encoded entities of the container with the given number, by ID.
+   * @throws IOException if the container cannot be read.
+   */
+  public NavigableMap<Long, byte[]> readContainer(long container) throws IOException {
+    for (Path file : dirManager.resolveEntityFileCandidates(container, EXTENSION)) {
+      NavigableMap<Long, byte[]> content = readExistingContainer(file);
+      if (content != null) {
+        return content;
+      }
+    }
+    return new TreeMap<>();
+  }
+
+  /**
+   * Stores an encoded entity, replacing the container holding it. The cost grows with the size of the container.
+   *
+   * @param force Whether the container is forced to disk before returning.
+   * @throws IOException if the container cannot be replaced.
+   */
+  public void put(long id, byte[] data, boolean force) throws IOException {
+    putAll(Map.of(id, data), force);
+  }
+
+  /**
+   * Stores many encoded entities, replacing each affected container only once.
+   *
+   * @param force Whether the containers are forced to disk before returning.
+   * @throws IOException if a container cannot be replaced.
+   */
+  public void putAll(Map<Long, byte[]> entities, boolean force) throws IOException {
+    Map<Long, List<Map.Entry<Long, byte[]>>> byContainer = entities.entrySet().stream()
+        .collect(Collectors.groupingBy(entry -> containerOf(entry.getKey())));
+    for (Map.Entry<Long, List<Map.Entry<Long, byte[]>>> container : byContainer.entrySet()) {
+      update(container.getKey(), force, content -> container.getValue().forEach(entry -> content.put(entry.getKey(), entry.getValue())));
+    }
+  }
+
+  /**
+   * Removes an entity, replacing the container that held it or deleting the container if it becomes empty.
+   *
+   * @param force Whether the change is forced to disk before returning.
+   * @throws IOException if the container cannot be replaced.
+   */
+  public void delete(long id, boolean force) throws IOException {
+    update(containerOf(id), force, content -> content.remove(id));
+  }
+
+  /**
+   * Forces the container holding the entity with the given ID to disk, if it exists.
+   */
+  public void force(long id) throws IOException {
+    for (Path file : dirManager.resolveEntityFileCandidates(containerOf(id), EXTENSION)) {
+      fileWriter.force(file);
+    }
+  }
+
+  private void update(long container, boolean force, ContainerUpdate update) throws IOException {
+    Path file = dirManager.resolveEntityFile(container, EXTENSION);
+    ReentrantLock lock = writeLocks[(int) Math.floorMod(container, (long) WRITE_LOCKS)];
+    lock.lock();
+    try {
+      NavigableMap<Long, byte[]> content = readContainer(container);
+      update.apply(content);
+      if (content.isEmpty()) {
+        if (Files.deleteIfExists(file) && force) {
+          fileWriter.forceDirectory(file.getParent());
+        }
+      } else {
+        byte[] encoded = encode(content);
+        fileWriter.write(file, encoded, encoded.length, force);
+      }
+      // A container that was not moved to its volume yet has been replaced by the one written above
+      for (Path staleFile : dirManager.resolveEntityFileCandidates(container, EXTENSION)) {
+        if (!staleFile.equals(file) && Files.deleteIfExists(staleFile) && force) {
+          fileWriter.forceDirectory(staleFile.getParent());
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return The content of the container file, or {@code null} if the file does not exist.
+   */
+  private NavigableMap<Long, byte[]> readExistingContainer(Path file) throws IOException {
+    NavigableMap<Long, byte[]> content = new TreeMap<>();
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(file);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    int entryCount = checkHeader(buffer);
+    int blockCount = buffer.getInt(10);
+    int blockTable = HEADER_SIZE + entryCount * ENTRY_SIZE;
+    int position = blockTable + blockCount * BLOCK_ENTRY_SIZE;
+    byte[][] blocks = new byte[blockCount][];
+    int[] blockOffsets = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      int storedLength = buffer.getInt(blockTable + i * BLOCK_ENTRY_SIZE);
+      int rawLength = buffer.getInt(blockTable + i * BLOCK_ENTRY_SIZE + 4);
+      if (storedLength == rawLength) {
+        blocks[i] = bytes;
+        blockOffsets[i] = position;
+      } else {
+        blocks[i] = inflate(bytes, position, storedLength, rawLength);
+      }
+      position += storedLength;
+    }
+    for (int i = 0; i < entryCount; i++) {
+      int entry = HEADER_SIZE + i * ENTRY_SIZE;
+      int block = buffer.getInt(entry + 8);
+      int offset = blockOffsets[block] + buffer.getInt(entry + 12);
+      int length = buffer.getInt(entry + 16);
+      byte[] data = new byte[length];
+      System.arraycopy(blocks[block], offset, data, 0, length);
+      content.put(buffer.getLong(entry), data);
+    }
+    return content;
+  }
+
+  private byte[] encode(NavigableMap<Long, byte[]> content) throws IOException {
+    ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream(content.size() * ENTRY_SIZE);
+    DataOutputStream directory = new DataOutputStream(directoryBytes);
+    List<byte[]> rawBlocks = new ArrayList<>();
+    ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE);
+    for (Map.Entry<Long, byte[]> entry : content.entrySet()) {
+      byte[] data = entry.getValue();
+      if (block.size() > 0 && block.size() + data.length > BLOCK_SIZE) {
+        rawBlocks.add(block.toByteArray());
+        block.reset();
+      }
+      directory.writeLong(entry.getKey());
+      directory.writeInt(rawBlocks.size());
+      directory.writeInt(block.size());
+      directory.writeInt(data.length);
+      block.write(data);
+    }
+    rawBlocks.add(block.toByteArray());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + directoryBytes.size() + rawBlocks.size() * (BLOCK_ENTRY_SIZE + BLOCK_SIZE));
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+    data.writeByte(compression.ordinal());
+    data.writeInt(content.size());
+    data.writeInt(rawBlocks.size());
+    directoryBytes.writeTo(data);
+    List<byte[]> storedBlocks = rawBlocks.stream().map(this::compress).toList();
+    for (int i = 0; i < rawBlocks.size(); i++) {
+      data.writeInt(storedBlocks.get(i).length);
+      data.writeInt(rawBlocks.get(i).length);
+    }
+    for (byte[] storedBlock : storedBlocks) {
+      data.write(storedBlock);
+    }
+    data.flush();
+    return out.toByteArray();
+  }
+
+  /**
+   * @return The compressed block, or the raw block if compression is disabled or does not make it smaller.
+   */
+  private byte[] compress(byte[] raw) {
+    if (compression == Compression.NONE || raw.length == 0) {
+      return raw;
+    }
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(raw);
+      deflater.finish();
+      // Stop at the raw length, a larger result is discarded anyway
+      byte[] buffer = new byte[raw.length];
+      int length = 0;
+      while (!deflater.finished() && length < buffer.length) {
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+      return deflater.finished() && length < raw.length ? Arrays.copyOf(buffer, length) : raw;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] stored, int offset, int storedLength, int rawLength) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(stored, offset, storedLength);
+      byte[] raw = new byte[rawLength];
+      int length = 0;
+      while (length < rawLength && !inflater.finished()) {
+        int inflated = inflater.inflate(raw, length, rawLength - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      if (length != rawLength) {
+        throw new IOException("Corrupt container block");
+      }
+      return raw;
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt container block", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static int checkHeader(ByteBuffer header) throws IOException {
+    if (header.limit() < HEADER_SIZE || header.getInt(0) != MAGIC || header.get(4) != VERSION) {
+      throw new IOException("Not a container file");
+    }
+    return header.getInt(6);
+  }
+
+  private static int findEntry(ByteBuffer directory, int entryCount, long id) {
+    int low = 0;
+    int high = entryCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = directory.getLong(mid * ENTRY_SIZE);
+      if (midId < id) {
+        low = mid + 1;
+      } else if (midId > id) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Truncated container file");
+      }
+    }
+    return buffer.flip();
+  }
+
+  /**
+   * The compression applied to the blocks of a container. The ordinal is stored in the container header.
+   */
+  public enum Compression {
+    NONE,
+    DEFLATE
+  }
+
+  @FunctionalInterface
+  private interface ContainerUpdate {
+
+    void apply(NavigableMap<Long, byte[]> content);
+  }
+}
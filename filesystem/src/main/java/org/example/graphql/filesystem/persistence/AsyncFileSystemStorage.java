@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.persistence;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.example.graphql.filesystem.index.InvertedIndex;
+import org.example.graphql.filesystem.index.SecondaryIndex;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+import org.example.graphql.filesystem.utils.AsyncFileReader;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.example.graphql.server.services.SearchTerms;
+
+/**
+ * Asynchronous variant of a {@link FileSystemStorage}, returning {@link CompletableFuture}s instead of blocking the calling thread. It shares all
+ * state with the wrapped storage, so both can be used side by side.
+ * <p>
+ * Entities found in the cache or the snapshot are returned as completed futures. All other reads go through an {@link AsyncFileReader}, which bounds
+ * the number of reads in flight, so batched lookups issue many reads at once instead of reading one file after the other. Writes and deletes are
+ * recorded with the {@link FileSystemUnitOfWork} as usual; outside a unit of work, the returned future completes once the change is committed.
+ * </p>
+ * <p>
+ * Entities stored in containers by a {@link org.example.graphql.filesystem.pack.PackedEntityStore} are read by the blocking method on one of the I/O
+ * threads instead, which reads only the directory and the relevant block of the container.
+ * </p>
+ * <p>
+ * Like the blocking methods, failures are logged and reported as {@code null} results rather than exceptional completion.
+ * </p>
+ *
+ * @param <T> The type of entity this storage handles. Must extend {@link AbstractPersistentObject}.
+ * @author Alexander Kombeiz
+ * @version 1.03
+ * @since 19-10-2026
+ */
+public class AsyncFileSystemStorage<T extends AbstractPersistentObject> {
+
+  private static final Logger logger = Logger.getLogger(AsyncFileSystemStorage.class.getName());
+
+  private final FileSystemStorage<T> storage;
+  private final AsyncFileReader reader;
+
+  public AsyncFileSystemStorage(FileSystemStorage<T> storage, AsyncFileReader reader) {
+    this.storage = storage;
+    this.reader = reader;
+  }
+
+  /**
+   * @return A future completed with the entity with the given ID, or with {@code null} if it does not exist.
+   */
+  public CompletableFuture<T> getById(Long id) {
+    if (!storage.exists(id)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    T inMemory = storage.getFromMemory(id);
+    if (inMemory != null) {
+      return CompletableFuture.completedFuture(inMemory);
+    }
+    if (storage.isPacked()) {
+      return CompletableFuture.supplyAsync(() -> storage.getById(id), reader.getExecutor());
+    }
+    return readFirstExisting(id, storage.entityFiles(id), 0, storage.filePasses());
+  }
+
+  private CompletableFuture<T> readFirstExisting(long id, List<Path> files, int index, int passes) {
+    if (index == files.size() && passes > 1) {
+      return readFirstExisting(id, storage.entityFiles(id), 0, passes - 1);
+    }
+    if (index == files.size()) {
+      logger.warning("Entity file missing for existing ID " + id);
+      return CompletableFuture.completedFuture(null);
+    }
+    return reader.read(files.get(index))
+        .thenApply(data -> {
+          try {
+            return storage.decodeFile(id, data);
+          } catch (IOException e) {
+            throw new CompletionException(e);
+          }
+        })
+        .handle((entity, error) -> {
+          if (error == null) {
+            return CompletableFuture.completedFuture(entity);
+          }
+          Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+          if (cause instanceof NoSuchFileException) {
+            // Try the next format
+            return readFirstExisting(id, files, index + 1, passes);
+          }
+          logger.log(Level.SEVERE, "Error getting entity by ID", cause);
+          return CompletableFuture.<T>completedFuture(null);
+        })
+        .thenCompose(future -> future);
+  }
+
+  /**
+   * Reads all entities with the given IDs concurrently.
+   *
+   * @return A future completed with the existing entities, in the order of the given IDs.
+   */
+  public CompletableFuture<List<T>> getByIds(Collection<Long> ids) {
+    List<CompletableFuture<T>> reads = ids.stream().map(this::getById).toList();
+    return CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new))
+        .thenApply(done -> {
+          List<T> entities = new ArrayList<>(reads.size());
+          for (CompletableFuture<T> read : reads) {
+            T entity = read.join();
+            if (entity != null) {
+              entities.add(entity);
+            }
+          }
+          return entities;
+        });
+  }
+
+  /**
+   * Asynchronous variant of {@link FileSystemStorage#findBy(SecondaryIndex, Comparable)}, reading the matching entities concurrently.
+   */
+  public <K extends Comparable<K>> CompletableFuture<List<T>> findBy(SecondaryIndex<T, K> index, K key) {
+    storage.checkIndex(index);
+    return getByIds(index.get(key))
+        .thenApply(entities -> entities.stream().filter(entity -> index.matches(entity, key)).toList());
+  }
+
+  /**
+   * Asynchronous variant of {@link FileSystemStorage#findByRange(SecondaryIndex, Comparable, Comparable)}, reading the matching entities
+   * concurrently.
+   */
+  public <K extends Comparable<K>> CompletableFuture<List<T>> findByRange(SecondaryIndex<T, K> index, K from, K to) {
+    storage.checkIndex(index);
+    return getByIds(index.getRange(from, to))
+        .thenApply(entities -> entities.stream().filter(entity -> index.matchesRange(entity, from, to)).toList());
+  }
+
+  /**
+   * Asynchronous variant of {@link FileSystemStorage#search(InvertedIndex, String, int)}, reading the matching entities concurrently.
+   */
+  public CompletableFuture<List<T>> search(InvertedIndex<T> index, String query, int first) {
+    storage.checkIndex(index);
+    Set<String> terms = SearchTerms.of(query);
+    return getByIds(index.search(terms, first))
+        .thenApply(entities -> entities.stream().filter(entity -> index.matches(entity, terms)).toList());
+  }
+
+  /**
+   * @return A future completed with the saved entity, or with {@code null} if it could not be saved.
+   */
+  public CompletableFuture<T> save(T entity) {
+    try {
+      return storage.getUnitOfWork().recordAsync(storage.putChange(entity), reader.getExecutor())
+          .handle((done, error) -> {
+            if (error != null) {
+              logger.log(Level.SEVERE, "Error saving entity", error);
+              return null;
+            }
+            return entity;
+          });
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Error saving entity", e);
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  /**
+   * @return A future completed once the deletion is committed.
+   */
+  public CompletableFuture<Void> deleteById(Long id) {
+    return storage.getUnitOfWork().recordAsync(storage.deleteChange(id), reader.getExecutor())
+        .exceptionally(error -> {
+          logger.log(Level.WARNING, "Error while deleting entity: " + id, error);
+          return null;
+        });
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.persistence;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded in-memory cache of encoded entities, keyed by entity ID. Entities are cached in their encoded form, so every read still decodes a fresh
+ * instance that callers may modify freely, but skips opening and reading the entity file.
+ * <p>
+ * Once the cache is full, an arbitrary entry is evicted for every new one. The cache is only coherent with the files as long as every change to
+ * them is reported through {@link #put(long, byte[])} or {@link #invalidate(long)}, which for changes made outside this process requires watching
+ * the directory. Entities read from files are added with {@link #putIfAbsent(long, byte[])}, so a read racing with a write never replaces the newer
+ * version.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class EncodedEntityCache {
+
+  private final Map<Long, byte[]> entries = new ConcurrentHashMap<>();
+  private final int maxEntries;
+
+  public EncodedEntityCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * @return The encoded entity, or {@code null} if it is not cached.
+   */
+  public byte[] get(long id) {
+    return entries.get(id);
+  }
+
+  public void put(long id, byte[] data) {
+    makeRoom(id);
+    entries.put(id, data);
+  }
+
+  public void putIfAbsent(long id, byte[] data) {
+    makeRoom(id);
+    entries.putIfAbsent(id, data);
+  }
+
+  private void makeRoom(long id) {
+    if (entries.size() >= maxEntries && !entries.containsKey(id)) {
+      Iterator<Long> ids = entries.keySet().iterator();
+      if (ids.hasNext()) {
+        entries.remove(ids.next());
+      }
+    }
+  }
+
+  public void invalidate(long id) {
+    entries.remove(id);
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+}
@@ -24,107 +24,953 @@
 
 package org.example.graphql.filesystem.persistence;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.File;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.example.graphql.filesystem.codec.BufferPool.PooledBuffer;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.index.EntityIndex;
+import org.example.graphql.filesystem.index.InvertedIndex;
+import org.example.graphql.filesystem.index.SecondaryIndex;
 import org.example.graphql.filesystem.models.AbstractPersistentObject;
+import org.example.graphql.filesystem.pack.PackedEntityStore;
+import org.example.graphql.filesystem.replication.ReplicationFollower;
+import org.example.graphql.filesystem.snapshot.SnapshotStore;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
 import org.example.graphql.filesystem.utils.DirectoryManager;
+import org.example.graphql.filesystem.utils.DirectoryWatcher;
+import org.example.graphql.filesystem.utils.IdBitmap;
 import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.utils.ShardLocks;
+import org.example.graphql.filesystem.wal.ChangeApplier;
+import org.example.graphql.filesystem.wal.EntityChange;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.example.graphql.filesystem.wal.WriteAheadLog;
+import org.example.graphql.server.services.SearchTerms;
 
 /**
- * Provides generic file system storage capabilities for entities extending {@link AbstractPersistentObject}. Utilizes {@link ObjectMapper} for JSON
- * serialization and deserialization, supporting basic CRUD operations.
+ * Provides generic file system storage capabilities for entities extending {@link AbstractPersistentObject}. Utilizes an {@link EntityCodecRegistry}
+ * for serialization and deserialization, supporting basic CRUD operations.
  * <p>
- * Entities are stored as individual JSON files within a specified directory, managed by {@link DirectoryManager}, with unique IDs generated by
- * {@link IdGenerator}.
+ * Entities are stored as individual files within a specified directory, managed by {@link DirectoryManager}, with unique IDs generated by
+ * {@link IdGenerator}. New files are written in the format of the registry's write codec, while the format of existing files is detected when they
+ * are read. Saving an entity that is still stored in another format migrates it to the current one.
+ * </p>
+ * <p>
+ * Files are replaced atomically through an {@link AtomicFileWriter}, so readers never observe a partially written entity and need no locking. The IDs
+ * of all stored entities are kept in an {@link IdBitmap}, which is built from the directory listing at startup, so lookups of missing entities do not
+ * reach the file system. If the working directory is shared with other processes, an ID missing from the bitmap may belong to an entity another
+ * process created since, so such lookups check the file system before reporting the entity as missing.
+ * </p>
+ * <p>
+ * Writes and deletes are not applied to the files directly but recorded with the {@link FileSystemUnitOfWork}, which commits all changes of a
+ * mutation together, through the {@link WriteAheadLog} if one is configured, and then applies them to the files of this storage.
+ * </p>
+ * <p>
+ * If a {@link SnapshotStore} is given, entities that did not change since the last snapshot are read from the memory-mapped snapshot file instead of
+ * their own files, which turns full scans into a sequential read of a single file. Snapshots are taken by {@link #takeSnapshot()}.
+ * </p>
+ * <p>
+ * The given {@link SecondaryIndex}es are updated along with every applied change and allow finding entities by property through
+ * {@link #findBy(SecondaryIndex, Comparable)} and {@link #findByRange(SecondaryIndex, Comparable, Comparable)}, and a given {@link InvertedIndex}
+ * allows searching entities by words through {@link #search(InvertedIndex, String, int)}. Indexes without an index file are rebuilt from the data at
+ * startup.
+ * </p>
+ * <p>
+ * An optional {@link EncodedEntityCache} keeps recently read and written entities in memory. Once {@link #startWatching()} has been called, the
+ * working directory is watched for files changed by other processes or by hand, and only the affected IDs are reloaded into the existence bitmap,
+ * the snapshot delta, the indexes and the cache.
+ * </p>
+ * <p>
+ * If a {@link PackedEntityStore} is given, entities are stored together in container files instead of one file per entity. Entity files left from
+ * before packing was enabled are moved into containers at startup.
+ * </p>
+ * <p>
+ * If the {@link DirectoryManager} stripes entity files across several volumes, {@link #getAll()} reads all volumes in parallel. Files found on
+ * another volume than their own, for example after a volume was added, are moved by {@link #rebalance()} while the storage stays available; it is
+ * started in the background when such files are found at startup.
+ * </p>
+ * <p>
+ * Every applied change is passed on to {@link FileSystemUnitOfWork#changeApplied(EntityChange)}, which ships it to replication followers if this
+ * instance is a primary. On a follower, {@link #setReplicationFollower(ReplicationFollower)} lets reads such as {@link #getById(Long, Duration)}
+ * demand a bound on how stale the returned data may be.
  * </p>
  *
  * @param <T> The type of entity this storage handles. Must extend {@link AbstractPersistentObject}.
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.15
  * @since 05-02-2024
  */
-public class FileSystemStorage<T extends AbstractPersistentObject> {
+public class FileSystemStorage<T extends AbstractPersistentObject> implements Closeable {
 
   private static final Logger logger = Logger.getLogger(FileSystemStorage.class.getName());
-  private static final String FILE_EXTENSION = ".json";
+  private static final Duration SHARED_TEMP_FILE_MIN_AGE = Duration.ofMinutes(10);
+  private static final Duration STALE_READ_TIMEOUT = Duration.ofSeconds(5);
 
-  private final ObjectMapper objectMapper;
+  private final String name;
+  private final EntityCodecRegistry<T> codecs;
   private final DirectoryManager dirCreator;
   private final IdGenerator idGenerator;
-  private final Class<T> typeParameterClass;
+  private final AtomicFileWriter fileWriter;
+  private final FileSystemUnitOfWork unitOfWork;
+  private final SnapshotStore snapshots;
+  private final List<EntityIndex<T>> indexes;
+  private final EncodedEntityCache cache;
+  private final PackedEntityStore packs;
+  private final Set<Long> unflushedIds = ConcurrentHashMap.newKeySet();
+  private final IdBitmap existingIds = new IdBitmap();
+  private DirectoryWatcher watcher;
+  private volatile ReplicationFollower follower;
 
   /**
-   * Constructs a new {@code FileSystemStorage} instance with specified dependencies.
+   * Constructs a new {@code FileSystemStorage} instance with specified dependencies and registers it with the unit of work, which replays changes
+   * logged for this storage that may not have reached its files yet.
    *
-   * @param objectMapper       The {@link ObjectMapper} for JSON processing.
-   * @param dirCreator         The {@link DirectoryManager} for directory operations.
-   * @param idGenerator        The {@link IdGenerator} for generating unique entity IDs.
-   * @param typeParameterClass The class object of T for deserialization purposes.
+   * @param name        The unique name identifying this storage in the write-ahead log.
+   * @param codecs      The {@link EntityCodecRegistry} for encoding and decoding entity files.
+   * @param dirCreator  The {@link DirectoryManager} for directory operations.
+   * @param idGenerator The {@link IdGenerator} for generating unique entity IDs.
+   * @param fileWriter  The {@link AtomicFileWriter} used to replace entity files.
+   * @param unitOfWork  The {@link FileSystemUnitOfWork} changes are recorded with.
+   * @param snapshots   The {@link SnapshotStore} unchanged entities are read from, or {@code null} to always read entity files.
+   * @param indexes     The {@link EntityIndex}es maintained for the entities of this storage.
+   * @param cache       The {@link EncodedEntityCache} for entities read by ID, or {@code null} to disable caching.
+   * @param packs       The {@link PackedEntityStore} entities are stored in, or {@code null} to store each entity in its own file.
    */
-  public FileSystemStorage(ObjectMapper objectMapper,
+  public FileSystemStorage(String name,
+      EntityCodecRegistry<T> codecs,
       DirectoryManager dirCreator,
       IdGenerator idGenerator,
-      Class<T> typeParameterClass) {
-    this.objectMapper = objectMapper;
+      AtomicFileWriter fileWriter,
+      FileSystemUnitOfWork unitOfWork,
+      SnapshotStore snapshots,
+      List<? extends EntityIndex<T>> indexes,
+      EncodedEntityCache cache,
+      PackedEntityStore packs) {
+    this.name = name;
+    this.codecs = codecs;
     this.dirCreator = dirCreator;
     this.idGenerator = idGenerator;
-    this.typeParameterClass = typeParameterClass;
+    this.fileWriter = fileWriter;
+    this.unitOfWork = unitOfWork;
+    this.snapshots = snapshots;
+    this.indexes = List.copyOf(indexes);
+    this.cache = cache;
+    this.packs = packs;
+    // Other processes sharing the directory may be writing right now
+    for (Path volume : dirCreator.getVolumes()) {
+      fileWriter.removeOrphanedTempFiles(volume, dirCreator.isShared() ? SHARED_TEMP_FILE_MIN_AGE : Duration.ZERO);
+    }
+    // Lookups have to consider all volumes until misplaced files are moved
+    boolean misplaced = !dirCreator.listMisplacedEntityFiles(storedExtensions()).isEmpty();
+    if (misplaced) {
+      dirCreator.setRebalancing(true);
+    }
+    if (packs != null) {
+      packLooseFiles();
+      packs.forEachId(id -> {
+        existingIds.add(id);
+        idGenerator.reserve(id);
+      });
+    } else {
+      dirCreator.listEntityFiles(codecs.getFileExtensions()).keySet().forEach(existingIds::add);
+    }
+    // Indexes are rebuilt from the files before replaying the log, which then updates them like the files
+    List<EntityIndex<T>> missingIndexes = this.indexes.stream().filter(index -> !index.isLoaded()).toList();
+    if (!missingIndexes.isEmpty()) {
+      rebuildIndexes(missingIndexes);
+    }
+    unitOfWork.register(name, new StorageChangeApplier());
+    if (misplaced) {
+      CompletableFuture.runAsync(this::rebalance).exceptionally(e -> {
+        logger.log(Level.SEVERE, "Error while rebalancing store '" + name + "'", e);
+        return null;
+      });
+    }
+  }
+
+  /**
+   * @return The extensions of the files entities are stored in, which are the container files if entities are packed.
+   */
+  private List<String> storedExtensions() {
+    return packs != null ? List.of(PackedEntityStore.EXTENSION) : codecs.getFileExtensions();
   }
 
+  /**
+   * Returns the entity with the given ID, or {@code null} if it does not exist. Unless the working directory is shared, IDs that are not recorded in
+   * the in-memory existence bitmap are answered without touching the file system.
+   */
   public T getById(Long id) {
+    if (!exists(id)) {
+      return null;
+    }
+    T inMemory = getFromMemory(id);
+    if (inMemory != null) {
+      return inMemory;
+    }
+    if (packs != null) {
+      return readPacked(id);
+    }
+    int passes = filePasses();
+    for (int pass = 0; pass < passes; pass++) {
+      for (Path file : entityFiles(id)) {
+        try {
+          return read(id, file);
+        } catch (NoSuchFileException e) {
+          // Try the next format or volume
+        } catch (IOException e) {
+          logger.log(Level.SEVERE, "Error getting entity by ID", e);
+          return null;
+        }
+      }
+    }
+    logger.warning("Entity file missing for existing ID " + id + " in store '" + name + "'");
+    return null;
+  }
+
+  private T readPacked(long id) {
     try {
-      String filePath = dirCreator.getAbsoluteFilePathForEntity(id, FILE_EXTENSION);
-      return objectMapper.readValue(new File(filePath), typeParameterClass);
+      byte[] data = packs.read(id);
+      if (data == null) {
+        logger.warning("Entity missing from its container for existing ID " + id + " in store '" + name + "'");
+        return null;
+      }
+      return decodeFile(id, data);
     } catch (IOException e) {
       logger.log(Level.SEVERE, "Error getting entity by ID", e);
       return null;
     }
   }
 
+  /**
+   * Returns the entity with the given ID, reflecting all changes made on the replication primary up to {@code maxStaleness} ago. On a follower, this
+   * waits for the follower to catch up if necessary; otherwise it is the same as {@link #getById(Long)}.
+   *
+   * @throws IllegalStateException if the follower does not catch up within a few seconds.
+   */
+  public T getById(Long id, Duration maxStaleness) {
+    awaitFreshness(maxStaleness);
+    return getById(id);
+  }
+
+  /**
+   * Returns all entities, reflecting all changes made on the replication primary up to {@code maxStaleness} ago.
+   *
+   * @throws IllegalStateException if the follower does not catch up within a few seconds.
+   * @see #getById(Long, Duration)
+   */
+  public List<T> getAll(Duration maxStaleness) {
+    awaitFreshness(maxStaleness);
+    return getAll();
+  }
+
+  private void awaitFreshness(Duration maxStaleness) {
+    ReplicationFollower current = follower;
+    if (current != null && !current.awaitLagAtMost(maxStaleness, STALE_READ_TIMEOUT)) {
+      throw new IllegalStateException("Store '" + name + "' lags " + current.getLagMillis() + " ms behind the primary, more than the accepted "
+          + maxStaleness.toMillis() + " ms");
+    }
+  }
+
+  /**
+   * Sets the follower applying the changes of the replication primary to this storage, which bounded staleness reads wait for.
+   */
+  public void setReplicationFollower(ReplicationFollower follower) {
+    this.follower = follower;
+  }
+
+  /**
+   * @return {@code true} if the entity with the given ID exists. In a shared working directory, IDs missing from the existence bitmap are looked up
+   *     in the file system, since the entity may have been created by another process before the watcher reported it.
+   */
+  boolean exists(Long id) {
+    if (id == null) {
+      return false;
+    }
+    if (existingIds.contains(id)) {
+      return true;
+    }
+    if (!dirCreator.isShared()) {
+      return false;
+    }
+    try {
+      refresh(storedFileIdOf(id));
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Error while looking up entity " + id + " in store '" + name + "'", e);
+    }
+    return existingIds.contains(id);
+  }
+
+  /**
+   * Returns the entity if it can be decoded from the cache or the snapshot, without reading its file.
+   */
+  T getFromMemory(long id) {
+    byte[] cached = cache != null ? cache.get(id) : null;
+    if (cached != null) {
+      try {
+        return codecs.decode(cached, 0, cached.length);
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error getting entity by ID from cache", e);
+        cache.invalidate(id);
+      }
+    }
+    ByteBuffer snapshotData = snapshots != null ? snapshots.get(id) : null;
+    if (snapshotData != null) {
+      try {
+        return codecs.decode(snapshotData);
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error getting entity by ID from snapshot", e);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return {@code true} if entities are stored in containers rather than in files of their own.
+   */
+  boolean isPacked() {
+    return packs != null;
+  }
+
+  /**
+   * Returns how often the candidate files of an entity are tried before it is considered missing. While files are moved between volumes, a lookup
+   * may probe the own volume before a file is copied there and the other volume after it was removed from there. Files are copied before they are
+   * removed, so a second pass finds them.
+   */
+  int filePasses() {
+    return dirCreator.isRebalancing() ? 2 : 1;
+  }
+
+  /**
+   * @return The unique name identifying this storage.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Lists the files the entities of this storage are stored in, keyed by the ID they are named after, which is the ID of the container if entities
+   * are packed. Files are replaced rather than modified when an entity changes, so each listed file keeps its content until it is deleted.
+   *
+   * @return The stored files by the ID they are named after.
+   */
+  public Map<Long, Path> listStoredFiles() {
+    return dirCreator.listEntityFiles(storedExtensions());
+  }
+
+  /**
+   * @return The ID the file storing the given entity is named after.
+   */
+  public long storedFileIdOf(long id) {
+    return packs != null ? packs.containerOf(id) : id;
+  }
+
+  /**
+   * @return The file currently named after the given ID, as listed by {@link #listStoredFiles()}, or {@code null} if there is none.
+   */
+  public Path findStoredFile(long fileId) {
+    for (String extension : storedExtensions()) {
+      for (Path file : dirCreator.resolveEntityFileCandidates(fileId, extension)) {
+        if (Files.exists(file)) {
+          return file;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The files the entity may be stored in, in the order they should be tried.
+   */
+  List<Path> entityFiles(long id) {
+    return codecs.getFileExtensions().stream().flatMap(extension -> dirCreator.resolveEntityFileCandidates(id, extension).stream()).toList();
+  }
+
+  /**
+   * Decodes the content of an entity file, adding it to the cache.
+   */
+  T decodeFile(long id, byte[] data) throws IOException {
+    T entity = codecs.decode(data, 0, data.length);
+    if (cache != null) {
+      cache.putIfAbsent(id, data);
+    }
+    return entity;
+  }
+
   public List<T> getAll() {
-    List<T> entities = new ArrayList<>();
-    File folder = new File(dirCreator.getAbsolutePathForWorkingDir());
-    if (folder.exists() && folder.isDirectory()) {
-      File[] files = folder.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
-      if (files != null) {
-        for (File file : files) {
-          try {
-            T entity = objectMapper.readValue(file, typeParameterClass);
-            entities.add(entity);
-          } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error while reading entity from file", e);
-          }
+    if (snapshots != null && snapshots.hasSnapshot()) {
+      return getAllFromSnapshot();
+    }
+    if (packs != null) {
+      Queue<T> entities = new ConcurrentLinkedQueue<>();
+      packs.forEach((id, data) -> {
+        try {
+          entities.add(codecs.decode(data, 0, data.length));
+        } catch (IOException e) {
+          logger.log(Level.SEVERE, "Error while reading entity from container", e);
         }
+      });
+      return new ArrayList<>(entities);
+    }
+    Collection<Path> files = dirCreator.listEntityFiles(codecs.getFileExtensions()).values();
+    if (dirCreator.getVolumes().size() == 1) {
+      return readAll(files);
+    }
+    // Fan out over the volumes, each of which is read sequentially
+    return files.stream()
+        .collect(Collectors.groupingBy(Path::getParent))
+        .values()
+        .parallelStream()
+        .flatMap(volumeFiles -> readAll(volumeFiles).stream())
+        .toList();
+  }
+
+  private List<T> readAll(Collection<Path> files) {
+    List<T> entities = new ArrayList<>(files.size());
+    for (Path file : files) {
+      try {
+        entities.add(read(file));
+      } catch (NoSuchFileException e) {
+        // Deleted after the directory was listed
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error while reading entity from file", e);
+      }
+    }
+    return entities;
+  }
+
+  /**
+   * Returns the entities with the given IDs, skipping IDs of entities that do not exist.
+   */
+  public List<T> getByIds(Collection<Long> ids) {
+    List<T> entities = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      T entity = getById(id);
+      if (entity != null) {
+        entities.add(entity);
+      }
+    }
+    return entities;
+  }
+
+  /**
+   * Returns all entities indexed under the given key, ordered by ID.
+   *
+   * @param index One of the indexes of this storage.
+   * @param key   The value of the indexed property.
+   */
+  public <K extends Comparable<K>> List<T> findBy(SecondaryIndex<T, K> index, K key) {
+    checkIndex(index);
+    return getByIds(index.get(key)).stream()
+        .filter(entity -> index.matches(entity, key))
+        .toList();
+  }
+
+  /**
+   * Returns all entities indexed under keys between {@code from} and {@code to}, both inclusive, ordered by key and then by ID.
+   *
+   * @param index One of the indexes of this storage.
+   * @param from  The lowest value of the indexed property.
+   * @param to    The highest value of the indexed property.
+   */
+  public <K extends Comparable<K>> List<T> findByRange(SecondaryIndex<T, K> index, K from, K to) {
+    checkIndex(index);
+    return getByIds(index.getRange(from, to)).stream()
+        .filter(entity -> index.matchesRange(entity, from, to))
+        .toList();
+  }
+
+  /**
+   * Returns up to {@code first} entities containing all terms of the query, as split by {@link SearchTerms}, ordered by ID.
+   *
+   * @param index One of the indexes of this storage.
+   * @param query The words to search for.
+   * @param first The maximum number of entities to return.
+   */
+  public List<T> search(InvertedIndex<T> index, String query, int first) {
+    checkIndex(index);
+    Set<String> terms = SearchTerms.of(query);
+    return getByIds(index.search(terms, first)).stream()
+        .filter(entity -> index.matches(entity, terms))
+        .toList();
+  }
+
+  void checkIndex(EntityIndex<T> index) {
+    if (!indexes.contains(index)) {
+      throw new IllegalArgumentException("Index '" + index.getName() + "' does not belong to store '" + name + "'");
+    }
+  }
+
+  /**
+   * Rebuilds all indexes of this storage from the entity data. The entities are read once and the indexes are then built in parallel.
+   */
+  public void rebuildIndexes() {
+    rebuildIndexes(indexes);
+  }
+
+  private void rebuildIndexes(List<EntityIndex<T>> toRebuild) {
+    List<T> entities = getAll();
+    toRebuild.parallelStream().forEach(index -> {
+      try {
+        index.rebuild(entities);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error while rebuilding index '" + index.getName() + "'", e);
+      }
+    });
+  }
+
+  private List<T> getAllFromSnapshot() {
+    List<T> entities = new ArrayList<>();
+    List<Long> changedIds = snapshots.scan((id, data) -> {
+      try {
+        entities.add(codecs.decode(data));
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error while reading entity from snapshot", e);
+      }
+    });
+    // Entities changed since the snapshot are read from their files, skipping deleted ones
+    for (Long id : changedIds) {
+      T entity = getById(id);
+      if (entity != null) {
+        entities.add(entity);
       }
     }
     return entities;
   }
 
+  private T read(long id, Path file) throws IOException {
+    if (cache == null) {
+      return read(file);
+    }
+    PooledBuffer buffer = codecs.acquireBuffer();
+    try (InputStream in = Files.newInputStream(file)) {
+      buffer.readFrom(in);
+      T entity = codecs.decode(buffer);
+      cache.putIfAbsent(id, Arrays.copyOf(buffer.array(), buffer.size()));
+      return entity;
+    } finally {
+      buffer.release();
+    }
+  }
+
+  private T read(Path file) throws IOException {
+    PooledBuffer buffer = codecs.acquireBuffer();
+    try (InputStream in = Files.newInputStream(file)) {
+      return codecs.decode(buffer.readFrom(in));
+    } finally {
+      buffer.release();
+    }
+  }
+
   public T save(T entity) {
+    EntityChange change;
+    try {
+      change = putChange(entity);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Error saving entity", e);
+      return null;
+    }
+    try {
+      unitOfWork.record(change);
+    } catch (UncheckedIOException e) {
+      logger.log(Level.SEVERE, "Error saving entity", e);
+      return null;
+    }
+    return entity;
+  }
+
+  /**
+   * Assigns an ID to the entity if it has none yet and encodes it into a change.
+   */
+  EntityChange putChange(T entity) throws IOException {
     // Generate ID if not present
     if (entity.getId() == null) {
       entity.setId(idGenerator.generateId());
     }
+    PooledBuffer buffer = codecs.encode(entity);
     try {
-      String filePath = dirCreator.getAbsoluteFilePathForEntity(entity.getId(), FILE_EXTENSION);
-      objectMapper.writeValue(new File(filePath), entity);
-      return entity;
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Error saving entity", e);
-      return null;
+      return EntityChange.put(name, entity.getId(), Arrays.copyOf(buffer.array(), buffer.size()));
+    } finally {
+      buffer.release();
     }
   }
 
+  EntityChange deleteChange(Long id) {
+    return EntityChange.delete(name, id);
+  }
+
+  FileSystemUnitOfWork getUnitOfWork() {
+    return unitOfWork;
+  }
+
   public void deleteById(Long id) {
-    String filePath = dirCreator.getAbsoluteFilePathForEntity(id, FILE_EXTENSION);
-    File file = new File(filePath);
-    if (file.exists() && !file.delete()) {
-      logger.warning("Error while deleting entity: " + filePath);
+    try {
+      unitOfWork.record(deleteChange(id));
+    } catch (UncheckedIOException e) {
+      logger.log(Level.WARNING, "Error while deleting entity: " + id, e);
+    }
+  }
+
+  /**
+   * Takes a new snapshot of all entities of this storage, if snapshots are enabled. Writes may continue while the snapshot is taken.
+   *
+   * @throws IOException if the snapshot cannot be written; the previous snapshot stays in use in that case
+   */
+  public void takeSnapshot() throws IOException {
+    if (snapshots == null) {
+      return;
+    }
+    List<Long> ids = new ArrayList<>();
+    existingIds.forEach(ids::add);
+    long[] sortedIds = ids.stream().mapToLong(Long::longValue).sorted().toArray();
+    snapshots.rebuild(sortedIds, this::readEncoded);
+    logger.info("Took snapshot of " + sortedIds.length + " entities in store '" + name + "'");
+  }
+
+  private byte[] readEncoded(long id) throws IOException {
+    if (!existingIds.contains(id)) {
+      return null;
+    }
+    ByteBuffer snapshotData = snapshots.get(id);
+    if (snapshotData != null) {
+      byte[] data = new byte[snapshotData.remaining()];
+      snapshotData.get(data);
+      return data;
+    }
+    return readEncodedFile(id);
+  }
+
+  private byte[] readEncodedFile(long id) throws IOException {
+    if (packs != null) {
+      return packs.read(id);
+    }
+    int passes = filePasses();
+    for (int pass = 0; pass < passes; pass++) {
+      for (Path file : entityFiles(id)) {
+        try {
+          return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+          // Try the next format or volume
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Starts watching the working directory for changes made outside of this storage. Until then, the cache and the other in-memory state only reflect
+   * changes made through this storage.
+   *
+   * @throws IOException if the working directory cannot be watched
+   */
+  public synchronized void startWatching() throws IOException {
+    if (watcher == null) {
+      watcher = dirCreator.watch(storedExtensions(), new ExternalChangeListener());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (watcher != null) {
+        watcher.close();
+      }
+    }
+    if (snapshots != null) {
+      snapshots.close();
+    }
+  }
+
+  /**
+   * Moves entity files that are stored on another volume than their own, for example after a volume was added, while the storage stays available.
+   * Each file is moved under the write lock of its entity: it is copied to its own volume unless a newer version was written there in the meantime,
+   * and then removed from the other volume. Until all files are moved, lookups consider all volumes.
+   */
+  public void rebalance() {
+    dirCreator.setRebalancing(true);
+    List<Path> misplaced = dirCreator.listMisplacedEntityFiles(storedExtensions());
+    int moved = 0;
+    for (Path file : misplaced) {
+      Long key = dirCreator.entityIdOf(file.getFileName().toString(), storedExtensions());
+      String extension = file.getFileName().toString().substring(String.valueOf(key).length());
+      ShardLocks.Lock lock = dirCreator.lockEntity(key);
+      try {
+        Path target = dirCreator.resolveEntityFile(key, extension);
+        if (!Files.exists(target)) {
+          byte[] data = Files.readAllBytes(file);
+          fileWriter.write(target, data, data.length, true);
+        }
+        Files.deleteIfExists(file);
+        moved++;
+      } catch (NoSuchFileException e) {
+        // Deleted or moved in the meantime
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error while moving " + file + " to its volume", e);
+        return;
+      } finally {
+        lock.close();
+      }
+    }
+    dirCreator.getVolumes().forEach(fileWriter::forceDirectory);
+    dirCreator.setRebalancing(false);
+    logger.info("Moved " + moved + " files to their volumes in store '" + name + "'");
+  }
+
+  /**
+   * Moves entity files written before packing was enabled into their containers, one container at a time. A loose file replaces the entity in the
+   * container, since it can only have been written while packing was disabled.
+   */
+  private void packLooseFiles() {
+    Map<Long, Path> looseFiles = dirCreator.listEntityFiles(codecs.getFileExtensions());
+    if (looseFiles.isEmpty()) {
+      return;
+    }
+    Map<Long, List<Long>> idsByContainer = new TreeMap<>();
+    looseFiles.keySet().forEach(id -> idsByContainer.computeIfAbsent(packs.containerOf(id), container -> new ArrayList<>()).add(id));
+    for (Map.Entry<Long, List<Long>> container : idsByContainer.entrySet()) {
+      ShardLocks.Lock lock = dirCreator.lockEntity(container.getKey());
+      try {
+        Map<Long, byte[]> entities = new HashMap<>();
+        for (Long id : container.getValue()) {
+          entities.put(id, Files.readAllBytes(looseFiles.get(id)));
+        }
+        packs.putAll(entities, true);
+        container.getValue().forEach(id -> deleteFile(looseFiles.get(id)));
+      } catch (NoSuchFileException e) {
+        // Packed by another process sharing the directory
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error while packing entity files of store '" + name + "'", e);
+      } finally {
+        lock.close();
+      }
+    }
+    logger.info("Packed " + looseFiles.size() + " entity files into containers in store '" + name + "'");
+  }
+
+  /**
+   * Re-reads the file named after the given ID and brings the in-memory state of the entities stored in it up to date. The file is read under the
+   * same write lock changes are applied under, so a change applied concurrently cannot be overwritten with the state read before it.
+   */
+  private void refresh(long fileId) throws IOException {
+    ShardLocks.Lock lock = dirCreator.lockEntity(fileId);
+    try {
+      if (packs == null) {
+        reload(fileId, readEncodedFile(fileId));
+        return;
+      }
+      NavigableMap<Long, byte[]> content = packs.readContainer(fileId);
+      for (long id = packs.firstIdOf(fileId); id < packs.firstIdOf(fileId + 1); id++) {
+        if (content.containsKey(id) || existingIds.contains(id)) {
+          reload(id, content.get(id));
+        }
+      }
+    } finally {
+      lock.close();
+    }
+  }
+
+  /**
+   * Brings the in-memory state for the given entity up to date with the given content of its file, or with its removal if the content
+   * is {@code null}.
+   */
+  private void reload(long id, byte[] data) {
+    try {
+      if (data != null && cache != null && Arrays.equals(data, cache.get(id))) {
+        return;
+      }
+      if (cache != null) {
+        cache.invalidate(id);
+      }
+      if (snapshots != null) {
+        snapshots.markChanged(id);
+      }
+      if (data == null) {
+        existingIds.remove(id);
+        for (EntityIndex<T> index : indexes) {
+          index.remove(id);
+        }
+      } else {
+        T entity = indexes.isEmpty() ? null : codecs.decode(data, 0, data.length);
+        for (EntityIndex<T> index : indexes) {
+          index.put(id, entity);
+        }
+        idGenerator.reserve(id);
+        existingIds.add(id);
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Error while reloading entity " + id + " in store '" + name + "'", e);
+    }
+  }
+
+  /**
+   * Brings the in-memory state for changed entity files up to date with the files. Changes applied by this storage are reported as well; they are
+   * recognized by matching the cached data and skipped, or otherwise reloaded, which is harmless. Files are re-read under the write lock of their
+   * entities rather than taken from the event, so the newest version wins even if the events arrive late. With packing, the watcher reports container
+   * numbers instead of entity IDs, and all entities of the changed container are checked.
+   */
+  private class ExternalChangeListener implements DirectoryWatcher.Listener {
+
+    @Override
+    public void entityChanged(long key) {
+      try {
+        refresh(key);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Error while reloading " + (packs != null ? "container " : "entity ") + key + " in store '" + name + "'", e);
+      }
+    }
+
+    @Override
+    public void overflow() {
+      logger.warning("Missed changes in store '" + name + "', rescanning " + dirCreator.getWorkingDir());
+      if (cache != null) {
+        cache.clear();
+      }
+      if (packs != null) {
+        Set<Long> containers = new HashSet<>(dirCreator.listEntityFiles(List.of(PackedEntityStore.EXTENSION)).keySet());
+        existingIds.forEach(id -> containers.add(packs.containerOf(id)));
+        containers.forEach(this::entityChanged);
+        return;
+      }
+      Set<Long> ids = new HashSet<>(dirCreator.listEntityFiles(codecs.getFileExtensions()).keySet());
+      existingIds.forEach(ids::add);
+      ids.forEach(this::entityChanged);
+    }
+  }
+
+  /**
+   * Writes committed changes to the entity files. If the changes are covered by the write-ahead log, files are not forced individually; the IDs of
+   * touched entities are remembered instead and forced together on {@link #flush()}.
+   */
+  private class StorageChangeApplier implements ChangeApplier {
+
+    @Override
+    public void apply(EntityChange change) throws IOException {
+      // Entities sharing a container must not be written concurrently by other processes
+      ShardLocks.Lock lock = dirCreator.lockEntity(packs != null ? packs.containerOf(change.id()) : change.id());
+      try {
+        applyLocked(change);
+        unitOfWork.changeApplied(change);
+      } finally {
+        lock.close();
+      }
+    }
+
+    private void applyLocked(EntityChange change) throws IOException {
+      long id = change.id();
+      boolean force = fileWriter.isFsync() && !unitOfWork.isLogged();
+      if (snapshots != null) {
+        // The snapshot must stop serving the entity before its file changes
+        snapshots.markChanged(id);
+        if (force) {
+          snapshots.force();
+        }
+      }
+      Path keptFile = null;
+      if (change.type() == EntityChange.Type.PUT) {
+        byte[] data = change.data();
+        if (!indexes.isEmpty()) {
+          T entity = codecs.decode(data, 0, data.length);
+          for (EntityIndex<T> index : indexes) {
+            index.put(id, entity);
+            if (force) {
+              index.force();
+            }
+          }
+        }
+        if (packs != null) {
+          packs.put(id, data, force);
+        } else {
+          keptFile = dirCreator.resolveEntityFile(id, codecs.codecFor(data, 0, data.length).getFileExtension());
+          fileWriter.write(keptFile, data, data.length, force);
+        }
+        if (cache != null) {
+          cache.put(id, data);
+        }
+        idGenerator.reserve(id);
+        existingIds.add(id);
+      } else {
+        existingIds.remove(id);
+        for (EntityIndex<T> index : indexes) {
+          index.remove(id);
+        }
+        if (cache != null) {
+          cache.invalidate(id);
+        }
+      }
+      if (unitOfWork.isLogged()) {
+        unflushedIds.add(id);
+      }
+      if (packs != null) {
+        if (change.type() == EntityChange.Type.DELETE) {
+          packs.delete(id, force);
+        }
+        return;
+      }
+      // Remove the deleted entity, or copies of a written entity that were stored in another format or on another volume
+      for (Path file : entityFiles(id)) {
+        if (!file.equals(keptFile)) {
+          deleteFile(file);
+        }
+      }
+      if (force && change.type() == EntityChange.Type.DELETE) {
+        fileWriter.forceDirectory(dirCreator.volumeOf(id));
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      Set<Long> flushedContainers = new HashSet<>();
+      for (Long id : unflushedIds) {
+        if (packs != null) {
+          if (flushedContainers.add(packs.containerOf(id))) {
+            packs.force(id);
+          }
+        } else {
+          for (Path file : entityFiles(id)) {
+            fileWriter.force(file);
+          }
+        }
+        unflushedIds.remove(id);
+      }
+      dirCreator.getVolumes().forEach(fileWriter::forceDirectory);
+      unitOfWork.forceReplication();
+      if (snapshots != null) {
+        snapshots.force();
+      }
+      for (EntityIndex<T> index : indexes) {
+        index.force();
+      }
+    }
+  }
+
+  private void deleteFile(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      logger.warning("Error while deleting entity: " + file);
     }
   }
 }
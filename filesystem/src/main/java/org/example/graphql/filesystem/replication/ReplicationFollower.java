@@ -0,0 +1,321 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.replication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.example.graphql.filesystem.wal.ChangeApplier;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+
+/**
+ * The follower side of filesystem replication. Tails the segments of a primary's {@link ReplicationLog} on a background thread and applies the
+ * changes in order through the {@link ChangeApplier}s registered with the local {@link FileSystemUnitOfWork}, so the local stores, their indexes,
+ * snapshots and caches follow the primary.
+ * <p>
+ * The sequence number of the next change to apply is kept in a position file, which is only advanced after the applied changes have been flushed; a
+ * restarted follower therefore applies some changes again, which does no harm. A new follower starts with the oldest retained segment, so it should
+ * be seeded with a copy of the primary's stores unless all segments since the primary was set up are still retained.
+ * </p>
+ * <p>
+ * The lag of the follower is the age of the newest data it is guaranteed to reflect: the time of its last poll that found no further changes, or the
+ * time the last applied change was made on the primary while it is still catching up. It is exposed through {@link ReplicationFollowerMXBean}, and
+ * reads can wait for it to fall below a bound with {@link #awaitLagAtMost(Duration, Duration)}.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class ReplicationFollower implements ReplicationFollowerMXBean, Closeable {
+
+  public static final String OBJECT_NAME = "org.example.graphql.filesystem:type=ReplicationFollower";
+
+  private static final Logger logger = Logger.getLogger(ReplicationFollower.class.getName());
+  private static final long POSITION_SAVE_INTERVAL_MILLIS = 1000;
+
+  private final Path dir;
+  private final FileSystemUnitOfWork unitOfWork;
+  private final Duration pollInterval;
+  private final FileChannel positionChannel;
+  private final ScheduledExecutorService executor;
+  private final Set<String> unflushedStores = new HashSet<>();
+  private final Set<String> unknownStores = new HashSet<>();
+  private final Object progress = new Object();
+  private FileChannel segment;
+  private long segmentFirstSequence;
+  private long position;
+  private long nextSequence;
+  private long savedSequence;
+  private long lastSave;
+  private volatile long appliedSequence;
+  private volatile long freshAsOf;
+  private ObjectName objectName;
+
+  /**
+   * @param dir          The directory holding the primary's {@link ReplicationLog}.
+   * @param positionFile The file the sequence number of the next change to apply is kept in.
+   * @param unitOfWork   The unit of work the local stores registered their appliers with.
+   * @param pollInterval The time between polls for new changes.
+   * @throws IOException if the position file cannot be opened.
+   */
+  public ReplicationFollower(Path dir, Path positionFile, FileSystemUnitOfWork unitOfWork, Duration pollInterval) throws IOException {
+    this.dir = dir;
+    this.unitOfWork = unitOfWork;
+    this.pollInterval = pollInterval;
+    Files.createDirectories(positionFile.getParent());
+    this.positionChannel = FileChannel.open(positionFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+    while (buffer.hasRemaining() && positionChannel.read(buffer, buffer.position()) > 0) {
+      // Read the complete value
+    }
+    this.nextSequence = buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    this.savedSequence = nextSequence;
+    this.appliedSequence = nextSequence - 1;
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "replication-follower");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts polling for changes and registers the management interface.
+   */
+  public void start() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(this, name);
+        objectName = name;
+      }
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Unable to register replication metrics", e);
+    }
+    executor.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public long getLagMillis() {
+    return Math.max(0, System.currentTimeMillis() - freshAsOf);
+  }
+
+  @Override
+  public long getAppliedSequence() {
+    return appliedSequence;
+  }
+
+  /**
+   * Waits until the lag of this follower is at most the given bound.
+   *
+   * @param maxLag  The accepted lag.
+   * @param timeout The maximum time to wait.
+   * @return {@code true} if the lag is within the bound, {@code false} if it did not get there in time.
+   */
+  public boolean awaitLagAtMost(Duration maxLag, Duration timeout) {
+    long deadline = System.currentTimeMillis() + timeout.toMillis();
+    synchronized (progress) {
+      while (getLagMillis() > maxLag.toMillis()) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          progress.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private void poll() {
+    long pollStart = System.currentTimeMillis();
+    try {
+      boolean caughtUp = applyAvailable();
+      if (caughtUp) {
+        freshAsOf = pollStart;
+      }
+      if (nextSequence != savedSequence && pollStart - lastSave >= POSITION_SAVE_INTERVAL_MILLIS) {
+        savePosition();
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Error while applying replicated changes", e);
+    }
+    synchronized (progress) {
+      progress.notifyAll();
+    }
+  }
+
+  /**
+   * Applies all changes available in the segments.
+   *
+   * @return {@code true} if all available changes were applied.
+   */
+  private boolean applyAvailable() throws IOException {
+    while (true) {
+      if (segment == null && !openSegment()) {
+        return true;
+      }
+      ReplicationRecord.Positioned read = ReplicationRecord.read(segment, position);
+      if (read == null) {
+        Path next = nextSegment();
+        if (next == null) {
+          // The primary may still be writing the next record
+          return true;
+        }
+        if (position < segment.size()) {
+          logger.severe("Skipping " + (segment.size() - position) + " unreadable bytes at the end of replication segment "
+              + ReplicationLog.segmentName(segmentFirstSequence));
+        }
+        segment.close();
+        openSegment(next);
+        continue;
+      }
+      ReplicationRecord record = read.record();
+      if (record.sequence() >= nextSequence) {
+        if (record.sequence() > nextSequence) {
+          logger.severe("Missed " + (record.sequence() - nextSequence) + " replicated changes, which are no longer retained by the primary");
+        }
+        apply(record);
+        nextSequence = record.sequence() + 1;
+        appliedSequence = record.sequence();
+        freshAsOf = record.timestamp();
+      }
+      position = read.end();
+    }
+  }
+
+  private void apply(ReplicationRecord record) throws IOException {
+    String store = record.change().store();
+    ChangeApplier applier = unitOfWork.getApplier(store);
+    if (applier == null) {
+      if (unknownStores.add(store)) {
+        logger.warning("Ignoring replicated changes of unknown store '" + store + "'");
+      }
+      return;
+    }
+    applier.apply(record.change());
+    unflushedStores.add(store);
+  }
+
+  /**
+   * Opens the segment holding the next change to apply.
+   *
+   * @return {@code false} if there are no segments yet.
+   */
+  private boolean openSegment() throws IOException {
+    List<Path> segments = ReplicationLog.listSegments(dir);
+    if (segments.isEmpty()) {
+      return false;
+    }
+    Path current = segments.get(0);
+    for (Path candidate : segments) {
+      if (ReplicationLog.firstSequenceOf(candidate) <= nextSequence) {
+        current = candidate;
+      }
+    }
+    openSegment(current);
+    return true;
+  }
+
+  private void openSegment(Path file) throws IOException {
+    segment = FileChannel.open(file, StandardOpenOption.READ);
+    segmentFirstSequence = ReplicationLog.firstSequenceOf(file);
+    position = 0;
+  }
+
+  private Path nextSegment() {
+    for (Path candidate : ReplicationLog.listSegments(dir)) {
+      if (ReplicationLog.firstSequenceOf(candidate) > segmentFirstSequence) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Flushes the stores changes were applied to and records the position, so these changes are not applied again after a restart.
+   */
+  private void savePosition() throws IOException {
+    for (String store : unflushedStores) {
+      unitOfWork.getApplier(store).flush();
+    }
+    unflushedStores.clear();
+    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, nextSequence);
+    while (buffer.hasRemaining()) {
+      positionChannel.write(buffer, buffer.position());
+    }
+    positionChannel.force(false);
+    savedSequence = nextSequence;
+    lastSave = System.currentTimeMillis();
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Not interrupting a running poll, which would close the channels it uses
+    executor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException e) {
+        logger.log(Level.FINE, "Unable to unregister replication metrics", e);
+      }
+    }
+    try {
+      savePosition();
+    } finally {
+      if (segment != null) {
+        segment.close();
+      }
+      positionChannel.close();
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.replication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.example.graphql.filesystem.wal.EntityChange;
+
+/**
+ * The primary side of filesystem replication. Every change applied to a store of the primary is appended to this log, in the order the changes were
+ * applied, and followers tail the log through a {@link ReplicationFollower}. The log lives in a directory shared with the followers, which stands in
+ * for shipping changes over the network.
+ * <p>
+ * The log is split into segments named after the sequence number of their first record. Once a segment exceeds the configured size, a new one is
+ * started, and segments older than the retention period are deleted. Appends are written to the page cache only and forced by {@link #force()},
+ * which the stores call when they flush their own files. A crash may therefore lose the tail of the log, but the changes in that tail are replayed
+ * from the write-ahead log after the restart and appended again under new sequence numbers; applying a change twice does no harm.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class ReplicationLog implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(ReplicationLog.class.getName());
+  private static final String SEGMENT_PREFIX = "changes-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String LOCK_FILE_NAME = "primary.lock";
+
+  private final Path dir;
+  private final long segmentBytes;
+  private final Duration retention;
+  private final FileChannel lockChannel;
+  private FileChannel segment;
+  private long position;
+  private long nextSequence;
+
+  /**
+   * Opens the log in the given directory, discarding a torn record at its end. Only a single primary may use the directory at a time.
+   *
+   * @param dir          The directory shared with the followers.
+   * @param segmentBytes The size after which a new segment is started.
+   * @param retention    The time segments are kept for followers that are behind.
+   * @throws IOException if the log cannot be opened or another primary is using the directory.
+   */
+  public ReplicationLog(Path dir, long segmentBytes, Duration retention) throws IOException {
+    this.dir = dir;
+    this.segmentBytes = segmentBytes;
+    this.retention = retention;
+    Files.createDirectories(dir);
+    this.lockChannel = FileChannel.open(dir.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    FileLock lock;
+    try {
+      lock = lockChannel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      lockChannel.close();
+      throw new IOException("Replication log " + dir + " is already in use by another primary");
+    }
+    List<Path> segments = listSegments(dir);
+    if (segments.isEmpty()) {
+      openSegment(0);
+    } else {
+      Path last = segments.get(segments.size() - 1);
+      this.segment = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.nextSequence = firstSequenceOf(last);
+      ReplicationRecord.Positioned read;
+      while ((read = ReplicationRecord.read(segment, position)) != null) {
+        nextSequence = read.record().sequence() + 1;
+        position = read.end();
+      }
+      if (segment.size() > position) {
+        logger.warning("Discarding " + (segment.size() - position) + " bytes of incomplete records at the end of " + last);
+        segment.truncate(position);
+      }
+    }
+  }
+
+  /**
+   * @return The sequence number the next appended change will get.
+   */
+  public synchronized long getNextSequence() {
+    return nextSequence;
+  }
+
+  /**
+   * Appends a change that has just been applied. Callers must hold the write lock of the changed entity, so changes of the same entity are appended
+   * in the order they were applied.
+   *
+   * @throws IOException if the change cannot be written.
+   */
+  public synchronized void append(EntityChange change) throws IOException {
+    byte[] record = new ReplicationRecord(nextSequence, System.currentTimeMillis(), change).encode();
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    while (buffer.hasRemaining()) {
+      position += segment.write(buffer, position);
+    }
+    nextSequence++;
+    if (position >= segmentBytes) {
+      segment.force(false);
+      segment.close();
+      openSegment(nextSequence);
+      deleteExpiredSegments();
+    }
+  }
+
+  /**
+   * Forces all appended changes to disk.
+   *
+   * @throws IOException if the segment cannot be forced.
+   */
+  public synchronized void force() throws IOException {
+    segment.force(false);
+  }
+
+  private void openSegment(long firstSequence) throws IOException {
+    this.segment = FileChannel.open(dir.resolve(segmentName(firstSequence)), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    this.position = 0;
+    this.nextSequence = firstSequence;
+  }
+
+  private void deleteExpiredSegments() {
+    Instant cutoff = Instant.now().minus(retention);
+    List<Path> segments = listSegments(dir);
+    // The current segment is always kept
+    for (Path old : segments.subList(0, segments.size() - 1)) {
+      try {
+        if (Files.getLastModifiedTime(old).toInstant().isBefore(cutoff)) {
+          Files.deleteIfExists(old);
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Error while deleting replication segment " + old, e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      segment.force(false);
+      segment.close();
+    } finally {
+      lockChannel.close();
+    }
+  }
+
+  static String segmentName(long firstSequence) {
+    return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+  }
+
+  static long firstSequenceOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  /**
+   * @return The segments in the given directory, ordered by the sequence number of their first record.
+   */
+  static List<Path> listSegments(Path dir) {
+    try (Stream<Path> paths = Files.list(dir)) {
+      return paths.filter(path -> {
+            String name = path.getFileName().toString();
+            return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+          })
+          .sorted(Comparator.comparingLong(ReplicationLog::firstSequenceOf))
+          .toList();
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Error listing replication segments in " + dir, e);
+      return List.of();
+    }
+  }
+}
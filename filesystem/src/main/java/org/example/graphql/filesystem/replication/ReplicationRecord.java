@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import org.example.graphql.filesystem.wal.EntityChange;
+
+/**
+ * A single change shipped from a primary to its followers, as stored in the segments of a {@link ReplicationLog}.
+ * <p>
+ * Layout: {@code int length, int crc32}, followed by {@code length} bytes {@code long sequence, long timestamp, UTF store, byte type, long id,
+ * int dataLength, data}. The checksum covers the bytes following it, so records that are still being written or were torn by a crash are
+ * recognized as incomplete.
+ * </p>
+ *
+ * @param sequence  The position of the change in the order it was applied on the primary.
+ * @param timestamp The time the change was applied on the primary, in milliseconds since the epoch.
+ * @param change    The change itself.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public record ReplicationRecord(long sequence, long timestamp, EntityChange change) {
+
+  static final int HEADER_SIZE = 8;
+  private static final int MAX_RECORD_SIZE = 256 * 1024 * 1024;
+
+  /**
+   * @return The encoded record, including its header.
+   */
+  byte[] encode() throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream(change.data().length + 64);
+    DataOutputStream out = new DataOutputStream(body);
+    out.writeLong(sequence);
+    out.writeLong(timestamp);
+    out.writeUTF(change.store());
+    out.writeByte(change.type().ordinal());
+    out.writeLong(change.id());
+    out.writeInt(change.data().length);
+    out.write(change.data());
+    out.flush();
+    byte[] bytes = body.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return ByteBuffer.allocate(HEADER_SIZE + bytes.length)
+        .putInt(bytes.length)
+        .putInt((int) crc.getValue())
+        .put(bytes)
+        .array();
+  }
+
+  /**
+   * Reads the record at the given position of a segment.
+   *
+   * @return The record along with the position following it, or {@code null} if there is no complete and intact record at the position.
+   */
+  static Positioned read(FileChannel channel, long position) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    if (!readFully(channel, header, position)) {
+      return null;
+    }
+    int length = header.getInt(0);
+    if (length <= 0 || length > MAX_RECORD_SIZE) {
+      return null;
+    }
+    ByteBuffer body = ByteBuffer.allocate(length);
+    if (!readFully(channel, body, position + HEADER_SIZE)) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(body.array());
+    if ((int) crc.getValue() != header.getInt(4)) {
+      return null;
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+    long sequence = in.readLong();
+    long timestamp = in.readLong();
+    String store = in.readUTF();
+    EntityChange.Type type = EntityChange.Type.values()[in.readByte()];
+    long id = in.readLong();
+    byte[] data = new byte[in.readInt()];
+    in.readFully(data);
+    return new Positioned(new ReplicationRecord(sequence, timestamp, new EntityChange(store, type, id, data)), position + HEADER_SIZE + length);
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) <= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A record read from a segment.
+   *
+   * @param record The record.
+   * @param end    The position right after the record, where the next record starts.
+   */
+  record Positioned(ReplicationRecord record, long end) {
+
+  }
+}
@@ -25,8 +25,11 @@
 package org.example.graphql.filesystem.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import org.example.graphql.filesystem.index.SecondaryIndex;
 import org.example.graphql.filesystem.models.FileSystemAuthor;
+import org.example.graphql.filesystem.persistence.AsyncFileSystemStorage;
 import org.example.graphql.filesystem.persistence.FileSystemStorage;
 import org.example.graphql.server.models.Author;
 import org.example.graphql.server.services.AuthorPersistenceService;
@@ -35,10 +38,11 @@ import org.springframework.stereotype.Service;
 
 /**
  * Service layer for persisting and retrieving {@link Author} entities using file system storage. Provides concrete implementation of
- * {@link AuthorPersistenceService} for {@link FileSystemAuthor}.
+ * {@link AuthorPersistenceService} for {@link FileSystemAuthor}. Batched lookups by ID and by last name read all matching authors concurrently
+ * through the {@link AsyncFileSystemStorage}.
  *
  * @author Alexander Kombeiz
- * @version 1.01
+ * @version 1.04
  * @since 05-02-2024
  */
 @Service
@@ -46,9 +50,17 @@ public class FileSystemAuthorPersistenceService implements AuthorPersistenceServ
 
   private final FileSystemStorage<FileSystemAuthor> authorStorage;
 
+  private final AsyncFileSystemStorage<FileSystemAuthor> asyncAuthorStorage;
+
+  private final SecondaryIndex<FileSystemAuthor, String> lastNameIndex;
+
   @Autowired
-  public FileSystemAuthorPersistenceService(FileSystemStorage<FileSystemAuthor> authorStorage) {
+  public FileSystemAuthorPersistenceService(FileSystemStorage<FileSystemAuthor> authorStorage,
+      AsyncFileSystemStorage<FileSystemAuthor> asyncAuthorStorage,
+      SecondaryIndex<FileSystemAuthor, String> authorLastNameIndex) {
     this.authorStorage = authorStorage;
+    this.asyncAuthorStorage = asyncAuthorStorage;
+    this.lastNameIndex = authorLastNameIndex;
   }
 
   @Override
@@ -56,11 +68,21 @@ public class FileSystemAuthorPersistenceService implements AuthorPersistenceServ
     return authorStorage.getById(id);
   }
 
+  @Override
+  public List<Author> getByIds(Collection<Long> ids) {
+    return new ArrayList<>(asyncAuthorStorage.getByIds(ids).join());
+  }
+
   @Override
   public List<Author> getAll() {
     return new ArrayList<>(authorStorage.getAll());
   }
 
+  @Override
+  public List<Author> getByLastName(String lastName) {
+    return new ArrayList<>(asyncAuthorStorage.findBy(lastNameIndex, lastName).join());
+  }
+
   @Override
   public Author persist(Author author) {
     return authorStorage.save((FileSystemAuthor) author);
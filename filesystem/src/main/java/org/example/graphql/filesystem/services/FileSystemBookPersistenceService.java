@@ -25,8 +25,17 @@
 package org.example.graphql.filesystem.services;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import org.example.graphql.filesystem.index.IntColumn;
+import org.example.graphql.filesystem.index.InvertedIndex;
+import org.example.graphql.filesystem.index.LongColumn;
+import org.example.graphql.filesystem.index.MappedColumn;
+import org.example.graphql.filesystem.index.SecondaryIndex;
 import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.persistence.AsyncFileSystemStorage;
 import org.example.graphql.filesystem.persistence.FileSystemStorage;
 import org.example.graphql.server.models.Book;
 import org.example.graphql.server.services.BookPersistenceService;
@@ -36,9 +45,16 @@ import org.springframework.stereotype.Service;
 /**
  * Service layer for persisting and retrieving {@link Book} entities using file system storage. Provides concrete implementation of
  * {@link BookPersistenceService} for {@link FileSystemBook}.
+ * <p>
+ * Besides lookups by ID, books can be queried by author and published year, and searched by the words of their title and author name. These queries
+ * are answered through {@link SecondaryIndex}es and an {@link InvertedIndex} and only read the matching books. Those books, as well as batched
+ * lookups by ID, are read concurrently through the {@link AsyncFileSystemStorage}. Counts and orderings by published year and author are computed
+ * from {@link MappedColumn}s without reading any book, unless a column is not loaded because it could not hold the ID of a book, in which case all
+ * books are scanned.
+ * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.01
+ * @version 1.07
  * @since 05-02-2024
  */
 @Service
@@ -46,9 +62,33 @@ public class FileSystemBookPersistenceService implements BookPersistenceService
 
   private final FileSystemStorage<FileSystemBook> bookStorage;
 
+  private final AsyncFileSystemStorage<FileSystemBook> asyncBookStorage;
+
+  private final SecondaryIndex<FileSystemBook, Integer> publishedYearIndex;
+
+  private final SecondaryIndex<FileSystemBook, Long> authorIndex;
+
+  private final InvertedIndex<FileSystemBook> searchIndex;
+
+  private final IntColumn<FileSystemBook> publishedYearColumn;
+
+  private final LongColumn<FileSystemBook> authorIdColumn;
+
   @Autowired
-  public FileSystemBookPersistenceService(FileSystemStorage<FileSystemBook> bookStorage) {
+  public FileSystemBookPersistenceService(FileSystemStorage<FileSystemBook> bookStorage,
+      AsyncFileSystemStorage<FileSystemBook> asyncBookStorage,
+      SecondaryIndex<FileSystemBook, Integer> bookPublishedYearIndex,
+      SecondaryIndex<FileSystemBook, Long> bookAuthorIndex,
+      InvertedIndex<FileSystemBook> bookSearchIndex,
+      IntColumn<FileSystemBook> bookPublishedYearColumn,
+      LongColumn<FileSystemBook> bookAuthorIdColumn) {
     this.bookStorage = bookStorage;
+    this.asyncBookStorage = asyncBookStorage;
+    this.publishedYearIndex = bookPublishedYearIndex;
+    this.authorIndex = bookAuthorIndex;
+    this.searchIndex = bookSearchIndex;
+    this.publishedYearColumn = bookPublishedYearColumn;
+    this.authorIdColumn = bookAuthorIdColumn;
   }
 
   @Override
@@ -56,11 +96,58 @@ public class FileSystemBookPersistenceService implements BookPersistenceService
     return bookStorage.getById(id);
   }
 
+  @Override
+  public List<Book> getByIds(Collection<Long> ids) {
+    return new ArrayList<>(asyncBookStorage.getByIds(ids).join());
+  }
+
   @Override
   public List<Book> getAll() {
     return new ArrayList<>(bookStorage.getAll());
   }
 
+  @Override
+  public List<Book> search(String query, int first) {
+    return new ArrayList<>(asyncBookStorage.search(searchIndex, query, first).join());
+  }
+
+  @Override
+  public List<Book> getByAuthorId(Long authorId) {
+    return new ArrayList<>(asyncBookStorage.findBy(authorIndex, authorId).join());
+  }
+
+  @Override
+  public List<Book> getByPublishedYear(int publishedYear) {
+    return new ArrayList<>(asyncBookStorage.findBy(publishedYearIndex, publishedYear).join());
+  }
+
+  @Override
+  public List<Book> getByPublishedYearBetween(int fromYear, int toYear) {
+    return new ArrayList<>(asyncBookStorage.findByRange(publishedYearIndex, fromYear, toYear).join());
+  }
+
+  @Override
+  public Map<Integer, Long> countByPublishedYear() {
+    return publishedYearColumn.isLoaded() ? publishedYearColumn.histogram() : BookPersistenceService.super.countByPublishedYear();
+  }
+
+  @Override
+  public long countByAuthorId(Long authorId) {
+    if (!authorIdColumn.isLoaded()) {
+      return BookPersistenceService.super.countByAuthorId(authorId);
+    }
+    return authorId != null ? authorIdColumn.count(id -> id == authorId) : 0;
+  }
+
+  @Override
+  public List<Book> getOrderedByPublishedYear(boolean descending, int first) {
+    if (!publishedYearColumn.isLoaded()) {
+      return BookPersistenceService.super.getOrderedByPublishedYear(descending, first);
+    }
+    long[] ids = publishedYearColumn.sortedIds(descending, first);
+    return new ArrayList<>(asyncBookStorage.getByIds(Arrays.stream(ids).boxed().toList()).join());
+  }
+
   @Override
   public Book persist(Book author) {
     return bookStorage.save((FileSystemBook) author);
@@ -0,0 +1,405 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Packs all entities of a store into a single, memory-mapped snapshot file, accompanied by a delta file listing the IDs of entities that changed
+ * since the snapshot was taken. Entities that did not change are read straight from the mapping, which saves opening one file per entity on cold
+ * start and on full scans; changed entities are read from their entity files as usual.
+ * <p>
+ * Snapshot layout: {@code int magic, int version, int count, long tableOffset}, followed by the encoded entities, followed by an offset table of
+ * {@code count} entries {@code long id, long offset, int length} sorted by ID. Offsets are relative to the start of the file. The delta file is a
+ * plain sequence of {@code long} IDs that is only ever appended to.
+ * </p>
+ * <p>
+ * Entities are streamed into the snapshot one at a time, so taking a snapshot only keeps the offset table in memory. The file is mapped in chunks,
+ * each overlapping the next by the maximum entity size, so every entity and table entry can be read from a single chunk and snapshots may grow beyond
+ * the 2 GiB a single mapping can cover. Entities larger than the maximum size fail the snapshot, leaving the previous one in use.
+ * </p>
+ * <p>
+ * A new snapshot is taken while writes continue. IDs changed during that time are collected and become the delta of the new snapshot, so it does not
+ * matter which version of such an entity the snapshot captured. The new snapshot is renamed into place before the delta is reset; a crash in between
+ * pairs the new snapshot with the old delta, which is a superset of the required one.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.1
+ * @since 19-10-2026
+ */
+public class SnapshotStore implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(SnapshotStore.class.getName());
+  private static final int MAGIC = 0x46534E50;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 20;
+  private static final int ENTRY_SIZE = 20;
+  private static final int CHUNK_SIZE = 1 << 30;
+  private static final int MAX_ENTITY_SIZE = 16 << 20;
+  private static final String SNAPSHOT_FILE_NAME = "entities.snapshot";
+  private static final String DELTA_FILE_NAME = "entities.delta";
+
+  private final Path snapshotFile;
+  private final Path deltaFile;
+  private final int chunkSize;
+  private final int maxEntitySize;
+  private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+  private volatile View view;
+  private FileChannel deltaChannel;
+  private Set<Long> changedDuringRebuild;
+
+  /**
+   * Opens the snapshot and delta in the given directory, if present.
+   *
+   * @param dir the directory holding the snapshot files; created if missing
+   * @throws IOException if an existing snapshot cannot be mapped
+   */
+  public SnapshotStore(Path dir) throws IOException {
+    this(dir, CHUNK_SIZE, MAX_ENTITY_SIZE);
+  }
+
+  /**
+   * Opens the snapshot and delta in the given directory, mapping the snapshot in chunks of the given size.
+   *
+   * @param dir           the directory holding the snapshot files; created if missing
+   * @param chunkSize     the size of the chunks the snapshot is mapped in
+   * @param maxEntitySize the size of the largest entity a snapshot may hold, by which the chunks overlap
+   * @throws IOException if an existing snapshot cannot be mapped
+   */
+  SnapshotStore(Path dir, int chunkSize, int maxEntitySize) throws IOException {
+    Files.createDirectories(dir);
+    this.snapshotFile = dir.resolve(SNAPSHOT_FILE_NAME);
+    this.deltaFile = dir.resolve(DELTA_FILE_NAME);
+    this.chunkSize = chunkSize;
+    this.maxEntitySize = Math.max(maxEntitySize, ENTRY_SIZE);
+    Snapshot snapshot = Snapshot.map(snapshotFile, chunkSize, this.maxEntitySize);
+    Set<Long> delta = ConcurrentHashMap.newKeySet();
+    if (snapshot != null) {
+      delta.addAll(readDelta(deltaFile));
+    }
+    this.view = new View(snapshot, delta);
+    this.deltaChannel = openDelta(deltaFile);
+  }
+
+  /**
+   * @return {@code true} if a snapshot exists, so full scans can be served from it.
+   */
+  public boolean hasSnapshot() {
+    return view.snapshot() != null;
+  }
+
+  /**
+   * Returns the encoded entity as captured by the snapshot, unless it changed since.
+   *
+   * @param id the ID of the entity
+   * @return a read-only view of the encoded entity within the mapping, or {@code null} if the snapshot does not hold a current version
+   */
+  public ByteBuffer get(long id) {
+    View current = view;
+    if (current.snapshot() == null || current.delta().contains(id)) {
+      return null;
+    }
+    return current.snapshot().get(id);
+  }
+
+  /**
+   * Passes all entities whose snapshot version is current to the consumer and returns the IDs of entities that changed since the snapshot. Both are
+   * taken from the same snapshot generation.
+   *
+   * @param current receives the ID and the encoded entity of every unchanged entity in the snapshot
+   * @return the IDs that changed since the snapshot, including deleted ones
+   */
+  public List<Long> scan(BiConsumer<Long, ByteBuffer> current) {
+    View snapshotView = view;
+    if (snapshotView.snapshot() != null) {
+      snapshotView.snapshot().forEach((id, data) -> {
+        if (!snapshotView.delta().contains(id)) {
+          current.accept(id, data);
+        }
+      });
+    }
+    return new ArrayList<>(snapshotView.delta());
+  }
+
+  /**
+   * Records that the entity with the given ID is about to change. Must be called before the entity file is written or deleted.
+   *
+   * @param id the ID of the changing entity
+   * @throws IOException if the ID cannot be appended to the delta file
+   */
+  public void markChanged(long id) throws IOException {
+    swapLock.readLock().lock();
+    try {
+      View current = view;
+      if (current.snapshot() != null && current.delta().add(id)) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, id);
+        deltaChannel.write(buffer);
+      }
+      Set<Long> pending = changedDuringRebuild;
+      if (pending != null) {
+        pending.add(id);
+      }
+    } finally {
+      swapLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Forces the delta file to disk. Does nothing once the store has been closed.
+   *
+   * @throws IOException if the delta file cannot be forced
+   */
+  public void force() throws IOException {
+    swapLock.readLock().lock();
+    try {
+      if (deltaChannel.isOpen()) {
+        deltaChannel.force(false);
+      }
+    } finally {
+      swapLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Takes a new snapshot of the given entities and resets the delta. Only one rebuild may run at a time.
+   *
+   * @param ids    the IDs of all existing entities, sorted ascending
+   * @param reader reads the current encoded version of an entity, returning {@code null} if it no longer exists
+   * @throws IOException if the snapshot cannot be written
+   */
+  public synchronized void rebuild(long[] ids, RawEntityReader reader) throws IOException {
+    Set<Long> pending = ConcurrentHashMap.newKeySet();
+    swapLock.writeLock().lock();
+    try {
+      changedDuringRebuild = pending;
+    } finally {
+      swapLock.writeLock().unlock();
+    }
+    Path temp = snapshotFile.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+    try {
+      writeSnapshot(temp, ids, reader);
+      swapLock.writeLock().lock();
+      try {
+        Files.move(temp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Path deltaTemp = deltaFile.resolveSibling(DELTA_FILE_NAME + ".tmp");
+        writeDelta(deltaTemp, pending);
+        Files.move(deltaTemp, deltaFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        deltaChannel.close();
+        deltaChannel = openDelta(deltaFile);
+        view = new View(Snapshot.map(snapshotFile, chunkSize, maxEntitySize), pending);
+      } finally {
+        swapLock.writeLock().unlock();
+      }
+    } finally {
+      changedDuringRebuild = null;
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private void writeSnapshot(Path target, long[] ids, RawEntityReader reader) throws IOException {
+    long[] present = new long[ids.length];
+    long[] offsets = new long[ids.length];
+    int[] lengths = new int[ids.length];
+    int count = 0;
+    long offset = HEADER_SIZE;
+    try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      channel.position(HEADER_SIZE);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+      for (long id : ids) {
+        byte[] data = reader.read(id);
+        if (data == null) {
+          continue;
+        }
+        if (data.length > maxEntitySize) {
+          throw new IOException("Entity " + id + " of " + data.length + " bytes exceeds the maximum snapshot entity size of " + maxEntitySize);
+        }
+        out.write(data);
+        present[count] = id;
+        offsets[count] = offset;
+        lengths[count] = data.length;
+        offset += data.length;
+        count++;
+      }
+      long tableOffset = offset;
+      for (int i = 0; i < count; i++) {
+        out.writeLong(present[i]);
+        out.writeLong(offsets[i]);
+        out.writeInt(lengths[i]);
+      }
+      out.flush();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(count).putLong(tableOffset).flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+      channel.force(true);
+    }
+  }
+
+  private static void writeDelta(Path target, Set<Long> ids) throws IOException {
+    try (OutputStream file = Files.newOutputStream(target);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+      for (Long id : ids) {
+        out.writeLong(id);
+      }
+    }
+  }
+
+  private static List<Long> readDelta(Path file) throws IOException {
+    if (!Files.exists(file)) {
+      return List.of();
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    List<Long> ids = new ArrayList<>(buffer.remaining() / Long.BYTES);
+    // A trailing partial ID stems from an interrupted append and is ignored
+    while (buffer.remaining() >= Long.BYTES) {
+      ids.add(buffer.getLong());
+    }
+    return ids;
+  }
+
+  private static FileChannel openDelta(Path file) throws IOException {
+    return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  @Override
+  public void close() throws IOException {
+    swapLock.writeLock().lock();
+    try {
+      deltaChannel.close();
+    } finally {
+      swapLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Reads the current encoded version of an entity while a snapshot is taken.
+   */
+  @FunctionalInterface
+  public interface RawEntityReader {
+
+    byte[] read(long id) throws IOException;
+  }
+
+  private record View(Snapshot snapshot, Set<Long> delta) {
+
+  }
+
+  /**
+   * A snapshot file mapped in overlapping chunks. The mappings stay valid after the file has been replaced, so readers holding an older generation
+   * are unaffected.
+   */
+  private record Snapshot(MappedByteBuffer[] chunks, int chunkSize, int count, long tableOffset) {
+
+    static Snapshot map(Path file, int chunkSize, int overlap) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        long size = channel.size();
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) Math.max(1, (size + chunkSize - 1) / chunkSize)];
+        for (int i = 0; i < chunks.length; i++) {
+          long start = (long) i * chunkSize;
+          chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, (long) chunkSize + overlap));
+        }
+        ByteBuffer first = chunks[0];
+        if (first.capacity() < HEADER_SIZE || first.getInt(0) != MAGIC || first.getInt(4) != VERSION) {
+          logger.warning("Ignoring unreadable snapshot " + file + ", entities are read from their files until the next snapshot");
+          return null;
+        }
+        return new Snapshot(chunks, chunkSize, first.getInt(8), first.getLong(12));
+      } catch (NoSuchFileException e) {
+        return null;
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Ignoring unreadable snapshot " + file, e);
+        return null;
+      }
+    }
+
+    ByteBuffer get(long id) {
+      int low = 0;
+      int high = count - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        long midId = idAt(mid);
+        if (midId < id) {
+          low = mid + 1;
+        } else if (midId > id) {
+          high = mid - 1;
+        } else {
+          return entry(mid);
+        }
+      }
+      return null;
+    }
+
+    void forEach(BiConsumer<Long, ByteBuffer> consumer) {
+      for (int i = 0; i < count; i++) {
+        consumer.accept(idAt(i), entry(i));
+      }
+    }
+
+    private long idAt(int index) {
+      long position = tableOffset + (long) index * ENTRY_SIZE;
+      return chunkAt(position).getLong(offsetInChunk(position));
+    }
+
+    private ByteBuffer entry(int index) {
+      long position = tableOffset + (long) index * ENTRY_SIZE;
+      MappedByteBuffer tableChunk = chunkAt(position);
+      long offset = tableChunk.getLong(offsetInChunk(position) + 8);
+      int length = tableChunk.getInt(offsetInChunk(position) + 16);
+      // The chunk an entity starts in also covers its end, since chunks overlap by the maximum entity size
+      return chunkAt(offset).slice(offsetInChunk(offset), length).asReadOnlyBuffer();
+    }
+
+    private MappedByteBuffer chunkAt(long position) {
+      return chunks[(int) (position / chunkSize)];
+    }
+
+    private int offsetInChunk(long position) {
+      return (int) (position % chunkSize);
+    }
+  }
+}
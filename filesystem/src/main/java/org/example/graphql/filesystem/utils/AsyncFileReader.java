@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads whole files through {@link AsynchronousFileChannel}s without blocking the calling thread. Completion handlers run on a dedicated, fixed-size
+ * pool of I/O threads, which is also available to callers as an {@link java.util.concurrent.Executor} for other file system work.
+ * <p>
+ * The number of reads in flight is bounded. Reads beyond the bound are queued and started as earlier reads complete, so a large batch of lookups
+ * cannot exhaust file descriptors or flood the I/O threads.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class AsyncFileReader implements Closeable {
+
+  private final ExecutorService ioExecutor;
+  private final int maxInFlight;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Queue<PendingRead> pending = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param ioThreads   The number of threads completing reads.
+   * @param maxInFlight The maximum number of reads in progress at the same time.
+   */
+  public AsyncFileReader(int ioThreads, int maxInFlight) {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.ioExecutor = Executors.newFixedThreadPool(ioThreads, runnable -> {
+      Thread thread = new Thread(runnable, "filesystem-io-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * @return The executor running the I/O threads.
+   */
+  public ExecutorService getExecutor() {
+    return ioExecutor;
+  }
+
+  /**
+   * Reads the complete content of a file.
+   *
+   * @param file the file to read
+   * @return a future completed with the content of the file, or completed exceptionally with the {@link IOException} that occurred, for example a
+   *     {@link java.nio.file.NoSuchFileException}
+   */
+  public CompletableFuture<byte[]> read(Path file) {
+    PendingRead read = new PendingRead(file, new CompletableFuture<>());
+    pending.add(read);
+    startPending();
+    return read.result();
+  }
+
+  private void startPending() {
+    while (!pending.isEmpty()) {
+      int running = inFlight.get();
+      if (running >= maxInFlight) {
+        // A completing read starts the next one
+        return;
+      }
+      if (!inFlight.compareAndSet(running, running + 1)) {
+        continue;
+      }
+      PendingRead read = pending.poll();
+      if (read == null) {
+        inFlight.decrementAndGet();
+        return;
+      }
+      start(read);
+    }
+  }
+
+  private void start(PendingRead read) {
+    AsynchronousFileChannel channel;
+    long size;
+    try {
+      channel = AsynchronousFileChannel.open(read.file(), Set.of(StandardOpenOption.READ), ioExecutor);
+      size = channel.size();
+    } catch (IOException | RuntimeException e) {
+      // Failing synchronously, the caller's loop starts the next read
+      complete(read, null, null, e);
+      return;
+    }
+    if (size > Integer.MAX_VALUE) {
+      complete(read, channel, null, new IOException("File too large: " + read.file()));
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    channel.read(buffer, 0, buffer, new CompletionHandler<>() {
+      @Override
+      public void completed(Integer bytesRead, ByteBuffer target) {
+        if (bytesRead < 0 || !target.hasRemaining()) {
+          // The file may have been truncated while reading, in which case only the bytes read so far are returned
+          byte[] data = target.position() == target.capacity() ? target.array() : Arrays.copyOf(target.array(), target.position());
+          finish(read, channel, data, null);
+        } else {
+          channel.read(target, target.position(), target, this);
+        }
+      }
+
+      @Override
+      public void failed(Throwable e, ByteBuffer target) {
+        finish(read, channel, null, e);
+      }
+    });
+  }
+
+  private void finish(PendingRead read, AsynchronousFileChannel channel, byte[] data, Throwable error) {
+    complete(read, channel, data, error);
+    startPending();
+  }
+
+  private void complete(PendingRead read, AsynchronousFileChannel channel, byte[] data, Throwable error) {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        error = error != null ? error : e;
+      }
+    }
+    inFlight.decrementAndGet();
+    if (error != null) {
+      read.result().completeExceptionally(error);
+    } else {
+      read.result().complete(data);
+    }
+  }
+
+  @Override
+  public void close() {
+    ioExecutor.shutdown();
+    try {
+      ioExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private record PendingRead(Path file, CompletableFuture<byte[]> result) {
+
+  }
+}
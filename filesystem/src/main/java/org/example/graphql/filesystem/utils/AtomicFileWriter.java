@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Writes files by first writing a temporary file next to the target and then atomically renaming it onto the target. Concurrent readers therefore
+ * either see the previous or the new content of a file, but never a partially written one, and a crash during a write leaves at most an orphaned
+ * temporary file behind instead of a corrupt target.
+ * <p>
+ * If fsync is enabled, the temporary file is forced to disk before the rename and the parent directory is forced after it, so a successful write
+ * survives a power loss. Without fsync, writes are still atomic but may be lost on a crash.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public class AtomicFileWriter {
+
+  private static final Logger logger = Logger.getLogger(AtomicFileWriter.class.getName());
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  private final boolean fsync;
+
+  public AtomicFileWriter(boolean fsync) {
+    this.fsync = fsync;
+  }
+
+  public boolean isFsync() {
+    return fsync;
+  }
+
+  /**
+   * Atomically replaces the content of the target file with the given bytes, forcing it to disk if fsync is enabled.
+   *
+   * @param target the file to write
+   * @param data   the array holding the new content
+   * @param length the number of bytes of {@code data} to write
+   * @throws IOException if writing or renaming the temporary file fails; the target is left untouched in that case
+   */
+  public void write(Path target, byte[] data, int length) throws IOException {
+    write(target, data, length, fsync);
+  }
+
+  /**
+   * Atomically replaces the content of the target file with the given bytes.
+   *
+   * @param target the file to write
+   * @param data   the array holding the new content
+   * @param length the number of bytes of {@code data} to write
+   * @param force  whether to force the file and its directory to disk, regardless of the fsync setting
+   * @throws IOException if writing or renaming the temporary file fails; the target is left untouched in that case
+   */
+  public void write(Path target, byte[] data, int length, boolean force) throws IOException {
+    Path dir = target.getParent();
+    // Unlike Files.createTempFile, this keeps the default permissions of the target file
+    Path temp = dir.resolve("." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_FILE_SUFFIX);
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        if (force) {
+          channel.force(true);
+        }
+      }
+      move(temp, target);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    if (force) {
+      forceDirectory(dir);
+    }
+  }
+
+  /**
+   * Forces the content of an existing file to disk. Missing files are ignored.
+   *
+   * @param file the file to force
+   * @throws IOException if the file exists but cannot be forced
+   */
+  public void force(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    } catch (NoSuchFileException e) {
+      // Deleted in the meantime, the directory is forced separately
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      // Only happens on file systems without rename support, where no stronger guarantee is available
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Forces the directory entry changes (renames and deletions) of the given directory to disk. Not every platform allows opening a directory for
+   * this purpose, in which case the call is a no-op.
+   *
+   * @param dir the directory to force
+   */
+  public void forceDirectory(Path dir) {
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      logger.log(Level.FINE, "Unable to force directory " + dir, e);
+    }
+  }
+
+  /**
+   * Removes temporary files left behind by writes that were interrupted by a crash.
+   *
+   * @param dir the directory to clean up
+   */
+  public void removeOrphanedTempFiles(Path dir) {
+    removeOrphanedTempFiles(dir, Duration.ZERO);
+  }
+
+  /**
+   * Removes temporary files left behind by writes that were interrupted by a crash, sparing files younger than the given age. In a directory shared
+   * with other processes, those may belong to writes still in progress.
+   *
+   * @param dir    the directory to clean up
+   * @param minAge the minimum time since the last modification of a temporary file for it to be removed
+   */
+  public void removeOrphanedTempFiles(Path dir, Duration minAge) {
+    Instant cutoff = Instant.now().minus(minAge);
+    try (Stream<Path> paths = Files.list(dir)) {
+      paths.filter(path -> path.getFileName().toString().endsWith(TEMP_FILE_SUFFIX))
+          .filter(path -> isModifiedBefore(path, cutoff))
+          .forEach(path -> {
+            try {
+              Files.deleteIfExists(path);
+            } catch (IOException e) {
+              logger.warning("Error while deleting orphaned temporary file: " + path);
+            }
+          });
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Error cleaning up temporary files", e);
+    }
+  }
+
+  private static boolean isModifiedBefore(Path file, Instant cutoff) {
+    try {
+      return !Files.getLastModifiedTime(file).toInstant().isAfter(cutoff);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
@@ -25,9 +25,25 @@
 package org.example.graphql.filesystem.utils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
@@ -37,21 +53,99 @@ import lombok.Getter;
  * The working directory path is provided at construction and is immediately converted to an absolute and normalized {@link Path}. If the specified
  * directory does not exist, it is created during the initialization phase.
  * </p>
+ * <p>
+ * Entity files may be striped across several volumes, given as a list of directories. Each entity ID is placed on a volume by consistent hashing, so
+ * adding a volume only moves the entities that now belong to it. The first volume is the working directory, which additionally holds all files that
+ * are not entity files, such as indexes, snapshots and lock files. After the volumes changed, entity files are moved to their volumes while the store
+ * stays online; until then, {@link #resolveEntityFileCandidates(Long, String)} also yields the other volumes.
+ * </p>
+ * <p>
+ * Several processes may share a working directory. Each of them then uses its own instance ID, which keeps per-process state such as snapshots and
+ * indexes apart, and writes are coordinated through {@link ShardLocks} on a lock file within the directory.
+ * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.03
  * @since 02-02-2024
  */
 @Getter
 public class DirectoryManager {
 
+  private static final Logger logger = Logger.getLogger(DirectoryManager.class.getName());
+
+  private static final String LOCK_FILE_NAME = ".locks";
+  private static final int VIRTUAL_NODES_PER_VOLUME = 128;
+  private static final int LOCAL_LOCKS = 256;
+
   private final Path workingDir;
 
+  private final List<Path> volumes;
+
+  @Getter(AccessLevel.NONE)
+  private final NavigableMap<Long, Path> volumeRing;
+
+  @Getter(AccessLevel.NONE)
+  private final ReentrantLock[] localLocks;
+
+  @Getter(AccessLevel.NONE)
+  private volatile boolean rebalancing;
+
+  private final String instanceId;
+
+  private final ShardLocks shardLocks;
+
   public DirectoryManager(String workingDir) {
-    this.workingDir = Paths.get(workingDir).toAbsolutePath().normalize();
+    this(List.of(workingDir));
+  }
+
+  /**
+   * Creates a manager striping entity files across the given volumes.
+   *
+   * @param volumes the directories entity files are distributed over, starting with the working directory
+   */
+  public DirectoryManager(List<String> volumes) {
+    this.volumes = toPaths(volumes);
+    this.workingDir = this.volumes.get(0);
+    this.volumeRing = buildRing(this.volumes);
+    this.instanceId = "";
+    this.shardLocks = null;
+    this.localLocks = new ReentrantLock[LOCAL_LOCKS];
+    for (int i = 0; i < LOCAL_LOCKS; i++) {
+      localLocks[i] = new ReentrantLock();
+    }
     initWorkingDir();
   }
 
+  /**
+   * Creates a manager for a working directory shared with other processes.
+   *
+   * @param workingDir the working directory
+   * @param instanceId the ID distinguishing this process from others using the directory
+   * @param lockShards the number of shards entity writes are locked by
+   * @throws IOException if the lock file cannot be opened
+   */
+  public DirectoryManager(String workingDir, String instanceId, int lockShards) throws IOException {
+    this(List.of(workingDir), instanceId, lockShards);
+  }
+
+  /**
+   * Creates a manager for volumes shared with other processes. All processes must list the same volumes.
+   *
+   * @param volumes    the directories entity files are distributed over, starting with the working directory
+   * @param instanceId the ID distinguishing this process from others using the directory
+   * @param lockShards the number of shards entity writes are locked by
+   * @throws IOException if the lock file cannot be opened
+   */
+  public DirectoryManager(List<String> volumes, String instanceId, int lockShards) throws IOException {
+    this.volumes = toPaths(volumes);
+    this.workingDir = this.volumes.get(0);
+    this.volumeRing = buildRing(this.volumes);
+    this.instanceId = instanceId;
+    this.localLocks = null;
+    initWorkingDir();
+    this.shardLocks = new ShardLocks(this.workingDir.resolve(LOCK_FILE_NAME), lockShards);
+  }
+
   /**
    * Validates and ensures the existence of the working directory. If the directory does not exist, it attempts to create it. Throws a
    * RuntimeException if unable to create the directory.
@@ -60,17 +154,238 @@ public class DirectoryManager {
    */
   private void initWorkingDir() {
     Objects.requireNonNull(workingDir, "Working directory path must not be null");
-    File dir = workingDir.toFile();
-    if (!dir.exists() && !dir.mkdirs()) {
-      throw new RuntimeException("Failed to create directory: " + workingDir);
+    for (Path volume : volumes) {
+      File dir = volume.toFile();
+      if (!dir.exists() && !dir.mkdirs()) {
+        throw new RuntimeException("Failed to create directory: " + volume);
+      }
     }
   }
 
+  private static List<Path> toPaths(List<String> volumes) {
+    if (volumes == null || volumes.isEmpty()) {
+      throw new IllegalArgumentException("At least one working directory is required");
+    }
+    return volumes.stream().map(volume -> Paths.get(volume.trim()).toAbsolutePath().normalize()).distinct().toList();
+  }
+
+  /**
+   * Places virtual nodes of every volume on a hash ring. Nodes are derived from the volume path, so the placement of IDs only depends on the set of
+   * volumes, not on their order.
+   */
+  private static NavigableMap<Long, Path> buildRing(List<Path> volumes) {
+    NavigableMap<Long, Path> ring = new TreeMap<>();
+    try {
+      MessageDigest md5 = MessageDigest.getInstance("MD5");
+      for (Path volume : volumes) {
+        for (int node = 0; node < VIRTUAL_NODES_PER_VOLUME; node++) {
+          byte[] digest = md5.digest((volume + "#" + node).getBytes(StandardCharsets.UTF_8));
+          long hash = 0;
+          for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+          }
+          ring.put(hash, volume);
+        }
+      }
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+    return ring;
+  }
+
+  /**
+   * @return The volume the file of the entity with the given ID belongs on.
+   */
+  public Path volumeOf(long entityId) {
+    if (volumes.size() == 1) {
+      return workingDir;
+    }
+    // Spread consecutive IDs over the ring (SplitMix64 finalizer)
+    long hash = entityId;
+    hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+    hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+    hash = hash ^ (hash >>> 31);
+    Map.Entry<Long, Path> node = volumeRing.ceilingEntry(hash);
+    return node != null ? node.getValue() : volumeRing.firstEntry().getValue();
+  }
+
   public String getAbsolutePathForWorkingDir() {
     return workingDir.toString();
   }
 
   public String getAbsoluteFilePathForEntity(Long entityId, String extension) {
-    return workingDir.resolve(entityId + extension).toString();
+    return resolveEntityFile(entityId, extension).toString();
+  }
+
+  public Path resolveEntityFile(Long entityId, String extension) {
+    return volumeOf(entityId).resolve(entityId + extension);
+  }
+
+  /**
+   * Returns the locations the file of an entity may be found at. This is only the location on its own volume, unless entity files are being moved
+   * between volumes, in which case the other volumes follow.
+   */
+  public List<Path> resolveEntityFileCandidates(Long entityId, String extension) {
+    Path file = resolveEntityFile(entityId, extension);
+    if (!rebalancing) {
+      return List.of(file);
+    }
+    List<Path> candidates = new ArrayList<>(volumes.size());
+    candidates.add(file);
+    for (Path volume : volumes) {
+      if (!volume.equals(file.getParent())) {
+        candidates.add(volume.resolve(file.getFileName()));
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * @return {@code true} while entity files may still be stored on other volumes than their own.
+   */
+  public boolean isRebalancing() {
+    return rebalancing;
+  }
+
+  /**
+   * Marks whether entity files may be stored on other volumes than their own, which makes lookups consider all volumes.
+   */
+  public void setRebalancing(boolean rebalancing) {
+    this.rebalancing = rebalancing;
+  }
+
+  /**
+   * Lists the entity files stored on another volume than their own, for example after a volume was added.
+   *
+   * @param extensions the accepted file extensions
+   * @return the misplaced files, or an empty list if there is only a single volume
+   */
+  public List<Path> listMisplacedEntityFiles(List<String> extensions) {
+    List<Path> misplaced = new ArrayList<>();
+    if (volumes.size() == 1) {
+      return misplaced;
+    }
+    for (Path volume : volumes) {
+      try (Stream<Path> paths = Files.list(volume)) {
+        paths.forEach(path -> {
+          Long id = entityIdOf(path.getFileName().toString(), extensions);
+          if (id != null && !volumeOf(id).equals(volume)) {
+            misplaced.add(path);
+          }
+        });
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error listing entity files in " + volume, e);
+      }
+    }
+    return misplaced;
+  }
+
+  /**
+   * Resolves a directory for state only used by this process, such as snapshots or indexes. Without an instance ID, this is simply the given name
+   * within the working directory.
+   */
+  public Path resolveInstanceDir(String name) {
+    return workingDir.resolve(instanceId.isEmpty() ? name : name + "-" + instanceId);
+  }
+
+  /**
+   * @return {@code true} if the directory is shared with other processes.
+   */
+  public boolean isShared() {
+    return shardLocks != null;
+  }
+
+  /**
+   * Acquires the write lock for the given entity, which is also held by other processes if the directory is shared with them.
+   *
+   * @return the held lock, to be released by closing it
+   */
+  public ShardLocks.Lock lockEntity(long entityId) {
+    if (shardLocks != null) {
+      return shardLocks.lock(entityId);
+    }
+    ReentrantLock lock = localLocks[(int) Math.floorMod(entityId, (long) LOCAL_LOCKS)];
+    lock.lock();
+    return lock::unlock;
+  }
+
+  /**
+   * Lists the entity files on all volumes, keyed by entity ID. Files are named after the ID of the entity they contain followed by one of the given
+   * extensions. If an entity is stored under several extensions, the file with the extension listed first wins; if it is stored on several volumes,
+   * the file on its own volume wins.
+   *
+   * @param extensions the accepted file extensions in order of preference
+   * @return the entity files by entity ID, or an empty map if the directory cannot be read
+   */
+  public Map<Long, Path> listEntityFiles(List<String> extensions) {
+    Map<Long, Path> files = new HashMap<>();
+    Map<Long, Integer> ranks = new HashMap<>();
+    for (Path volume : volumes) {
+      try (Stream<Path> paths = Files.list(volume)) {
+        paths.forEach(path -> {
+          String name = path.getFileName().toString();
+          int rank = extensionRank(name, extensions);
+          if (rank >= 0) {
+            Long id = parseEntityId(name.substring(0, name.length() - extensions.get(rank).length()));
+            if (id != null) {
+              // Rank by volume first, so a misplaced copy never hides the file on the entity's own volume
+              int volumeRank = volumeOf(id).equals(volume) ? rank : extensions.size() + rank;
+              if (ranks.getOrDefault(id, Integer.MAX_VALUE) > volumeRank) {
+                files.put(id, path);
+                ranks.put(id, volumeRank);
+              }
+            }
+          }
+        });
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Error listing entity files in " + volume, e);
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Returns the ID of the entity stored in the given file, based on its name.
+   *
+   * @param fileName   the name of a file in the working directory
+   * @param extensions the accepted file extensions
+   * @return the entity ID, or {@code null} if the file is not an entity file, such as a temporary file
+   */
+  public Long entityIdOf(String fileName, List<String> extensions) {
+    int rank = extensionRank(fileName, extensions);
+    return rank < 0 ? null : parseEntityId(fileName.substring(0, fileName.length() - extensions.get(rank).length()));
+  }
+
+  /**
+   * Starts watching all volumes for entity files that are created, modified or deleted, including changes made by other processes.
+   *
+   * @param extensions the accepted file extensions
+   * @param listener   notified of the IDs of changed entities
+   * @return the running watcher, which must be closed to stop watching
+   * @throws IOException if the directory cannot be watched
+   */
+  public DirectoryWatcher watch(List<String> extensions, DirectoryWatcher.Listener listener) throws IOException {
+    return new DirectoryWatcher(this, extensions, listener);
+  }
+
+  private static int extensionRank(String fileName, List<String> extensions) {
+    for (int rank = 0; rank < extensions.size(); rank++) {
+      if (fileName.endsWith(extensions.get(rank))) {
+        return rank;
+      }
+    }
+    return -1;
+  }
+
+  private static Long parseEntityId(String baseName) {
+    if (baseName.isEmpty() || baseName.length() > 18) {
+      return null;
+    }
+    for (int i = 0; i < baseName.length(); i++) {
+      if (!Character.isDigit(baseName.charAt(i))) {
+        return null;
+      }
+    }
+    return Long.parseLong(baseName);
   }
 }
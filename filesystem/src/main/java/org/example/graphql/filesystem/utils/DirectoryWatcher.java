@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches all volumes of a {@link DirectoryManager} with a {@link WatchService} and reports the IDs of entity files that were created,
+ * modified or deleted. Changes made by this process are reported as well; listeners are expected to handle them idempotently by looking at the
+ * current state of the file.
+ * <p>
+ * Events are collected for a short moment and reported once per ID, so the several events caused by writing and renaming a single file result in a
+ * single notification. If the platform dropped events, {@link Listener#overflow()} is called instead, and the listener has to rescan the directory.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public class DirectoryWatcher implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(DirectoryWatcher.class.getName());
+  private static final long COALESCE_MILLIS = 20;
+
+  private final DirectoryManager dirManager;
+  private final List<String> extensions;
+  private final Listener listener;
+  private final WatchService watchService;
+  private final Thread thread;
+
+  DirectoryWatcher(DirectoryManager dirManager, List<String> extensions, Listener listener) throws IOException {
+    this.dirManager = dirManager;
+    this.extensions = extensions;
+    this.listener = listener;
+    Path dir = dirManager.getWorkingDir();
+    this.watchService = dir.getFileSystem().newWatchService();
+    for (Path volume : dirManager.getVolumes()) {
+      volume.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+    this.thread = new Thread(this::run, "directory-watcher-" + dir.getFileName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        Set<Long> changedIds = new LinkedHashSet<>();
+        boolean overflow = collect(watchService.take(), changedIds);
+        WatchKey key;
+        while ((key = watchService.poll(COALESCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          overflow |= collect(key, changedIds);
+        }
+        notifyListener(changedIds, overflow);
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      // Closed
+    }
+  }
+
+  private boolean collect(WatchKey key, Set<Long> changedIds) {
+    boolean overflow = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        overflow = true;
+      } else {
+        Long id = dirManager.entityIdOf(((Path) event.context()).getFileName().toString(), extensions);
+        if (id != null) {
+          changedIds.add(id);
+        }
+      }
+    }
+    if (!key.reset()) {
+      logger.warning("Directory " + key.watchable() + " is no longer accessible");
+    }
+    return overflow;
+  }
+
+  private void notifyListener(Set<Long> changedIds, boolean overflow) {
+    try {
+      if (overflow) {
+        listener.overflow();
+      } else {
+        for (Long id : changedIds) {
+          listener.entityChanged(id);
+        }
+      }
+    } catch (RuntimeException e) {
+      logger.log(Level.SEVERE, "Error while handling changes in " + dirManager.getWorkingDir(), e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Receives the changes detected in a working directory.
+   */
+  public interface Listener {
+
+    /**
+     * Called after the files of the entity with the given ID were created, modified or deleted.
+     */
+    void entityChanged(long id);
+
+    /**
+     * Called if changes may have been missed, so the complete directory needs to be rescanned.
+     */
+    void overflow();
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * A thread-safe bitmap over entity IDs, recording which IDs currently exist in a store. Since IDs are generated sequentially, they form a dense range
+ * and one bit per ID suffices; the bitmap is split into segments of {@value #SEGMENT_BITS} bits that are allocated on first use, so sparse or very
+ * large IDs only cost memory for the segments they fall into.
+ * <p>
+ * Lookups are lock-free and never touch the file system, which allows answering requests for missing entities without a syscall.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class IdBitmap {
+
+  private static final int SEGMENT_SHIFT = 16;
+  private static final int SEGMENT_BITS = 1 << SEGMENT_SHIFT;
+  private static final int SEGMENT_MASK = SEGMENT_BITS - 1;
+
+  private final Map<Long, AtomicLongArray> segments = new ConcurrentHashMap<>();
+
+  public boolean contains(long id) {
+    AtomicLongArray segment = segments.get(id >> SEGMENT_SHIFT);
+    if (segment == null) {
+      return false;
+    }
+    int bit = (int) (id & SEGMENT_MASK);
+    return (segment.get(bit >>> 6) & (1L << bit)) != 0;
+  }
+
+  public void add(long id) {
+    AtomicLongArray segment = segments.computeIfAbsent(id >> SEGMENT_SHIFT, key -> new AtomicLongArray(SEGMENT_BITS / 64));
+    int bit = (int) (id & SEGMENT_MASK);
+    segment.getAndAccumulate(bit >>> 6, 1L << bit, (word, mask) -> word | mask);
+  }
+
+  public void remove(long id) {
+    AtomicLongArray segment = segments.get(id >> SEGMENT_SHIFT);
+    if (segment != null) {
+      int bit = (int) (id & SEGMENT_MASK);
+      segment.getAndAccumulate(bit >>> 6, ~(1L << bit), (word, mask) -> word & mask);
+    }
+  }
+
+  /**
+   * Passes every ID contained in the bitmap to the consumer, in no particular order. IDs added or removed concurrently may or may not be reported.
+   */
+  public void forEach(LongConsumer consumer) {
+    segments.forEach((key, segment) -> {
+      long base = key << SEGMENT_SHIFT;
+      for (int index = 0; index < segment.length(); index++) {
+        long word = segment.get(index);
+        while (word != 0) {
+          int bit = Long.numberOfTrailingZeros(word);
+          consumer.accept(base + index * 64L + bit);
+          word &= word - 1;
+        }
+      }
+    });
+  }
+}
@@ -24,60 +24,69 @@
 
 package org.example.graphql.filesystem.utils;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.stream.Stream;
 
 /**
- * This component initializes the ID counter to one more than the highest ID found among persisted JSON files in a given directory, ensuring that each
- * generated ID is unique across application restarts. The directory to search in is provided by a {@link DirectoryManager} instance.
+ * This component initializes the ID counter to one more than the highest ID found among persisted entity files in a given directory, ensuring that
+ * each generated ID is unique across application restarts. The directory to search in is provided by a {@link DirectoryManager} instance.
+ * <p>
+ * If the directory is shared with other processes, IDs are instead generated from ranges leased through an {@link IdRangeLease}, so processes never
+ * generate the same ID.
+ * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.02
  * @since 02-02-2024
  */
 public class IdGenerator {
 
-  private static final Logger logger = Logger.getLogger(IdGenerator.class.getName());
-
   private final AtomicLong idCounter;
 
+  private final IdRangeLease lease;
+
+  private long rangeEnd;
+
   /**
    * Constructs an {@code IdGenerator} with a reference to a {@link DirectoryManager}. The working directory for ID persistence is obtained from the
    * {@link DirectoryManager}, and the initial value for the ID counter is set to one more than the highest persisted ID.
    *
-   * @param dirManager the directory manager used to access the working directory
+   * @param dirManager     the directory manager used to access the working directory
+   * @param fileExtensions the extensions of the files entities are persisted in
    */
-  public IdGenerator(DirectoryManager dirManager) {
-    Path workingDir = dirManager.getWorkingDir();
-    this.idCounter = new AtomicLong(findHighestPersistedId(workingDir) + 1);
+  public IdGenerator(DirectoryManager dirManager, List<String> fileExtensions) {
+    this.idCounter = new AtomicLong(findHighestPersistedId(dirManager, fileExtensions) + 1);
+    this.lease = null;
   }
 
   /**
-   * This method scans the directory for JSON files, extracts the numeric part of their filenames, and determines the maximum value. If no files are
-   * found or an error occurs, it returns 0.
+   * Constructs an {@code IdGenerator} generating IDs from ranges leased in the given lease file, which is shared by all processes using the
+   * directory. The first range starts after the highest persisted ID.
    *
-   * @param basePath the path to the directory containing persisted IDs
-   * @return the highest ID found, or 0 if no IDs are found or an error occurs
+   * @param dirManager     the directory manager used to access the working directory
+   * @param fileExtensions the extensions of the files entities are persisted in
+   * @param leaseFile      the file holding the next unleased ID
+   * @param rangeSize      the number of IDs leased at a time
    */
-  private long findHighestPersistedId(Path basePath) {
-    try (Stream<Path> paths = Files.walk(basePath)) {
-      return paths.filter(Files::isRegularFile)
-          .map(Path::getFileName)
-          .map(Path::toString)
-          .filter(name -> name.endsWith(".json"))
-          .map(name -> name.substring(0, name.length() - 5)) // Remove ".json" extension
-          .mapToLong(Long::parseLong)
-          .max()
-          .orElse(0);
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Error finding highest persisted ID", e);
-      return 0;
-    }
+  public IdGenerator(DirectoryManager dirManager, List<String> fileExtensions, Path leaseFile, int rangeSize) {
+    this.idCounter = new AtomicLong();
+    this.lease = new IdRangeLease(leaseFile, rangeSize, () -> findHighestPersistedId(dirManager, fileExtensions) + 1);
+  }
+
+  /**
+   * This method scans the working directory for entity files, extracts the numeric part of their filenames, and determines the maximum value. If no
+   * files are found, it returns 0.
+   *
+   * @param dirManager     the directory manager used to access the working directory
+   * @param fileExtensions the extensions of the files entities are persisted in
+   * @return the highest ID found, or 0 if no IDs are found
+   */
+  private long findHighestPersistedId(DirectoryManager dirManager, List<String> fileExtensions) {
+    return dirManager.listEntityFiles(fileExtensions).keySet().stream()
+        .mapToLong(Long::longValue)
+        .max()
+        .orElse(0);
   }
 
   /**
@@ -86,6 +95,29 @@ public class IdGenerator {
    * @return a unique ID
    */
   public Long generateId() {
-    return idCounter.getAndIncrement();
+    if (lease == null) {
+      return idCounter.getAndIncrement();
+    }
+    synchronized (this) {
+      if (idCounter.get() >= rangeEnd) {
+        long rangeStart = lease.lease();
+        idCounter.set(rangeStart);
+        rangeEnd = rangeStart + lease.getRangeSize();
+      }
+      return idCounter.getAndIncrement();
+    }
+  }
+
+  /**
+   * Ensures that the given ID, which was assigned elsewhere (for example by an entity restored from the write-ahead log), is never generated again.
+   *
+   * @param id an ID that is in use
+   */
+  public void reserve(long id) {
+    if (lease == null) {
+      idCounter.accumulateAndGet(id + 1, Math::max);
+    } else {
+      lease.ensureLeased(id);
+    }
   }
 }
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Hands out disjoint ranges of entity IDs to all processes sharing a working directory. The next unleased ID is kept in a lease file, which is
+ * updated under an exclusive {@link FileLock}; each process then generates IDs from its own range without further coordination.
+ * <p>
+ * IDs left in the range of a process when it stops are never used, so IDs of a shared store have gaps but never collide. File locks are held on
+ * behalf of the whole process, so leases of the same file within one process are serialized in memory first.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public class IdRangeLease {
+
+  private static final Map<Path, Object> FILE_MONITORS = new ConcurrentHashMap<>();
+
+  private final Path leaseFile;
+  private final int rangeSize;
+  private final LongSupplier initialNextId;
+  private final Object fileMonitor;
+  private long knownNextId;
+
+  /**
+   * @param leaseFile     the file holding the next unleased ID; created on first use
+   * @param rangeSize     the number of IDs leased at a time
+   * @param initialNextId computes the first ID if the lease file does not exist yet; called while holding the lock
+   */
+  public IdRangeLease(Path leaseFile, int rangeSize, LongSupplier initialNextId) {
+    this.leaseFile = leaseFile;
+    this.rangeSize = rangeSize;
+    this.initialNextId = initialNextId;
+    this.fileMonitor = FILE_MONITORS.computeIfAbsent(leaseFile.toAbsolutePath().normalize(), file -> new Object());
+  }
+
+  /**
+   * Leases the next range of IDs.
+   *
+   * @return the first ID of the range; the range ends before {@code first + rangeSize}
+   * @throws UncheckedIOException if the lease file cannot be updated
+   */
+  public synchronized long lease() {
+    return update(next -> next + rangeSize);
+  }
+
+  /**
+   * @return the number of IDs leased at a time.
+   */
+  public int getRangeSize() {
+    return rangeSize;
+  }
+
+  /**
+   * Ensures that no range containing the given ID is leased anymore, for IDs that were assigned outside of a lease, for example by a file restored by
+   * hand.
+   *
+   * @param id an ID that is in use
+   * @throws UncheckedIOException if the lease file cannot be updated
+   */
+  public synchronized void ensureLeased(long id) {
+    if (id < knownNextId) {
+      return;
+    }
+    update(next -> Math.max(next, id + 1));
+  }
+
+  /**
+   * Applies the given function to the next unleased ID under the file lock and stores its result.
+   *
+   * @return the next unleased ID before the update
+   */
+  private long update(LongUnaryOperator function) {
+    synchronized (fileMonitor) {
+      return updateLocked(function);
+    }
+  }
+
+  private long updateLocked(LongUnaryOperator function) {
+    try (FileChannel channel = FileChannel.open(leaseFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // Released when the channel is closed
+      channel.lock();
+      ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+      while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+        // Read the complete value
+      }
+      long next = buffer.hasRemaining() ? initialNextId.getAsLong() : buffer.getLong(0);
+      long updated = function.applyAsLong(next);
+      buffer.clear().putLong(0, updated);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, buffer.position());
+      }
+      channel.force(false);
+      knownNextId = updated;
+      return next;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error updating ID lease file " + leaseFile, e);
+    }
+  }
+}
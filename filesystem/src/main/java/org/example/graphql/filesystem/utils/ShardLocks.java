@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive write locks on shards of the entity IDs of a working directory, shared by all processes using the directory. Each shard is a single byte
+ * of a lock file, locked with {@link FileChannel#lock(long, long, boolean)}, so writers of different shards never wait for each other and readers are
+ * not involved at all.
+ * <p>
+ * File locks are held on behalf of the whole process, so each shard is additionally guarded by an in-process lock that serializes the threads of this
+ * process. The in-process locks are shared by all instances using the same lock file.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class ShardLocks implements Closeable {
+
+  private static final Map<Path, ReentrantLock[]> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+  private final FileChannel channel;
+  private final ReentrantLock[] localLocks;
+
+  /**
+   * @param lockFile the file whose bytes represent the shards; created if missing
+   * @param shards   the number of shards IDs are distributed over; all instances using the same lock file must use the same number
+   * @throws IOException if the lock file cannot be opened
+   */
+  public ShardLocks(Path lockFile, int shards) throws IOException {
+    this.channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.localLocks = LOCAL_LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), file -> {
+      ReentrantLock[] locks = new ReentrantLock[shards];
+      for (int i = 0; i < shards; i++) {
+        locks[i] = new ReentrantLock();
+      }
+      return locks;
+    });
+  }
+
+  /**
+   * Acquires the write lock of the shard the given ID belongs to, waiting for other threads and processes holding it.
+   *
+   * @param id the ID of the entity about to be written
+   * @return the held lock, to be released by closing it
+   * @throws UncheckedIOException if the file lock cannot be acquired
+   */
+  public Lock lock(long id) {
+    int shard = (int) Math.floorMod(id, (long) localLocks.length);
+    ReentrantLock localLock = localLocks[shard];
+    localLock.lock();
+    try {
+      FileLock fileLock = channel.lock(shard, 1, false);
+      return () -> {
+        try {
+          fileLock.release();
+        } catch (IOException e) {
+          // Released with the channel at the latest
+        } finally {
+          localLock.unlock();
+        }
+      };
+    } catch (IOException e) {
+      localLock.unlock();
+      throw new UncheckedIOException("Error locking shard " + shard, e);
+    } catch (RuntimeException e) {
+      localLock.unlock();
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * A held shard lock.
+   */
+  @FunctionalInterface
+  public interface Lock extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+}
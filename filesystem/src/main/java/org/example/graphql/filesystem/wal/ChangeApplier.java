@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.wal;
+
+import java.io.IOException;
+
+/**
+ * Applies logged {@link EntityChange}s to the files of a store. Implemented by the stores that register with a {@link WriteAheadLog}.
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public interface ChangeApplier {
+
+  /**
+   * Applies the change to the store. Applying the same change more than once must yield the same result, since changes are replayed after a crash.
+   * Changes applied this way do not need to be forced to disk immediately, as the log guarantees their durability until the next {@link #flush()}.
+   *
+   * @param change the change to apply
+   * @throws IOException if the change cannot be applied
+   */
+  void apply(EntityChange change) throws IOException;
+
+  /**
+   * Forces all changes applied since the previous flush to disk. Called before the log is truncated.
+   *
+   * @throws IOException if the changes cannot be forced
+   */
+  void flush() throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.wal;
+
+/**
+ * A single change to an entity of a filesystem store, as recorded in the {@link WriteAheadLog}.
+ *
+ * @param store The name of the store the entity belongs to.
+ * @param type  Whether the entity is written or deleted.
+ * @param id    The ID of the entity.
+ * @param data  The encoded entity for {@link Type#PUT} changes, an empty array for {@link Type#DELETE} changes.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public record EntityChange(String store, Type type, long id, byte[] data) {
+
+  private static final byte[] NO_DATA = new byte[0];
+
+  public static EntityChange put(String store, long id, byte[] data) {
+    return new EntityChange(store, Type.PUT, id, data);
+  }
+
+  public static EntityChange delete(String store, long id) {
+    return new EntityChange(store, Type.DELETE, id, NO_DATA);
+  }
+
+  /**
+   * The kinds of changes an entity can undergo.
+   */
+  public enum Type {
+    PUT,
+    DELETE
+  }
+}
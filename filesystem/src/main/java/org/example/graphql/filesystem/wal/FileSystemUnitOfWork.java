@@ -0,0 +1,302 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.example.graphql.filesystem.replication.ReplicationLog;
+import org.example.graphql.server.services.UnitOfWork;
+
+/**
+ * {@link UnitOfWork} implementation for the filesystem stores. Changes recorded by the stores while a mutation runs are staged per thread and
+ * committed together when the mutation completes. Changes recorded outside a unit of work are committed on their own.
+ * <p>
+ * With a {@link WriteAheadLog}, a commit appends all staged changes as one log record and returns once that record is durable and the changes have
+ * been applied. Without a log, the staged changes are applied directly to the stores, which saves nothing but the staging itself.
+ * </p>
+ * <p>
+ * The stores pass every applied change to {@link #changeApplied(EntityChange)}, which appends it to the {@link ReplicationLog} on a replication
+ * primary and notifies the listeners added with {@link #addAppliedListener(Consumer)}. A replication follower rejects all changes recorded locally,
+ * since its stores only apply the changes of the primary.
+ * </p>
+ * <p>
+ * {@link #runBetweenCommits(CommitPause)} waits for the commits in progress and holds back new ones while it runs, so the stores are in a state that
+ * reflects all changes of each commit or none of them.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.03
+ * @since 19-10-2026
+ */
+public class FileSystemUnitOfWork implements UnitOfWork, Closeable {
+
+  private final WriteAheadLog writeAheadLog;
+  private final ReplicationLog replicationLog;
+  private final boolean readOnly;
+  private final Map<String, ChangeApplier> appliers = new ConcurrentHashMap<>();
+  private final ThreadLocal<List<EntityChange>> staged = new ThreadLocal<>();
+  private final List<Consumer<EntityChange>> appliedListeners = new CopyOnWriteArrayList<>();
+  // Held shared by commits in progress, which may complete on another thread than the one that started them
+  private final StampedLock commitGate = new StampedLock();
+
+  /**
+   * @param writeAheadLog The log to commit changes to, or {@code null} to apply changes directly.
+   */
+  public FileSystemUnitOfWork(WriteAheadLog writeAheadLog) {
+    this(writeAheadLog, null, false);
+  }
+
+  /**
+   * @param writeAheadLog  The log to commit changes to, or {@code null} to apply changes directly.
+   * @param replicationLog The log applied changes are shipped to followers through, or {@code null} if this instance is not a replication primary.
+   * @param readOnly       Whether recorded changes are rejected, because this instance is a replication follower.
+   */
+  public FileSystemUnitOfWork(WriteAheadLog writeAheadLog, ReplicationLog replicationLog, boolean readOnly) {
+    this.writeAheadLog = writeAheadLog;
+    this.replicationLog = replicationLog;
+    this.readOnly = readOnly;
+  }
+
+  /**
+   * @return {@code true} if committed changes are made durable by the write-ahead log, so stores don't need to force their files on every write.
+   */
+  public boolean isLogged() {
+    return writeAheadLog != null;
+  }
+
+  /**
+   * Registers the applier of a store. With a write-ahead log, the logged changes of the store are replayed before this method returns.
+   *
+   * @param store   the name of the store
+   * @param applier the applier writing changes to the store's files
+   */
+  public void register(String store, ChangeApplier applier) {
+    appliers.put(store, applier);
+    if (writeAheadLog != null) {
+      try {
+        writeAheadLog.register(store, applier);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error replaying the write-ahead log for store '" + store + "'", e);
+      }
+    }
+  }
+
+  /**
+   * @return The applier registered for the given store, or {@code null} if the store is unknown.
+   */
+  public ChangeApplier getApplier(String store) {
+    return appliers.get(store);
+  }
+
+  /**
+   * Ships a change that has just been applied to the followers, if this instance is a replication primary, and notifies the applied listeners. Stores
+   * call this while still holding the write lock of the changed entity.
+   *
+   * @param change the applied change
+   * @throws IOException if the change cannot be appended to the replication log
+   */
+  public void changeApplied(EntityChange change) throws IOException {
+    if (replicationLog != null) {
+      replicationLog.append(change);
+    }
+    for (Consumer<EntityChange> listener : appliedListeners) {
+      listener.accept(change);
+    }
+  }
+
+  /**
+   * Adds a listener notified of every change applied to a store from now on, whether committed locally or replicated from a primary. Listeners are
+   * called while the entity is locked, so they must not block.
+   *
+   * @param listener the listener to add
+   */
+  public void addAppliedListener(Consumer<EntityChange> listener) {
+    appliedListeners.add(listener);
+  }
+
+  /**
+   * @param listener the listener to remove
+   */
+  public void removeAppliedListener(Consumer<EntityChange> listener) {
+    appliedListeners.remove(listener);
+  }
+
+  /**
+   * Runs the given action once all commits in progress are applied, holding back new commits until it returns. Changes replicated from a primary are
+   * not held back.
+   *
+   * @param pause the action to run
+   * @return the result of the action
+   * @throws IOException if the action fails
+   */
+  public <R> R runBetweenCommits(CommitPause<R> pause) throws IOException {
+    long stamp = commitGate.writeLock();
+    try {
+      return pause.run();
+    } finally {
+      commitGate.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Forces the changes shipped so far to disk, if this instance is a replication primary. Stores call this when flushing their files.
+   *
+   * @throws IOException if the replication log cannot be forced
+   */
+  public void forceReplication() throws IOException {
+    if (replicationLog != null) {
+      replicationLog.force();
+    }
+  }
+
+  @Override
+  public <R> R execute(Supplier<R> mutation) {
+    if (staged.get() != null) {
+      return mutation.get();
+    }
+    List<EntityChange> changes = new ArrayList<>();
+    staged.set(changes);
+    R result;
+    try {
+      result = mutation.get();
+    } finally {
+      staged.remove();
+    }
+    commit(changes);
+    return result;
+  }
+
+  /**
+   * Records a change. Within a unit of work the change is staged until the unit of work completes, otherwise it is committed immediately.
+   *
+   * @param change the change to record
+   * @throws UncheckedIOException if the change is committed immediately and the commit fails
+   */
+  public void record(EntityChange change) {
+    List<EntityChange> changes = staged.get();
+    if (changes != null) {
+      changes.add(change);
+    } else {
+      commit(List.of(change));
+    }
+  }
+
+  /**
+   * Records a change without waiting for it to be committed. Within a unit of work the change is staged as by {@link #record(EntityChange)} and the
+   * returned future is already complete. Otherwise the change is appended to the write-ahead log, or applied directly on the given executor.
+   *
+   * @param change   the change to record
+   * @param executor the executor applying the change if there is no write-ahead log
+   * @return a future completed once the change is committed, or completed exceptionally with the {@link IOException} that prevented it
+   */
+  public CompletableFuture<Void> recordAsync(EntityChange change, Executor executor) {
+    List<EntityChange> changes = staged.get();
+    if (changes != null) {
+      changes.add(change);
+      return CompletableFuture.completedFuture(null);
+    }
+    if (readOnly) {
+      return CompletableFuture.failedFuture(readOnlyException());
+    }
+    if (writeAheadLog != null) {
+      long stamp = commitGate.readLock();
+      return writeAheadLog.append(List.of(change))
+          .whenComplete((position, e) -> commitGate.unlockRead(stamp))
+          .thenApply(position -> null);
+    }
+    return CompletableFuture.runAsync(() -> commit(List.of(change)), executor);
+  }
+
+  private void commit(List<EntityChange> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    if (readOnly) {
+      throw new UncheckedIOException("Error committing changes", readOnlyException());
+    }
+    long stamp = commitGate.readLock();
+    try {
+      if (writeAheadLog != null) {
+        try {
+          writeAheadLog.append(changes).join();
+        } catch (CompletionException e) {
+          throw e.getCause() instanceof IOException io
+              ? new UncheckedIOException("Error committing changes", io)
+              : e;
+        }
+        return;
+      }
+      for (EntityChange change : changes) {
+        try {
+          appliers.get(change.store()).apply(change);
+        } catch (IOException e) {
+          throw new UncheckedIOException("Error applying change to store '" + change.store() + "'", e);
+        }
+      }
+    } finally {
+      commitGate.unlockRead(stamp);
+    }
+  }
+
+  private static IOException readOnlyException() {
+    return new IOException("Changes are not accepted by a replication follower");
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (writeAheadLog != null) {
+        writeAheadLog.close();
+      }
+    } finally {
+      if (replicationLog != null) {
+        replicationLog.close();
+      }
+    }
+  }
+
+  /**
+   * An action run by {@link #runBetweenCommits(CommitPause)}.
+   *
+   * @param <R> the type of the result
+   */
+  @FunctionalInterface
+  public interface CommitPause<R> {
+
+    R run() throws IOException;
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * A write-ahead log shared by the filesystem stores. Every mutation is appended as a single record holding all of its {@link EntityChange}s, so the
+ * changes of a mutation become durable together, and they are applied to the entity files only after the record has been forced to disk.
+ * <p>
+ * Appends are group committed: a single writer thread collects all records queued while the previous fsync was in progress, writes them in one go and
+ * forces the log once for the whole batch. Afterwards the writer applies the changes in log order through the {@link ChangeApplier} registered for
+ * each store. Entity files therefore don't need to be forced individually; once the log grows beyond the checkpoint threshold, all stores are flushed
+ * and the log is truncated.
+ * </p>
+ * <p>
+ * When a store registers, the changes recorded for it are replayed, which repairs entity files that were not yet written or flushed when the process
+ * stopped. A torn record at the end of the log, caused by a crash during an append, is detected by its checksum and discarded.
+ * </p>
+ * <p>
+ * If a logged change cannot be applied to its store, the mutation fails, and so do the ones committed after it in the same batch. The log then stops
+ * accepting appends and is no longer truncated, so the failed changes stay in it and are applied when it is replayed on the next startup.
+ * {@link #isHealthy()} reports this state.
+ * </p>
+ * <p>
+ * Record layout: {@code int payloadLength, int crc32c(payload), payload}, where the payload consists of {@code long sequence, int changeCount} and
+ * for each change {@code UTF store, byte type, long id, int dataLength, byte[] data}.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.02
+ * @since 19-10-2026
+ */
+public class WriteAheadLog implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+  private static final String LOG_FILE_NAME = "wal.log";
+  private static final int HEADER_SIZE = 8;
+  private static final int MAX_RECORD_SIZE = 256 * 1024 * 1024;
+  private static final PendingRecord END_OF_QUEUE = new PendingRecord(List.of(), new CompletableFuture<>());
+
+  private final FileChannel channel;
+  private final long checkpointThreshold;
+  private final Map<String, ChangeApplier> appliers = new ConcurrentHashMap<>();
+  private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  private boolean closed;
+  private long nextSequence = 1;
+  private volatile IOException applyFailure;
+
+  /**
+   * Opens the log in the given directory, discarding a torn record at its end, and starts the writer thread.
+   *
+   * @param dir                 the directory holding the log file; created if missing
+   * @param checkpointThreshold the log size in bytes after which the stores are flushed and the log is truncated
+   * @throws IOException if the log cannot be opened
+   */
+  public WriteAheadLog(Path dir, long checkpointThreshold) throws IOException {
+    Files.createDirectories(dir);
+    this.channel = FileChannel.open(dir.resolve(LOG_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    lockExclusively(dir);
+    this.checkpointThreshold = checkpointThreshold;
+    long validEnd = readRecords((sequence, changes) -> nextSequence = sequence + 1);
+    if (validEnd < channel.size()) {
+      logger.warning("Discarding " + (channel.size() - validEnd) + " bytes of incomplete records at the end of the write-ahead log");
+      channel.truncate(validEnd);
+    }
+    channel.position(validEnd);
+    this.writer = new Thread(this::writeLoop, "wal-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Prevents several processes from appending to the same log, which happens if processes sharing a store are not given their own log directories.
+   */
+  private void lockExclusively(Path dir) throws IOException {
+    FileLock lock;
+    try {
+      lock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      channel.close();
+      throw new IOException("The write-ahead log in " + dir + " is already in use by another process");
+    }
+  }
+
+  /**
+   * Registers the applier of a store and replays all logged changes of that store through it.
+   *
+   * @param store   the name of the store
+   * @param applier the applier writing changes to the store's files
+   * @throws IOException if the log cannot be read or a change cannot be applied
+   */
+  public void register(String store, ChangeApplier applier) throws IOException {
+    appliers.put(store, applier);
+    int[] replayed = {0};
+    readRecords((sequence, changes) -> {
+      for (EntityChange change : changes) {
+        if (change.store().equals(store)) {
+          applier.apply(change);
+          replayed[0]++;
+        }
+      }
+    });
+    if (replayed[0] > 0) {
+      logger.info("Replayed " + replayed[0] + " changes of store '" + store + "' from the write-ahead log");
+    }
+  }
+
+  /**
+   * Appends the changes of one mutation as a single record. The returned future completes with the sequence number of the record once it has been
+   * forced to disk and the changes have been applied to the stores.
+   *
+   * @param changes the changes of the mutation
+   * @return a future completing after the changes have become durable and visible
+   */
+  public synchronized CompletableFuture<Long> append(List<EntityChange> changes) {
+    PendingRecord record = new PendingRecord(changes, new CompletableFuture<>());
+    if (closed) {
+      record.result().completeExceptionally(new IOException("Write-ahead log is closed"));
+    } else if (applyFailure != null) {
+      record.result().completeExceptionally(new IOException("Write-ahead log stopped accepting changes after a logged change could not be applied",
+          applyFailure));
+    } else {
+      queue.add(record);
+    }
+    return record.result();
+  }
+
+  private void writeLoop() {
+    List<PendingRecord> batch = new ArrayList<>();
+    boolean endOfQueue = false;
+    while (!endOfQueue) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      queue.drainTo(batch);
+      // Appends are rejected once the end marker is queued, so it is always the last element
+      endOfQueue = batch.get(batch.size() - 1) == END_OF_QUEUE;
+      if (endOfQueue) {
+        batch.remove(batch.size() - 1);
+      }
+      if (!batch.isEmpty()) {
+        commit(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void commit(List<PendingRecord> batch) {
+    long firstSequence = nextSequence;
+    long startPosition = -1;
+    try {
+      startPosition = channel.position();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      for (PendingRecord record : batch) {
+        writeRecord(bytes, nextSequence++, record.changes());
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.SEVERE, "Error appending to the write-ahead log", e);
+      rollBack(firstSequence, startPosition);
+      batch.forEach(record -> record.result().completeExceptionally(e));
+      return;
+    }
+    long sequence = firstSequence;
+    for (PendingRecord record : batch) {
+      if (applyFailure == null) {
+        try {
+          applyDurable(record.changes());
+        } catch (IOException e) {
+          logger.log(Level.SEVERE, "Error applying logged changes, the write-ahead log stops accepting changes until it is replayed on restart", e);
+          applyFailure = e;
+        }
+      }
+      if (applyFailure != null) {
+        // Later records of the batch may depend on the failed one, so they are left to the replay as well
+        record.result().completeExceptionally(new IOException("Mutation " + sequence + " is logged but could not be applied; it will be applied "
+            + "when the write-ahead log is replayed on the next startup", applyFailure));
+      } else {
+        record.result().complete(sequence);
+      }
+      sequence++;
+    }
+    if (position() >= checkpointThreshold) {
+      checkpoint();
+    }
+  }
+
+  /**
+   * @return {@code false} once a logged change could not be applied to its store, after which the log rejects appends until the process restarts.
+   */
+  public boolean isHealthy() {
+    return applyFailure == null;
+  }
+
+  private void rollBack(long firstSequence, long startPosition) {
+    nextSequence = firstSequence;
+    if (startPosition < 0) {
+      return;
+    }
+    try {
+      // Drop whatever part of the batch made it into the file, as none of its mutations are reported as committed
+      channel.truncate(startPosition);
+      channel.position(startPosition);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Error restoring the write-ahead log after a failed append", e);
+    }
+  }
+
+  private void applyDurable(List<EntityChange> changes) throws IOException {
+    for (EntityChange change : changes) {
+      ChangeApplier applier = appliers.get(change.store());
+      if (applier == null) {
+        throw new IOException("No store registered under the name '" + change.store() + "'");
+      }
+      try {
+        applier.apply(change);
+      } catch (RuntimeException e) {
+        throw new IOException("Error applying logged change to store '" + change.store() + "'", e);
+      }
+    }
+  }
+
+  /**
+   * Flushes all stores and truncates the log. Only called by the writer thread or after it has terminated, so no appends are in flight. Skipped once
+   * a change could not be applied, as the log holds the only durable copy of that change.
+   */
+  private void checkpoint() {
+    if (applyFailure != null) {
+      return;
+    }
+    try {
+      for (ChangeApplier applier : appliers.values()) {
+        applier.flush();
+      }
+      channel.truncate(0);
+      channel.position(0);
+      channel.force(true);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Error checkpointing the write-ahead log", e);
+    }
+  }
+
+  private long position() {
+    try {
+      return channel.position();
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Error determining the size of the write-ahead log", e);
+      return 0;
+    }
+  }
+
+  /**
+   * Stops accepting appends, waits until all queued records have been committed and checkpoints the log.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      queue.add(END_OF_QUEUE);
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    checkpoint();
+    channel.close();
+  }
+
+  private static void writeRecord(ByteArrayOutputStream target, long sequence, List<EntityChange> changes) throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(payload);
+    out.writeLong(sequence);
+    out.writeInt(changes.size());
+    for (EntityChange change : changes) {
+      out.writeUTF(change.store());
+      out.writeByte(change.type().ordinal());
+      out.writeLong(change.id());
+      out.writeInt(change.data().length);
+      out.write(change.data());
+    }
+    byte[] bytes = payload.toByteArray();
+    CRC32C crc = new CRC32C();
+    crc.update(bytes);
+    DataOutputStream header = new DataOutputStream(target);
+    header.writeInt(bytes.length);
+    header.writeInt((int) crc.getValue());
+    target.write(bytes);
+  }
+
+  /**
+   * Reads all intact records from the start of the log using positional reads, which do not interfere with the append position.
+   *
+   * @return the position right after the last intact record
+   */
+  private long readRecords(RecordVisitor visitor) throws IOException {
+    long position = 0;
+    long size = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (position + HEADER_SIZE <= size) {
+      header.clear();
+      readFully(header, position);
+      int length = header.getInt(0);
+      int checksum = header.getInt(4);
+      if (length < 12 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size) {
+        break;
+      }
+      ByteBuffer payload = ByteBuffer.allocate(length);
+      readFully(payload, position + HEADER_SIZE);
+      CRC32C crc = new CRC32C();
+      crc.update(payload.array());
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+      long sequence = in.readLong();
+      int count = in.readInt();
+      List<EntityChange> changes = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String store = in.readUTF();
+        EntityChange.Type type = EntityChange.Type.values()[in.readByte()];
+        long id = in.readLong();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        changes.add(new EntityChange(store, type, id, data));
+      }
+      visitor.visit(sequence, changes);
+      position += HEADER_SIZE + length;
+    }
+    return position;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of write-ahead log");
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface RecordVisitor {
+
+    void visit(long sequence, List<EntityChange> changes) throws IOException;
+  }
+
+  private record PendingRecord(List<EntityChange> changes, CompletableFuture<Long> result) {
+
+  }
+}
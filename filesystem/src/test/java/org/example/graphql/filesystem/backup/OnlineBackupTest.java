@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.backup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.models.AbstractPersistentObject;
+import org.example.graphql.filesystem.models.FileSystemAuthor;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.utils.DirectoryManager;
+import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link OnlineBackup}: the content of the archive and its manifest, removing the staging directories afterwards, and taking backups that
+ * contain each commit spanning both stores completely or not at all while writers keep committing.
+ */
+class OnlineBackupTest {
+
+  private static final EntityFormat FORMAT = EntityFormat.SMILE;
+
+  @TempDir
+  Path dir;
+
+  private final EntityCodecFactory codecFactory = new EntityCodecFactory(FORMAT, new BufferPool(4, 1 << 20));
+  private final EntityCodecRegistry<FileSystemBook> bookCodecs = codecFactory.create(FileSystemBook.class);
+  private final EntityCodecRegistry<FileSystemAuthor> authorCodecs = codecFactory.create(FileSystemAuthor.class);
+  private final FileSystemUnitOfWork unitOfWork = new FileSystemUnitOfWork(null);
+  private FileSystemStorage<FileSystemBook> books;
+  private FileSystemStorage<FileSystemAuthor> authors;
+  private OnlineBackup backup;
+
+  @BeforeEach
+  void openStores() {
+    books = storage("books", bookCodecs);
+    authors = storage("authors", authorCodecs);
+    backup = new OnlineBackup(unitOfWork, List.of(books, authors));
+  }
+
+  @AfterEach
+  void closeStores() throws IOException {
+    backup.close();
+    books.close();
+    authors.close();
+  }
+
+  @Test
+  void whenBackupIsWritten_thenArchiveHoldsAllStoredFilesAndManifest() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      books.save(book("Book " + i));
+    }
+    authors.save(author("Jane"));
+    books.deleteById(3L);
+
+    Instant pointInTime = backup.writeArchive(new ByteArrayOutputStream());
+    assertThat(backup.getLastBackupTime()).isEqualTo(pointInTime.toString());
+    Map<String, byte[]> entries = unzip(backupBytes());
+
+    String manifest = new String(entries.remove(OnlineBackup.MANIFEST_NAME), StandardCharsets.UTF_8);
+    assertThat(manifest).contains("stores=books,authors", "books.files=9", "authors.files=1");
+    assertThat(entries.keySet()).filteredOn(name -> name.startsWith("books/")).hasSize(9).doesNotContain("books/3.smile");
+    assertThat(decode(bookCodecs, entries.get("books/1.smile")).getTitle()).isEqualTo("Book 0");
+    assertThat(decode(authorCodecs, entries.get("authors/1.smile")).getFirstName()).isEqualTo("Jane");
+    try (Stream<Path> paths = Files.walk(dir)) {
+      assertThat(paths.filter(path -> path.getFileName().toString().equals(".backup"))).isEmpty();
+    }
+  }
+
+  @Test
+  void whenWritersCommitDuringBackup_thenEachCommitIsContainedCompletelyOrNotAtAll() throws Exception {
+    for (int i = 0; i < 300; i++) {
+      books.save(book("Filler " + i));
+    }
+    FileSystemBook book = books.save(book("v0"));
+    FileSystemAuthor author = authors.save(author("v0"));
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicInteger commits = new AtomicInteger();
+    Thread writer = new Thread(() -> {
+      while (running.get()) {
+        String version = "v" + commits.incrementAndGet();
+        unitOfWork.execute(() -> {
+          book.setTitle(version);
+          books.save(book);
+          author.setFirstName(version);
+          return authors.save(author);
+        });
+      }
+    });
+    writer.start();
+    try {
+      for (int i = 0; i < 10; i++) {
+        Map<String, byte[]> entries = unzip(backupBytes());
+        String title = decode(bookCodecs, entries.get("books/" + book.getId() + ".smile")).getTitle();
+        String firstName = decode(authorCodecs, entries.get("authors/" + author.getId() + ".smile")).getFirstName();
+        assertThat(firstName).isEqualTo(title);
+        assertThat(entries.keySet()).filteredOn(name -> name.startsWith("books/")).hasSize(301);
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+    assertThat(commits.get()).isPositive();
+  }
+
+  private byte[] backupBytes() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    backup.writeArchive(out);
+    return out.toByteArray();
+  }
+
+  private <T extends AbstractPersistentObject> FileSystemStorage<T> storage(String name, EntityCodecRegistry<T> codecs) {
+    DirectoryManager dirManager = new DirectoryManager(dir.resolve(name).toString());
+    return new FileSystemStorage<>(name, codecs, dirManager, new IdGenerator(dirManager, codecs.getFileExtensions()), new AtomicFileWriter(false),
+        unitOfWork, null, List.of(), null, null);
+  }
+
+  private static Map<String, byte[]> unzip(byte[] archive) throws IOException {
+    Map<String, byte[]> entries = new HashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        entries.put(entry.getName(), zip.readAllBytes());
+      }
+    }
+    return entries;
+  }
+
+  private static <T extends AbstractPersistentObject> T decode(EntityCodecRegistry<T> codecs, byte[] data) throws IOException {
+    return codecs.decode(data, 0, data.length);
+  }
+
+  private static FileSystemBook book(String title) {
+    FileSystemBook book = new FileSystemBook();
+    book.setTitle(title);
+    book.setPublishedYear(2000);
+    return book;
+  }
+
+  private static FileSystemAuthor author(String firstName) {
+    FileSystemAuthor author = new FileSystemAuthor();
+    author.setFirstName(firstName);
+    author.setLastName("Austen");
+    return author;
+  }
+}
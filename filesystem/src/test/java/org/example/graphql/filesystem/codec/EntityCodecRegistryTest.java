@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.codec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.example.graphql.filesystem.codec.BufferPool.PooledBuffer;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.models.FileSystemAuthor;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the codec layer: round trips in both formats, detecting the format of a file from its leading bytes, and reusing pooled buffers.
+ */
+class EntityCodecRegistryTest {
+
+  @Test
+  void whenEncoded_thenDecodedEntityIsEqual() throws Exception {
+    for (EntityFormat format : EntityFormat.values()) {
+      EntityCodecRegistry<FileSystemBook> registry = new EntityCodecFactory(format, new BufferPool(4, 1 << 20)).create(FileSystemBook.class);
+      PooledBuffer buffer = registry.encode(book());
+      try {
+        FileSystemBook decoded = registry.decode(buffer);
+        assertThat(decoded.getId()).isEqualTo(7L);
+        assertThat(decoded.getTitle()).isEqualTo("Dune");
+        assertThat(decoded.getPublishedYear()).isEqualTo(1965);
+        assertThat(decoded.getAuthor()).isInstanceOf(FileSystemAuthor.class);
+        assertThat(decoded.getAuthor().getLastName()).isEqualTo("Herbert");
+      } finally {
+        buffer.release();
+      }
+    }
+  }
+
+  @Test
+  void whenSmileIsWritten_thenItStartsWithTheSmileHeaderAndJsonIsStillRead() throws Exception {
+    EntityCodecFactory smile = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20));
+    EntityCodecFactory json = new EntityCodecFactory(EntityFormat.JSON, new BufferPool(4, 1 << 20));
+    EntityCodecRegistry<FileSystemBook> smileRegistry = smile.create(FileSystemBook.class);
+    EntityCodecRegistry<FileSystemBook> jsonRegistry = json.create(FileSystemBook.class);
+    assertThat(smileRegistry.getFileExtensions()).containsExactly(".smile", ".json");
+    assertThat(jsonRegistry.getFileExtensions()).containsExactly(".json", ".smile");
+
+    byte[] smileBytes = encode(smileRegistry, book());
+    assertThat(Arrays.copyOf(smileBytes, 3)).isEqualTo(new byte[] {':', ')', '\n'});
+    byte[] jsonBytes = encode(jsonRegistry, book());
+    assertThat(jsonBytes.length).isGreaterThan(smileBytes.length);
+
+    assertThat(smileRegistry.codecFor(jsonBytes, 0, jsonBytes.length).getFileExtension()).isEqualTo(".json");
+    assertThat(jsonRegistry.codecFor(smileBytes, 0, smileBytes.length).getFileExtension()).isEqualTo(".smile");
+    assertThat(smileRegistry.decode(jsonBytes, 0, jsonBytes.length).getTitle()).isEqualTo("Dune");
+    assertThat(jsonRegistry.decode(smileBytes, 0, smileBytes.length).getTitle()).isEqualTo("Dune");
+  }
+
+  @Test
+  void whenDataIsNotAnEntity_thenDecodingFails() {
+    EntityCodecRegistry<FileSystemBook> registry = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20))
+        .create(FileSystemBook.class);
+    byte[] garbage = "not an entity".getBytes(StandardCharsets.UTF_8);
+    assertThatThrownBy(() -> registry.decode(garbage, 0, garbage.length)).isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> registry.decode(new byte[0], 0, 0)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void whenDecodedFromByteBuffer_thenItsPositionIsUnchanged() throws Exception {
+    EntityCodecRegistry<FileSystemBook> registry = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20))
+        .create(FileSystemBook.class);
+    byte[] encoded = encode(registry, book());
+    ByteBuffer data = ByteBuffer.allocate(encoded.length + 5);
+    data.position(5).put(encoded).position(5);
+    assertThat(registry.decode(data).getTitle()).isEqualTo("Dune");
+    assertThat(data.position()).isEqualTo(5);
+  }
+
+  @Test
+  void whenReleased_thenBuffersAreReusedUnlessTooLarge() throws Exception {
+    BufferPool pool = new BufferPool(1, 8 * 1024);
+    PooledBuffer small = pool.acquire();
+    small.write(new byte[100]);
+    small.release();
+    PooledBuffer reused = pool.acquire();
+    assertThat(reused).isSameAs(small);
+    assertThat(reused.size()).isZero();
+
+    reused.write(new byte[64 * 1024]);
+    reused.release();
+    assertThat(pool.acquire()).isNotSameAs(reused);
+  }
+
+  private static byte[] encode(EntityCodecRegistry<FileSystemBook> registry, FileSystemBook book) throws IOException {
+    PooledBuffer buffer = registry.encode(book);
+    try {
+      return buffer.toByteArray();
+    } finally {
+      buffer.release();
+    }
+  }
+
+  private static FileSystemBook book() {
+    FileSystemAuthor author = new FileSystemAuthor();
+    author.setId(3L);
+    author.setFirstName("Frank");
+    author.setLastName("Herbert");
+    FileSystemBook book = new FileSystemBook();
+    book.setId(7L);
+    book.setTitle("Dune");
+    book.setPublishedYear(1965);
+    book.setAuthor(author);
+    return book;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link IntColumn}: counting values in a histogram, selecting the first IDs ordered by value, growing the column file for larger IDs,
+ * rebuilding the column after an interrupted rebuild, and giving up the column for IDs out of its range instead of failing the change.
+ */
+class IntColumnTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenValuesAreStored_thenHistogramCountsThem() throws Exception {
+    try (IntColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, 2000), book(2, 1990), book(3, 2000), book(5, 2010)));
+      assertThat(column.histogram()).isEqualTo(Map.of(1990, 1L, 2000, 2L, 2010, 1L));
+      assertThat(column.histogram().keySet()).containsExactly(1990, 2000, 2010);
+      assertThat(column.count(year -> year >= 2000)).isEqualTo(3);
+
+      column.put(3, book(3, 1990));
+      column.remove(5);
+      assertThat(column.histogram()).isEqualTo(Map.of(1990, 2L, 2000, 1L));
+      assertThat(column.get(5)).isEqualTo(IntColumn.MISSING);
+    }
+  }
+
+  @Test
+  void whenValuesAreFarApart_thenHistogramStillCountsThem() throws Exception {
+    try (IntColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, -1_000_000), book(2, 1_000_000), book(3, 1_000_000)));
+      assertThat(column.histogram()).isEqualTo(Map.of(-1_000_000, 1L, 1_000_000, 2L));
+    }
+  }
+
+  @Test
+  void whenSortedWithLimit_thenFirstIdsAreOrderedByValueAndThenById() throws Exception {
+    try (IntColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, 2000), book(2, 1990), book(3, 2010), book(4, 2000), book(5, 1990), book(6, 2010)));
+      assertThat(column.sortedIds(false, 3)).containsExactly(2L, 5L, 1L);
+      assertThat(column.sortedIds(true, 3)).containsExactly(3L, 6L, 1L);
+      assertThat(column.sortedIds(false, 100)).containsExactly(2L, 5L, 1L, 4L, 3L, 6L);
+      assertThat(column.sortedIds(true, 0)).isEmpty();
+    }
+  }
+
+  @Test
+  void whenLargerIdIsStored_thenColumnGrows() throws Exception {
+    try (IntColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, 2000)));
+      int capacity = column.capacity();
+      column.put(capacity * 3L, book(capacity * 3L, 1999));
+      assertThat(column.capacity()).isGreaterThan(capacity * 3);
+      assertThat(column.get(capacity * 3L)).isEqualTo(1999);
+      assertThat(column.get(capacity * 3L - 1)).isEqualTo(IntColumn.MISSING);
+      assertThat(column.sortedIds(false, 1)).containsExactly(capacity * 3L);
+    }
+    try (IntColumn<FileSystemBook> column = open()) {
+      assertThat(column.isLoaded()).isTrue();
+      assertThat(column.histogram()).isEqualTo(Map.of(1999, 1L, 2000, 1L));
+    }
+  }
+
+  @Test
+  void whenRebuildWasInterrupted_thenColumnIsRebuiltOnReopen() throws Exception {
+    try (IntColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, 2000)));
+    }
+    // A rebuild clears the magic number first and only writes it once complete
+    try (FileChannel channel = FileChannel.open(dir.resolve("publishedYear.col"), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(Integer.BYTES), 0);
+    }
+    try (IntColumn<FileSystemBook> column = open()) {
+      assertThat(column.isLoaded()).isFalse();
+      assertThat(column.histogram()).isEmpty();
+      column.rebuild(List.of(book(1, 2000), book(2, 2001)));
+      assertThat(column.isLoaded()).isTrue();
+    }
+    Files.write(dir.resolve("publishedYear.col"), new byte[] {1, 2, 3});
+    try (IntColumn<FileSystemBook> column = open()) {
+      assertThat(column.isLoaded()).isFalse();
+    }
+  }
+
+  @Test
+  void whenIdIsOutOfRange_thenColumnIsNotUsedUntilRebuilt() throws Exception {
+    long outOfRange = Integer.MAX_VALUE / Integer.BYTES;
+    try (IntColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, 2000)));
+      column.put(outOfRange, book(outOfRange, 2001));
+      assertThat(column.isLoaded()).isFalse();
+      column.put(-1, book(-1, 2001));
+      assertThat(column.isLoaded()).isFalse();
+    }
+    try (IntColumn<FileSystemBook> column = open()) {
+      assertThat(column.isLoaded()).isFalse();
+      column.rebuild(List.of(book(1, 2000), book(outOfRange, 2001)));
+      assertThat(column.isLoaded()).isFalse();
+      column.rebuild(List.of(book(1, 2000)));
+      assertThat(column.isLoaded()).isTrue();
+    }
+  }
+
+  private IntColumn<FileSystemBook> open() throws IOException {
+    return new IntColumn<>("publishedYear", dir, FileSystemBook::getPublishedYear);
+  }
+
+  private static FileSystemBook book(long id, int publishedYear) {
+    FileSystemBook book = new FileSystemBook();
+    book.setId(id);
+    book.setPublishedYear(publishedYear);
+    return book;
+  }
+}
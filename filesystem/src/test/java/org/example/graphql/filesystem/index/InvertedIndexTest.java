@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.server.services.SearchTerms;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link InvertedIndex}: searches for several terms with a limit, reloading the delta-encoded index file and the journal, compacting the
+ * journal once it outgrows the index, and recovering from a torn journal entry.
+ */
+class InvertedIndexTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenSearched_thenIdsContainingAllTermsAreReturnedInOrder() throws Exception {
+    try (InvertedIndex<FileSystemBook> index = open()) {
+      index.put(1, book(1, "The Lord of the Rings"));
+      index.put(2, book(2, "The Hobbit"));
+      index.put(3, book(3, "The Rings of Saturn"));
+      index.put(4, book(4, "Lord of the Flies"));
+      assertThat(index.search(Set.of("the"), 10)).containsExactly(1L, 2L, 3L, 4L);
+      assertThat(index.search(Set.of("the"), 2)).containsExactly(1L, 2L);
+      assertThat(index.search(Set.of("lord", "the"), 10)).containsExactly(1L, 4L);
+      assertThat(index.search(Set.of("rings", "lord"), 10)).containsExactly(1L);
+      assertThat(index.search(Set.of("rings", "hobbit"), 10)).isEmpty();
+      assertThat(index.search(Set.of("dune"), 10)).isEmpty();
+      assertThat(index.search(Set.of(), 10)).isEmpty();
+
+      index.put(1, book(1, "The Fellowship of the Ring"));
+      assertThat(index.search(Set.of("rings"), 10)).containsExactly(3L);
+      index.remove(3);
+      assertThat(index.search(Set.of("rings"), 10)).isEmpty();
+      assertThat(index.matches(book(4, "Lord of the Flies"), Set.of("flies", "lord"))).isTrue();
+      assertThat(index.matches(book(4, "Lord of the Flies"), Set.of())).isFalse();
+    }
+  }
+
+  @Test
+  void whenReopened_thenIndexFileAndJournalAreLoaded() throws Exception {
+    List<FileSystemBook> books = new ArrayList<>();
+    for (long id = 1; id <= 300; id++) {
+      books.add(book(id * 1000, id % 2 == 0 ? "Even Book" : "Odd Book"));
+    }
+    try (InvertedIndex<FileSystemBook> index = open()) {
+      assertThat(index.isLoaded()).isFalse();
+      index.rebuild(books);
+      index.put(1, book(1, "Odd One Out"));
+      index.remove(2000);
+    }
+    try (InvertedIndex<FileSystemBook> index = open()) {
+      assertThat(index.isLoaded()).isTrue();
+      assertThat(index.search(Set.of("book"), 1000)).hasSize(299);
+      assertThat(index.search(Set.of("even"), 2)).containsExactly(4000L, 6000L);
+      assertThat(index.search(Set.of("odd"), 2)).containsExactly(1L, 1000L);
+    }
+  }
+
+  @Test
+  void whenJournalOutgrowsIndex_thenItIsCompactedIntoIndexFile() throws Exception {
+    Path journal = dir.resolve("search.journal");
+    try (InvertedIndex<FileSystemBook> index = open()) {
+      index.rebuild(List.of());
+      for (long id = 1; id <= 1024; id++) {
+        index.put(id, book(id, "Title " + id));
+      }
+      assertThat(Files.size(journal)).isPositive();
+      // Updates do not grow the index, so the next one makes the journal outgrow it
+      index.put(1, book(1, "Renamed"));
+      assertThat(Files.size(journal)).isZero();
+      index.put(2, book(2, "Renamed"));
+      assertThat(Files.size(journal)).isPositive();
+    }
+    try (InvertedIndex<FileSystemBook> index = open()) {
+      assertThat(index.search(Set.of("title"), 2000)).hasSize(1022);
+      assertThat(index.search(Set.of("renamed"), 10)).containsExactly(1L, 2L);
+    }
+  }
+
+  @Test
+  void whenJournalEndsWithTornEntry_thenItIsTruncated() throws Exception {
+    Path journal = dir.resolve("search.journal");
+    try (InvertedIndex<FileSystemBook> index = open()) {
+      index.rebuild(List.of());
+      index.put(1, book(1, "Dune"));
+    }
+    long valid = Files.size(journal);
+    Files.write(journal, new byte[] {1, 0, 0, 0, 0, 0, 0, 0, 2, 1}, StandardOpenOption.APPEND);
+    try (InvertedIndex<FileSystemBook> index = open()) {
+      assertThat(index.search(Set.of("dune"), 10)).containsExactly(1L);
+      assertThat(Files.size(journal)).isEqualTo(valid);
+    }
+  }
+
+  private InvertedIndex<FileSystemBook> open() throws IOException {
+    return new InvertedIndex<>("search", dir, SearchTerms::of, new AtomicFileWriter(false));
+  }
+
+  private static FileSystemBook book(long id, String title) {
+    FileSystemBook book = new FileSystemBook();
+    book.setId(id);
+    book.setTitle(title);
+    return book;
+  }
+}
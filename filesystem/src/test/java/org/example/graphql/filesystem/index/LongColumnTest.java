@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.example.graphql.filesystem.models.FileSystemAuthor;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link LongColumn}: counting and sorting the author IDs of books, keeping books without an author out of the column, and giving up the
+ * column for IDs beyond its dense range instead of failing the change.
+ */
+class LongColumnTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenValuesAreStored_thenTheyAreCountedAndSorted() throws Exception {
+    try (LongColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, 7L), book(2, 3L), book(3, 7L), book(4, null), book(5, 3L), book(6, 9L)));
+      assertThat(column.histogram()).isEqualTo(Map.of(3L, 2L, 7L, 2L, 9L, 1L));
+      assertThat(column.count(authorId -> authorId == 7)).isEqualTo(2);
+      assertThat(column.get(4)).isEqualTo(LongColumn.MISSING);
+      assertThat(column.sortedIds(false, 3)).containsExactly(2L, 5L, 1L);
+      assertThat(column.sortedIds(true, 2)).containsExactly(6L, 1L);
+      assertThat(column.filter(authorId -> authorId < 8)).containsExactly(1L, 2L, 3L, 5L);
+
+      column.put(6, book(6, null));
+      assertThat(column.histogram()).isEqualTo(Map.of(3L, 2L, 7L, 2L));
+    }
+    try (LongColumn<FileSystemBook> column = open()) {
+      assertThat(column.isLoaded()).isTrue();
+      assertThat(column.sortedIds(true, 10)).containsExactly(1L, 3L, 2L, 5L);
+    }
+  }
+
+  @Test
+  void whenIdIsBeyondDenseRange_thenColumnIsNotUsedUntilRebuilt() throws Exception {
+    long beyond = Integer.MAX_VALUE / Long.BYTES;
+    try (LongColumn<FileSystemBook> column = open()) {
+      column.rebuild(List.of(book(1, 7L)));
+      column.put(beyond, book(beyond, 7L));
+      assertThat(column.isLoaded()).isFalse();
+      column.remove(beyond);
+    }
+    try (LongColumn<FileSystemBook> column = open()) {
+      assertThat(column.isLoaded()).isFalse();
+    }
+  }
+
+  private LongColumn<FileSystemBook> open() throws IOException {
+    return new LongColumn<>("authorId", dir, book -> book.getAuthor() != null ? book.getAuthor().getId() : null);
+  }
+
+  private static FileSystemBook book(long id, Long authorId) {
+    FileSystemBook book = new FileSystemBook();
+    book.setId(id);
+    if (authorId != null) {
+      FileSystemAuthor author = new FileSystemAuthor();
+      author.setId(authorId);
+      book.setAuthor(author);
+    }
+    return book;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link SecondaryIndex}: lookups and range scans, replaying the journal on top of the index file, compacting the journal once it
+ * outgrows the index, and recovering from torn journal entries and unreadable index files.
+ */
+class SecondaryIndexTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenPutAndRemoved_thenLookupsFollowTheKeys() throws Exception {
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      index.put(1, book(1, 1990));
+      index.put(2, book(2, 2000));
+      index.put(3, book(3, 2000));
+      index.put(4, book(4, 2010));
+      assertThat(index.get(2000)).containsExactly(2L, 3L);
+      assertThat(index.getRange(1995, 2010)).containsExactly(2L, 3L, 4L);
+      assertThat(index.getRange(2010, 1995)).isEmpty();
+
+      index.put(2, book(2, 2010));
+      assertThat(index.get(2000)).containsExactly(3L);
+      assertThat(index.get(2010)).containsExactly(2L, 4L);
+
+      index.remove(3);
+      assertThat(index.get(2000)).isEmpty();
+      assertThat(index.getRange(1900, 2100)).containsExactly(1L, 2L, 4L);
+    }
+  }
+
+  @Test
+  void whenReopened_thenJournalIsReplayedOnTopOfIndexFile() throws Exception {
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      assertThat(index.isLoaded()).isFalse();
+      index.rebuild(List.of(book(1, 1990), book(2, 2000)));
+      index.put(3, book(3, 2000));
+      index.put(1, book(1, 2000));
+      index.remove(2);
+    }
+    assertThat(Files.size(dir.resolve("year.journal"))).isPositive();
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      assertThat(index.isLoaded()).isTrue();
+      assertThat(index.get(1990)).isEmpty();
+      assertThat(index.get(2000)).containsExactly(1L, 3L);
+    }
+  }
+
+  @Test
+  void whenJournalOutgrowsIndex_thenItIsCompactedIntoIndexFile() throws Exception {
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      index.rebuild(List.of());
+      long indexSize = Files.size(dir.resolve("year.idx"));
+      for (long id = 1; id <= 1024; id++) {
+        index.put(id, book(id, 1900 + (int) (id % 50)));
+      }
+      assertThat(Files.size(dir.resolve("year.idx"))).isEqualTo(indexSize);
+      assertThat(Files.size(dir.resolve("year.journal"))).isEqualTo(1024 * 13L);
+
+      // Updates do not grow the index, so the next one makes the journal outgrow it
+      index.put(1, book(1, 1900));
+      assertThat(Files.size(dir.resolve("year.journal"))).isZero();
+      assertThat(Files.size(dir.resolve("year.idx"))).isGreaterThan(indexSize);
+
+      index.remove(2);
+      assertThat(Files.size(dir.resolve("year.journal"))).isEqualTo(9);
+    }
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      assertThat(index.getRange(1900, 1949)).hasSize(1023);
+      assertThat(index.get(1900)).startsWith(1L).doesNotContain(2L).hasSize(21);
+    }
+  }
+
+  @Test
+  void whenJournalEndsWithTornEntry_thenItIsTruncated() throws Exception {
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      index.rebuild(List.of());
+      index.put(1, book(1, 2000));
+      index.put(2, book(2, 2001));
+    }
+    Path journal = dir.resolve("year.journal");
+    Files.write(journal, new byte[] {1, 0, 0, 0}, StandardOpenOption.APPEND);
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      assertThat(index.get(2000)).containsExactly(1L);
+      assertThat(index.get(2001)).containsExactly(2L);
+      assertThat(Files.size(journal)).isEqualTo(2 * 13L);
+      index.put(3, book(3, 2002));
+    }
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      assertThat(index.getRange(2000, 2002)).containsExactly(1L, 2L, 3L);
+    }
+  }
+
+  @Test
+  void whenIndexFileIsUnreadable_thenIndexNeedsRebuild() throws Exception {
+    Files.write(dir.resolve("year.idx"), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      assertThat(index.isLoaded()).isFalse();
+      assertThat(index.getRange(Integer.MIN_VALUE, Integer.MAX_VALUE)).isEmpty();
+      index.rebuild(List.of(book(1, 2000)));
+      assertThat(index.isLoaded()).isTrue();
+    }
+    try (SecondaryIndex<FileSystemBook, Integer> index = open()) {
+      assertThat(index.isLoaded()).isTrue();
+      assertThat(index.get(2000)).containsExactly(1L);
+    }
+  }
+
+  private SecondaryIndex<FileSystemBook, Integer> open() throws IOException {
+    return new SecondaryIndex<>("year", dir, IndexKeyType.INT, FileSystemBook::getPublishedYear, new AtomicFileWriter(false));
+  }
+
+  private static FileSystemBook book(long id, int publishedYear) {
+    FileSystemBook book = new FileSystemBook();
+    book.setId(id);
+    book.setTitle("Book " + id);
+    book.setPublishedYear(publishedYear);
+    return book;
+  }
+}
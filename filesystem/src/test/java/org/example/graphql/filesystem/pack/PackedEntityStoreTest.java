@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.pack;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.example.graphql.filesystem.pack.PackedEntityStore.Compression;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.utils.DirectoryManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link PackedEntityStore}: reads of single entities and whole containers, with and without compression, updates and deletes, and the
+ * limit on the container size.
+ */
+class PackedEntityStoreTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenPut_thenEntitiesAreReadFromTheirContainers() throws Exception {
+    for (Compression compression : Compression.values()) {
+      Path workingDir = Files.createDirectory(dir.resolve(compression.name()));
+      PackedEntityStore store = store(workingDir, compression);
+      Map<Long, byte[]> entities = new TreeMap<>();
+      for (long id = 1; id <= 100; id++) {
+        entities.put(id, entity(id, 400));
+      }
+      store.putAll(entities, false);
+      assertThat(Files.exists(workingDir.resolve("0.pack"))).isTrue();
+      assertThat(Files.exists(workingDir.resolve("6.pack"))).isTrue();
+      for (long id = 1; id <= 100; id++) {
+        assertThat(store.read(id)).isEqualTo(entities.get(id));
+      }
+      assertThat(store.read(101)).isNull();
+      assertThat(store.readContainer(1)).containsOnlyKeys(16L, 17L, 18L, 19L, 20L, 21L, 22L, 23L, 24L, 25L, 26L, 27L, 28L, 29L, 30L, 31L);
+    }
+  }
+
+  @Test
+  void whenCompressed_thenContainersAreSmaller() throws Exception {
+    PackedEntityStore plain = store(Files.createDirectory(dir.resolve("plain")), Compression.NONE);
+    PackedEntityStore deflated = store(Files.createDirectory(dir.resolve("deflated")), Compression.DEFLATE);
+    for (long id = 0; id < 16; id++) {
+      plain.put(id, entity(id, 2000), false);
+      deflated.put(id, entity(id, 2000), false);
+    }
+    assertThat(Files.size(dir.resolve("deflated/0.pack"))).isLessThan(Files.size(dir.resolve("plain/0.pack")) / 2);
+    assertThat(deflated.read(9)).isEqualTo(entity(9, 2000));
+  }
+
+  @Test
+  void whenUpdatedAndDeleted_thenContainerReflectsChanges() throws Exception {
+    PackedEntityStore store = store(dir, Compression.DEFLATE);
+    store.put(1, entity(1, 10), false);
+    store.put(2, entity(2, 10), false);
+    store.put(1, entity(1, 50_000), false);
+    assertThat(store.read(1)).isEqualTo(entity(1, 50_000));
+    store.delete(1, false);
+    assertThat(store.read(1)).isNull();
+    assertThat(store.read(2)).isEqualTo(entity(2, 10));
+    store.delete(2, false);
+    assertThat(Files.exists(dir.resolve("0.pack"))).isFalse();
+  }
+
+  @Test
+  void whenIterated_thenAllEntitiesAndIdsAreVisited() throws Exception {
+    PackedEntityStore store = store(dir, Compression.DEFLATE);
+    for (long id = 0; id < 40; id++) {
+      store.put(id, entity(id, 100), false);
+    }
+    Map<Long, byte[]> visited = new ConcurrentSkipListMap<>();
+    store.forEach(visited::put);
+    assertThat(visited).hasSize(40);
+    assertThat(visited.get(33L)).isEqualTo(entity(33, 100));
+    Map<Long, Boolean> ids = new TreeMap<>();
+    store.forEachId(id -> ids.put(id, true));
+    assertThat(ids).hasSize(40);
+  }
+
+  @Test
+  void whenContainerWouldBeTooLarge_thenStoreIsRejected() {
+    DirectoryManager dirManager = new DirectoryManager(dir.toString());
+    AtomicFileWriter fileWriter = new AtomicFileWriter(false);
+    assertThatThrownBy(() -> new PackedEntityStore(dirManager, fileWriter, PackedEntityStore.MAX_ENTITIES_PER_CONTAINER + 1, Compression.NONE))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new PackedEntityStore(dirManager, fileWriter, 0, Compression.NONE)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static PackedEntityStore store(Path workingDir, Compression compression) {
+    return new PackedEntityStore(new DirectoryManager(workingDir.toString()), new AtomicFileWriter(false), 16, compression);
+  }
+
+  /**
+   * @return A repetitive, and therefore compressible, entity of the given length that differs per ID.
+   */
+  private static byte[] entity(long id, int length) {
+    byte[] pattern = ("{\"id\":" + id + ",\"title\":\"entity\"}").getBytes(StandardCharsets.UTF_8);
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = pattern[i % pattern.length];
+    }
+    return data;
+  }
+}
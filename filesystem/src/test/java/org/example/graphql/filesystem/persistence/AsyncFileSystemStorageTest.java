@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.utils.AsyncFileReader;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.utils.DirectoryManager;
+import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link AsyncFileSystemStorage}: reading entities from their files and the cache concurrently while keeping the order of the requested
+ * IDs.
+ */
+class AsyncFileSystemStorageTest {
+
+  private static final EntityCodecRegistry<FileSystemBook> CODECS = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20))
+      .create(FileSystemBook.class);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenEntitiesAreReadByIds_thenTheyKeepTheOrderOfTheIds() throws Exception {
+    FileSystemStorage<FileSystemBook> writer = storage();
+    for (int i = 1; i <= 20; i++) {
+      // Larger files take longer to read, so reads complete out of order
+      writer.save(book("Book " + i + " " + "x".repeat((21 - i) * 10_000)));
+    }
+    writer.close();
+    FileSystemStorage<FileSystemBook> storage = storage();
+    // Cached entities complete immediately, before the file reads of the IDs listed first
+    storage.getById(20L);
+    storage.getById(3L);
+    List<Long> ids = List.of(17L, 1L, 20L, 999L, 8L, 3L, 12L, 2L, 5L);
+
+    try (AsyncFileReader reader = new AsyncFileReader(4, 3)) {
+      List<FileSystemBook> books = new AsyncFileSystemStorage<>(storage, reader).getByIds(ids).get(10, TimeUnit.SECONDS);
+
+      assertThat(books).extracting(FileSystemBook::getId).containsExactly(17L, 1L, 20L, 8L, 3L, 12L, 2L, 5L);
+      assertThat(books).allMatch(book -> book.getTitle().startsWith("Book " + book.getId() + " "));
+    }
+    storage.close();
+  }
+
+  private FileSystemStorage<FileSystemBook> storage() {
+    DirectoryManager dirManager = new DirectoryManager(dir.toString());
+    return new FileSystemStorage<>("books", CODECS, dirManager, new IdGenerator(dirManager, CODECS.getFileExtensions()),
+        new AtomicFileWriter(false), new FileSystemUnitOfWork(null), null, List.of(), new EncodedEntityCache(100), null);
+  }
+
+  private static FileSystemBook book(String title) {
+    FileSystemBook book = new FileSystemBook();
+    book.setTitle(title);
+    book.setPublishedYear(2000);
+    return book;
+  }
+}
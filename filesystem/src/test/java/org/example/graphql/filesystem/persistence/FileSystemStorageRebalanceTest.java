@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.utils.DirectoryManager;
+import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for striping entity files across volumes: the placement of IDs on the volume ring, and moving the files of a store to their volumes after a
+ * volume was added while the store keeps serving them.
+ */
+class FileSystemStorageRebalanceTest {
+
+  private static final EntityCodecRegistry<FileSystemBook> CODECS = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20))
+      .create(FileSystemBook.class);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenVolumeIsAdded_thenOnlyIdsMovingToItChangeVolume() {
+    DirectoryManager three = new DirectoryManager(volumes("a", "b", "c"));
+    DirectoryManager four = new DirectoryManager(volumes("a", "b", "c", "d"));
+    Map<Path, Integer> counts = new HashMap<>();
+    for (long id = 1; id <= 3000; id++) {
+      Path before = three.volumeOf(id);
+      Path after = four.volumeOf(id);
+      counts.merge(before, 1, Integer::sum);
+      if (!before.equals(after)) {
+        assertThat(after).isEqualTo(dir.resolve("d"));
+      }
+    }
+    assertThat(counts).hasSize(3);
+    assertThat(counts.values()).allMatch(count -> count > 700 && count < 1300);
+  }
+
+  @Test
+  void whenStoreIsReopenedWithAnotherVolume_thenFilesAreMovedWhileStillReadable() throws Exception {
+    FileSystemStorage<FileSystemBook> single = storage(new DirectoryManager(volumes("a")));
+    for (int i = 0; i < 200; i++) {
+      single.save(book("Book " + i));
+    }
+    single.close();
+    assertThat(entityFiles(dir.resolve("a"))).isEqualTo(200);
+
+    DirectoryManager striped = new DirectoryManager(volumes("a", "b"));
+    assertThat(striped.listMisplacedEntityFiles(CODECS.getFileExtensions())).isNotEmpty();
+    FileSystemStorage<FileSystemBook> storage = storage(striped);
+    for (long id = 1; id <= 200; id++) {
+      assertThat(storage.getById(id).getTitle()).isEqualTo("Book " + (id - 1));
+    }
+    // The constructor started moving the files in the background
+    storage.rebalance();
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (striped.isRebalancing() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(striped.isRebalancing()).isFalse();
+    assertThat(striped.listMisplacedEntityFiles(CODECS.getFileExtensions())).isEmpty();
+    assertThat(entityFiles(dir.resolve("a")) + entityFiles(dir.resolve("b"))).isEqualTo(200);
+    assertThat(entityFiles(dir.resolve("b"))).isPositive();
+    for (long id = 1; id <= 200; id++) {
+      assertThat(Files.exists(striped.resolveEntityFile(id, ".smile"))).isTrue();
+      assertThat(storage.getById(id).getTitle()).isEqualTo("Book " + (id - 1));
+    }
+    assertThat(storage.getAll()).hasSize(200);
+    storage.close();
+  }
+
+  private List<String> volumes(String... names) {
+    return Stream.of(names).map(name -> dir.resolve(name).toString()).toList();
+  }
+
+  private static FileSystemStorage<FileSystemBook> storage(DirectoryManager dirManager) {
+    return new FileSystemStorage<>("books", CODECS, dirManager, new IdGenerator(dirManager, CODECS.getFileExtensions()),
+        new AtomicFileWriter(false), new FileSystemUnitOfWork(null), null, List.of(), null, null);
+  }
+
+  private static long entityFiles(Path volume) throws Exception {
+    try (Stream<Path> files = Files.list(volume)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(".smile")).count();
+    }
+  }
+
+  private static FileSystemBook book(String title) {
+    FileSystemBook book = new FileSystemBook();
+    book.setTitle(title);
+    book.setPublishedYear(2000);
+    return book;
+  }
+}
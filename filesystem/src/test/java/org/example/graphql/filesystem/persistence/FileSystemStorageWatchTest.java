@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.utils.DirectoryManager;
+import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link FileSystemStorage#startWatching()}: entity files created, modified and deleted by another storage in the same working directory
+ * become visible to a running, caching storage.
+ */
+class FileSystemStorageWatchTest {
+
+  private static final EntityCodecRegistry<FileSystemBook> CODECS = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20))
+      .create(FileSystemBook.class);
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenFilesChangeExternally_thenWatchingStorageReflectsTheChanges() throws Exception {
+    FileSystemStorage<FileSystemBook> watching = storage();
+    FileSystemBook first = watching.save(book("First"));
+    // Cached now, so a stale cache entry would hide the modification
+    assertThat(watching.getById(first.getId()).getTitle()).isEqualTo("First");
+    watching.startWatching();
+    FileSystemStorage<FileSystemBook> other = storage();
+
+    FileSystemBook created = other.save(book("Created"));
+    await(() -> watching.getById(created.getId()) != null);
+    assertThat(watching.getById(created.getId()).getTitle()).isEqualTo("Created");
+
+    FileSystemBook modified = book("Modified");
+    modified.setId(first.getId());
+    other.save(modified);
+    await(() -> "Modified".equals(watching.getById(first.getId()).getTitle()));
+
+    other.deleteById(created.getId());
+    await(() -> watching.getById(created.getId()) == null);
+    assertThat(watching.getAll()).extracting(FileSystemBook::getTitle).containsExactly("Modified");
+
+    other.close();
+    watching.close();
+  }
+
+  @Test
+  void whenStorageIsNotWatching_thenExternalChangesAreNotPickedUp() throws Exception {
+    FileSystemStorage<FileSystemBook> unaware = storage();
+    FileSystemBook first = unaware.save(book("First"));
+    assertThat(unaware.getById(first.getId()).getTitle()).isEqualTo("First");
+    FileSystemStorage<FileSystemBook> other = storage();
+
+    FileSystemBook created = other.save(book("Created"));
+    Thread.sleep(500);
+
+    assertThat(unaware.getById(created.getId())).isNull();
+    other.close();
+    unaware.close();
+  }
+
+  private FileSystemStorage<FileSystemBook> storage() {
+    DirectoryManager dirManager = new DirectoryManager(dir.toString());
+    return new FileSystemStorage<>("books", CODECS, dirManager, new IdGenerator(dirManager, CODECS.getFileExtensions()),
+        new AtomicFileWriter(false), new FileSystemUnitOfWork(null), null, List.of(), new EncodedEntityCache(100), null);
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!condition.getAsBoolean()) {
+      assertThat(System.currentTimeMillis()).as("change picked up within %d ms", TIMEOUT_MILLIS).isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private static FileSystemBook book(String title) {
+    FileSystemBook book = new FileSystemBook();
+    book.setTitle(title);
+    book.setPublishedYear(2000);
+    return book;
+  }
+}
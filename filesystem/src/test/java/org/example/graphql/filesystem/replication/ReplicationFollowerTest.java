@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.replication;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.LongStream;
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.utils.AtomicFileWriter;
+import org.example.graphql.filesystem.utils.DirectoryManager;
+import org.example.graphql.filesystem.utils.IdGenerator;
+import org.example.graphql.filesystem.wal.ChangeApplier;
+import org.example.graphql.filesystem.wal.EntityChange;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link ReplicationFollower}: applying the changes of a primary in order across segments, resuming from the saved position after a
+ * restart, and keeping the stores of a follower in step with those of the primary while rejecting local writes.
+ */
+class ReplicationFollowerTest {
+
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenPrimaryAppendsAcrossSegments_thenFollowerAppliesAllChangesInOrder() throws Exception {
+    RecordingApplier applier = new RecordingApplier();
+    FileSystemUnitOfWork unitOfWork = new FileSystemUnitOfWork(null, null, true);
+    unitOfWork.register("books", applier);
+    try (ReplicationLog log = new ReplicationLog(dir.resolve("log"), 256, Duration.ofHours(1))) {
+      for (long id = 1; id <= 20; id++) {
+        log.append(EntityChange.put("books", id, ("Book " + id).getBytes(StandardCharsets.UTF_8)));
+      }
+      log.append(EntityChange.put("unknown", 1, new byte[] {1}));
+      log.append(EntityChange.delete("books", 3));
+      assertThat(ReplicationLog.listSegments(dir.resolve("log"))).hasSizeGreaterThan(1);
+
+      try (ReplicationFollower follower = follower(unitOfWork)) {
+        follower.start();
+        awaitApplied(follower, log);
+        assertThat(follower.awaitLagAtMost(Duration.ofSeconds(5), Duration.ofSeconds(5))).isTrue();
+        assertThat(follower.getLagMillis()).isLessThanOrEqualTo(5000);
+      }
+    }
+    assertThat(applier.changes).hasSize(21);
+    assertThat(applier.changes.subList(0, 20)).extracting(EntityChange::id).containsExactlyElementsOf(ids(1, 20));
+    assertThat(applier.changes.get(20).type()).isEqualTo(EntityChange.Type.DELETE);
+    assertThat(applier.flushes).isPositive();
+  }
+
+  @Test
+  void whenRestarted_thenFollowerResumesAfterTheSavedPosition() throws Exception {
+    RecordingApplier applier = new RecordingApplier();
+    FileSystemUnitOfWork unitOfWork = new FileSystemUnitOfWork(null, null, true);
+    unitOfWork.register("books", applier);
+    try (ReplicationLog log = new ReplicationLog(dir.resolve("log"), 1 << 20, Duration.ofHours(1))) {
+      for (long id = 1; id <= 5; id++) {
+        log.append(EntityChange.put("books", id, new byte[] {(byte) id}));
+      }
+      try (ReplicationFollower follower = follower(unitOfWork)) {
+        follower.start();
+        awaitApplied(follower, log);
+      }
+      for (long id = 6; id <= 8; id++) {
+        log.append(EntityChange.put("books", id, new byte[] {(byte) id}));
+      }
+      try (ReplicationFollower follower = follower(unitOfWork)) {
+        assertThat(follower.getAppliedSequence()).isEqualTo(4);
+        follower.start();
+        awaitApplied(follower, log);
+      }
+    }
+    assertThat(applier.changes).extracting(EntityChange::id).containsExactlyElementsOf(ids(1, 8));
+  }
+
+  @Test
+  void whenPrimaryStoreChanges_thenFollowerStoreServesThemAndRejectsLocalWrites() throws Exception {
+    EntityCodecRegistry<FileSystemBook> codecs = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20)).create(FileSystemBook.class);
+    ReplicationLog log = new ReplicationLog(dir.resolve("log"), 1 << 20, Duration.ofHours(1));
+    FileSystemUnitOfWork primaryUnitOfWork = new FileSystemUnitOfWork(null, log, false);
+    FileSystemUnitOfWork followerUnitOfWork = new FileSystemUnitOfWork(null, null, true);
+    FileSystemStorage<FileSystemBook> primary = storage(codecs, dir.resolve("primary"), primaryUnitOfWork);
+    FileSystemStorage<FileSystemBook> replica = storage(codecs, dir.resolve("follower"), followerUnitOfWork);
+    try (ReplicationFollower follower = follower(followerUnitOfWork)) {
+      replica.setReplicationFollower(follower);
+      follower.start();
+      FileSystemBook dune = primary.save(book("Dune"));
+      FileSystemBook emma = primary.save(book("Emma"));
+      awaitApplied(follower, log);
+      assertThat(replica.getById(dune.getId()).getTitle()).isEqualTo("Dune");
+
+      emma.setTitle("Persuasion");
+      primary.save(emma);
+      primary.deleteById(dune.getId());
+      awaitApplied(follower, log);
+      assertThat(replica.getById(emma.getId(), Duration.ofSeconds(1)).getTitle()).isEqualTo("Persuasion");
+      assertThat(replica.getById(dune.getId())).isNull();
+      assertThat(replica.getAll()).extracting(FileSystemBook::getTitle).containsExactly("Persuasion");
+
+      assertThat(replica.save(book("Ulysses"))).isNull();
+      assertThat(replica.getAll()).hasSize(1);
+    } finally {
+      primary.close();
+      replica.close();
+      primaryUnitOfWork.close();
+    }
+  }
+
+  private ReplicationFollower follower(FileSystemUnitOfWork unitOfWork) throws Exception {
+    return new ReplicationFollower(dir.resolve("log"), dir.resolve("replication.position"), unitOfWork, POLL_INTERVAL);
+  }
+
+  private static void awaitApplied(ReplicationFollower follower, ReplicationLog log) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (follower.getAppliedSequence() < log.getNextSequence() - 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(follower.getAppliedSequence()).isEqualTo(log.getNextSequence() - 1);
+  }
+
+  private static FileSystemStorage<FileSystemBook> storage(EntityCodecRegistry<FileSystemBook> codecs, Path dir, FileSystemUnitOfWork unitOfWork) {
+    DirectoryManager dirManager = new DirectoryManager(dir.toString());
+    return new FileSystemStorage<>("books", codecs, dirManager, new IdGenerator(dirManager, codecs.getFileExtensions()), new AtomicFileWriter(false),
+        unitOfWork, null, List.of(), null, null);
+  }
+
+  private static List<Long> ids(long from, long to) {
+    return LongStream.rangeClosed(from, to).boxed().toList();
+  }
+
+  private static FileSystemBook book(String title) {
+    FileSystemBook book = new FileSystemBook();
+    book.setTitle(title);
+    book.setPublishedYear(2000);
+    return book;
+  }
+
+  /**
+   * Records the changes applied by the follower in place of a store.
+   */
+  private static class RecordingApplier implements ChangeApplier {
+
+    private final List<EntityChange> changes = new CopyOnWriteArrayList<>();
+    private volatile int flushes;
+
+    @Override
+    public void apply(EntityChange change) {
+      changes.add(change);
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.snapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link SnapshotStore}: reads from the mapped snapshot, the delta of changed entities across restarts, changes made while a snapshot is
+ * taken and snapshots spanning several mapped chunks.
+ */
+class SnapshotStoreTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenRebuilt_thenUnchangedEntitiesAreReadFromSnapshot() throws Exception {
+    Map<Long, String> entities = entities(1, 50);
+    try (SnapshotStore store = new SnapshotStore(dir)) {
+      assertThat(store.hasSnapshot()).isFalse();
+      store.rebuild(ids(entities), id -> bytes(entities.get(id)));
+      assertThat(store.hasSnapshot()).isTrue();
+      assertThat(text(store.get(7))).isEqualTo("entity-7");
+      assertThat(store.get(51)).isNull();
+      store.markChanged(7);
+      assertThat(store.get(7)).isNull();
+      Map<Long, String> scanned = new TreeMap<>();
+      assertThat(store.scan((id, data) -> scanned.put(id, text(data)))).containsExactly(7L);
+      assertThat(scanned).hasSize(49).doesNotContainKey(7L).containsEntry(50L, "entity-50");
+    }
+  }
+
+  @Test
+  void whenReopened_thenSnapshotAndDeltaAreRestored() throws Exception {
+    Map<Long, String> entities = entities(1, 10);
+    try (SnapshotStore store = new SnapshotStore(dir)) {
+      store.rebuild(ids(entities), id -> bytes(entities.get(id)));
+      store.markChanged(3);
+      store.markChanged(4);
+      store.force();
+    }
+    try (SnapshotStore store = new SnapshotStore(dir)) {
+      assertThat(text(store.get(2))).isEqualTo("entity-2");
+      assertThat(store.get(3)).isNull();
+      assertThat(store.get(4)).isNull();
+      assertThat(store.scan((id, data) -> { })).containsExactlyInAnyOrder(3L, 4L);
+    }
+  }
+
+  @Test
+  void whenRebuilt_thenDeltaOnlyHoldsChangesMadeDuringRebuild() throws Exception {
+    Map<Long, String> entities = entities(1, 10);
+    try (SnapshotStore store = new SnapshotStore(dir)) {
+      store.rebuild(ids(entities), id -> bytes(entities.get(id)));
+      store.markChanged(1);
+      store.rebuild(ids(entities), id -> {
+        if (id == 5) {
+          store.markChanged(9);
+        }
+        return bytes(entities.get(id));
+      });
+      assertThat(text(store.get(1))).isEqualTo("entity-1");
+      assertThat(store.get(9)).isNull();
+      assertThat(store.scan((id, data) -> { })).containsExactly(9L);
+    }
+  }
+
+  @Test
+  void whenEntityIsMissingDuringRebuild_thenItIsLeftOut() throws Exception {
+    Map<Long, String> entities = entities(1, 5);
+    try (SnapshotStore store = new SnapshotStore(dir)) {
+      store.rebuild(ids(entities), id -> id == 2 ? null : bytes(entities.get(id)));
+      assertThat(store.get(2)).isNull();
+      assertThat(text(store.get(3))).isEqualTo("entity-3");
+    }
+  }
+
+  @Test
+  void whenSnapshotSpansSeveralChunks_thenEveryEntityIsReadable() throws Exception {
+    Map<Long, String> entities = entities(1, 500);
+    try (SnapshotStore store = new SnapshotStore(dir, 64, 32)) {
+      store.rebuild(ids(entities), id -> bytes(entities.get(id)));
+      for (Map.Entry<Long, String> entity : entities.entrySet()) {
+        assertThat(text(store.get(entity.getKey()))).isEqualTo(entity.getValue());
+      }
+      Map<Long, String> scanned = new TreeMap<>();
+      store.scan((id, data) -> scanned.put(id, text(data)));
+      assertThat(scanned).isEqualTo(entities);
+    }
+    try (SnapshotStore store = new SnapshotStore(dir, 128, 32)) {
+      assertThat(text(store.get(499))).isEqualTo("entity-499");
+    }
+  }
+
+  @Test
+  void whenEntityExceedsMaximumSize_thenPreviousSnapshotStaysInUse() throws Exception {
+    Map<Long, String> entities = entities(1, 5);
+    try (SnapshotStore store = new SnapshotStore(dir, 64, 32)) {
+      store.rebuild(ids(entities), id -> bytes(entities.get(id)));
+      assertThatThrownBy(() -> store.rebuild(ids(entities), id -> id == 3 ? new byte[33] : bytes(entities.get(id))))
+          .isInstanceOf(IOException.class)
+          .hasMessageContaining("exceeds the maximum snapshot entity size");
+      assertThat(text(store.get(3))).isEqualTo("entity-3");
+    }
+  }
+
+  private static Map<Long, String> entities(long from, long to) {
+    Map<Long, String> entities = new TreeMap<>();
+    for (long id = from; id <= to; id++) {
+      entities.put(id, "entity-" + id);
+    }
+    return entities;
+  }
+
+  private static long[] ids(Map<Long, String> entities) {
+    return entities.keySet().stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String text(ByteBuffer data) {
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
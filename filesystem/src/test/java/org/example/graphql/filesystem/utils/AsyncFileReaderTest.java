@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link AsyncFileReader}: reading whole files, failing reads of missing files, and bounding the number of reads in flight.
+ */
+class AsyncFileReaderTest {
+
+  private static final Path OPEN_FILES = Path.of("/proc/self/fd");
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenFilesAreRead_thenFuturesCompleteWithTheirContent() throws Exception {
+    try (AsyncFileReader reader = new AsyncFileReader(2, 4)) {
+      Path small = Files.writeString(dir.resolve("1.smile"), "small");
+      Path large = Files.write(dir.resolve("2.smile"), new byte[3 << 20]);
+      Path empty = Files.write(dir.resolve("3.smile"), new byte[0]);
+
+      assertThat(reader.read(small).get(10, TimeUnit.SECONDS)).asString().isEqualTo("small");
+      assertThat(reader.read(large).get(10, TimeUnit.SECONDS)).hasSize(3 << 20);
+      assertThat(reader.read(empty).get(10, TimeUnit.SECONDS)).isEmpty();
+    }
+  }
+
+  @Test
+  void whenFileIsMissing_thenFutureFailsAndTheSlotIsReleased() throws Exception {
+    try (AsyncFileReader reader = new AsyncFileReader(1, 1)) {
+      Path existing = Files.writeString(dir.resolve("1.smile"), "content");
+
+      assertThatThrownBy(() -> reader.read(dir.resolve("2.smile")).get(10, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(NoSuchFileException.class);
+      assertThat(reader.read(existing).get(10, TimeUnit.SECONDS)).asString().isEqualTo("content");
+    }
+  }
+
+  @Test
+  void whenMoreReadsThanTheLimitAreRequested_thenOnlyTheLimitIsInFlight() throws Exception {
+    assumeTrue(Files.isDirectory(OPEN_FILES), "open files are only listed on Linux");
+    int ioThreads = 2;
+    int maxInFlight = 3;
+    try (AsyncFileReader reader = new AsyncFileReader(ioThreads, maxInFlight)) {
+      // Reads run on the I/O threads, so blocking all of them keeps the started reads in flight
+      CountDownLatch release = new CountDownLatch(1);
+      for (int i = 0; i < ioThreads; i++) {
+        reader.getExecutor().execute(() -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+      }
+      List<CompletableFuture<byte[]>> reads = new ArrayList<>();
+      for (int i = 1; i <= 10; i++) {
+        reads.add(reader.read(Files.writeString(dir.resolve(i + ".smile"), "Book " + i)));
+      }
+
+      // Each read in flight holds an open channel on its file
+      assertThat(openFilesIn(dir)).isEqualTo(maxInFlight);
+      assertThat(reads).noneMatch(CompletableFuture::isDone);
+
+      release.countDown();
+      for (int i = 1; i <= 10; i++) {
+        assertThat(reads.get(i - 1).get(10, TimeUnit.SECONDS)).asString().isEqualTo("Book " + i);
+      }
+      assertThat(openFilesIn(dir)).isZero();
+    }
+  }
+
+  private static long openFilesIn(Path dir) throws IOException {
+    try (Stream<Path> descriptors = Files.list(OPEN_FILES)) {
+      return descriptors.filter(descriptor -> {
+        try {
+          return Files.readSymbolicLink(descriptor).startsWith(dir);
+        } catch (IOException e) {
+          // Closed in the meantime, or the directory stream itself
+          return false;
+        }
+      }).count();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link AtomicFileWriter}: replacing a file through a temporary file and a rename, and removing the temporary files of interrupted
+ * writes, including on startup of a {@link FileSystemStorage}.
+ */
+class AtomicFileWriterTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenFileIsWritten_thenTargetIsReplacedAndNoTempFileIsLeft() throws IOException {
+    AtomicFileWriter writer = new AtomicFileWriter(false);
+    Path target = dir.resolve("1.smile");
+
+    writer.write(target, bytes("first"), 5);
+    writer.write(target, bytes("second-and-longer"), 6);
+
+    assertThat(Files.readString(target)).isEqualTo("second");
+    assertThat(tempFiles()).isEmpty();
+  }
+
+  @Test
+  void whenFileIsWrittenWithFsync_thenTargetIsReplacedAndNoTempFileIsLeft() throws IOException {
+    AtomicFileWriter writer = new AtomicFileWriter(true);
+    Path target = dir.resolve("1.smile");
+
+    writer.write(target, bytes("forced"), 6);
+
+    assertThat(Files.readString(target)).isEqualTo("forced");
+    assertThat(tempFiles()).isEmpty();
+  }
+
+  @Test
+  void whenRenameFails_thenTempFileIsDeletedAndTargetIsUntouched() throws IOException {
+    AtomicFileWriter writer = new AtomicFileWriter(false);
+    // A non-empty directory cannot be replaced by a file
+    Path target = dir.resolve("1.smile");
+    Files.createDirectory(target);
+    Files.writeString(target.resolve("content"), "old");
+
+    assertThatThrownBy(() -> writer.write(target, bytes("new"), 3)).isInstanceOf(IOException.class);
+
+    assertThat(Files.readString(target.resolve("content"))).isEqualTo("old");
+    assertThat(tempFiles()).isEmpty();
+  }
+
+  @Test
+  void whenOrphanedTempFilesAreRemoved_thenOnlyTempFilesOlderThanMinAgeAreDeleted() throws IOException {
+    AtomicFileWriter writer = new AtomicFileWriter(false);
+    Path old = Files.writeString(dir.resolve(".1.smile.1a2b.tmp"), "partial");
+    Files.setLastModifiedTime(old, FileTime.from(Instant.now().minus(Duration.ofMinutes(10))));
+    Path young = Files.writeString(dir.resolve(".2.smile.3c4d.tmp"), "in progress");
+    Path entity = Files.writeString(dir.resolve("3.smile"), "entity");
+
+    writer.removeOrphanedTempFiles(dir, Duration.ofMinutes(1));
+
+    assertThat(old).doesNotExist();
+    assertThat(young).exists();
+    assertThat(entity).exists();
+
+    writer.removeOrphanedTempFiles(dir);
+
+    assertThat(young).doesNotExist();
+    assertThat(entity).exists();
+  }
+
+  @Test
+  void whenStorageStarts_thenOrphanedTempFilesAreRemoved() throws IOException {
+    Path orphan = Files.writeString(dir.resolve(".1.smile.5e6f.tmp"), "partial");
+    DirectoryManager dirManager = new DirectoryManager(dir.toString());
+    EntityCodecRegistry<FileSystemBook> codecs = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20))
+        .create(FileSystemBook.class);
+
+    FileSystemStorage<FileSystemBook> storage = new FileSystemStorage<>("books", codecs, dirManager,
+        new IdGenerator(dirManager, codecs.getFileExtensions()), new AtomicFileWriter(false), new FileSystemUnitOfWork(null), null, List.of(),
+        null, null);
+
+    assertThat(orphan).doesNotExist();
+    assertThat(storage.getAll()).isEmpty();
+    storage.close();
+  }
+
+  private List<Path> tempFiles() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(".tmp")).toList();
+    }
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.example.graphql.filesystem.codec.BufferPool;
+import org.example.graphql.filesystem.codec.EntityCodecFactory;
+import org.example.graphql.filesystem.codec.EntityCodecFactory.EntityFormat;
+import org.example.graphql.filesystem.codec.EntityCodecRegistry;
+import org.example.graphql.filesystem.models.FileSystemBook;
+import org.example.graphql.filesystem.persistence.FileSystemStorage;
+import org.example.graphql.filesystem.wal.FileSystemUnitOfWork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link IdBitmap}: adding and removing IDs across segments, answering {@link FileSystemStorage#getById} misses without reading a file,
+ * and rebuilding the bitmap from the directory after an unclean shutdown.
+ */
+class IdBitmapTest {
+
+  private static final EntityCodecRegistry<FileSystemBook> CODECS = new EntityCodecFactory(EntityFormat.SMILE, new BufferPool(4, 1 << 20))
+      .create(FileSystemBook.class);
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenIdsAreAddedAndRemoved_thenOnlyRemainingIdsAreContained() {
+    IdBitmap bitmap = new IdBitmap();
+    long[] ids = {0, 1, 63, 64, 65_535, 65_536, 1L << 40};
+    for (long id : ids) {
+      bitmap.add(id);
+    }
+    bitmap.remove(64);
+    bitmap.remove(1L << 40);
+    bitmap.remove(12_345_678);
+
+    assertThat(bitmap.contains(0)).isTrue();
+    assertThat(bitmap.contains(63)).isTrue();
+    assertThat(bitmap.contains(64)).isFalse();
+    assertThat(bitmap.contains(65_536)).isTrue();
+    assertThat(bitmap.contains(65_537)).isFalse();
+    assertThat(bitmap.contains(1L << 40)).isFalse();
+    List<Long> contained = new ArrayList<>();
+    bitmap.forEach(contained::add);
+    assertThat(contained).containsExactlyInAnyOrder(0L, 1L, 63L, 65_535L, 65_536L);
+  }
+
+  @Test
+  void whenIdIsMissingFromBitmap_thenGetByIdReturnsNullWithoutReadingTheFile() throws IOException {
+    DirectoryManager dirManager = new DirectoryManager(dir.toString());
+    FileSystemStorage<FileSystemBook> storage = storage(dirManager);
+    storage.save(book("Present"));
+    // Written behind the back of the storage, so only a file read would find it
+    Files.copy(dirManager.resolveEntityFile(1L, ".smile"), dirManager.resolveEntityFile(7L, ".smile"));
+    List<LogRecord> records = new ArrayList<>();
+    Logger logger = Logger.getLogger(FileSystemStorage.class.getName());
+    Handler handler = new RecordingHandler(records);
+    logger.addHandler(handler);
+    try {
+      assertThat(storage.getById(7L)).isNull();
+      assertThat(storage.getById(1_000_000L)).isNull();
+    } finally {
+      logger.removeHandler(handler);
+    }
+
+    assertThat(records).isEmpty();
+    assertThat(storage.getById(1L).getTitle()).isEqualTo("Present");
+    storage.close();
+  }
+
+  @Test
+  void whenStorageIsReopenedAfterUncleanShutdown_thenBitmapMatchesTheDirectory() throws IOException {
+    DirectoryManager dirManager = new DirectoryManager(dir.toString());
+    FileSystemStorage<FileSystemBook> crashed = storage(dirManager);
+    for (int i = 1; i <= 3; i++) {
+      crashed.save(book("Book " + i));
+    }
+    // The storage is never closed; the directory changes before the next start
+    Files.delete(dirManager.resolveEntityFile(2L, ".smile"));
+    Files.copy(dirManager.resolveEntityFile(3L, ".smile"), dirManager.resolveEntityFile(7L, ".smile"), StandardCopyOption.REPLACE_EXISTING);
+
+    FileSystemStorage<FileSystemBook> storage = storage(new DirectoryManager(dir.toString()));
+
+    assertThat(storage.getById(1L).getTitle()).isEqualTo("Book 1");
+    assertThat(storage.getById(2L)).isNull();
+    assertThat(storage.getById(7L).getTitle()).isEqualTo("Book 3");
+    assertThat(storage.getAll()).hasSize(3);
+    storage.close();
+  }
+
+  private static FileSystemStorage<FileSystemBook> storage(DirectoryManager dirManager) {
+    return new FileSystemStorage<>("books", CODECS, dirManager, new IdGenerator(dirManager, CODECS.getFileExtensions()),
+        new AtomicFileWriter(false), new FileSystemUnitOfWork(null), null, List.of(), null, null);
+  }
+
+  private static FileSystemBook book(String title) {
+    FileSystemBook book = new FileSystemBook();
+    book.setTitle(title);
+    book.setPublishedYear(2000);
+    return book;
+  }
+
+  private static final class RecordingHandler extends Handler {
+
+    private final List<LogRecord> records;
+
+    RecordingHandler(List<LogRecord> records) {
+      this.records = records;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+      records.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link IdRangeLease}: leasing consecutive ranges, continuing from the lease file, keeping concurrent leases of the same file disjoint,
+ * and skipping IDs assigned outside of a lease.
+ */
+class IdRangeLeaseTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenLeased_thenRangesFollowEachOtherFromInitialId() {
+    AtomicInteger initialCalls = new AtomicInteger();
+    IdRangeLease lease = new IdRangeLease(dir.resolve("ids.lease"), 100, () -> {
+      initialCalls.incrementAndGet();
+      return 42;
+    });
+    assertThat(lease.lease()).isEqualTo(42);
+    assertThat(lease.lease()).isEqualTo(142);
+    assertThat(lease.lease()).isEqualTo(242);
+    assertThat(initialCalls).hasValue(1);
+
+    IdRangeLease reopened = new IdRangeLease(dir.resolve("ids.lease"), 10, () -> 0);
+    assertThat(reopened.lease()).isEqualTo(342);
+    assertThat(lease.lease()).isEqualTo(352);
+  }
+
+  @Test
+  void whenLeasedConcurrently_thenRangesAreDisjoint() throws Exception {
+    Path leaseFile = dir.resolve("ids.lease");
+    List<IdRangeLease> leases = List.of(new IdRangeLease(leaseFile, 10, () -> 1), new IdRangeLease(leaseFile, 10, () -> 1));
+    Set<Long> starts = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        IdRangeLease lease = leases.get(thread % 2);
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 50; i++) {
+            starts.add(lease.lease());
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(starts).hasSize(400);
+    assertThat(starts).allMatch(start -> (start - 1) % 10 == 0 && start <= 3991);
+  }
+
+  @Test
+  void whenIdWasAssignedOutsideLease_thenLaterRangesStartAfterIt() {
+    IdRangeLease lease = new IdRangeLease(dir.resolve("ids.lease"), 100, () -> 1);
+    assertThat(lease.lease()).isEqualTo(1);
+    lease.ensureLeased(50);
+    assertThat(lease.lease()).isEqualTo(101);
+    lease.ensureLeased(500);
+    assertThat(lease.lease()).isEqualTo(501);
+
+    IdRangeLease other = new IdRangeLease(dir.resolve("ids.lease"), 100, () -> 1);
+    other.ensureLeased(10);
+    assertThat(other.lease()).isEqualTo(601);
+  }
+}
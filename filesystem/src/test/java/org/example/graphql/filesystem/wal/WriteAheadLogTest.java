@@ -0,0 +1,220 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.filesystem.wal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link WriteAheadLog}: group commit, replay after a crash, torn records at the end of the log and changes that cannot be applied.
+ */
+class WriteAheadLogTest {
+
+  private static final long NO_CHECKPOINT = Long.MAX_VALUE;
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void whenAppend_thenChangesAreAppliedInOrder() throws Exception {
+    MapApplier applier = new MapApplier();
+    try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), NO_CHECKPOINT)) {
+      log.register("books", applier);
+      List<CompletableFuture<Long>> results = new ArrayList<>();
+      for (long id = 1; id <= 100; id++) {
+        results.add(log.append(List.of(put(id, "v" + id))));
+      }
+      results.add(log.append(List.of(EntityChange.delete("books", 7))));
+      long previous = 0;
+      for (CompletableFuture<Long> result : results) {
+        long sequence = result.join();
+        assertThat(sequence).isGreaterThan(previous);
+        previous = sequence;
+      }
+      assertThat(applier.values).hasSize(99).containsEntry(1L, "v1").doesNotContainKey(7L);
+    }
+  }
+
+  @Test
+  void whenReopenedAfterCrash_thenLoggedChangesAreReplayed() throws Exception {
+    Path crashed = dir.resolve("crashed");
+    try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), NO_CHECKPOINT)) {
+      log.register("books", new MapApplier());
+      log.append(List.of(put(1, "a"), put(2, "b"))).join();
+      log.append(List.of(EntityChange.delete("books", 1), put(3, "c"))).join();
+      // Copying the log while it is open leaves it as a crash would, before the checkpoint on close
+      copyLog(dir.resolve("wal"), crashed);
+    }
+    MapApplier replayed = new MapApplier();
+    try (WriteAheadLog log = new WriteAheadLog(crashed, NO_CHECKPOINT)) {
+      log.register("books", replayed);
+      assertThat(replayed.values).containsOnlyKeys(2L, 3L);
+      // Sequences continue after the replayed records
+      assertThat(log.append(List.of(put(4, "d"))).join()).isEqualTo(3L);
+    }
+  }
+
+  @Test
+  void whenLastRecordIsTorn_thenItIsDiscarded() throws Exception {
+    Path crashed = dir.resolve("crashed");
+    try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), NO_CHECKPOINT)) {
+      log.register("books", new MapApplier());
+      log.append(List.of(put(1, "a"))).join();
+      log.append(List.of(put(2, "b"))).join();
+      copyLog(dir.resolve("wal"), crashed);
+    }
+    Path file = crashed.resolve("wal.log");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+    long tornSize = Files.size(file);
+    MapApplier replayed = new MapApplier();
+    try (WriteAheadLog log = new WriteAheadLog(crashed, NO_CHECKPOINT)) {
+      assertThat(Files.size(file)).isLessThan(tornSize);
+      log.register("books", replayed);
+      assertThat(replayed.values).containsOnlyKeys(1L);
+      log.append(List.of(put(5, "e"))).join();
+    }
+  }
+
+  @Test
+  void whenRecordIsCorrupted_thenReplayStopsBeforeIt() throws Exception {
+    Path crashed = dir.resolve("crashed");
+    try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), NO_CHECKPOINT)) {
+      log.register("books", new MapApplier());
+      log.append(List.of(put(1, "a"))).join();
+      log.append(List.of(put(2, "b"))).join();
+      copyLog(dir.resolve("wal"), crashed);
+    }
+    Path file = crashed.resolve("wal.log");
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length - 1] ^= 0x7f;
+    Files.write(file, bytes);
+    MapApplier replayed = new MapApplier();
+    try (WriteAheadLog log = new WriteAheadLog(crashed, NO_CHECKPOINT)) {
+      log.register("books", replayed);
+      assertThat(replayed.values).containsOnlyKeys(1L);
+    }
+  }
+
+  @Test
+  void whenCheckpointThresholdIsReached_thenStoresAreFlushedAndLogIsTruncated() throws Exception {
+    MapApplier applier = new MapApplier();
+    try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), 1)) {
+      log.register("books", applier);
+      log.append(List.of(put(1, "a"))).join();
+      // The writer checkpoints after completing a batch, so it has done so for the first once the second completes
+      log.append(List.of(put(2, "b"))).join();
+      assertThat(applier.flushes).isPositive();
+    }
+    assertThat(Files.size(dir.resolve("wal").resolve("wal.log"))).isZero();
+  }
+
+  @Test
+  void whenChangeCannotBeApplied_thenMutationFailsAndLogKeepsIt() throws Exception {
+    MapApplier failing = new MapApplier();
+    failing.failOn = 2L;
+    try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), 1)) {
+      log.register("books", failing);
+      log.append(List.of(put(1, "a"))).join();
+      assertThatThrownBy(() -> log.append(List.of(put(2, "b"))).join())
+          .isInstanceOf(CompletionException.class)
+          .hasCauseInstanceOf(IOException.class);
+      assertThat(log.isHealthy()).isFalse();
+      assertThatThrownBy(() -> log.append(List.of(put(3, "c"))).join())
+          .hasMessageContaining("stopped accepting changes");
+    }
+    // Neither the checkpoint threshold nor closing truncated the record that failed
+    MapApplier replayed = new MapApplier();
+    try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), NO_CHECKPOINT)) {
+      log.register("books", replayed);
+      assertThat(replayed.values).containsEntry(2L, "b").doesNotContainKey(3L);
+      assertThat(log.isHealthy()).isTrue();
+    }
+  }
+
+  @Test
+  void whenLogIsInUse_thenSecondOpenFails() throws Exception {
+    WriteAheadLog log = new WriteAheadLog(dir.resolve("wal"), NO_CHECKPOINT);
+    try {
+      assertThatThrownBy(() -> new WriteAheadLog(dir.resolve("wal"), NO_CHECKPOINT))
+          .isInstanceOf(IOException.class)
+          .hasMessageContaining("already in use");
+    } finally {
+      log.close();
+    }
+  }
+
+  private static EntityChange put(long id, String value) {
+    return EntityChange.put("books", id, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void copyLog(Path from, Path to) throws IOException {
+    Files.createDirectories(to);
+    Files.copy(from.resolve("wal.log"), to.resolve("wal.log"));
+  }
+
+  /**
+   * Applies changes to a map, optionally failing on one ID.
+   */
+  private static class MapApplier implements ChangeApplier {
+
+    private final Map<Long, String> values = new ConcurrentHashMap<>();
+    private volatile Long failOn;
+    private volatile int flushes;
+
+    @Override
+    public void apply(EntityChange change) throws IOException {
+      if (failOn != null && failOn == change.id()) {
+        throw new IOException("Disk full");
+      }
+      if (change.type() == EntityChange.Type.PUT) {
+        values.put(change.id(), new String(change.data(), StandardCharsets.UTF_8));
+      } else {
+        values.remove(change.id());
+      }
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+  }
+}
@@ -0,0 +1,424 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.conf;
+
+import io.lettuce.core.ClientOptions;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisChangeFeed;
+import org.example.graphql.redis.persistence.RedisChangeListener;
+import org.example.graphql.redis.persistence.RedisChangeStream;
+import org.example.graphql.redis.persistence.RedisEntityCodec;
+import org.example.graphql.redis.persistence.RedisEntityCodec.StorageMode;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.redis.persistence.RedisIdAllocator;
+import org.example.graphql.redis.persistence.RedisIndexConfiguration;
+import org.example.graphql.redis.persistence.RedisMutationScripts;
+import org.example.graphql.redis.persistence.RedisMutationTransactions;
+import org.example.graphql.redis.persistence.RedisNearCache;
+import org.example.graphql.redis.persistence.RedisPartitions;
+import org.example.graphql.redis.persistence.RedisReplicaRouting;
+import org.example.graphql.redis.persistence.RedisSortedIdSetMigration;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration.LettuceClientConfigurationBuilder;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration.LettuceSslClientConfigurationBuilder;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Spring configuration class for the Redis access that bypasses the repositories.
+ * <p>
+ * Bulk reads and other Redis-specific paths work on the raw bytes of keys and values, as stored by
+ * {@link org.springframework.data.redis.core.convert.MappingRedisConverter}, through the {@code rawRedisTemplate}. Its results, pipelined ones
+ * included, are passed through without any deserialization.
+ * </p>
+ * <p>
+ * The repositories are enabled here rather than by auto-configuration, so the set indexes of {@link RedisIndexConfiguration} are registered with
+ * the mapping context.
+ * </p>
+ * <p>
+ * Entities are stored as hashes by default. With {@code redis.storage.mode=compact}, each entity is stored as a single Smile-encoded value under
+ * {@code b:<id>} for books and {@code a:<id>} for authors instead. The modes do not read each other's data, so switching requires reloading it.
+ * In hash mode, creating and deleting books and deleting authors run as the Lua scripts of {@link RedisMutationScripts}, in compact mode as the
+ * transactions of {@link RedisMutationTransactions}. On the first startup, the {@link RedisSortedIdSetMigration} moves the published book IDs that
+ * authors saved by earlier versions still store inside themselves into their sorted sets.
+ * </p>
+ * <p>
+ * With {@code redis.near-cache.max-entries} set to a positive number, entities looked up by ID are kept in a {@link RedisNearCache} for at most
+ * {@code redis.near-cache.ttl}. The cache subscribes to the keyspace notifications of the entity keys, which Redis only publishes if its
+ * {@code notify-keyspace-events} setting includes them. Unless {@code redis.near-cache.configure-notifications} is {@code false}, the missing flags
+ * are added on startup; where {@code CONFIG} is not available, e.g. on managed instances, they have to be set on the server instead.
+ * </p>
+ * <p>
+ * To run against Redis Cluster, configure {@code spring.data.redis.cluster.nodes} and set {@code redis.cluster.partitions} to a positive number,
+ * e.g. {@code 1024}, so the keys carry the hash tags of the {@link RedisPartitions}. Keyspace notifications are local to each node of a cluster, so
+ * the near cache is not subscribed to them there and only expires its entries, unless the change feed is enabled.
+ * </p>
+ * <p>
+ * With {@code redis.changes.enabled=true}, every write records its changes in the {@link RedisChangeStream}, and a {@link RedisChangeFeed} passes
+ * the changes of all instances to the {@link RedisChangeListener} beans, polling every {@code redis.changes.poll-interval}. The feed reads through
+ * the consumer group {@code redis.changes.group}, which has to be unique per instance and should be stable across restarts for changes pending at
+ * shutdown to be delivered after a restart; it defaults to the host name and process ID. In a cluster, the near cache is one of the listeners.
+ * </p>
+ * <p>
+ * With {@code redis.replicas.nodes} set to the {@code host:port} addresses of replicas of the standalone primary, the {@link RedisReplicaRouting}
+ * sends lookups by ID and scans to the replicas that lag at most {@code redis.replicas.max-staleness} behind the primary, measured by a heartbeat
+ * every {@code redis.replicas.heartbeat-interval}, which has to be well below the staleness bound. Writes, the reads of the mutations and reads of
+ * entities this instance wrote more recently than the replicas go to the primary. The replicas are connected to with the credentials, database and
+ * client settings of the primary. In a cluster, the replicas are not used.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.08
+ * @since 19-10-2026
+ */
+@Configuration
+@EnableRedisRepositories(basePackages = "org.example.graphql.redis.persistence", indexConfiguration = RedisIndexConfiguration.class)
+public class RedisConfig {
+
+  private static final Logger logger = Logger.getLogger(RedisConfig.class.getName());
+
+  /**
+   * Keyspace events ({@code K}) for generic commands ({@code g}), strings ({@code $}), hashes ({@code h}), sorted sets ({@code z}), expired
+   * ({@code x}) and evicted ({@code e}) keys.
+   */
+  private static final String NOTIFY_KEYSPACE_EVENTS = "Kg$hzxe";
+
+  private static final Map<Class<?>, String> COMPACT_PREFIXES = Map.of(RedisBook.class, "b", RedisAuthor.class, "a");
+
+  @Value("${redis.storage.mode:hash}")
+  private StorageMode storageMode;
+
+  @Value("${redis.near-cache.max-entries:0}")
+  private int nearCacheMaxEntries;
+
+  @Value("${redis.near-cache.ttl:60s}")
+  private Duration nearCacheTtl;
+
+  @Value("${redis.near-cache.configure-notifications:true}")
+  private boolean configureNotifications;
+
+  @Value("${redis.changes.group:}")
+  private String changesGroup;
+
+  @Value("${redis.changes.poll-interval:100ms}")
+  private Duration changesPollInterval;
+
+  @Value("${redis.changes.batch-size:100}")
+  private int changesBatchSize;
+
+  @Value("${redis.replicas.nodes:}")
+  private List<String> replicaNodes;
+
+  @Value("${redis.replicas.max-staleness:1s}")
+  private Duration replicaMaxStaleness;
+
+  @Value("${redis.replicas.heartbeat-interval:100ms}")
+  private Duration replicaHeartbeatInterval;
+
+  /**
+   * @return A {@link RedisTemplate} that reads and writes keys, values, hash fields and hash values as plain byte arrays.
+   */
+  @Bean
+  public RedisTemplate<byte[], byte[]> rawRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    return rawTemplate(redisConnectionFactory);
+  }
+
+  /**
+   * Connects to the replicas in {@code redis.replicas.nodes} and creates the {@link RedisReplicaRouting} between them and the primary.
+   *
+   * @return The {@link RedisReplicaRouting}, which starts along with the application context, or {@code null} if no replicas are configured or the
+   *     primary is a cluster.
+   */
+  @Bean
+  public RedisReplicaRouting redisReplicaRouting(@Qualifier("rawRedisTemplate") RedisTemplate<byte[], byte[]> rawRedisTemplate,
+      RedisConnectionFactory redisConnectionFactory) {
+    List<String> nodes = replicaNodes.stream().map(String::trim).filter(node -> !node.isEmpty()).toList();
+    if (nodes.isEmpty()) {
+      return null;
+    }
+    if (!(redisConnectionFactory instanceof LettuceConnectionFactory primary) || primary.isClusterAware()) {
+      logger.info("Replicas are only read from with a standalone primary, ignoring redis.replicas.nodes");
+      return null;
+    }
+    RedisStandaloneConfiguration primaryConfiguration = primary.getStandaloneConfiguration();
+    LettuceClientConfiguration clientConfiguration = replicaClientConfiguration(primary.getClientConfiguration());
+    Map<String, RedisTemplate<byte[], byte[]>> replicas = new LinkedHashMap<>();
+    for (String node : nodes) {
+      int separator = node.lastIndexOf(':');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Replica " + node + " in redis.replicas.nodes is not of the form host:port");
+      }
+      RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(node.substring(0, separator),
+          Integer.parseInt(node.substring(separator + 1)));
+      configuration.setDatabase(primaryConfiguration.getDatabase());
+      configuration.setUsername(primaryConfiguration.getUsername());
+      configuration.setPassword(primaryConfiguration.getPassword());
+      LettuceConnectionFactory factory = new LettuceConnectionFactory(configuration, clientConfiguration);
+      factory.afterPropertiesSet();
+      factory.start();
+      RedisTemplate<byte[], byte[]> template = rawTemplate(factory);
+      template.afterPropertiesSet();
+      replicas.put(node, template);
+    }
+    return new RedisReplicaRouting(rawRedisTemplate, replicas, replicaMaxStaleness, replicaHeartbeatInterval,
+        "replicas:heartbeat:" + instanceName());
+  }
+
+  /**
+   * @return The {@link RedisEntityCodec} deciding how entities are laid out in Redis.
+   */
+  @Bean
+  public RedisEntityCodec redisEntityCodec(RedisPartitions redisPartitions) {
+    return new RedisEntityCodec(storageMode, COMPACT_PREFIXES, redisPartitions);
+  }
+
+  /**
+   * @return The {@link RedisSortedIdSetMigration} moving the published book IDs that authors saved by earlier versions still store inside
+   *     themselves into their sorted sets, which runs on startup.
+   */
+  @Bean
+  public RedisSortedIdSetMigration redisSortedIdSetMigration(@Qualifier("rawRedisTemplate") RedisTemplate<byte[], byte[]> rawRedisTemplate,
+      RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec,
+      RedisEntityReader redisEntityReader) {
+    return new RedisSortedIdSetMigration(rawRedisTemplate, redisConverter, redisEntityCodec, redisEntityReader, COMPACT_PREFIXES.keySet());
+  }
+
+  /**
+   * @return The {@link BookAuthorMutations} applying the book and author mutations of the resolvers: the {@link RedisMutationScripts} in hash mode,
+   *     and the {@link RedisMutationTransactions} in compact mode, where the scripts cannot address the fields of an entity.
+   */
+  @Bean
+  public BookAuthorMutations redisBookAuthorMutations(@Qualifier("rawRedisTemplate") RedisTemplate<byte[], byte[]> rawRedisTemplate,
+      RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec,
+      RedisEntityReader redisEntityReader,
+      RedisEntityWriter redisEntityWriter,
+      RedisIdAllocator redisIdAllocator,
+      RedisPartitions redisPartitions,
+      RedisChangeStream redisChangeStream,
+      ObjectProvider<RedisNearCache> redisNearCache,
+      ObjectProvider<RedisReplicaRouting> redisReplicaRouting) {
+    if (storageMode == StorageMode.COMPACT) {
+      return new RedisMutationTransactions(redisConverter, redisEntityCodec, redisEntityReader, redisEntityWriter, redisNearCache.getIfAvailable(),
+          redisReplicaRouting.getIfAvailable());
+    }
+    return new RedisMutationScripts(rawRedisTemplate, redisConverter, redisEntityWriter, redisIdAllocator, redisPartitions, redisChangeStream,
+        redisNearCache.getIfAvailable(), redisReplicaRouting.getIfAvailable());
+  }
+
+  /**
+   * @return The {@link RedisNearCache} for entities read by ID, or {@code null} if it is disabled.
+   */
+  @Bean
+  public RedisNearCache redisNearCache() {
+    return nearCacheMaxEntries > 0 ? new RedisNearCache(nearCacheMaxEntries, nearCacheTtl) : null;
+  }
+
+  /**
+   * @return A listener container passing the keyspace notifications of entity keys to the {@link RedisNearCache}, or {@code null} if it is
+   *     disabled.
+   */
+  @Bean
+  public RedisMessageListenerContainer redisNearCacheListenerContainer(RedisConnectionFactory redisConnectionFactory,
+      RedisPartitions redisPartitions,
+      ObjectProvider<RedisNearCache> redisNearCache) {
+    RedisNearCache nearCache = redisNearCache.getIfAvailable();
+    if (nearCache == null) {
+      return null;
+    }
+    if (isCluster(redisConnectionFactory)) {
+      logger.info("Keyspace notifications are only published on the node holding the key, the near cache is not subscribed to them in a cluster");
+      return null;
+    }
+    if (configureNotifications) {
+      enableKeyspaceNotifications(redisConnectionFactory);
+    }
+    List<String> prefixes = storageMode == StorageMode.COMPACT ? List.copyOf(COMPACT_PREFIXES.values()) : List.of("book", "author");
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(redisConnectionFactory);
+    String suffix = redisPartitions.isEnabled() ? "{*}:*" : ":*";
+    container.addMessageListener(nearCache, prefixes.stream().map(prefix -> new PatternTopic("__keyspace@*__:" + prefix + suffix)).toList());
+    return container;
+  }
+
+  /**
+   * Creates the {@link RedisChangeFeed} passing the changes of all instances to the {@link RedisChangeListener} beans. In a cluster, where the near
+   * cache gets no keyspace notifications, it invalidates the changed entities in the {@link RedisNearCache} as well.
+   *
+   * @return The {@link RedisChangeFeed}, which starts along with the application context, or {@code null} if changes are not recorded or nothing
+   *     listens to them.
+   */
+  @Bean
+  public RedisChangeFeed redisChangeFeed(@Qualifier("rawRedisTemplate") RedisTemplate<byte[], byte[]> rawRedisTemplate,
+      RedisConnectionFactory redisConnectionFactory,
+      RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec,
+      RedisChangeStream redisChangeStream,
+      ObjectProvider<RedisChangeListener> redisChangeListeners,
+      ObjectProvider<RedisNearCache> redisNearCache) {
+    if (!redisChangeStream.isEnabled()) {
+      return null;
+    }
+    List<RedisChangeListener> listeners = new ArrayList<>(redisChangeListeners.orderedStream().toList());
+    RedisNearCache nearCache = redisNearCache.getIfAvailable();
+    if (nearCache != null && isCluster(redisConnectionFactory)) {
+      listeners.add(nearCacheInvalidation(nearCache, redisConverter, redisEntityCodec));
+    }
+    if (listeners.isEmpty()) {
+      return null;
+    }
+    String group = changesGroup.isBlank() ? instanceName() : changesGroup;
+    return new RedisChangeFeed(rawRedisTemplate, redisChangeStream, group, listeners, changesPollInterval, changesBatchSize);
+  }
+
+  /**
+   * @return A listener invalidating the key of every changed book or author in the given near cache.
+   */
+  private static RedisChangeListener nearCacheInvalidation(RedisNearCache nearCache, RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec) {
+    Map<String, Class<?>> types = new HashMap<>();
+    for (Class<?> type : COMPACT_PREFIXES.keySet()) {
+      types.put(redisConverter.getMappingContext().getRequiredPersistentEntity(type).getKeySpace(), type);
+    }
+    return change -> {
+      Class<?> type = types.get(change.keyspace());
+      if (type != null) {
+        byte[] key = redisEntityCodec.storageKey(type, change.keyspace(), change.id().getBytes(StandardCharsets.UTF_8));
+        nearCache.invalidate(new String(key, StandardCharsets.UTF_8));
+      }
+    };
+  }
+
+  /**
+   * @return The host name and process ID of this instance.
+   */
+  private static String instanceName() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      host = "localhost";
+    }
+    return host + "-" + ProcessHandle.current().pid();
+  }
+
+  /**
+   * @return The client settings of the primary for the connections to the replicas, except that commands fail right away while a replica is
+   *     disconnected instead of waiting for it to reconnect, so the reads go to the primary meanwhile.
+   */
+  private static LettuceClientConfiguration replicaClientConfiguration(LettuceClientConfiguration primary) {
+    LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder()
+        .clientOptions(primary.getClientOptions().orElseGet(ClientOptions::create).mutate()
+            .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+            .build())
+        .commandTimeout(primary.getCommandTimeout())
+        .shutdownTimeout(primary.getShutdownTimeout())
+        .shutdownQuietPeriod(primary.getShutdownQuietPeriod());
+    primary.getClientResources().ifPresent(builder::clientResources);
+    primary.getClientName().ifPresent(builder::clientName);
+    primary.getRedisCredentialsProviderFactory().ifPresent(builder::redisCredentialsProviderFactory);
+    if (primary.isUseSsl()) {
+      LettuceSslClientConfigurationBuilder ssl = builder.useSsl();
+      if (!primary.isVerifyPeer()) {
+        ssl.disablePeerVerification();
+      }
+      if (primary.isStartTls()) {
+        ssl.startTls();
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return A {@link RedisTemplate} that reads and writes keys, values, hash fields and hash values as plain byte arrays.
+   */
+  private static RedisTemplate<byte[], byte[]> rawTemplate(RedisConnectionFactory redisConnectionFactory) {
+    RedisTemplate<byte[], byte[]> template = new RedisTemplate<>();
+    template.setConnectionFactory(redisConnectionFactory);
+    template.setEnableDefaultSerializer(false);
+    template.setKeySerializer(RedisSerializer.byteArray());
+    template.setValueSerializer(RedisSerializer.byteArray());
+    template.setHashKeySerializer(RedisSerializer.byteArray());
+    template.setHashValueSerializer(RedisSerializer.byteArray());
+    return template;
+  }
+
+  private static boolean isCluster(RedisConnectionFactory redisConnectionFactory) {
+    return redisConnectionFactory instanceof LettuceConnectionFactory lettuce && lettuce.isClusterAware();
+  }
+
+  /**
+   * Adds the keyspace events the {@link RedisNearCache} relies on to the {@code notify-keyspace-events} setting of the server, keeping the ones
+   * already enabled.
+   */
+  private static void enableKeyspaceNotifications(RedisConnectionFactory redisConnectionFactory) {
+    try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+      Properties config = connection.serverCommands().getConfig("notify-keyspace-events");
+      String current = config != null ? config.getProperty("notify-keyspace-events", "") : "";
+      StringBuilder flags = new StringBuilder(current);
+      for (char flag : NOTIFY_KEYSPACE_EVENTS.toCharArray()) {
+        // A is an alias for all event classes, but not for the K and E channel types
+        boolean included = current.indexOf(flag) >= 0 || (current.indexOf('A') >= 0 && flag != 'K');
+        if (!included) {
+          flags.append(flag);
+        }
+      }
+      if (!flags.toString().equals(current)) {
+        connection.serverCommands().setConfig("notify-keyspace-events", flags.toString());
+      }
+    } catch (RuntimeException e) {
+      logger.warning("Could not enable keyspace notifications, the near cache relies on its time to live until notify-keyspace-events includes "
+          + NOTIFY_KEYSPACE_EVENTS + ": " + e.getMessage());
+    }
+  }
+}
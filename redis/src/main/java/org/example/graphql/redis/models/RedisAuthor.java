@@ -33,9 +33,12 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
+import org.example.graphql.redis.persistence.SortedIdSet;
 import org.example.graphql.server.models.Author;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.redis.core.RedisHash;
+import org.springframework.data.redis.core.index.Indexed;
 
 /**
  * Redis implementation of the {@link Author} interface.
@@ -44,9 +47,12 @@ import org.springframework.data.redis.core.RedisHash;
  * they've published. It is annotated with {@link RedisHash} to indicate that it is a Redis hash object, and with {@link NoArgsConstructor},
  * {@link Getter}, {@link Setter}, and {@link FieldDefaults} from Lombok to generate boilerplate code.
  * </p>
+ * <p>
+ * The IDs of the published books are kept in a {@link SortedIdSet} next to the author, so adding or removing a book does not rewrite the author.
+ * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.02
+ * @version 1.04
  * @since 04-01-2024
  */
 @RedisHash("author")
@@ -64,8 +70,11 @@ public class RedisAuthor implements Author, Serializable {
 
   String firstName;
 
+  @Indexed
   String lastName;
 
+  @Transient
+  @SortedIdSet
   List<Long> publishedBookIds = new ArrayList<>();
 
   @Override
@@ -32,6 +32,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
+import org.example.graphql.redis.persistence.Colocated;
+import org.example.graphql.redis.persistence.RangeIndexed;
 import org.example.graphql.server.models.Author;
 import org.example.graphql.server.models.Book;
 import org.springframework.data.annotation.Id;
@@ -43,11 +45,12 @@ import org.springframework.data.redis.core.RedisHash;
  * This class represents a book stored in a Redis database. It includes fields for the book's ID, title, published year, and the author of the book.
  * It is annotated with {@link RedisHash} to indicate that it is a Redis hash object, and with {@link NoArgsConstructor}, {@link Getter},
  * {@link Setter}, and {@link FieldDefaults} from Lombok to generate boilerplate code. The author field is annotated with {@link JsonDeserialize} to
- * indicate that it should be deserialized as a {@link RedisAuthor} object.
+ * indicate that it should be deserialized as a {@link RedisAuthor} object, and with {@link Colocated}, so a book is stored in the partition of its
+ * author.
  * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.03
+ * @version 1.05
  * @since 04-01-2024
  */
 @RedisHash("book")
@@ -65,8 +68,10 @@ public class RedisBook implements Book, Serializable {
 
   String title;
 
+  @RangeIndexed
   int publishedYear;
 
   @JsonDeserialize(as = RedisAuthor.class)
+  @Colocated
   Author author;
 }
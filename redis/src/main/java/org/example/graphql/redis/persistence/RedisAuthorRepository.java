@@ -24,19 +24,22 @@
 
 package org.example.graphql.redis.persistence;
 
+import java.util.List;
 import org.example.graphql.redis.models.RedisAuthor;
 import org.springframework.data.keyvalue.repository.KeyValueRepository;
 import org.springframework.stereotype.Repository;
 
 /**
  * This interface extends the {@link KeyValueRepository} interface from Spring Data Key Value to provide CRUD operations for {@link RedisAuthor}
- * instances.
+ * instances. Authors are looked up by last name through its set index. All methods read hashes and thus only work in the hash storage mode of the
+ * {@link RedisEntityCodec}.
  *
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.02
  * @since 08-01-2024
  */
 @Repository
 public interface RedisAuthorRepository extends KeyValueRepository<RedisAuthor, Long> {
 
+  List<RedisAuthor> findByLastName(String lastName);
 }
@@ -24,19 +24,23 @@
 
 package org.example.graphql.redis.persistence;
 
+import java.util.List;
 import org.example.graphql.redis.models.RedisBook;
 import org.springframework.data.keyvalue.repository.KeyValueRepository;
 import org.springframework.stereotype.Repository;
 
 /**
  * This interface extends the {@link KeyValueRepository} interface from Spring Data Key Value to provide CRUD operations for {@link RedisBook}
- * instances.
+ * instances. Books are looked up by author through the set index of {@link RedisIndexConfiguration}, and by published year through
+ * {@link RedisBookRepositoryCustom}. The inherited and derived methods read hashes and thus only work in the hash storage mode of the
+ * {@link RedisEntityCodec}.
  *
  * @author Alexander Kombeiz
- * @version 1.0
+ * @version 1.02
  * @since 08-01-2024
  */
 @Repository
-public interface RedisBookRepository extends KeyValueRepository<RedisBook, Long> {
+public interface RedisBookRepository extends KeyValueRepository<RedisBook, Long>, RedisBookRepositoryCustom {
 
+  List<RedisBook> findByAuthorId(Long authorId);
 }
@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.util.List;
+import org.example.graphql.redis.models.RedisBook;
+
+/**
+ * Queries on {@link RedisBook} instances that are answered from the {@link RangeIndexed} sorted set of their published year, since derived queries
+ * of Spring Data Redis only support equality on set indexes.
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public interface RedisBookRepositoryCustom {
+
+  /**
+   * @return The books published between {@code from} and {@code to}, both inclusive, ordered by published year.
+   */
+  List<RedisBook> findByPublishedYearBetween(int from, int to);
+
+  /**
+   * @param descending Whether the most recently published books come first.
+   * @param offset     The number of books to skip.
+   * @param limit      The maximum number of books to return.
+   * @return The books ordered by published year. Books of the same year are ordered lexicographically by their ID.
+   */
+  List<RedisBook> findAllOrderedByPublishedYear(boolean descending, long offset, long limit);
+}
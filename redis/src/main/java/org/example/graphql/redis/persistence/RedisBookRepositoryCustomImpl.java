@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.example.graphql.redis.models.RedisBook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+
+/**
+ * Implementation of {@link RedisBookRepositoryCustom}. Reads the matching IDs from the sorted set with {@code ZRANGEBYSCORE} and fetches the books
+ * through the {@link RedisEntityReader}.
+ * <p>
+ * If the {@link RedisPartitions} are enabled, each partition has a sorted set of its own. The range is then read from all of them in one pipeline,
+ * up to {@code offset + limit} entries each, and merged by published year and then by ID.
+ * </p>
+ * <p>
+ * Redis orders members with the same score as text, so ID 10 comes before ID 9. The IDs are therefore compared as numbers when merging, ascending
+ * also when the years are descending. Where a set had more entries than were read, all entries with the score of the last one read are fetched as
+ * well, since the IDs that belong on the requested page may be among them.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.02
+ * @since 19-10-2026
+ */
+public class RedisBookRepositoryCustomImpl implements RedisBookRepositoryCustom {
+
+  private static final String PUBLISHED_YEAR = "publishedYear";
+
+  private final RedisTemplate<byte[], byte[]> redisTemplate;
+
+  private final RedisEntityReader redisEntityReader;
+
+  private final List<byte[]> publishedYearIndexes;
+
+  @Autowired
+  public RedisBookRepositoryCustomImpl(@Qualifier("rawRedisTemplate") RedisTemplate<byte[], byte[]> redisTemplate,
+      RedisEntityReader redisEntityReader,
+      RedisPartitions redisPartitions) {
+    this.redisTemplate = redisTemplate;
+    this.redisEntityReader = redisEntityReader;
+    this.publishedYearIndexes = redisPartitions.keyspaces("book").stream()
+        .map(keyspace -> RedisEntityWriter.rangeIndexKey(keyspace, PUBLISHED_YEAR))
+        .toList();
+  }
+
+  @Override
+  public List<RedisBook> findByPublishedYearBetween(int from, int to) {
+    return redisEntityReader.findAllById(RedisBook.class, rangeByScore(from, to, false, 0, -1));
+  }
+
+  @Override
+  public List<RedisBook> findAllOrderedByPublishedYear(boolean descending, long offset, long limit) {
+    return redisEntityReader.findAllById(RedisBook.class,
+        rangeByScore(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, descending, offset, limit));
+  }
+
+  /**
+   * @param limit The maximum number of IDs to return, or {@code -1} for all of them.
+   * @return The IDs of the books whose published year lies in the given range, ordered by published year and then by ID.
+   */
+  private List<byte[]> rangeByScore(double min, double max, boolean descending, long offset, long limit) {
+    // Every sorted set may contribute to the first offset + limit entries
+    long count = limit < 0 ? -1 : limit + offset;
+    List<Object> results = rangeByScore(publishedYearIndexes, min, max, descending, count);
+    Map<Long, Double> scores = new HashMap<>();
+    List<byte[]> truncated = new ArrayList<>();
+    List<Double> boundaries = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      Collection<TypedTuple<byte[]>> tuples = asTuples(results.get(i));
+      Double last = null;
+      for (TypedTuple<byte[]> tuple : tuples) {
+        scores.put(parseId(tuple.getValue()), tuple.getScore());
+        last = tuple.getScore();
+      }
+      if (count > 0 && tuples.size() == count) {
+        truncated.add(publishedYearIndexes.get(i));
+        boundaries.add(last);
+      }
+    }
+    if (!truncated.isEmpty()) {
+      // Redis orders equal scores by their members as text, so the books with the last score of a set cut off by the count may have lower IDs
+      List<Object> ties = redisTemplate.executePipelined(new SessionCallback<>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> Object execute(RedisOperations<K, V> session) throws DataAccessException {
+          ZSetOperations<byte[], byte[]> zSet = ((RedisOperations<byte[], byte[]>) session).opsForZSet();
+          for (int i = 0; i < truncated.size(); i++) {
+            zSet.rangeByScoreWithScores(truncated.get(i), boundaries.get(i), boundaries.get(i));
+          }
+          return null;
+        }
+      });
+      for (Object result : ties) {
+        asTuples(result).forEach(tuple -> scores.put(parseId(tuple.getValue()), tuple.getScore()));
+      }
+    }
+    Comparator<Map.Entry<Long, Double>> byScore = Map.Entry.comparingByValue();
+    return scores.entrySet().stream()
+        .sorted((descending ? byScore.reversed() : byScore).thenComparing(Map.Entry.comparingByKey()))
+        .skip(offset)
+        .limit(limit < 0 ? Long.MAX_VALUE : limit)
+        .map(entry -> Long.toString(entry.getKey()).getBytes(StandardCharsets.UTF_8))
+        .toList();
+  }
+
+  /**
+   * Reads up to {@code count} entries of each of the given sorted sets in one pipeline, in the order of their scores.
+   */
+  private List<Object> rangeByScore(List<byte[]> keys, double min, double max, boolean descending, long count) {
+    return redisTemplate.executePipelined(new SessionCallback<>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <K, V> Object execute(RedisOperations<K, V> session) throws DataAccessException {
+        ZSetOperations<byte[], byte[]> zSet = ((RedisOperations<byte[], byte[]>) session).opsForZSet();
+        for (byte[] key : keys) {
+          if (descending) {
+            zSet.reverseRangeByScoreWithScores(key, min, max, 0, count);
+          } else {
+            zSet.rangeByScoreWithScores(key, min, max, 0, count);
+          }
+        }
+        return null;
+      }
+    });
+  }
+
+  private static long parseId(byte[] member) {
+    return Long.parseLong(new String(member, StandardCharsets.UTF_8));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Collection<TypedTuple<byte[]>> asTuples(Object result) {
+    return result != null ? (Collection<TypedTuple<byte[]>>) result : List.of();
+  }
+}
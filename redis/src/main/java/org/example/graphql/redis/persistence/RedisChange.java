@@ -0,0 +1,54 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+/**
+ * A single change to an entity stored in Redis, as recorded in the {@link RedisChangeStream}.
+ *
+ * @param type     Whether the entity is written or deleted.
+ * @param keyspace The keyspace of the entity, without the hash tag of its partition.
+ * @param id       The ID of the entity.
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public record RedisChange(Type type, String keyspace, String id) {
+
+  public static RedisChange put(String keyspace, Object id) {
+    return new RedisChange(Type.PUT, keyspace, String.valueOf(id));
+  }
+
+  public static RedisChange delete(String keyspace, Object id) {
+    return new RedisChange(Type.DELETE, keyspace, String.valueOf(id));
+  }
+
+  /**
+   * The kinds of changes an entity can undergo.
+   */
+  public enum Type {
+    PUT,
+    DELETE
+  }
+}
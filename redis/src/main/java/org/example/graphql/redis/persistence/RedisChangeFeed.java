@@ -0,0 +1,319 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Reads the {@link RedisChangeStream} on a background thread and passes every change, made by this or any other server instance, to the
+ * {@link RedisChangeListener}s.
+ * <p>
+ * The feed reads through a consumer group of its own, so every instance sees every change, and acknowledges changes once all listeners took them.
+ * Changes that a listener failed on, or that were read but not acknowledged before the instance stopped, stay pending in the group and are
+ * delivered again before any newer changes of their stream; a change that fails {@value #MAX_ATTEMPTS} times in a row is logged and skipped. The
+ * pending changes of a stopped instance are only picked up again by an instance using the same group name.
+ * </p>
+ * <p>
+ * The lag of the feed is the time since its last poll that delivered all changes available in all streams. Each poll reads in batches until
+ * the streams are drained, so while the listeners keep up, the lag stays below the poll interval. Reads can wait for the lag to fall below a bound
+ * with {@link #awaitLagAtMost(Duration, Duration)}.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public class RedisChangeFeed implements SmartLifecycle, Closeable {
+
+  private static final Logger logger = Logger.getLogger(RedisChangeFeed.class.getName());
+  private static final int MAX_ATTEMPTS = 5;
+
+  private final RedisTemplate<byte[], byte[]> redisTemplate;
+  private final List<byte[]> keys;
+  private final String group;
+  private final Consumer consumer;
+  private final List<RedisChangeListener> listeners;
+  private final Duration pollInterval;
+  private final StreamReadOptions readOptions;
+  private final Set<String> redelivering = new HashSet<>();
+  private final Map<RecordId, Integer> failures = new HashMap<>();
+  private final Object progress = new Object();
+  private volatile long freshAsOf;
+  private ScheduledExecutorService executor;
+
+  /**
+   * @param redisTemplate The {@link RedisTemplate} passing keys and stream entries as plain byte arrays.
+   * @param changeStream  The stream the changes are recorded in.
+   * @param group         The name of the consumer group of this instance, which no other instance may use at the same time.
+   * @param listeners     The listeners to pass the changes to.
+   * @param pollInterval  The time between polls for new changes.
+   * @param batchSize     The maximum number of changes read from a stream at once.
+   */
+  public RedisChangeFeed(RedisTemplate<byte[], byte[]> redisTemplate, RedisChangeStream changeStream, String group,
+      List<RedisChangeListener> listeners, Duration pollInterval, int batchSize) {
+    this.redisTemplate = redisTemplate;
+    this.keys = changeStream.keys();
+    this.group = group;
+    this.consumer = Consumer.from(group, group);
+    this.listeners = List.copyOf(listeners);
+    this.pollInterval = pollInterval;
+    this.readOptions = StreamReadOptions.empty().count(batchSize);
+  }
+
+  /**
+   * Creates the consumer group of this instance where it does not exist yet and starts polling for changes, beginning with the changes still
+   * pending from a previous run. Called by the application context once it is refreshed.
+   */
+  @Override
+  public synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    for (byte[] key : keys) {
+      tryCreateGroup(key);
+      redelivering.add(new String(key, StandardCharsets.UTF_8));
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "redis-change-feed");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops polling. Runs in the last lifecycle phase, before the connection factory is stopped, so the running poll can finish.
+   */
+  @Override
+  public synchronized void stop() {
+    if (executor == null) {
+      return;
+    }
+    // Changes read but not acknowledged yet stay pending for the next run
+    executor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    executor = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return executor != null;
+  }
+
+  public long getLagMillis() {
+    return Math.max(0, System.currentTimeMillis() - freshAsOf);
+  }
+
+  /**
+   * Waits until the lag of this feed is at most the given bound.
+   *
+   * @param maxLag  The accepted lag.
+   * @param timeout The maximum time to wait.
+   * @return {@code true} if the lag is within the bound, {@code false} if it did not get there in time.
+   */
+  public boolean awaitLagAtMost(Duration maxLag, Duration timeout) {
+    long deadline = System.currentTimeMillis() + timeout.toMillis();
+    synchronized (progress) {
+      while (getLagMillis() > maxLag.toMillis()) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          progress.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private void poll() {
+    long pollStart = System.currentTimeMillis();
+    boolean caughtUp = true;
+    for (byte[] key : keys) {
+      try {
+        caughtUp &= deliverAvailable(key);
+      } catch (RuntimeException e) {
+        caughtUp = false;
+        if (isError(e, "NOGROUP")) {
+          // The stream was deleted along with the group, e.g. by FLUSHALL
+          tryCreateGroup(key);
+        } else {
+          logger.log(Level.WARNING, "Error while reading changes from " + new String(key, StandardCharsets.UTF_8), e);
+        }
+      }
+    }
+    if (caughtUp) {
+      freshAsOf = pollStart;
+    }
+    synchronized (progress) {
+      progress.notifyAll();
+    }
+  }
+
+  /**
+   * Delivers all changes available in the given stream, the ones pending for this consumer first.
+   *
+   * @return {@code true} if all available changes were delivered.
+   */
+  private boolean deliverAvailable(byte[] key) {
+    String name = new String(key, StandardCharsets.UTF_8);
+    while (true) {
+      boolean pending = redelivering.contains(name);
+      // Reading from 0 returns the changes delivered to this consumer but not acknowledged, > the ones not delivered to the group yet
+      StreamOffset<byte[]>[] offsets = offsets(StreamOffset.create(key, pending ? ReadOffset.from("0") : ReadOffset.lastConsumed()));
+      List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection -> connection.streamCommands()
+          .xReadGroup(consumer, readOptions, offsets));
+      if (records == null || records.isEmpty()) {
+        if (!pending) {
+          return true;
+        }
+        redelivering.remove(name);
+        continue;
+      }
+      List<RecordId> delivered = new ArrayList<>();
+      boolean failed = false;
+      for (ByteRecord record : records) {
+        if (!deliver(record)) {
+          failed = true;
+          break;
+        }
+        delivered.add(record.getId());
+      }
+      if (!delivered.isEmpty()) {
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.streamCommands()
+            .xAck(key, group, delivered.toArray(RecordId[]::new)));
+      }
+      if (failed) {
+        redelivering.add(name);
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Collects the offsets into the array the stream commands take, which a generic varargs call could only create unchecked.
+   */
+  @SafeVarargs
+  private static StreamOffset<byte[]>[] offsets(StreamOffset<byte[]>... offsets) {
+    return offsets;
+  }
+
+  /**
+   * Passes the change of the given entry to all listeners.
+   *
+   * @return {@code true} if the entry can be acknowledged, {@code false} if it has to be delivered again.
+   */
+  private boolean deliver(ByteRecord record) {
+    RedisChange change = RedisChangeStream.decode(record);
+    if (change == null) {
+      logger.warning("Skipping malformed change " + record.getId() + " of " + new String(record.getStream(), StandardCharsets.UTF_8));
+      return true;
+    }
+    try {
+      for (RedisChangeListener listener : listeners) {
+        listener.onChange(change);
+      }
+      failures.remove(record.getId());
+      return true;
+    } catch (RuntimeException e) {
+      int attempts = failures.merge(record.getId(), 1, Integer::sum);
+      if (attempts >= MAX_ATTEMPTS) {
+        logger.log(Level.SEVERE, "Skipping change " + change + " after " + attempts + " failed deliveries", e);
+        failures.remove(record.getId());
+        return true;
+      }
+      logger.log(Level.WARNING, "Error while delivering change " + change + ", it will be delivered again", e);
+      return false;
+    }
+  }
+
+  private void tryCreateGroup(byte[] key) {
+    try {
+      createGroup(key);
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Unable to create the consumer group of " + new String(key, StandardCharsets.UTF_8) + ", retrying on the next poll",
+          e);
+    }
+  }
+
+  private void createGroup(byte[] key) {
+    try {
+      // Only changes appended from now on are delivered to a new group
+      redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+          .xGroupCreate(key, group, ReadOffset.latest(), true));
+    } catch (RuntimeException e) {
+      if (!isError(e, "BUSYGROUP")) {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * @return Whether the given exception was caused by an error reply of Redis with the given code.
+   */
+  private static boolean isError(Throwable e, String code) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause.getMessage() != null && cause.getMessage().startsWith(code)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void close() {
+    stop();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.stereotype.Component;
+
+/**
+ * The Redis Stream every write of an entity appends a {@link RedisChange} to, in the same transaction or script as the write itself, so other server
+ * instances learn about it through their {@link RedisChangeFeed}.
+ * <p>
+ * Changes are appended to {@code changes} with the fields {@code type}, {@code keyspace} and {@code id} if {@code redis.changes.enabled} is
+ * {@code true}. With {@link RedisPartitions}, each partition has its own stream, e.g. {@code changes{7}}, in the hash slot of the entities it
+ * records. Each stream is trimmed to about {@code redis.changes.max-length} entries, which bounds its memory; a feed that falls further behind than
+ * that misses the oldest changes.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+@Component
+public class RedisChangeStream {
+
+  private static final String KEY = "changes";
+  private static final byte[] TYPE = toBytes("type");
+  private static final byte[] KEYSPACE = toBytes("keyspace");
+  private static final byte[] ID = toBytes("id");
+
+  private final RedisPartitions redisPartitions;
+
+  private final boolean enabled;
+
+  private final long maxLength;
+
+  @Autowired
+  public RedisChangeStream(RedisPartitions redisPartitions,
+      @Value("${redis.changes.enabled:false}") boolean enabled,
+      @Value("${redis.changes.max-length:10000}") long maxLength) {
+    this.redisPartitions = redisPartitions;
+    this.enabled = enabled;
+    this.maxLength = maxLength;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return The key of the stream recording the changes of the entity with the given ID.
+   */
+  public byte[] key(Object id) {
+    return toBytes(redisPartitions.keyspace(KEY, id instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : id));
+  }
+
+  /**
+   * @return The keys of the streams of all partitions.
+   */
+  public List<byte[]> keys() {
+    return redisPartitions.keyspaces(KEY).stream().map(RedisChangeStream::toBytes).toList();
+  }
+
+  /**
+   * @return The argument telling the scripts the maximum length of the stream, or {@code 0} to record no changes.
+   */
+  public byte[] scriptArgument() {
+    return toBytes(Long.toString(enabled ? maxLength : 0));
+  }
+
+  /**
+   * Queues the {@code XADD} of the given change, if changes are recorded.
+   */
+  public void add(RedisOperations<byte[], byte[]> operations, RedisChange change) {
+    if (!enabled) {
+      return;
+    }
+    Map<byte[], byte[]> fields = new LinkedHashMap<>();
+    fields.put(TYPE, toBytes(change.type().name()));
+    fields.put(KEYSPACE, toBytes(change.keyspace()));
+    fields.put(ID, toBytes(change.id()));
+    ByteRecord record = StreamRecords.newRecord().in(key(change.id())).ofBytes(fields);
+    operations.execute((RedisCallback<Object>) connection -> connection.streamCommands()
+        .xAdd(record, XAddOptions.maxlen(maxLength).approximateTrimming(true)));
+  }
+
+  /**
+   * @return The change recorded in the given entry, or {@code null} if it is not one.
+   */
+  static RedisChange decode(ByteRecord record) {
+    String type = null;
+    String keyspace = null;
+    String id = null;
+    for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+      String name = new String(field.getKey(), StandardCharsets.UTF_8);
+      String value = new String(field.getValue(), StandardCharsets.UTF_8);
+      switch (name) {
+        case "type" -> type = value;
+        case "keyspace" -> keyspace = value;
+        case "id" -> id = value;
+        default -> {
+          // Fields added by later versions
+        }
+      }
+    }
+    if (type == null || keyspace == null || id == null) {
+      return null;
+    }
+    try {
+      return new RedisChange(RedisChange.Type.valueOf(type), keyspace, id);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
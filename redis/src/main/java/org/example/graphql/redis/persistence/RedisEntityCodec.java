@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Decides how entities are laid out in Redis and encodes them for the {@link StorageMode#COMPACT} mode.
+ * <p>
+ * In {@link StorageMode#HASH} mode, entities are stored as hashes with one field per (nested) property, exactly as the repositories map them. In
+ * {@link StorageMode#COMPACT} mode, each entity is stored as a single Smile-encoded string value under {@code <prefix>:<id>}, using the short prefix
+ * registered for its type. Saving an entity then is a single {@code SET} instead of deleting and rewriting every field, and lists such as the
+ * published book IDs of an embedded author no longer cost a hash field per element. Keyspace sets and indexes are the same in both modes.
+ * </p>
+ * <p>
+ * {@link SortedIdSet} properties are stored separately, so {@link #encode(Object)} leaves them out, while {@link #encodeFull(Object)} includes them
+ * for copies held in memory, such as those of the {@link RedisNearCache}. {@link #decode(Class, byte[])} reads either.
+ * </p>
+ * <p>
+ * If the {@link RedisPartitions} are enabled, the keyspace or prefix of every key carries the hash tag of the partition of the entity.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.03
+ * @since 19-10-2026
+ */
+public class RedisEntityCodec {
+
+  private final StorageMode mode;
+
+  private final Map<Class<?>, String> prefixes;
+
+  private final RedisPartitions partitions;
+
+  private final ObjectMapper smileMapper;
+
+  private final ObjectMapper storageMapper;
+
+  /**
+   * @param mode       The layout entities are stored in.
+   * @param prefixes   The key prefix of each entity type in {@link StorageMode#COMPACT} mode.
+   * @param partitions The {@link RedisPartitions} deciding the hash tags of the keys.
+   */
+  public RedisEntityCodec(StorageMode mode, Map<Class<?>, String> prefixes, RedisPartitions partitions) {
+    this.mode = mode;
+    this.prefixes = Map.copyOf(prefixes);
+    this.partitions = partitions;
+    this.smileMapper = new SmileMapper()
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    this.storageMapper = smileMapper.copy().setAnnotationIntrospector(new JacksonAnnotationIntrospector() {
+      @Override
+      public boolean hasIgnoreMarker(AnnotatedMember member) {
+        return member.hasAnnotation(SortedIdSet.class) || super.hasIgnoreMarker(member);
+      }
+    });
+  }
+
+  public boolean isCompact() {
+    return mode == StorageMode.COMPACT;
+  }
+
+  /**
+   * @return The key of the value holding the entity of the given type and ID in {@link StorageMode#COMPACT} mode.
+   */
+  public byte[] compactKey(Class<?> type, byte[] id) {
+    return key(prefixOf(type), id);
+  }
+
+  /**
+   * @return The key prefix of the given type in {@link StorageMode#COMPACT} mode.
+   */
+  public String prefixOf(Class<?> type) {
+    String prefix = prefixes.get(type);
+    if (prefix == null) {
+      throw new IllegalArgumentException("No compact key prefix registered for " + type.getName());
+    }
+    return prefix;
+  }
+
+  /**
+   * @return The key holding the entity of the given type and ID in the current mode, {@code <keyspace>:<id>} for hashes.
+   */
+  public byte[] storageKey(Class<?> type, String keyspace, byte[] id) {
+    if (isCompact()) {
+      return compactKey(type, id);
+    }
+    return key(keyspace, id);
+  }
+
+  private byte[] key(String prefix, byte[] id) {
+    byte[] start = (partitions.keyspace(prefix, id) + ":").getBytes(StandardCharsets.UTF_8);
+    byte[] key = new byte[start.length + id.length];
+    System.arraycopy(start, 0, key, 0, start.length);
+    System.arraycopy(id, 0, key, start.length, id.length);
+    return key;
+  }
+
+  /**
+   * @return The value the given entity is stored as, without its {@link SortedIdSet} properties.
+   */
+  public byte[] encode(Object entity) {
+    return encode(storageMapper, entity);
+  }
+
+  /**
+   * @return The given entity encoded with all its properties.
+   */
+  public byte[] encodeFull(Object entity) {
+    return encode(smileMapper, entity);
+  }
+
+  private static byte[] encode(ObjectMapper mapper, Object entity) {
+    try {
+      return mapper.writeValueAsBytes(entity);
+    } catch (IOException e) {
+      throw new SerializationException("Could not encode " + entity.getClass().getName(), e);
+    }
+  }
+
+  public <T> T decode(Class<T> type, byte[] value) {
+    try {
+      return smileMapper.readValue(value, type);
+    } catch (IOException e) {
+      throw new SerializationException("Could not decode " + type.getName(), e);
+    }
+  }
+
+  /**
+   * The layouts entities can be stored in.
+   */
+  public enum StorageMode {
+    /**
+     * One hash per entity with one field per property, as mapped by Spring Data Redis.
+     */
+    HASH,
+    /**
+     * One Smile-encoded string value per entity.
+     */
+    COMPACT
+  }
+}
@@ -0,0 +1,547 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Reader for entities mapped with {@link org.springframework.data.redis.core.RedisHash}, in either layout of the {@link RedisEntityCodec}.
+ * <p>
+ * {@link org.springframework.data.keyvalue.repository.KeyValueRepository#findAll()} reads the whole ID set of a keyspace and then fetches one hash
+ * per round trip. This reader walks the ID set with an {@code SSCAN} cursor instead and fetches each batch of IDs with pipelined {@code HGETALL} or
+ * {@code GET} commands, so reading {@code n} entities costs about {@code 2n / batchSize} round trips. Hashes are mapped by the same
+ * {@link RedisConverter} the repositories use, compact values are decoded by the {@link RedisEntityCodec}. Entities are streamed batch by batch, so
+ * the reader holds one batch of entities and the IDs seen so far. The {@link SortedIdSet} properties of each entity are read with {@code ZRANGE} in
+ * the same pipeline.
+ * </p>
+ * <p>
+ * Like any {@code SCAN}, the walk is not a snapshot: entities saved or deleted meanwhile may or may not be returned. IDs that {@code SSCAN} reports
+ * more than once are returned only once, and IDs whose entity was deleted before it was fetched are skipped.
+ * </p>
+ * <p>
+ * If a {@link RedisNearCache} is configured, lookups by ID are answered from it where possible and only the missing entities are fetched, which are
+ * then added to it. Scans bypass the cache, so reading everything once does not evict the entities that are actually looked up frequently.
+ * </p>
+ * <p>
+ * If the {@link RedisPartitions} are enabled, the keyspace set is split by partition as well. Scans then walk the entity keys with {@code SCAN} on
+ * each master node of the cluster in turn instead, which visits every node once rather than every partition, and lookups in set indexes read the
+ * index key of every partition in one pipeline.
+ * </p>
+ * <p>
+ * If a {@link RedisReplicaRouting} is configured, lookups by ID and scans read from a replica where it has the writes of this instance to the
+ * entities read, and the primary otherwise. Entities read from a replica are not added to the near cache, as the keyspace notification of a write
+ * may arrive before the replica applied it. Reads that a write depends on, like those of the mutations, use
+ * {@link #findByIdOnPrimary(Class, Object)}.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.07
+ * @since 19-10-2026
+ */
+@Component
+public class RedisEntityReader {
+
+  private final RedisTemplate<byte[], byte[]> redisTemplate;
+
+  private final RedisConverter redisConverter;
+
+  private final RedisEntityCodec redisEntityCodec;
+
+  private final RedisNearCache nearCache;
+
+  private final RedisPartitions redisPartitions;
+
+  private final RedisReplicaRouting replicaRouting;
+
+  private final int batchSize;
+
+  @Autowired
+  public RedisEntityReader(@Qualifier("rawRedisTemplate") RedisTemplate<byte[], byte[]> redisTemplate,
+      RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec,
+      ObjectProvider<RedisNearCache> nearCache,
+      RedisPartitions redisPartitions,
+      ObjectProvider<RedisReplicaRouting> replicaRouting,
+      @Value("${redis.scan.batch-size:500}") int batchSize) {
+    this.redisTemplate = redisTemplate;
+    this.redisConverter = redisConverter;
+    this.redisEntityCodec = redisEntityCodec;
+    this.nearCache = nearCache.getIfAvailable();
+    this.redisPartitions = redisPartitions;
+    this.replicaRouting = replicaRouting.getIfAvailable();
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Streams all entities of the given type. The stream holds a cursor and must be closed, e.g. with try-with-resources.
+   *
+   * @param type The entity type, annotated with {@link org.springframework.data.redis.core.RedisHash}.
+   * @return A lazily populated stream of the entities, in no particular order.
+   */
+  public <T> Stream<T> streamAll(Class<T> type) {
+    String keyspace = keyspaceOf(type);
+    return replicaRouting != null ? replicaRouting.scan(template -> streamAll(template, type, keyspace)) : streamAll(redisTemplate, type, keyspace);
+  }
+
+  private <T> Stream<T> streamAll(RedisTemplate<byte[], byte[]> template, Class<T> type, String keyspace) {
+    IdScan scan = scanIds(template, type, keyspace);
+    Iterator<T> iterator = new BatchIterator<>(template, type, keyspace, scan.ids());
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+        .onClose(scan.close());
+  }
+
+  /**
+   * Streams the IDs of all entities of the given type on the primary, walked like {@link #streamAll(Class)} walks them, without fetching the
+   * entities. The stream holds a cursor and must be closed. An ID may be returned more than once.
+   */
+  public Stream<String> streamIdsOnPrimary(Class<?> type) {
+    IdScan scan = scanIds(redisTemplate, type, keyspaceOf(type));
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scan.ids(), Spliterator.NONNULL), false)
+        .map(id -> new String(id, StandardCharsets.UTF_8))
+        .onClose(scan.close());
+  }
+
+  /**
+   * Opens a walk of the IDs of the given type: the keyspace set with {@code SSCAN}, or the entity keys on every node if the {@link RedisPartitions}
+   * are enabled.
+   */
+  private IdScan scanIds(RedisTemplate<byte[], byte[]> template, Class<?> type, String keyspace) {
+    if (redisPartitions.isEnabled()) {
+      NodeScan scan = new NodeScan(template, type, keyspace);
+      return new IdScan(scan, scan::close);
+    }
+    Cursor<byte[]> cursor = template.opsForSet().scan(toBytes(keyspace), ScanOptions.scanOptions().count(batchSize).build());
+    return new IdScan(cursor, cursor::close);
+  }
+
+  /**
+   * Streams all entities of the given type into a list.
+   */
+  public <T> List<T> findAll(Class<T> type) {
+    try (Stream<T> entities = streamAll(type)) {
+      return entities.toList();
+    }
+  }
+
+  /**
+   * @return The entity of the given type and ID, or {@code null} if there is none.
+   */
+  public <T> T findById(Class<T> type, Object id) {
+    List<T> entities = fetchCached(type, keyspaceOf(type), List.of(String.valueOf(id)), false);
+    return entities.isEmpty() ? null : entities.get(0);
+  }
+
+  /**
+   * Like {@link #findById(Class, Object)}, but never reads from a replica, for reads that a write depends on.
+   *
+   * @return The entity of the given type and ID, or {@code null} if there is none.
+   */
+  public <T> T findByIdOnPrimary(Class<T> type, Object id) {
+    List<T> entities = fetchCached(type, keyspaceOf(type), List.of(String.valueOf(id)), true);
+    return entities.isEmpty() ? null : entities.get(0);
+  }
+
+  /**
+   * Reads a page of a {@link SortedIdSet} property without reading the entity, for properties too large to read at once.
+   *
+   * @param type     The entity type.
+   * @param id       The ID of the entity.
+   * @param property The name of the {@link SortedIdSet} property.
+   * @param offset   The number of IDs to skip.
+   * @param count    The maximum number of IDs to return.
+   * @return The IDs of the page, in ascending order.
+   */
+  public List<Long> findSortedIds(Class<?> type, Object id, String property, long offset, long count) {
+    Field idSet = SortedIdSets.of(type).stream()
+        .filter(field -> field.getName().equals(property))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException(type.getName() + " has no sorted ID set " + property));
+    if (count <= 0) {
+      return List.of();
+    }
+    byte[] storageKey = redisEntityCodec.storageKey(type, keyspaceOf(type), toBytes(String.valueOf(id)));
+    return toIds(redisTemplate.opsForZSet().range(SortedIdSets.key(storageKey, idSet), offset, offset + count - 1));
+  }
+
+  /**
+   * Fetches the entities of the given type and IDs in pipelined batches.
+   *
+   * @return The entities in the order of the given IDs, skipping IDs that do not exist.
+   */
+  public <T> List<T> findAllById(Class<T> type, Collection<?> ids) {
+    String keyspace = keyspaceOf(type);
+    List<T> entities = new ArrayList<>(ids.size());
+    List<String> batch = new ArrayList<>(batchSize);
+    for (Object id : ids) {
+      batch.add(id instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(id));
+      if (batch.size() == batchSize) {
+        entities.addAll(fetchCached(type, keyspace, batch, false));
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      entities.addAll(fetchCached(type, keyspace, batch, false));
+    }
+    return entities;
+  }
+
+  /**
+   * Looks the entities up in a set index, as maintained by the {@link RedisEntityWriter}. Unlike the derived queries of the repositories, this works
+   * in both layouts and fetches the entities in pipelined batches.
+   *
+   * @param type      The entity type.
+   * @param indexName The path of the indexed property, e.g. {@code author.id}.
+   * @param value     The value to look up.
+   * @return The entities whose property has the given value, in no particular order.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<T> findAllByIndex(Class<T> type, String indexName, Object value) {
+    byte[] rawValue = redisConverter.getConversionService().convert(value, byte[].class);
+    List<byte[]> indexKeys = new ArrayList<>();
+    for (String keyspace : redisPartitions.indexKeyspaces(type, keyspaceOf(type), indexName, value)) {
+      byte[] prefix = toBytes(keyspace + ":" + indexName + ":");
+      byte[] indexKey = new byte[prefix.length + rawValue.length];
+      System.arraycopy(prefix, 0, indexKey, 0, prefix.length);
+      System.arraycopy(rawValue, 0, indexKey, prefix.length, rawValue.length);
+      indexKeys.add(indexKey);
+    }
+    if (indexKeys.size() == 1) {
+      Set<byte[]> ids = redisTemplate.opsForSet().members(indexKeys.get(0));
+      return ids != null ? findAllById(type, ids) : List.of();
+    }
+    // One index key per partition, read in one pipeline that the cluster connection splits by node
+    List<Object> members = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+      for (byte[] indexKey : indexKeys) {
+        connection.setCommands().sMembers(indexKey);
+      }
+      return null;
+    });
+    List<byte[]> ids = new ArrayList<>();
+    for (Object partitionIds : members) {
+      ids.addAll((Collection<byte[]>) partitionIds);
+    }
+    return findAllById(type, ids);
+  }
+
+  /**
+   * Fetches the entities of the given IDs, taking them from the {@link RedisNearCache} where possible and adding the ones fetched from the primary
+   * to it.
+   *
+   * @return The entities in the order of the given IDs, skipping IDs without an entity.
+   */
+  private <T> List<T> fetchCached(Class<T> type, String keyspace, List<String> ids, boolean onPrimary) {
+    if (nearCache == null) {
+      List<T> entities = fetchRouted(type, keyspace, ids, onPrimary).entities();
+      entities.removeIf(Objects::isNull);
+      return entities;
+    }
+    List<T> entities = new ArrayList<>(ids.size());
+    List<String> missingIds = new ArrayList<>();
+    List<Integer> missingPositions = new ArrayList<>();
+    for (String id : ids) {
+      byte[] cached = nearCache.get(cacheKey(type, keyspace, id));
+      if (cached != null) {
+        entities.add(redisEntityCodec.decode(type, cached));
+      } else {
+        missingPositions.add(entities.size());
+        missingIds.add(id);
+        entities.add(null);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return entities;
+    }
+    long[] stamps = new long[missingIds.size()];
+    for (int i = 0; i < stamps.length; i++) {
+      stamps[i] = nearCache.stamp(cacheKey(type, keyspace, missingIds.get(i)));
+    }
+    Fetched<T> fetched = fetchRouted(type, keyspace, missingIds, onPrimary);
+    for (int i = 0; i < missingIds.size(); i++) {
+      T entity = fetched.entities().get(i);
+      if (entity != null) {
+        if (fetched.fromPrimary()) {
+          // Hashes and compact values both lack the sorted sets, so the cache holds the complete entity
+          nearCache.putIfUnchanged(cacheKey(type, keyspace, missingIds.get(i)), redisEntityCodec.encodeFull(entity), stamps[i]);
+        }
+        entities.set(missingPositions.get(i), entity);
+      }
+    }
+    entities.removeIf(Objects::isNull);
+    return entities;
+  }
+
+  /**
+   * Fetches the entities of the given IDs with {@link #fetchEach(RedisTemplate, Class, String, List)}, from a replica if the
+   * {@link RedisReplicaRouting} has one that is fresh enough, and from the primary otherwise.
+   */
+  private <T> Fetched<T> fetchRouted(Class<T> type, String keyspace, List<String> ids, boolean onPrimary) {
+    if (replicaRouting == null || onPrimary) {
+      return new Fetched<>(fetchEach(redisTemplate, type, keyspace, ids), true);
+    }
+    List<String> storageKeys = ids.stream().map(id -> cacheKey(type, keyspace, id)).toList();
+    return replicaRouting.read(storageKeys,
+        template -> new Fetched<>(fetchEach(template, type, keyspace, ids), replicaRouting.isPrimary(template)));
+  }
+
+  /**
+   * Fetches the entities of the given IDs in one pipeline, skipping IDs without an entity.
+   */
+  private <T> List<T> fetch(RedisTemplate<byte[], byte[]> template, Class<T> type, String keyspace, List<String> ids) {
+    List<T> entities = fetchEach(template, type, keyspace, ids);
+    entities.removeIf(Objects::isNull);
+    return entities;
+  }
+
+  /**
+   * Fetches the hash or compact value of each of the given IDs together with its {@link SortedIdSet} properties in one pipeline.
+   *
+   * @return The entity of each ID, or {@code null} where there is none.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> List<T> fetchEach(RedisTemplate<byte[], byte[]> template, Class<T> type, String keyspace, List<String> ids) {
+    boolean compact = redisEntityCodec.isCompact();
+    List<Field> idSets = SortedIdSets.of(type);
+    List<Object> values = template.executePipelined((RedisCallback<Object>) connection -> {
+      for (String id : ids) {
+        byte[] storageKey = redisEntityCodec.storageKey(type, keyspace, toBytes(id));
+        if (compact) {
+          connection.stringCommands().get(storageKey);
+        } else {
+          connection.hashCommands().hGetAll(storageKey);
+        }
+        for (Field idSet : idSets) {
+          connection.zSetCommands().zRange(SortedIdSets.key(storageKey, idSet), 0, -1);
+        }
+      }
+      return null;
+    });
+    int stride = 1 + idSets.size();
+    List<T> entities = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      Object value = values.get(i * stride);
+      T entity = compact ? decode(type, (byte[]) value) : read(type, keyspace, ids.get(i), (Map<byte[], byte[]>) value);
+      if (entity != null) {
+        for (int j = 0; j < idSets.size(); j++) {
+          ReflectionUtils.setField(idSets.get(j), entity, toIds((Collection<byte[]>) values.get(i * stride + 1 + j)));
+        }
+      }
+      entities.add(entity);
+    }
+    return entities;
+  }
+
+  private String cacheKey(Class<?> type, String keyspace, String id) {
+    return new String(redisEntityCodec.storageKey(type, keyspace, toBytes(id)), StandardCharsets.UTF_8);
+  }
+
+  private static List<Long> toIds(Collection<byte[]> members) {
+    List<Long> ids = new ArrayList<>(members != null ? members.size() : 0);
+    if (members != null) {
+      for (byte[] member : members) {
+        ids.add(Long.valueOf(new String(member, StandardCharsets.UTF_8)));
+      }
+    }
+    return ids;
+  }
+
+  private <T> T decode(Class<T> type, byte[] value) {
+    return value != null ? redisEntityCodec.decode(type, value) : null;
+  }
+
+  private <T> T read(Class<T> type, String keyspace, String id, Map<byte[], byte[]> hash) {
+    if (hash == null || hash.isEmpty()) {
+      return null;
+    }
+    RedisData data = new RedisData(hash);
+    data.setId(id);
+    data.setKeyspace(keyspace);
+    return redisConverter.read(type, data);
+  }
+
+  private String keyspaceOf(Class<?> type) {
+    return redisConverter.getMappingContext().getRequiredPersistentEntity(type).getKeySpace();
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Pulls the next batch of IDs from the cursor whenever the current batch of entities is used up.
+   */
+  private class BatchIterator<T> implements Iterator<T> {
+
+    private final RedisTemplate<byte[], byte[]> template;
+    private final Class<T> type;
+    private final String keyspace;
+    private final Iterator<byte[]> cursor;
+    private final Set<String> seen = new HashSet<>();
+    private Iterator<T> batch = Collections.emptyIterator();
+
+    BatchIterator(RedisTemplate<byte[], byte[]> template, Class<T> type, String keyspace, Iterator<byte[]> cursor) {
+      this.template = template;
+      this.type = type;
+      this.keyspace = keyspace;
+      this.cursor = cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!batch.hasNext() && cursor.hasNext()) {
+        List<String> ids = new ArrayList<>(batchSize);
+        while (ids.size() < batchSize && cursor.hasNext()) {
+          String id = new String(cursor.next(), StandardCharsets.UTF_8);
+          // SSCAN and SCAN may report an element more than once while the set or the keyspace is rehashed
+          if (seen.add(id)) {
+            ids.add(id);
+          }
+        }
+        if (!ids.isEmpty()) {
+          batch = fetch(template, type, keyspace, ids).iterator();
+        }
+      }
+      return batch.hasNext();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return batch.next();
+    }
+  }
+
+  /**
+   * Walks the keys of the entities of a type on every master node of a cluster, or on the single server, with {@code SCAN}. Each node serves its own
+   * slots, so every key is visited on exactly one node, and the entities are fetched from all nodes in the same pipelines. Keys migrated between
+   * nodes while the scan runs may be missed.
+   */
+  private class NodeScan implements Iterator<byte[]> {
+
+    private final RedisTemplate<byte[], byte[]> template;
+    private final ScanOptions options;
+    private final Iterator<RedisClusterNode> nodes;
+    private Cursor<byte[]> cursor;
+
+    NodeScan(RedisTemplate<byte[], byte[]> template, Class<?> type, String keyspace) {
+      this.template = template;
+      String prefix = redisEntityCodec.isCompact() ? redisEntityCodec.prefixOf(type) : keyspace;
+      this.options = ScanOptions.scanOptions()
+          .match(prefix + "{*}:*")
+          .type(redisEntityCodec.isCompact() ? DataType.STRING : DataType.HASH)
+          .count(batchSize)
+          .build();
+      List<RedisClusterNode> masters = template.execute((RedisCallback<List<RedisClusterNode>>) connection ->
+          connection instanceof RedisClusterConnection cluster
+              ? StreamSupport.stream(cluster.clusterGetNodes().spliterator(), false).filter(RedisClusterNode::isMaster).toList()
+              : null);
+      if (masters != null) {
+        this.nodes = masters.iterator();
+      } else {
+        this.nodes = Collections.emptyIterator();
+        this.cursor = template.scan(options);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (cursor == null || !cursor.hasNext()) {
+        if (!nodes.hasNext()) {
+          return false;
+        }
+        close();
+        RedisClusterNode node = nodes.next();
+        cursor = template.executeWithStickyConnection(connection -> ((RedisClusterConnection) connection).scan(node, options));
+      }
+      return true;
+    }
+
+    /**
+     * @return The ID of the entity stored under the next key, which follows the first colon.
+     */
+    @Override
+    public byte[] next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      byte[] key = cursor.next();
+      int separator = 0;
+      while (key[separator] != ':') {
+        separator++;
+      }
+      return Arrays.copyOfRange(key, separator + 1, key.length);
+    }
+
+    void close() {
+      if (cursor != null) {
+        cursor.close();
+      }
+    }
+  }
+
+  /**
+   * A walk of IDs opened by {@link #scanIds(RedisTemplate, Class, String)}, and how to close its cursor.
+   */
+  private record IdScan(Iterator<byte[]> ids, Runnable close) {
+  }
+
+  /**
+   * The entities fetched by {@link #fetchRouted(Class, String, List, boolean)}, and whether they were read from the primary.
+   */
+  private record Fetched<T>(List<T> entities, boolean fromPrimary) {
+  }
+}
@@ -0,0 +1,486 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.core.convert.IndexedData;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.convert.SimpleIndexedPropertyValue;
+import org.springframework.data.redis.core.mapping.RedisPersistentEntity;
+import org.springframework.data.redis.core.mapping.RedisPersistentProperty;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Writes {@link org.springframework.data.redis.core.RedisHash} entities together with all their indexes in a single Redis transaction.
+ * <p>
+ * The repositories save an entity and update its {@link org.springframework.data.redis.core.index.Indexed} set indexes in a plain pipeline, so
+ * readers may see an entity without its indexes or the other way around, and they know nothing about sorted sets. This writer uses the same key
+ * layout, which keeps the derived query methods of the repositories working, but applies the hash, the keyspace set, the set indexes and the
+ * {@link RangeIndexed} sorted sets in one {@code MULTI}/{@code EXEC}. The set indexes an entity is currently listed in are tracked in
+ * {@code <keyspace>:<id>:idx}, which is watched while the old memberships are read, so concurrent writes of the same entity are retried rather than
+ * leaving stale index entries behind.
+ * </p>
+ * <p>
+ * In {@link RedisEntityCodec.StorageMode#COMPACT} mode, the hash is replaced by a single value encoded by the {@link RedisEntityCodec}, while the
+ * keyspace set and the indexes stay the same.
+ * </p>
+ * <p>
+ * {@link SortedIdSet} properties are replaced along with the entity in the same transaction. Adding or removing single IDs without saving the entity,
+ * as the {@link RedisMutationScripts} and {@link RedisMutationTransactions} do, only costs a {@code ZADD} or {@code ZREM}.
+ * </p>
+ * <p>
+ * Once a write is applied, its key is invalidated in the {@link RedisNearCache}, if one is configured, so this instance reads its own writes right
+ * away instead of once the keyspace notification arrives. For the same reason, the write is reported to the {@link RedisReplicaRouting}, if
+ * reads go to replicas.
+ * </p>
+ * <p>
+ * If the {@link RedisPartitions} are enabled, all keys of an entity are in the same partition and writes run as the {@code save-entity} and
+ * {@code delete-entity} scripts instead, since Redis Cluster does not support {@code MULTI} on a cluster connection.
+ * </p>
+ * <p>
+ * Either way, every write appends its {@link RedisChange}s to the {@link RedisChangeStream} along with the data, if changes are recorded.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.07
+ * @since 19-10-2026
+ */
+@Component
+public class RedisEntityWriter {
+
+  private static final Logger logger = Logger.getLogger(RedisEntityWriter.class.getName());
+  private static final int MAX_ATTEMPTS = 16;
+
+  private static final RedisScript<Void> SAVE_ENTITY = RedisScripts.of("save-entity", null);
+  private static final RedisScript<Void> DELETE_ENTITY = RedisScripts.of("delete-entity", null);
+
+  private final RedisTemplate<byte[], byte[]> redisTemplate;
+
+  private final RedisConverter redisConverter;
+
+  private final RedisEntityCodec redisEntityCodec;
+
+  private final RedisNearCache nearCache;
+
+  private final RedisIdAllocator redisIdAllocator;
+
+  private final RedisPartitions redisPartitions;
+
+  private final RedisChangeStream redisChangeStream;
+
+  private final RedisReplicaRouting replicaRouting;
+
+  private final Map<Class<?>, List<String>> rangeIndexes = new ConcurrentHashMap<>();
+
+  @Autowired
+  public RedisEntityWriter(@Qualifier("rawRedisTemplate") RedisTemplate<byte[], byte[]> redisTemplate,
+      RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec,
+      ObjectProvider<RedisNearCache> nearCache,
+      RedisIdAllocator redisIdAllocator,
+      RedisPartitions redisPartitions,
+      RedisChangeStream redisChangeStream,
+      ObjectProvider<RedisReplicaRouting> replicaRouting) {
+    this.redisTemplate = redisTemplate;
+    this.redisConverter = redisConverter;
+    this.redisEntityCodec = redisEntityCodec;
+    this.nearCache = nearCache.getIfAvailable();
+    this.redisIdAllocator = redisIdAllocator;
+    this.redisPartitions = redisPartitions;
+    this.redisChangeStream = redisChangeStream;
+    this.replicaRouting = replicaRouting.getIfAvailable();
+  }
+
+  /**
+   * Saves the given entity, replacing any previous version along with its index entries. Entities without an ID are assigned the next one of their
+   * keyspace by the {@link RedisIdAllocator}, in the partition of their {@link Colocated} reference if they have one.
+   *
+   * @return The saved entity.
+   */
+  public <T> T save(T entity) {
+    return save(entity, List.of());
+  }
+
+  /**
+   * Saves the given entity like {@link #save(Object)}, and applies the given updates of the sorted ID sets of other entities along with it.
+   */
+  <T> T save(T entity, List<IdSetUpdate> updates) {
+    RedisPersistentEntity<?> persistentEntity = redisConverter.getMappingContext().getRequiredPersistentEntity(entity.getClass());
+    PersistentPropertyAccessor<T> accessor = persistentEntity.getPropertyAccessor(entity);
+    RedisPersistentProperty idProperty = persistentEntity.getRequiredIdProperty();
+    if (accessor.getProperty(idProperty) == null) {
+      long sequence = redisIdAllocator.nextId(persistentEntity.getKeySpace());
+      accessor.setProperty(idProperty, redisPartitions.idFor(sequence, redisPartitions.colocatedPartition(entity)));
+    }
+    Object idValue = accessor.getProperty(idProperty);
+    byte[] id = toBytes(idValue);
+    String keyspace = redisPartitions.keyspace(persistentEntity.getKeySpace(), idValue);
+    Collection<IndexedData> indexes;
+    Map<byte[], byte[]> hash;
+    byte[] encoded;
+    if (redisEntityCodec.isCompact()) {
+      indexes = redisConverter.getIndexResolver().resolveIndexesFor(TypeInformation.of(entity.getClass()), entity);
+      hash = null;
+      encoded = redisEntityCodec.encode(entity);
+    } else {
+      RedisData data = new RedisData();
+      redisConverter.write(entity, data);
+      indexes = data.getIndexedData();
+      hash = data.getBucket().rawMap();
+      encoded = null;
+    }
+    List<byte[]> indexKeys = setIndexKeys(keyspace, indexes);
+    byte[] storageKey = redisEntityCodec.storageKey(persistentEntity.getType(), persistentEntity.getKeySpace(), id);
+    // The score of each range index, or null to remove the entity from it
+    Map<byte[], Double> rangeScores = new LinkedHashMap<>();
+    for (String property : rangeIndexesOf(persistentEntity)) {
+      Object value = accessor.getProperty(persistentEntity.getRequiredPersistentProperty(property));
+      rangeScores.put(rangeIndexKey(keyspace, property), value instanceof Number number ? number.doubleValue() : null);
+    }
+    Map<byte[], Collection<?>> idSets = new LinkedHashMap<>();
+    for (Field idSet : SortedIdSets.of(persistentEntity.getType())) {
+      Object members = ReflectionUtils.getField(idSet, entity);
+      idSets.put(SortedIdSets.key(storageKey, idSet), members instanceof Collection<?> collection ? collection : List.of());
+    }
+    if (redisPartitions.isEnabled()) {
+      saveWithScript(keyspace, idValue, storageKey, encoded, hash, indexKeys, rangeScores, idSets, updates);
+      return entity;
+    }
+    transact(keyspace, id, storageKey, (operations, oldIndexKeys) -> {
+      if (encoded != null) {
+        operations.opsForValue().set(storageKey, encoded);
+      } else {
+        operations.delete(storageKey);
+        operations.opsForHash().putAll(storageKey, hash);
+      }
+      idSets.forEach((idSetKey, members) -> {
+        operations.delete(idSetKey);
+        if (!members.isEmpty()) {
+          Set<TypedTuple<byte[]>> tuples = new LinkedHashSet<>();
+          for (Object member : members) {
+            tuples.add(new DefaultTypedTuple<>(toBytes(member), ((Number) member).doubleValue()));
+          }
+          operations.opsForZSet().add(idSetKey, tuples);
+        }
+      });
+      operations.opsForSet().add(toBytes(keyspace), id);
+      removeFromIndexes(operations, keyspace, id, oldIndexKeys);
+      for (byte[] indexKey : indexKeys) {
+        operations.opsForSet().add(indexKey, id);
+        operations.opsForSet().add(idxKey(keyspace, id), indexKey);
+      }
+      rangeScores.forEach((rangeIndexKey, score) -> {
+        if (score != null) {
+          operations.opsForZSet().add(rangeIndexKey, id, score);
+        } else {
+          operations.opsForZSet().remove(rangeIndexKey, id);
+        }
+      });
+      queue(operations, updates, idValue);
+      redisChangeStream.add(operations, RedisChange.put(persistentEntity.getKeySpace(), idValue));
+    });
+    return entity;
+  }
+
+  /**
+   * Deletes the entity of the given type and ID along with all its index entries. Does nothing if there is no such entity.
+   */
+  public void delete(Class<?> type, Object id) {
+    delete(type, id, List.of());
+  }
+
+  /**
+   * Deletes the entity like {@link #delete(Class, Object)}, and applies the given updates of the sorted ID sets of other entities along with it.
+   */
+  void delete(Class<?> type, Object id, List<IdSetUpdate> updates) {
+    RedisPersistentEntity<?> persistentEntity = redisConverter.getMappingContext().getRequiredPersistentEntity(type);
+    String keyspace = redisPartitions.keyspace(persistentEntity.getKeySpace(), id);
+    byte[] rawId = toBytes(id);
+    byte[] storageKey = redisEntityCodec.storageKey(type, persistentEntity.getKeySpace(), rawId);
+    List<byte[]> rangeIndexKeys = new ArrayList<>();
+    for (String property : rangeIndexesOf(persistentEntity)) {
+      rangeIndexKeys.add(rangeIndexKey(keyspace, property));
+    }
+    List<byte[]> idSetKeys = new ArrayList<>();
+    for (Field idSet : SortedIdSets.of(type)) {
+      idSetKeys.add(SortedIdSets.key(storageKey, idSet));
+    }
+    if (redisPartitions.isEnabled()) {
+      deleteWithScript(keyspace, rawId, storageKey, rangeIndexKeys, idSetKeys, updates);
+      return;
+    }
+    transact(keyspace, rawId, storageKey, (operations, oldIndexKeys) -> {
+      operations.delete(storageKey);
+      for (byte[] idSetKey : idSetKeys) {
+        operations.delete(idSetKey);
+      }
+      operations.opsForSet().remove(toBytes(keyspace), rawId);
+      removeFromIndexes(operations, keyspace, rawId, oldIndexKeys);
+      for (byte[] rangeIndexKey : rangeIndexKeys) {
+        operations.opsForZSet().remove(rangeIndexKey, rawId);
+      }
+      queue(operations, updates, id);
+      redisChangeStream.add(operations, RedisChange.delete(persistentEntity.getKeySpace(), id));
+    });
+  }
+
+  /**
+   * @return The key of the sorted set of the given {@link RangeIndexed} property.
+   */
+  public static byte[] rangeIndexKey(String keyspace, String property) {
+    return toBytes(keyspace + ":" + property);
+  }
+
+  /**
+   * Runs the given commands in a transaction, after reading the set indexes the entity is currently listed in. Retries if the entity was written
+   * concurrently in the meantime, and invalidates the entity stored under the given key in the near cache once the transaction went through.
+   */
+  private void transact(String keyspace, byte[] id, byte[] storageKey, Commands commands) {
+    byte[] idxKey = idxKey(keyspace, id);
+    for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+      List<Object> results = redisTemplate.execute(new SessionCallback<>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> List<Object> execute(RedisOperations<K, V> session) throws DataAccessException {
+          RedisOperations<byte[], byte[]> operations = (RedisOperations<byte[], byte[]>) session;
+          operations.watch(idxKey);
+          Set<byte[]> oldIndexKeys = operations.opsForSet().members(idxKey);
+          operations.multi();
+          commands.queue(operations, oldIndexKeys != null ? oldIndexKeys : Set.of());
+          return operations.exec();
+        }
+      });
+      // EXEC answers with one result per queued command, or nothing if the watched key changed
+      if (results != null && !results.isEmpty()) {
+        invalidate(storageKey);
+        return;
+      }
+      logger.fine("Retrying write of " + keyspace + ":" + new String(id, StandardCharsets.UTF_8) + " after a concurrent update");
+    }
+    throw new OptimisticLockingFailureException("Could not write " + keyspace + ":" + new String(id, StandardCharsets.UTF_8) + " after "
+        + MAX_ATTEMPTS + " attempts");
+  }
+
+  /**
+   * Applies a save as the {@code save-entity} script. Redis Cluster does not support transactions, but runs a script whose keys share a slot, which
+   * the hash tags of the {@link RedisPartitions} ensure. The script reads the old index memberships itself, so no {@code WATCH} is needed.
+   */
+  private void saveWithScript(String keyspace, Object idValue, byte[] storageKey, byte[] encoded, Map<byte[], byte[]> hash, List<byte[]> indexKeys,
+      Map<byte[], Double> rangeScores, Map<byte[], Collection<?>> idSets, List<IdSetUpdate> updates) {
+    byte[] id = toBytes(idValue);
+    List<byte[]> keys = new ArrayList<>();
+    keys.add(storageKey);
+    keys.add(toBytes(keyspace));
+    keys.add(idxKey(keyspace, id));
+    keys.addAll(indexKeys);
+    keys.addAll(rangeScores.keySet());
+    keys.addAll(idSets.keySet());
+    List<byte[]> args = new ArrayList<>();
+    args.add(id);
+    args.add(toBytes(encoded != null ? "value" : "hash"));
+    args.add(toBytes(Integer.toString(indexKeys.size())));
+    args.add(toBytes(Integer.toString(rangeScores.size())));
+    args.add(toBytes(Integer.toString(idSets.size())));
+    args.add(redisChangeStream.scriptArgument());
+    for (Double score : rangeScores.values()) {
+      args.add(toBytes(score != null ? Double.toString(score) : ""));
+    }
+    for (Collection<?> members : idSets.values()) {
+      args.add(toBytes(Integer.toString(members.size())));
+      for (Object member : members) {
+        args.add(toBytes(member));
+      }
+    }
+    for (IdSetUpdate update : updates) {
+      keys.add(update.key());
+      args.add(toBytes(update.add() ? "+" : "-"));
+      args.add(toBytes(update.change().keyspace()));
+      args.add(toBytes(update.change().id()));
+    }
+    if (redisChangeStream.isEnabled()) {
+      keys.add(redisChangeStream.key(idValue));
+    }
+    if (encoded != null) {
+      args.add(encoded);
+    } else {
+      hash.forEach((field, value) -> {
+        args.add(field);
+        args.add(value);
+      });
+    }
+    redisTemplate.execute(SAVE_ENTITY, keys, args.toArray());
+    invalidate(storageKey);
+  }
+
+  /**
+   * Applies a delete as the {@code delete-entity} script, see {@link #saveWithScript}.
+   */
+  private void deleteWithScript(String keyspace, byte[] id, byte[] storageKey, List<byte[]> rangeIndexKeys, List<byte[]> idSetKeys,
+      List<IdSetUpdate> updates) {
+    List<byte[]> keys = new ArrayList<>();
+    keys.add(storageKey);
+    keys.add(toBytes(keyspace));
+    keys.add(idxKey(keyspace, id));
+    keys.addAll(rangeIndexKeys);
+    keys.addAll(idSetKeys);
+    List<byte[]> args = new ArrayList<>();
+    args.add(id);
+    args.add(toBytes(Integer.toString(rangeIndexKeys.size())));
+    args.add(toBytes(Integer.toString(idSetKeys.size())));
+    args.add(redisChangeStream.scriptArgument());
+    for (IdSetUpdate update : updates) {
+      keys.add(update.key());
+      args.add(toBytes(update.change().keyspace()));
+      args.add(toBytes(update.change().id()));
+    }
+    if (redisChangeStream.isEnabled()) {
+      keys.add(redisChangeStream.key(id));
+    }
+    redisTemplate.execute(DELETE_ENTITY, keys, args.toArray());
+    invalidate(storageKey);
+  }
+
+  private void queue(RedisOperations<byte[], byte[]> operations, List<IdSetUpdate> updates, Object id) {
+    for (IdSetUpdate update : updates) {
+      if (update.add()) {
+        operations.opsForZSet().add(update.key(), toBytes(id), ((Number) id).doubleValue());
+      } else {
+        operations.opsForZSet().remove(update.key(), (Object) toBytes(id));
+      }
+      redisChangeStream.add(operations, update.change());
+    }
+  }
+
+  private void invalidate(byte[] storageKey) {
+    String key = new String(storageKey, StandardCharsets.UTF_8);
+    if (nearCache != null) {
+      nearCache.invalidate(key);
+    }
+    if (replicaRouting != null) {
+      replicaRouting.written(key);
+    }
+  }
+
+  /**
+   * @return The keys of the set indexes the entity with the given index data is listed in.
+   */
+  List<byte[]> setIndexKeys(String keyspace, Collection<IndexedData> indexes) {
+    List<byte[]> indexKeys = new ArrayList<>();
+    for (IndexedData indexedData : indexes) {
+      if (indexedData instanceof SimpleIndexedPropertyValue value && value.getValue() != null) {
+        indexKeys.add(concat(toBytes(keyspace + ":" + value.getIndexName() + ":"), toBytes(value.getValue())));
+      }
+    }
+    return indexKeys;
+  }
+
+  private static void removeFromIndexes(RedisOperations<byte[], byte[]> operations, String keyspace, byte[] id, Set<byte[]> oldIndexKeys) {
+    for (byte[] indexKey : oldIndexKeys) {
+      operations.opsForSet().remove(indexKey, id);
+    }
+    operations.delete(idxKey(keyspace, id));
+  }
+
+  /**
+   * @return The names of the {@link RangeIndexed} properties of the given entity.
+   */
+  List<String> rangeIndexesOf(RedisPersistentEntity<?> persistentEntity) {
+    return rangeIndexes.computeIfAbsent(persistentEntity.getType(), type -> {
+      List<String> properties = new ArrayList<>();
+      persistentEntity.doWithProperties((PropertyHandler<RedisPersistentProperty>) property -> {
+        if (property.isAnnotationPresent(RangeIndexed.class)) {
+          properties.add(property.getName());
+        }
+      });
+      return List.copyOf(properties);
+    });
+  }
+
+  private byte[] toBytes(Object value) {
+    return value instanceof byte[] bytes ? bytes : redisConverter.getConversionService().convert(value, byte[].class);
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] objectKey(String keyspace, byte[] id) {
+    return concat(toBytes(keyspace + ":"), id);
+  }
+
+  private static byte[] idxKey(String keyspace, byte[] id) {
+    return concat(objectKey(keyspace, id), toBytes(":idx"));
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] result = new byte[first.length + second.length];
+    System.arraycopy(first, 0, result, 0, first.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+
+  /**
+   * Queues the commands of a write within a transaction.
+   */
+  @FunctionalInterface
+  private interface Commands {
+
+    void queue(RedisOperations<byte[], byte[]> operations, Set<byte[]> oldIndexKeys);
+  }
+
+  /**
+   * Adds the ID of the written entity to, or removes it from, the {@link SortedIdSet} of another entity stored under the given key, which must be in
+   * the same partition. The given change of the other entity is recorded along with it.
+   */
+  record IdSetUpdate(byte[] key, boolean add, RedisChange change) {
+
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.server.models.Book;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.mapping.RedisPersistentEntity;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.util.TypeInformation;
+
+/**
+ * Applies the mutations that change a book together with its author as Lua scripts, each in a single atomic round trip.
+ * <p>
+ * Through the persistence services, creating a book takes a read of the author, a write of the book and a write of the author, and another server
+ * instance may change the author in between. The scripts in {@code scripts/} read the author, write the book and add or remove it in the
+ * {@link SortedIdSet} of the published books of the author on the server instead, maintaining the same keyspace sets, set indexes and
+ * {@link RangeIndexed} sorted sets as the {@link RedisEntityWriter}. Neither rewrites the author, and deleting an author deletes their books in the
+ * same script.
+ * </p>
+ * <p>
+ * Scripts are run with {@code EVALSHA} and only sent in full with {@code EVAL} the first time a server does not know them yet. They address the
+ * entity hashes by key, so they only work in {@link RedisEntityCodec.StorageMode#HASH} mode. The {@link RedisMutationTransactions} take their
+ * place in compact mode.
+ * </p>
+ * <p>
+ * Redis Cluster requires every key a script touches to be declared and in the hash slot of the first. The books of an author and the author of a
+ * book are read before a delete to declare their keys, and the scripts change nothing and hand back the actual ones if they changed in between,
+ * upon which the delete is retried. The set index keys an entity is listed in are only known from the set tracking its indexes, so the scripts
+ * cannot declare them. They were declared by the script or transaction that listed them, and with {@link RedisPartitions} they carry the hash tag
+ * of the entity, as do all keys of the entities and of books {@link Colocated} with their author. Each script checks its declared keys against the
+ * slot of the first before it is run, so a key outside the partition fails the mutation instead of the listed keys ending up in another slot.
+ * </p>
+ * <p>
+ * The scripts append the changes of the book and its author to the {@link RedisChangeStream} along with the data, if changes are recorded. The
+ * changed keys are invalidated in the {@link RedisNearCache} and reported to the {@link RedisReplicaRouting} once a script went through.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.06
+ * @since 19-10-2026
+ */
+public class RedisMutationScripts implements BookAuthorMutations {
+
+  private static final Field PUBLISHED_BOOK_IDS = SortedIdSets.of(RedisAuthor.class).get(0);
+
+  private static final byte[] AUTHOR_ID = toBytes("author.id");
+
+  private static final RedisScript<List<Object>> CREATE_BOOK = RedisScripts.ofList("create-book");
+  private static final RedisScript<List<Object>> DELETE_BOOK = RedisScripts.ofList("delete-book");
+  private static final RedisScript<List<Object>> DELETE_AUTHOR = RedisScripts.ofList("delete-author");
+
+  private final RedisTemplate<byte[], byte[]> redisTemplate;
+
+  private final RedisConverter redisConverter;
+
+  private final RedisEntityWriter redisEntityWriter;
+
+  private final RedisIdAllocator redisIdAllocator;
+
+  private final RedisPartitions redisPartitions;
+
+  private final RedisChangeStream redisChangeStream;
+
+  private final RedisNearCache nearCache;
+
+  private final RedisReplicaRouting replicaRouting;
+
+  /**
+   * @param redisTemplate     The {@link RedisTemplate} passing keys, arguments and results as plain byte arrays.
+   * @param redisConverter    The converter mapping the entities to hashes.
+   * @param redisEntityWriter The writer whose index layout the scripts maintain.
+   * @param redisIdAllocator  The allocator of the IDs of new books.
+   * @param redisPartitions   The {@link RedisPartitions} deciding the hash tags of the keys.
+   * @param redisChangeStream The {@link RedisChangeStream} the scripts record their changes in.
+   * @param nearCache         The {@link RedisNearCache} to invalidate the changed entities in, or {@code null} if there is none.
+   * @param replicaRouting    The {@link RedisReplicaRouting} to report the changed entities to, or {@code null} if reads go to the primary only.
+   */
+  public RedisMutationScripts(RedisTemplate<byte[], byte[]> redisTemplate,
+      RedisConverter redisConverter,
+      RedisEntityWriter redisEntityWriter,
+      RedisIdAllocator redisIdAllocator,
+      RedisPartitions redisPartitions,
+      RedisChangeStream redisChangeStream,
+      RedisNearCache nearCache,
+      RedisReplicaRouting replicaRouting) {
+    this.redisTemplate = redisTemplate;
+    this.redisConverter = redisConverter;
+    this.redisEntityWriter = redisEntityWriter;
+    this.redisIdAllocator = redisIdAllocator;
+    this.redisPartitions = redisPartitions;
+    this.redisChangeStream = redisChangeStream;
+    this.nearCache = nearCache;
+    this.replicaRouting = replicaRouting;
+  }
+
+  @Override
+  public Book createBook(Book book, Long authorId) {
+    RedisBook redisBook = (RedisBook) book;
+    RedisPersistentEntity<?> bookEntity = persistentEntity(RedisBook.class);
+    String authorKeyspace = persistentEntity(RedisAuthor.class).getKeySpace();
+    if (redisBook.getId() == null) {
+      long sequence = redisIdAllocator.nextId(bookEntity.getKeySpace());
+      redisBook.setId(redisPartitions.idFor(sequence, redisPartitions.partitionOf(authorId)));
+    }
+    byte[] bookId = toBytes(redisBook.getId());
+    // Books are colocated with their author, so all keys of the script are in the same partition
+    String bookKeyspace = redisPartitions.keyspace(bookEntity.getKeySpace(), bookId);
+
+    // The script copies the fields of the author into the hash, but the indexes only need the ID of the author
+    RedisAuthor authorReference = new RedisAuthor();
+    authorReference.setId(authorId);
+    redisBook.setAuthor(authorReference);
+    List<byte[]> setIndexKeys = redisEntityWriter.setIndexKeys(bookKeyspace,
+        redisConverter.getIndexResolver().resolveIndexesFor(TypeInformation.of(RedisBook.class), redisBook));
+    redisBook.setAuthor(null);
+    RedisData data = new RedisData();
+    redisConverter.write(redisBook, data);
+
+    List<byte[]> keys = new ArrayList<>();
+    keys.add(key(redisPartitions.keyspace(authorKeyspace, authorId), toBytes(authorId)));
+    keys.add(SortedIdSets.key(keys.get(0), PUBLISHED_BOOK_IDS));
+    keys.add(key(bookKeyspace, bookId));
+    keys.add(toBytes(bookKeyspace));
+    keys.add(idxKey(bookKeyspace, bookId));
+    keys.addAll(setIndexKeys);
+    List<byte[]> scores = new ArrayList<>();
+    PersistentPropertyAccessor<RedisBook> accessor = bookEntity.getPropertyAccessor(redisBook);
+    for (String property : redisEntityWriter.rangeIndexesOf(bookEntity)) {
+      if (accessor.getProperty(bookEntity.getRequiredPersistentProperty(property)) instanceof Number number) {
+        keys.add(RedisEntityWriter.rangeIndexKey(bookKeyspace, property));
+        scores.add(toBytes(Double.toString(number.doubleValue())));
+      }
+    }
+    addChangeStream(keys, bookId);
+    List<byte[]> args = new ArrayList<>();
+    args.add(bookId);
+    args.add(toBytes(Integer.toString(setIndexKeys.size())));
+    args.add(toBytes(Integer.toString(scores.size())));
+    args.add(redisChangeStream.scriptArgument());
+    args.addAll(scores);
+    data.getBucket().rawMap().forEach((field, value) -> {
+      args.add(field);
+      args.add(value);
+    });
+
+    List<?> author = run(CREATE_BOOK, keys, args);
+    invalidate(keys.get(0), keys.get(2));
+    if (author.isEmpty()) {
+      return null;
+    }
+    Map<byte[], byte[]> authorHash = new LinkedHashMap<>();
+    for (int i = 0; i + 1 < author.size(); i += 2) {
+      authorHash.put((byte[]) author.get(i), (byte[]) author.get(i + 1));
+    }
+    RedisData authorData = new RedisData(authorHash);
+    authorData.setId(String.valueOf(authorId));
+    authorData.setKeyspace(authorKeyspace);
+    // Like the authors embedded in books that are read, the returned author comes without the IDs of their books
+    redisBook.setAuthor(redisConverter.read(RedisAuthor.class, authorData));
+    return redisBook;
+  }
+
+  @Override
+  public boolean deleteBook(Long id) {
+    RedisPersistentEntity<?> bookEntity = persistentEntity(RedisBook.class);
+    String bookKeyspace = redisPartitions.keyspace(bookEntity.getKeySpace(), id);
+    String authorKeyspace = redisPartitions.keyspace(persistentEntity(RedisAuthor.class).getKeySpace(), id);
+    byte[] bookId = toBytes(id);
+    byte[] bookKey = key(bookKeyspace, bookId);
+    byte[] authorId = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hashCommands().hGet(bookKey, AUTHOR_ID));
+    while (true) {
+      List<byte[]> keys = new ArrayList<>();
+      keys.add(bookKey);
+      keys.add(toBytes(bookKeyspace));
+      keys.add(idxKey(bookKeyspace, bookId));
+      for (String property : redisEntityWriter.rangeIndexesOf(bookEntity)) {
+        keys.add(RedisEntityWriter.rangeIndexKey(bookKeyspace, property));
+      }
+      if (authorId != null && authorId.length > 0) {
+        // Books are colocated with their author, so the author is in the partition of the book
+        keys.add(SortedIdSets.key(key(authorKeyspace, authorId), PUBLISHED_BOOK_IDS));
+      }
+      addChangeStream(keys, bookId);
+      List<?> result = run(DELETE_BOOK, keys, List.of(bookId, authorId != null ? authorId : new byte[0], redisChangeStream.scriptArgument()));
+      if (result.isEmpty()) {
+        invalidate(bookKey);
+        return false;
+      }
+      authorId = (byte[]) result.get(1);
+      if (applied(result)) {
+        invalidate(bookKey);
+        if (authorId.length > 0) {
+          invalidate(key(authorKeyspace, authorId));
+        }
+        return true;
+      }
+    }
+  }
+
+  @Override
+  public boolean deleteAuthor(Long id) {
+    RedisPersistentEntity<?> bookEntity = persistentEntity(RedisBook.class);
+    String bookKeyspace = redisPartitions.keyspace(bookEntity.getKeySpace(), id);
+    String authorKeyspace = redisPartitions.keyspace(persistentEntity(RedisAuthor.class).getKeySpace(), id);
+    byte[] authorId = toBytes(id);
+    byte[] authorKey = key(authorKeyspace, authorId);
+    byte[] publishedBooksKey = SortedIdSets.key(authorKey, PUBLISHED_BOOK_IDS);
+    List<String> rangeIndexes = redisEntityWriter.rangeIndexesOf(bookEntity);
+    List<byte[]> bookIds = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> {
+      Set<byte[]> members = connection.zSetCommands().zRange(publishedBooksKey, 0, -1);
+      return members != null ? new ArrayList<>(members) : List.of();
+    });
+    while (true) {
+      List<byte[]> keys = new ArrayList<>();
+      keys.add(authorKey);
+      keys.add(publishedBooksKey);
+      keys.add(toBytes(authorKeyspace));
+      keys.add(idxKey(authorKeyspace, authorId));
+      keys.add(toBytes(bookKeyspace));
+      for (String property : rangeIndexes) {
+        keys.add(RedisEntityWriter.rangeIndexKey(bookKeyspace, property));
+      }
+      for (byte[] bookId : bookIds) {
+        keys.add(key(bookKeyspace, bookId));
+        keys.add(idxKey(bookKeyspace, bookId));
+      }
+      addChangeStream(keys, authorId);
+      List<byte[]> args = new ArrayList<>();
+      args.add(authorId);
+      args.add(redisChangeStream.scriptArgument());
+      args.add(toBytes(Integer.toString(rangeIndexes.size())));
+      args.addAll(bookIds);
+      List<?> result = run(DELETE_AUTHOR, keys, args);
+      if (result.isEmpty()) {
+        invalidate(authorKey);
+        return false;
+      }
+      bookIds = result.subList(1, result.size()).stream().map(bookId -> (byte[]) bookId).toList();
+      if (applied(result)) {
+        invalidate(authorKey);
+        bookIds.forEach(bookId -> invalidate(key(bookKeyspace, bookId)));
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @return Whether a delete script went through, rather than finding other related entities than the expected ones.
+   */
+  private static boolean applied(List<?> result) {
+    return ((Number) result.get(0)).longValue() == 1;
+  }
+
+  /**
+   * Adds the stream recording the changes of the entity with the given ID as the last key, if changes are recorded.
+   */
+  private void addChangeStream(List<byte[]> keys, byte[] id) {
+    if (redisChangeStream.isEnabled()) {
+      keys.add(redisChangeStream.key(id));
+    }
+  }
+
+  private List<Object> run(RedisScript<List<Object>> script, List<byte[]> keys, List<byte[]> args) {
+    if (redisPartitions.isEnabled()) {
+      checkSameSlot(keys);
+    }
+    // The byte array serializers of the template pass arguments and bulk replies through unchanged
+    List<Object> result = redisTemplate.execute(script, keys, args.toArray());
+    return result != null ? result : List.of();
+  }
+
+  /**
+   * Checks that all keys are in the hash slot of the first, which the set index keys listed by the script then are in as well.
+   *
+   * @throws IllegalStateException If a key is in another slot.
+   */
+  private static void checkSameSlot(List<byte[]> keys) {
+    int slot = ClusterSlotHashUtil.calculateSlot(keys.get(0));
+    for (byte[] key : keys) {
+      if (ClusterSlotHashUtil.calculateSlot(key) != slot) {
+        throw new IllegalStateException("Key " + new String(key, StandardCharsets.UTF_8) + " of a script is not in the hash slot of "
+            + new String(keys.get(0), StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  private void invalidate(byte[]... keys) {
+    for (byte[] key : keys) {
+      String storageKey = new String(key, StandardCharsets.UTF_8);
+      if (nearCache != null) {
+        nearCache.invalidate(storageKey);
+      }
+      if (replicaRouting != null) {
+        replicaRouting.written(storageKey);
+      }
+    }
+  }
+
+  private RedisPersistentEntity<?> persistentEntity(Class<?> type) {
+    return redisConverter.getMappingContext().getRequiredPersistentEntity(type);
+  }
+
+  private byte[] toBytes(Object value) {
+    return redisConverter.getConversionService().convert(value, byte[].class);
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] key(String keyspace, byte[] id) {
+    byte[] prefix = toBytes(keyspace + ":");
+    byte[] key = new byte[prefix.length + id.length];
+    System.arraycopy(prefix, 0, key, 0, prefix.length);
+    System.arraycopy(id, 0, key, prefix.length, id.length);
+    return key;
+  }
+
+  private static byte[] idxKey(String keyspace, byte[] id) {
+    return key(keyspace, toBytes(new String(id, StandardCharsets.UTF_8) + ":idx"));
+  }
+}
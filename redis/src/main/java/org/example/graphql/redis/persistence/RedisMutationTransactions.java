@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisEntityWriter.IdSetUpdate;
+import org.example.graphql.server.models.Book;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.springframework.data.redis.core.convert.RedisConverter;
+
+/**
+ * Applies the mutations that change a book together with its author in {@link RedisEntityCodec.StorageMode#COMPACT} mode, where the
+ * {@link RedisMutationScripts} cannot address the fields of an entity.
+ * <p>
+ * Creating or deleting a book writes the book and adds or removes its ID in the {@link SortedIdSet} of the published books of the author in one
+ * write of the {@link RedisEntityWriter}, so the author itself is never rewritten and concurrent changes of the author are not lost. Deleting
+ * an author deletes their books one write at a time before the author, so unlike the script, a failure midway leaves the author with fewer
+ * books behind.
+ * </p>
+ * <p>
+ * The entities a mutation depends on are read with {@link RedisEntityReader#findByIdOnPrimary(Class, Object)}, so they are never outdated copies
+ * from a replica.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.03
+ * @since 19-10-2026
+ */
+public class RedisMutationTransactions implements BookAuthorMutations {
+
+  private static final Field PUBLISHED_BOOK_IDS = SortedIdSets.of(RedisAuthor.class).get(0);
+
+  private final RedisConverter redisConverter;
+
+  private final RedisEntityCodec redisEntityCodec;
+
+  private final RedisEntityReader redisEntityReader;
+
+  private final RedisEntityWriter redisEntityWriter;
+
+  private final RedisNearCache nearCache;
+
+  private final RedisReplicaRouting replicaRouting;
+
+  /**
+   * @param redisConverter    The converter providing the keyspaces and the conversion of IDs.
+   * @param redisEntityCodec  The codec providing the keys of the entities.
+   * @param redisEntityReader The reader of books and authors.
+   * @param redisEntityWriter The writer applying the writes.
+   * @param nearCache         The {@link RedisNearCache} to invalidate the changed authors in, or {@code null} if there is none.
+   * @param replicaRouting    The {@link RedisReplicaRouting} to report the changed authors to, or {@code null} if reads go to the primary only.
+   */
+  public RedisMutationTransactions(RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec,
+      RedisEntityReader redisEntityReader,
+      RedisEntityWriter redisEntityWriter,
+      RedisNearCache nearCache,
+      RedisReplicaRouting replicaRouting) {
+    this.redisConverter = redisConverter;
+    this.redisEntityCodec = redisEntityCodec;
+    this.redisEntityReader = redisEntityReader;
+    this.redisEntityWriter = redisEntityWriter;
+    this.nearCache = nearCache;
+    this.replicaRouting = replicaRouting;
+  }
+
+  @Override
+  public Book createBook(Book book, Long authorId) {
+    RedisAuthor author = redisEntityReader.findByIdOnPrimary(RedisAuthor.class, authorId);
+    if (author == null) {
+      return null;
+    }
+    RedisBook redisBook = (RedisBook) book;
+    redisBook.setAuthor(author);
+    redisEntityWriter.save(redisBook, List.of(new IdSetUpdate(publishedBookIdsKey(authorId), true, authorChange(authorId))));
+    author.getPublishedBookIds().add(redisBook.getId());
+    invalidateAuthor(authorId);
+    return redisBook;
+  }
+
+  @Override
+  public boolean deleteBook(Long id) {
+    RedisBook book = redisEntityReader.findByIdOnPrimary(RedisBook.class, id);
+    if (book == null) {
+      return false;
+    }
+    if (book.getAuthor() == null) {
+      redisEntityWriter.delete(RedisBook.class, id);
+      return true;
+    }
+    Long authorId = book.getAuthor().getId();
+    redisEntityWriter.delete(RedisBook.class, id, List.of(new IdSetUpdate(publishedBookIdsKey(authorId), false, authorChange(authorId))));
+    invalidateAuthor(authorId);
+    return true;
+  }
+
+  @Override
+  public boolean deleteAuthor(Long id) {
+    RedisAuthor author = redisEntityReader.findByIdOnPrimary(RedisAuthor.class, id);
+    if (author == null) {
+      return false;
+    }
+    for (Long bookId : author.getPublishedBookIds()) {
+      redisEntityWriter.delete(RedisBook.class, bookId);
+    }
+    redisEntityWriter.delete(RedisAuthor.class, id);
+    return true;
+  }
+
+  private byte[] publishedBookIdsKey(Long authorId) {
+    return SortedIdSets.key(authorKey(authorId), PUBLISHED_BOOK_IDS);
+  }
+
+  private RedisChange authorChange(Long authorId) {
+    return RedisChange.put(keyspaceOf(RedisAuthor.class), authorId);
+  }
+
+  private byte[] authorKey(Long authorId) {
+    return redisEntityCodec.storageKey(RedisAuthor.class, keyspaceOf(RedisAuthor.class), toBytes(authorId));
+  }
+
+  private void invalidateAuthor(Long authorId) {
+    String key = new String(authorKey(authorId), StandardCharsets.UTF_8);
+    if (nearCache != null) {
+      nearCache.invalidate(key);
+    }
+    if (replicaRouting != null) {
+      replicaRouting.written(key);
+    }
+  }
+
+  private String keyspaceOf(Class<?> type) {
+    return redisConverter.getMappingContext().getRequiredPersistentEntity(type).getKeySpace();
+  }
+
+  private byte[] toBytes(Object value) {
+    return redisConverter.getConversionService().convert(value, byte[].class);
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+/**
+ * A bounded in-process cache of encoded entities in front of Redis, keyed by the Redis key of the entity. Entities are cached in the encoding of the
+ * {@link RedisEntityCodec}, so every read still decodes a fresh instance that callers may modify freely, but skips the round trip.
+ * <p>
+ * The cache stays coherent across server instances through Redis keyspace notifications: it listens to the {@code __keyspace@*__:<key>} channels
+ * of the cached keys and drops an entry whenever its key, or a key stored under it such as a {@link SortedIdSet}, is changed, deleted or expires,
+ * whoever made the change. Writes of this instance invalidate
+ * their keys right after they are applied, without waiting for the notification. Notifications published while the subscription is down are lost,
+ * so entries also expire after a fixed time to live, which bounds how stale a read can be in that case.
+ * </p>
+ * <p>
+ * A read that misses takes a {@link #stamp(String)} before it fetches the entity and adds it with {@link #putIfUnchanged(String, byte[], long)},
+ * which refuses the entry if the key may have been invalidated meanwhile, so a read racing with a write never caches the older version. Stamps are
+ * striped, so unrelated invalidations only occasionally cost a missed fill. Once the cache is full, an arbitrary entry is evicted for every new one.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+public class RedisNearCache implements MessageListener {
+
+  private static final int STRIPES = 256;
+  private static final String KEYSPACE_CHANNEL_SEPARATOR = "__:";
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+  private final int maxEntries;
+  private final long ttlNanos;
+
+  /**
+   * @param maxEntries The maximum number of cached entities.
+   * @param ttl        How long an entity stays cached at most.
+   */
+  public RedisNearCache(int maxEntries, Duration ttl) {
+    this.maxEntries = maxEntries;
+    this.ttlNanos = ttl.toNanos();
+  }
+
+  /**
+   * @return The encoded entity stored under the given key, or {@code null} if it is not cached.
+   */
+  public byte[] get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.expiresAt() > 0) {
+      entries.remove(key, entry);
+      return null;
+    }
+    return entry.data();
+  }
+
+  /**
+   * @return The current stamp of the given key, to be passed to {@link #putIfUnchanged(String, byte[], long)} after fetching it.
+   */
+  public long stamp(String key) {
+    return stamps.get(stripeOf(key));
+  }
+
+  /**
+   * Caches the encoded entity, unless the key may have been invalidated since the given stamp was taken.
+   */
+  public void putIfUnchanged(String key, byte[] data, long stamp) {
+    if (stamps.get(stripeOf(key)) != stamp) {
+      return;
+    }
+    makeRoom(key);
+    Entry entry = new Entry(data, System.nanoTime() + ttlNanos);
+    entries.put(key, entry);
+    // An invalidation may have slipped in between the check and the put
+    if (stamps.get(stripeOf(key)) != stamp) {
+      entries.remove(key, entry);
+    }
+  }
+
+  public void invalidate(String key) {
+    stamps.incrementAndGet(stripeOf(key));
+    entries.remove(key);
+  }
+
+  public void clear() {
+    for (int i = 0; i < STRIPES; i++) {
+      stamps.incrementAndGet(i);
+    }
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Invalidates the entity key a keyspace notification was published for, which is {@code <prefix>:<id>} for keys below it as well.
+   */
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+    int separator = channel.indexOf(KEYSPACE_CHANNEL_SEPARATOR);
+    if (separator >= 0) {
+      String key = channel.substring(separator + KEYSPACE_CHANNEL_SEPARATOR.length());
+      int idEnd = key.indexOf(':', key.indexOf(':') + 1);
+      invalidate(idEnd >= 0 ? key.substring(0, idEnd) : key);
+    }
+  }
+
+  private void makeRoom(String key) {
+    if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+      Iterator<String> keys = entries.keySet().iterator();
+      if (keys.hasNext()) {
+        entries.remove(keys.next());
+      }
+    }
+  }
+
+  private static int stripeOf(String key) {
+    return (key.hashCode() & 0x7fffffff) % STRIPES;
+  }
+
+  private record Entry(byte[] data, long expiresAt) {
+
+  }
+}
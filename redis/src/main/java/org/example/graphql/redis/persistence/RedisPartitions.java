@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.mapping.RedisPersistentEntity;
+import org.springframework.data.redis.core.mapping.RedisPersistentProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits the keys of the entities into a fixed number of partitions, each of which Redis Cluster stores in a single hash slot.
+ * <p>
+ * With {@code redis.cluster.partitions} set to a positive number, every key of an entity carries the partition of the ID of the entity as a hash tag
+ * after its keyspace, e.g. {@code book{7}:1031} with {@code book{7}:1031:idx}, {@code book{7}:author.id:263} and {@code book{7}:publishedYear}.
+ * Redis Cluster only hashes the tag, so the entity, its indexes and its {@link SortedIdSet} properties share a slot. The partition of an ID is the ID
+ * modulo the number of partitions, and IDs are taken from the sequence of the {@link RedisIdAllocator} such that entities with a {@link Colocated}
+ * reference land in the partition of the referenced entity, e.g. books in the partition of their author. Other entities are spread evenly.
+ * </p>
+ * <p>
+ * Queries that are not bound to an ID, such as range queries and lookups in set indexes, read the keys of every partition, unless the index is the
+ * ID of a {@link Colocated} reference, which lives in a single partition. The number of partitions bounds how evenly the data can be spread over the
+ * nodes of a cluster and must not change once entities are stored. Without partitions, which is the default, keys carry no hash tag.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+@Component
+public class RedisPartitions {
+
+  private final RedisConverter redisConverter;
+
+  private final int count;
+
+  private final Map<Class<?>, Optional<RedisPersistentProperty>> colocatedProperties = new ConcurrentHashMap<>();
+
+  @Autowired
+  public RedisPartitions(RedisConverter redisConverter, @Value("${redis.cluster.partitions:0}") int count) {
+    this.redisConverter = redisConverter;
+    this.count = Math.max(count, 0);
+  }
+
+  public boolean isEnabled() {
+    return count > 0;
+  }
+
+  /**
+   * @return The partition of the given ID, or {@code 0} if partitions are disabled.
+   */
+  public int partitionOf(Object id) {
+    if (!isEnabled()) {
+      return 0;
+    }
+    String value = id instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(id);
+    return (int) Math.floorMod(Long.parseLong(value), (long) count);
+  }
+
+  /**
+   * @return The keyspace, with the hash tag of the partition of the given ID if partitions are enabled, that all keys of the entity start with.
+   */
+  public String keyspace(String keyspace, Object id) {
+    return isEnabled() ? tagged(keyspace, partitionOf(id)) : keyspace;
+  }
+
+  /**
+   * @return The keyspace of every partition.
+   */
+  public List<String> keyspaces(String keyspace) {
+    if (!isEnabled()) {
+      return List.of(keyspace);
+    }
+    List<String> keyspaces = new ArrayList<>(count);
+    for (int partition = 0; partition < count; partition++) {
+      keyspaces.add(tagged(keyspace, partition));
+    }
+    return keyspaces;
+  }
+
+  /**
+   * @return The keyspaces of the partitions that may hold entities of the given type with the given value in the given set index.
+   */
+  public List<String> indexKeyspaces(Class<?> type, String keyspace, String indexName, Object value) {
+    Optional<RedisPersistentProperty> colocated = colocatedProperty(type);
+    if (isEnabled() && colocated.isPresent() && indexName.equals(colocated.get().getName() + ".id")) {
+      return List.of(keyspace(keyspace, value));
+    }
+    return keyspaces(keyspace);
+  }
+
+  /**
+   * @return The partition the given entity belongs in because of its {@link Colocated} reference, or {@code -1} if it has none.
+   */
+  public int colocatedPartition(Object entity) {
+    Optional<RedisPersistentProperty> colocated = colocatedProperty(entity.getClass());
+    if (!isEnabled() || colocated.isEmpty()) {
+      return -1;
+    }
+    Object reference = persistentEntity(entity.getClass()).getPropertyAccessor(entity).getProperty(colocated.get());
+    Object id = reference != null ? persistentEntity(reference.getClass()).getIdentifierAccessor(reference).getIdentifier() : null;
+    return id != null ? partitionOf(id) : -1;
+  }
+
+  /**
+   * Maps a value of the sequence of a keyspace to an ID in the given partition, or in the partition the value falls in by itself if it is negative.
+   * The sequence value stays recoverable as the ID divided by the number of partitions, so distinct values never give the same ID.
+   */
+  public long idFor(long sequence, int partition) {
+    if (!isEnabled()) {
+      return sequence;
+    }
+    return sequence * count + (partition >= 0 ? partition : Math.floorMod(sequence, (long) count));
+  }
+
+  private Optional<RedisPersistentProperty> colocatedProperty(Class<?> type) {
+    return colocatedProperties.computeIfAbsent(type, t -> {
+      List<RedisPersistentProperty> properties = new ArrayList<>();
+      persistentEntity(t).doWithProperties((PropertyHandler<RedisPersistentProperty>) property -> {
+        if (property.isAnnotationPresent(Colocated.class)) {
+          properties.add(property);
+        }
+      });
+      return properties.stream().findFirst();
+    });
+  }
+
+  private RedisPersistentEntity<?> persistentEntity(Class<?> type) {
+    return redisConverter.getMappingContext().getRequiredPersistentEntity(type);
+  }
+
+  private static String tagged(String keyspace, int partition) {
+    return keyspace + "{" + partition + "}";
+  }
+}
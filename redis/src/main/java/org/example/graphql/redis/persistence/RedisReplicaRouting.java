@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Routes reads to the replicas of the primary where they are known to be fresh enough, and everything else to the primary.
+ * <p>
+ * Every heartbeat interval, the routing sets a heartbeat key on the primary to the current time and reads it back from each replica. The value a
+ * replica holds is the time up to which it has applied the writes of the primary, so a replica whose value is older than the maximum staleness is
+ * skipped until it catches up again, as is a replica that failed to answer. Reads are spread round robin over the remaining replicas, so the read
+ * throughput grows with their number.
+ * </p>
+ * <p>
+ * The writers report every entity key they wrote to through {@link #written(String)}. A lookup of such a key only goes to a replica whose heartbeat
+ * is newer than the write, and a scan only to a replica whose heartbeat is newer than the last write of this instance, so this instance reads its
+ * own writes. Writes of other instances are seen once the replicas have them, which is within the maximum staleness. The write times are kept for
+ * the maximum staleness, after which every replica still in use has the write.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class RedisReplicaRouting implements SmartLifecycle, Closeable {
+
+  private static final Logger logger = Logger.getLogger(RedisReplicaRouting.class.getName());
+
+  private final RedisTemplate<byte[], byte[]> primary;
+  private final List<Replica> replicas = new ArrayList<>();
+  private final long maxStalenessMillis;
+  private final Duration heartbeatInterval;
+  private final byte[] heartbeatKey;
+  private final Map<String, Long> writeTimes = new ConcurrentHashMap<>();
+  private final AtomicInteger next = new AtomicInteger();
+  private volatile long lastWrite;
+  private boolean heartbeatFailing;
+  private ScheduledExecutorService executor;
+
+  /**
+   * @param primary           The template reading from and writing to the primary.
+   * @param replicas          The templates reading from the replicas, by the address of the replica.
+   * @param maxStaleness      How far a replica may lag behind the primary to be read from.
+   * @param heartbeatInterval The time between heartbeats.
+   * @param heartbeatKey      The key the heartbeats are written to, which no other instance may use at the same time.
+   */
+  public RedisReplicaRouting(RedisTemplate<byte[], byte[]> primary, Map<String, RedisTemplate<byte[], byte[]>> replicas, Duration maxStaleness,
+      Duration heartbeatInterval, String heartbeatKey) {
+    this.primary = primary;
+    replicas.forEach((address, template) -> this.replicas.add(new Replica(address, template)));
+    this.maxStalenessMillis = maxStaleness.toMillis();
+    this.heartbeatInterval = heartbeatInterval;
+    this.heartbeatKey = heartbeatKey.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Starts the heartbeats. Until the first heartbeat reached a replica, all reads go to the primary.
+   */
+  @Override
+  public synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "redis-replica-heartbeat");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    executor = null;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return executor != null;
+  }
+
+  /**
+   * Records that the entity stored under the given key was written on the primary, after the write went through.
+   */
+  public void written(String storageKey) {
+    long now = System.currentTimeMillis();
+    writeTimes.put(storageKey, now);
+    lastWrite = now;
+  }
+
+  /**
+   * Runs a lookup of the entities stored under the given keys on a replica that has the latest writes of this instance to them, or on the primary
+   * if there is none. If the lookup fails on the replica, the replica is skipped until its next successful heartbeat and the lookup runs on the
+   * primary.
+   *
+   * @param storageKeys The keys of the entities read.
+   * @param read        The lookup, given the template to read with.
+   * @return The result of the lookup.
+   */
+  public <R> R read(Collection<String> storageKeys, Function<RedisTemplate<byte[], byte[]>, R> read) {
+    long writtenAt = 0;
+    for (String storageKey : storageKeys) {
+      Long time = writeTimes.get(storageKey);
+      if (time != null) {
+        writtenAt = Math.max(writtenAt, time);
+      }
+    }
+    return route(writtenAt, read);
+  }
+
+  /**
+   * Opens a scan of a whole keyspace on a replica that has all writes of this instance, or on the primary if there is none. Only opening the scan
+   * falls back to the primary, a replica failing later on fails the scan.
+   *
+   * @param open Opens the scan, given the template to read with.
+   * @return The opened scan.
+   */
+  public <R> R scan(Function<RedisTemplate<byte[], byte[]>, R> open) {
+    return route(lastWrite, open);
+  }
+
+  /**
+   * @return Whether the given template reads from the primary.
+   */
+  public boolean isPrimary(RedisTemplate<byte[], byte[]> template) {
+    return template == primary;
+  }
+
+  /**
+   * @return How far each replica lagged behind the primary at its last heartbeat, in milliseconds, or {@code -1} for a replica that has not
+   *     answered one yet.
+   */
+  public Map<String, Long> getStalenessMillis() {
+    long now = System.currentTimeMillis();
+    Map<String, Long> staleness = new LinkedHashMap<>();
+    for (Replica replica : replicas) {
+      staleness.put(replica.address, replica.asOf > 0 ? Math.max(0, now - replica.asOf) : -1);
+    }
+    return staleness;
+  }
+
+  private <R> R route(long writtenAt, Function<RedisTemplate<byte[], byte[]>, R> read) {
+    Replica replica = select(writtenAt);
+    if (replica == null) {
+      return read.apply(primary);
+    }
+    try {
+      return read.apply(replica.template);
+    } catch (DataAccessException e) {
+      replica.asOf = 0;
+      logger.log(Level.WARNING, "Read from replica " + replica.address + " failed, reading from the primary until its next heartbeat", e);
+      return read.apply(primary);
+    }
+  }
+
+  /**
+   * @return The next replica in turn that is within the maximum staleness and has the writes up to the given time, or {@code null} if there is
+   *     none.
+   */
+  private Replica select(long writtenAt) {
+    long freshAfter = System.currentTimeMillis() - maxStalenessMillis;
+    int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+      long asOf = replica.asOf;
+      // A heartbeat from the same millisecond as the write may have been applied before it
+      if (asOf >= freshAfter && asOf > writtenAt) {
+        return replica;
+      }
+    }
+    return null;
+  }
+
+  private void heartbeat() {
+    long now = System.currentTimeMillis();
+    try {
+      // The key outlives a few missed heartbeats, but not the instance
+      primary.opsForValue().set(heartbeatKey, Long.toString(now).getBytes(StandardCharsets.UTF_8),
+          Duration.ofMillis(Math.max(60_000, 10 * maxStalenessMillis)));
+      heartbeatFailing = false;
+    } catch (RuntimeException e) {
+      // Without new heartbeats, the replicas fall behind the staleness bound and the reads go to the primary
+      if (!heartbeatFailing) {
+        logger.log(Level.WARNING, "Unable to write the replica heartbeat to the primary", e);
+      }
+      heartbeatFailing = true;
+    }
+    for (Replica replica : replicas) {
+      long asOf;
+      try {
+        byte[] value = replica.template.opsForValue().get(heartbeatKey);
+        asOf = value != null ? Long.parseLong(new String(value, StandardCharsets.UTF_8)) : 0;
+      } catch (RuntimeException e) {
+        logger.log(Level.FINE, "Unable to read the heartbeat from replica " + replica.address, e);
+        asOf = 0;
+      }
+      boolean wasFresh = replica.asOf >= now - maxStalenessMillis;
+      boolean fresh = asOf >= now - maxStalenessMillis;
+      if (wasFresh != fresh) {
+        logger.info("Replica " + replica.address + (fresh ? " caught up with the primary" : " lags behind the primary, reading from the others"));
+      }
+      replica.asOf = asOf;
+    }
+    writeTimes.values().removeIf(time -> time < now - maxStalenessMillis);
+  }
+
+  /**
+   * Stops the heartbeats and closes the connections to the replicas.
+   */
+  @Override
+  public void close() {
+    stop();
+    for (Replica replica : replicas) {
+      if (replica.template.getConnectionFactory() instanceof DisposableBean factory) {
+        try {
+          factory.destroy();
+        } catch (Exception e) {
+          logger.log(Level.WARNING, "Error while closing the connection to replica " + replica.address, e);
+        }
+      }
+    }
+  }
+
+  private static final class Replica {
+
+    private final String address;
+    private final RedisTemplate<byte[], byte[]> template;
+    private volatile long asOf;
+
+    private Replica(String address, RedisTemplate<byte[], byte[]> template) {
+      this.address = address;
+      this.template = template;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.util.List;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+/**
+ * Loads the Lua scripts in {@code scripts/}.
+ *
+ * @author Alexander Kombeiz
+ * @version 1.01
+ * @since 19-10-2026
+ */
+final class RedisScripts {
+
+  private RedisScripts() {
+  }
+
+  /**
+   * @param name       The name of the script, without the {@code .lua} extension.
+   * @param resultType The type of the result of the script, or {@code null} if it returns nothing.
+   * @return The script, run with {@code EVALSHA} and only sent in full with {@code EVAL} the first time a server does not know it yet.
+   */
+  static <T> RedisScript<T> of(String name, Class<T> resultType) {
+    DefaultRedisScript<T> script = new DefaultRedisScript<>();
+    script.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/" + name + ".lua")));
+    script.setResultType(resultType);
+    return script;
+  }
+
+  /**
+   * @param name The name of the script, without the {@code .lua} extension.
+   * @return The script, returning its multi-bulk reply as a list of the elements as deserialized by the template.
+   */
+  static RedisScript<List<Object>> ofList(String name) {
+    // Class literals cannot carry type arguments, so the raw list class stands in for the parameterized one
+    @SuppressWarnings("unchecked")
+    Class<List<Object>> resultType = (Class<List<Object>>) (Class<?>) List.class;
+    return of(name, resultType);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Moves the IDs of {@link SortedIdSet} properties that entities saved before the property was kept in a sorted set still store inside themselves
+ * into the sorted sets, once per database.
+ * <p>
+ * Such entities hold the IDs as the hash fields {@code <property>.[<n>]} in {@link RedisEntityCodec.StorageMode#HASH} mode, or as a list in the
+ * encoded value in {@link RedisEntityCodec.StorageMode#COMPACT} mode. Neither is read anymore, so until they are moved, e.g. the books of such an
+ * author are not deleted along with them. The migration runs on startup, before the application serves requests, walks every entity of the given
+ * types on the primary and moves the IDs it finds with the {@code migrate-id-set} script, which removes them from the entity in the same step. A
+ * compact value is only replaced if it did not change since it was read. Once all entities are migrated, the key {@value #MIGRATED_KEY} is set, and
+ * later startups skip the walk.
+ * </p>
+ * <p>
+ * Instances of an older version still running during a rolling upgrade may store IDs inside entities after the migration. Deleting
+ * {@value #MIGRATED_KEY} once they are stopped makes the next startup migrate those as well.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public class RedisSortedIdSetMigration implements InitializingBean {
+
+  /**
+   * The key set once all entities are migrated.
+   */
+  public static final String MIGRATED_KEY = "migrations:sorted-id-sets";
+
+  private static final Logger logger = Logger.getLogger(RedisSortedIdSetMigration.class.getName());
+
+  private static final RedisScript<Long> MIGRATE_ID_SET = RedisScripts.of("migrate-id-set", Long.class);
+
+  private static final int MAX_ATTEMPTS = 10;
+
+  private final RedisTemplate<byte[], byte[]> redisTemplate;
+
+  private final RedisConverter redisConverter;
+
+  private final RedisEntityCodec redisEntityCodec;
+
+  private final RedisEntityReader redisEntityReader;
+
+  private final List<Class<?>> types;
+
+  /**
+   * @param redisTemplate     The template writing to the primary.
+   * @param redisConverter    The converter providing the keyspaces.
+   * @param redisEntityCodec  The codec providing the keys and values of the entities.
+   * @param redisEntityReader The reader walking the IDs of the entities.
+   * @param types             The entity types to migrate. Types without {@link SortedIdSet} properties are skipped.
+   */
+  public RedisSortedIdSetMigration(RedisTemplate<byte[], byte[]> redisTemplate,
+      RedisConverter redisConverter,
+      RedisEntityCodec redisEntityCodec,
+      RedisEntityReader redisEntityReader,
+      Collection<Class<?>> types) {
+    this.redisTemplate = redisTemplate;
+    this.redisConverter = redisConverter;
+    this.redisEntityCodec = redisEntityCodec;
+    this.redisEntityReader = redisEntityReader;
+    this.types = List.copyOf(types);
+  }
+
+  /**
+   * Migrates all entities unless {@value #MIGRATED_KEY} is set, and sets it afterward.
+   */
+  @Override
+  public void afterPropertiesSet() {
+    byte[] migratedKey = MIGRATED_KEY.getBytes(StandardCharsets.UTF_8);
+    if (Boolean.TRUE.equals(redisTemplate.hasKey(migratedKey))) {
+      return;
+    }
+    long moved = migrate();
+    redisTemplate.opsForValue().set(migratedKey, Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+    logger.info("Moved " + moved + " IDs stored inside entities into their sorted sets");
+  }
+
+  /**
+   * Migrates all entities of the types, whether or not {@value #MIGRATED_KEY} is set.
+   *
+   * @return The number of IDs added to the sorted sets.
+   */
+  public long migrate() {
+    long moved = 0;
+    for (Class<?> type : types) {
+      List<Field> idSets = SortedIdSets.of(type);
+      if (idSets.isEmpty()) {
+        continue;
+      }
+      String keyspace = redisConverter.getMappingContext().getRequiredPersistentEntity(type).getKeySpace();
+      try (Stream<String> ids = redisEntityReader.streamIdsOnPrimary(type)) {
+        Iterator<String> iterator = ids.iterator();
+        while (iterator.hasNext()) {
+          byte[] storageKey = redisEntityCodec.storageKey(type, keyspace, toBytes(iterator.next()));
+          moved += redisEntityCodec.isCompact() ? migrateValue(type, storageKey, idSets) : migrateHash(storageKey, idSets);
+        }
+      }
+    }
+    return moved;
+  }
+
+  private long migrateHash(byte[] storageKey, List<Field> idSets) {
+    long moved = 0;
+    for (Field idSet : idSets) {
+      Long added = redisTemplate.execute(MIGRATE_ID_SET, List.of(storageKey, SortedIdSets.key(storageKey, idSet)), toBytes("hash"),
+          toBytes(idSet.getName()));
+      moved += added != null ? added : 0;
+    }
+    return moved;
+  }
+
+  /**
+   * Moves the IDs of the {@link SortedIdSet} properties of a compact value one property at a time, re-reading the value if it changed in the
+   * meantime.
+   */
+  private long migrateValue(Class<?> type, byte[] storageKey, List<Field> idSets) {
+    long moved = 0;
+    for (Field idSet : idSets) {
+      for (int attempt = 1; ; attempt++) {
+        byte[] value = redisTemplate.opsForValue().get(storageKey);
+        if (value == null) {
+          return moved;
+        }
+        Object entity = redisEntityCodec.decode(type, value);
+        if (!(ReflectionUtils.getField(idSet, entity) instanceof Collection<?> members) || members.isEmpty()) {
+          break;
+        }
+        // Null properties are left out of the value, the other sorted ID set properties stay in it until their turn
+        ReflectionUtils.setField(idSet, entity, null);
+        List<Object> args = new ArrayList<>(3 + members.size());
+        args.add(toBytes("value"));
+        args.add(value);
+        args.add(redisEntityCodec.encodeFull(entity));
+        for (Object member : members) {
+          args.add(toBytes(String.valueOf(member)));
+        }
+        Long added = redisTemplate.execute(MIGRATE_ID_SET, List.of(storageKey, SortedIdSets.key(storageKey, idSet)), args.toArray());
+        if (added != null && added >= 0) {
+          moved += added;
+          break;
+        }
+        if (attempt == MAX_ATTEMPTS) {
+          throw new OptimisticLockingFailureException("Could not migrate " + new String(storageKey, StandardCharsets.UTF_8) + " after "
+              + MAX_ATTEMPTS + " attempts");
+        }
+      }
+    }
+    return moved;
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
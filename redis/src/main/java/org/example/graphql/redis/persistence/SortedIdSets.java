@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis.persistence;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Finds the {@link SortedIdSet} properties of entity types and the keys of their sorted sets.
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+final class SortedIdSets {
+
+  private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+  private SortedIdSets() {
+  }
+
+  /**
+   * @return The {@link SortedIdSet} fields of the given type, made accessible.
+   */
+  static List<Field> of(Class<?> type) {
+    return FIELDS.computeIfAbsent(type, t -> {
+      List<Field> fields = new ArrayList<>();
+      ReflectionUtils.doWithFields(t, field -> {
+        ReflectionUtils.makeAccessible(field);
+        fields.add(field);
+      }, field -> field.isAnnotationPresent(SortedIdSet.class));
+      return List.copyOf(fields);
+    });
+  }
+
+  /**
+   * @return The key of the sorted set holding the given property of the entity stored under the given key.
+   */
+  static byte[] key(byte[] storageKey, Field field) {
+    byte[] suffix = (":" + field.getName()).getBytes(StandardCharsets.UTF_8);
+    byte[] key = new byte[storageKey.length + suffix.length];
+    System.arraycopy(storageKey, 0, key, 0, storageKey.length);
+    System.arraycopy(suffix, 0, key, storageKey.length, suffix.length);
+    return key;
+  }
+}
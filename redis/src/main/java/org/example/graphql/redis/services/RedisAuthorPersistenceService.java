@@ -25,9 +25,12 @@
 package org.example.graphql.redis.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import org.example.graphql.redis.models.RedisAuthor;
-import org.example.graphql.redis.persistence.RedisAuthorRepository;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
 import org.example.graphql.server.models.Author;
 import org.example.graphql.server.services.AuthorPersistenceService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,40 +38,64 @@ import org.springframework.stereotype.Service;
 
 /**
  * Service for CRUD operations on {@link RedisAuthor} instances. Implements {@link AuthorPersistenceService} to manage {@link RedisAuthor} entities
- * using {@link RedisAuthorRepository}.
+ * through the {@link RedisEntityReader}, which fetches the entities in pipelined batches, and the {@link RedisEntityWriter}, which updates the
+ * authors and their indexes in one transaction. Both support either storage mode.
  *
  * @author Alexander Kombeiz
- * @version 1.01
+ * @version 1.07
  * @since 08-01-2024
  */
 @Service
 public class RedisAuthorPersistenceService implements AuthorPersistenceService {
 
-  private final RedisAuthorRepository redisAuthorRepository;
+  private final RedisEntityReader redisEntityReader;
+
+  private final RedisEntityWriter redisEntityWriter;
 
   @Autowired
-  public RedisAuthorPersistenceService(RedisAuthorRepository redisAuthorRepository) {
-    this.redisAuthorRepository = redisAuthorRepository;
+  public RedisAuthorPersistenceService(RedisEntityReader redisEntityReader,
+      RedisEntityWriter redisEntityWriter) {
+    this.redisEntityReader = redisEntityReader;
+    this.redisEntityWriter = redisEntityWriter;
   }
 
   @Override
   public Author getById(Long id) {
-    return redisAuthorRepository.findById(id).orElse(null);
+    return redisEntityReader.findById(RedisAuthor.class, id);
+  }
+
+  @Override
+  public List<Author> getByIds(Collection<Long> ids) {
+    return new ArrayList<>(redisEntityReader.findAllById(RedisAuthor.class, ids));
   }
 
   @Override
   public List<Author> getAll() {
-    List<RedisAuthor> redisAuthors = redisAuthorRepository.findAll();
+    List<RedisAuthor> redisAuthors = redisEntityReader.findAll(RedisAuthor.class);
     return new ArrayList<>(redisAuthors);
   }
 
+  @Override
+  public List<Author> getByLastName(String lastName) {
+    List<Author> authors = new ArrayList<>(redisEntityReader.findAllByIndex(RedisAuthor.class, "lastName", lastName));
+    authors.sort(Comparator.comparing(Author::getId));
+    return authors;
+  }
+
+  /**
+   * @return Up to {@code count} IDs of the books of the given author, starting at the given offset, in the order the books were created.
+   */
+  public List<Long> getPublishedBookIds(Long authorId, long offset, int count) {
+    return redisEntityReader.findSortedIds(RedisAuthor.class, authorId, "publishedBookIds", offset, count);
+  }
+
   @Override
   public Author persist(Author author) {
-    return redisAuthorRepository.save((RedisAuthor) author);
+    return redisEntityWriter.save((RedisAuthor) author);
   }
 
   @Override
   public void deleteById(Long id) {
-    redisAuthorRepository.deleteById(id);
+    redisEntityWriter.delete(RedisAuthor.class, id);
   }
 }
@@ -25,9 +25,13 @@
 package org.example.graphql.redis.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import org.example.graphql.redis.models.RedisBook;
 import org.example.graphql.redis.persistence.RedisBookRepository;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
 import org.example.graphql.server.models.Book;
 import org.example.graphql.server.services.BookPersistenceService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,10 +39,11 @@ import org.springframework.stereotype.Service;
 
 /**
  * Service for CRUD operations on {@link RedisBook} instances. Implements {@link BookPersistenceService} to manage {@link RedisBook} entities using
- * {@link RedisBookRepository}.
+ * {@link RedisBookRepository}. Reads go through the {@link RedisEntityReader}, which fetches the entities in pipelined batches, and writes go through
+ * the {@link RedisEntityWriter}, which updates the books and their indexes in one transaction. Both support either storage mode.
  *
  * @author Alexander Kombeiz
- * @version 1.01
+ * @version 1.06
  * @since 08-01-2024
  */
 @Service
@@ -46,29 +51,59 @@ public class RedisBookPersistenceService implements BookPersistenceService {
 
   private final RedisBookRepository redisBookRepository;
 
+  private final RedisEntityReader redisEntityReader;
+
+  private final RedisEntityWriter redisEntityWriter;
+
   @Autowired
-  public RedisBookPersistenceService(RedisBookRepository redisBookRepository) {
+  public RedisBookPersistenceService(RedisBookRepository redisBookRepository,
+      RedisEntityReader redisEntityReader,
+      RedisEntityWriter redisEntityWriter) {
     this.redisBookRepository = redisBookRepository;
+    this.redisEntityReader = redisEntityReader;
+    this.redisEntityWriter = redisEntityWriter;
   }
 
   @Override
   public Book getById(Long id) {
-    return redisBookRepository.findById(id).orElse(null);
+    return redisEntityReader.findById(RedisBook.class, id);
+  }
+
+  @Override
+  public List<Book> getByIds(Collection<Long> ids) {
+    return new ArrayList<>(redisEntityReader.findAllById(RedisBook.class, ids));
   }
 
   @Override
   public List<Book> getAll() {
-    List<RedisBook> redisBooks = redisBookRepository.findAll();
+    List<RedisBook> redisBooks = redisEntityReader.findAll(RedisBook.class);
     return new ArrayList<>(redisBooks);
   }
 
+  @Override
+  public List<Book> getByAuthorId(Long authorId) {
+    List<Book> books = new ArrayList<>(redisEntityReader.findAllByIndex(RedisBook.class, "author.id", authorId));
+    books.sort(Comparator.comparing(Book::getId));
+    return books;
+  }
+
+  @Override
+  public List<Book> getByPublishedYearBetween(int from, int to) {
+    return new ArrayList<>(redisBookRepository.findByPublishedYearBetween(from, to));
+  }
+
+  @Override
+  public List<Book> getOrderedByPublishedYear(boolean descending, int first) {
+    return new ArrayList<>(redisBookRepository.findAllOrderedByPublishedYear(descending, 0, first));
+  }
+
   @Override
   public Book persist(Book author) {
-    return redisBookRepository.save((RedisBook) author);
+    return redisEntityWriter.save((RedisBook) author);
   }
 
   @Override
   public void deleteById(Long id) {
-    redisBookRepository.deleteById(id);
+    redisEntityWriter.delete(RedisBook.class, id);
   }
 }
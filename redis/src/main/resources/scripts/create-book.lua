@@ -0,0 +1,45 @@
+-- Saves a new book of an existing author and adds it to the sorted set of the published books of the author.
+-- KEYS: the author hash, the sorted set of the published books of the author, the book hash, the book keyspace set,
+--       the set tracking the indexes of the book, the set index keys of the book (ARGV[2] of them),
+--       the sorted set range index keys of the book (ARGV[3] of them), then the change stream if changes are recorded
+-- ARGV: the book ID, the number of set and range index keys, the maximum length of the change stream or 0 to record no changes,
+--       one score per range index key,
+--       then the field/value pairs of the book hash without its author
+-- Returns the field/value pairs of the author hash, or nothing if there is no such author.
+local author = redis.call('HGETALL', KEYS[1])
+if #author == 0 then
+  return {}
+end
+local bookId = ARGV[1]
+local setIndexes = tonumber(ARGV[2])
+local rangeIndexes = tonumber(ARGV[3])
+local changes = tonumber(ARGV[4]) > 0 and KEYS[#KEYS] or nil
+local function changed(kind, keyspace, entityId)
+  if changes then
+    redis.call('XADD', changes, 'MAXLEN', '~', ARGV[4], '*', 'type', kind, 'keyspace', keyspace, 'id', entityId)
+  end
+end
+
+local fields = {}
+for i = 5 + rangeIndexes, #ARGV do
+  fields[#fields + 1] = ARGV[i]
+end
+for i = 1, #author, 2 do
+  fields[#fields + 1] = 'author.' .. author[i]
+  fields[#fields + 1] = author[i + 1]
+end
+redis.call('HSET', KEYS[3], unpack(fields))
+
+redis.call('SADD', KEYS[4], bookId)
+for i = 6, 5 + setIndexes do
+  redis.call('SADD', KEYS[i], bookId)
+  redis.call('SADD', KEYS[5], KEYS[i])
+end
+for i = 1, rangeIndexes do
+  redis.call('ZADD', KEYS[5 + setIndexes + i], ARGV[4 + i], bookId)
+end
+redis.call('ZADD', KEYS[2], bookId, bookId)
+-- The keys carry the keyspace, followed by the hash tag of the partition if any
+changed('PUT', string.match(KEYS[4], '^[^{]*'), bookId)
+changed('PUT', string.match(KEYS[1], '^[^{:]*'), string.match(KEYS[1], '[^:]*$'))
+return author
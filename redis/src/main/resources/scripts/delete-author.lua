@@ -0,0 +1,55 @@
+-- Deletes an author along with all their published books and the index entries of both.
+-- KEYS: the author hash, the sorted set of the published books of the author, the author keyspace set, the set tracking the indexes of the author,
+--       the book keyspace set, the sorted set range index keys of books (ARGV[3] of them), then per expected published book the book hash and the
+--       set tracking the indexes of the book, then the change stream if changes are recorded
+-- ARGV: the author ID, the maximum length of the change stream or 0 to record no changes, the number of range index keys,
+--       then the IDs of the published books the author is expected to have, in the order of their sorted set
+-- Returns nothing if there is no such author. Otherwise returns 1 followed by the IDs of the deleted books, or 0 followed by the IDs of the actual
+-- published books without changing anything if those are not the expected ones.
+-- The set index keys listed in the sets tracking the indexes are not declared, see RedisMutationScripts.
+if redis.call('EXISTS', KEYS[1]) == 0 then
+  return {}
+end
+local authorId = ARGV[1]
+local rangeIndexes = tonumber(ARGV[3])
+local bookIds = redis.call('ZRANGE', KEYS[2], 0, -1)
+local expected = #bookIds == #ARGV - 3
+for i = 1, #bookIds do
+  expected = expected and bookIds[i] == ARGV[3 + i]
+end
+if not expected then
+  table.insert(bookIds, 1, 0)
+  return bookIds
+end
+local changes = tonumber(ARGV[2]) > 0 and KEYS[#KEYS] or nil
+local function changed(kind, keyspace, entityId)
+  if changes then
+    redis.call('XADD', changes, 'MAXLEN', '~', ARGV[2], '*', 'type', kind, 'keyspace', keyspace, 'id', entityId)
+  end
+end
+-- The keyspace sets carry the keyspace, followed by the hash tag of the partition if any
+local bookKeyspace = string.match(KEYS[5], '^[^{]*')
+
+local result = {1}
+for i, bookId in ipairs(bookIds) do
+  local bookKey = KEYS[4 + rangeIndexes + 2 * i]
+  local bookIdxKey = KEYS[5 + rangeIndexes + 2 * i]
+  for _, indexKey in ipairs(redis.call('SMEMBERS', bookIdxKey)) do
+    redis.call('SREM', indexKey, bookId)
+  end
+  redis.call('DEL', bookKey, bookIdxKey)
+  redis.call('SREM', KEYS[5], bookId)
+  for k = 6, 5 + rangeIndexes do
+    redis.call('ZREM', KEYS[k], bookId)
+  end
+  changed('DELETE', bookKeyspace, bookId)
+  result[#result + 1] = bookId
+end
+
+for _, indexKey in ipairs(redis.call('SMEMBERS', KEYS[4])) do
+  redis.call('SREM', indexKey, authorId)
+end
+redis.call('DEL', KEYS[1], KEYS[2], KEYS[4])
+redis.call('SREM', KEYS[3], authorId)
+changed('DELETE', string.match(KEYS[3], '^[^{]*'), authorId)
+return result
@@ -0,0 +1,40 @@
+-- Deletes a book along with its index entries and removes it from the sorted set of the published books of its author.
+-- KEYS: the book hash, the book keyspace set, the set tracking the indexes of the book, the sorted set range index keys of books,
+--       then the sorted set of the published books of the expected author if there is one, then the change stream if changes are recorded
+-- ARGV: the book ID, the ID of the author the book is expected to have or an empty string if it is expected to have none,
+--       the maximum length of the change stream or 0 to record no changes
+-- Returns nothing if there is no such book. Otherwise returns 1 followed by the ID of the author of the deleted book, an empty string if it has
+-- none, or 0 followed by the ID of the actual author without changing anything if that is not the expected one.
+-- The set index keys listed in the set tracking the indexes are not declared, see RedisMutationScripts.
+if redis.call('EXISTS', KEYS[1]) == 0 then
+  return {}
+end
+local bookId = ARGV[1]
+local authorId = redis.call('HGET', KEYS[1], 'author.id') or ''
+if authorId ~= ARGV[2] then
+  return {0, authorId}
+end
+local changes = tonumber(ARGV[3]) > 0 and KEYS[#KEYS] or nil
+local publishedBooks = authorId ~= '' and KEYS[#KEYS - (changes and 1 or 0)] or nil
+local lastKey = #KEYS - (changes and 1 or 0) - (publishedBooks and 1 or 0)
+local function changed(kind, keyspace, entityId)
+  if changes then
+    redis.call('XADD', changes, 'MAXLEN', '~', ARGV[3], '*', 'type', kind, 'keyspace', keyspace, 'id', entityId)
+  end
+end
+
+for _, indexKey in ipairs(redis.call('SMEMBERS', KEYS[3])) do
+  redis.call('SREM', indexKey, bookId)
+end
+redis.call('DEL', KEYS[1], KEYS[3])
+redis.call('SREM', KEYS[2], bookId)
+for i = 4, lastKey do
+  redis.call('ZREM', KEYS[i], bookId)
+end
+-- The keys carry the keyspace, followed by the hash tag of the partition if any
+changed('DELETE', string.match(KEYS[2], '^[^{]*'), bookId)
+if publishedBooks then
+  redis.call('ZREM', publishedBooks, bookId)
+  changed('PUT', string.match(publishedBooks, '^[^{:]*'), authorId)
+end
+return {1, authorId}
@@ -0,0 +1,35 @@
+-- Deletes an entity along with its index entries, as RedisEntityWriter does in a transaction.
+-- KEYS: the entity key, the keyspace set, the set tracking the indexes of the entity, the sorted set range index keys of the keyspace
+--       (ARGV[2] of them), the sorted ID sets of the entity (ARGV[3] of them), then the sorted ID sets of other entities to remove the ID from,
+--       then the change stream if changes are recorded
+-- ARGV: the entity ID, the numbers of range index and sorted ID set keys, the maximum length of the change stream or 0 to record no changes,
+--       then per sorted ID set of another entity the keyspace and ID of that entity
+local id = ARGV[1]
+local rangeIndexes = tonumber(ARGV[2])
+local idSets = tonumber(ARGV[3])
+local changes = tonumber(ARGV[4]) > 0 and KEYS[#KEYS] or nil
+local lastKey = changes and #KEYS - 1 or #KEYS
+local function changed(kind, keyspace, entityId)
+  if changes then
+    redis.call('XADD', changes, 'MAXLEN', '~', ARGV[4], '*', 'type', kind, 'keyspace', keyspace, 'id', entityId)
+  end
+end
+
+for _, indexKey in ipairs(redis.call('SMEMBERS', KEYS[3])) do
+  redis.call('SREM', indexKey, id)
+end
+redis.call('DEL', KEYS[1], KEYS[3])
+redis.call('SREM', KEYS[2], id)
+for i = 4, 3 + rangeIndexes do
+  redis.call('ZREM', KEYS[i], id)
+end
+for i = 4 + rangeIndexes, 3 + rangeIndexes + idSets do
+  redis.call('DEL', KEYS[i])
+end
+local arg = 5
+for i = 4 + rangeIndexes + idSets, lastKey do
+  redis.call('ZREM', KEYS[i], id)
+  changed('PUT', ARGV[arg], ARGV[arg + 1])
+  arg = arg + 2
+end
+changed('DELETE', string.match(KEYS[2], '^[^{]*'), id)
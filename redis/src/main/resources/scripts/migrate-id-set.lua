@@ -0,0 +1,41 @@
+-- Moves the IDs of a sorted ID set property that an entity still stores inside itself, as saved before the property was kept in a sorted set,
+-- into the sorted set next to the entity.
+-- KEYS: the entity hash or value, the sorted set of the property
+-- ARGV: 'hash' followed by the name of the property, whose IDs are the hash fields <name>.[<n>],
+--       or 'value' followed by the value read, the value to replace it with and the IDs
+-- Returns the number of IDs added to the sorted set, or -1 if the value is no longer the one read.
+local members = {}
+local added = 0
+if ARGV[1] == 'hash' then
+  local prefix = ARGV[2] .. '.['
+  local hash = redis.call('HGETALL', KEYS[1])
+  local fields = {}
+  for i = 1, #hash, 2 do
+    if string.sub(hash[i], 1, #prefix) == prefix then
+      fields[#fields + 1] = hash[i]
+      members[#members + 1] = hash[i + 1]
+    end
+  end
+  -- unpack is limited by the stack size of Lua, so long lists go in chunks
+  for i = 1, #fields, 1000 do
+    redis.call('HDEL', KEYS[1], unpack(fields, i, math.min(i + 999, #fields)))
+  end
+else
+  if redis.call('GET', KEYS[1]) ~= ARGV[2] then
+    return -1
+  end
+  for i = 4, #ARGV do
+    members[#members + 1] = ARGV[i]
+  end
+  redis.call('SET', KEYS[1], ARGV[3])
+end
+
+for i = 1, #members, 500 do
+  local scored = {}
+  for j = i, math.min(i + 499, #members) do
+    scored[#scored + 1] = members[j]
+    scored[#scored + 1] = members[j]
+  end
+  added = added + redis.call('ZADD', KEYS[2], unpack(scored))
+end
+return added
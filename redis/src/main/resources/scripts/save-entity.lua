@@ -0,0 +1,66 @@
+-- Saves an entity, replacing any previous version along with its index entries, as RedisEntityWriter does in a transaction.
+-- KEYS: the entity key, the keyspace set, the set tracking the indexes of the entity, the set index keys of the entity (ARGV[3] of them),
+--       the sorted set range index keys of the keyspace (ARGV[4] of them), the sorted ID sets of the entity (ARGV[5] of them),
+--       then the sorted ID sets of other entities to add the ID of the entity to or remove it from, then the change stream if changes are recorded
+-- ARGV: the entity ID, 'value' or 'hash', the numbers of set index, range index and sorted ID set keys,
+--       the maximum length of the change stream or 0 to record no changes,
+--       one score per range index key or an empty string to remove the entity from it,
+--       per sorted ID set of the entity the number of its members followed by the members,
+--       per sorted ID set of another entity '+' to add the ID or '-' to remove it followed by the keyspace and ID of that entity,
+--       then the value of the entity, or the field/value pairs of its hash
+local id = ARGV[1]
+local setIndexes = tonumber(ARGV[3])
+local rangeIndexes = tonumber(ARGV[4])
+local idSets = tonumber(ARGV[5])
+local arg = 7
+local changes = tonumber(ARGV[6]) > 0 and KEYS[#KEYS] or nil
+local lastKey = changes and #KEYS - 1 or #KEYS
+local function changed(kind, keyspace, entityId)
+  if changes then
+    redis.call('XADD', changes, 'MAXLEN', '~', ARGV[6], '*', 'type', kind, 'keyspace', keyspace, 'id', entityId)
+  end
+end
+
+for _, indexKey in ipairs(redis.call('SMEMBERS', KEYS[3])) do
+  redis.call('SREM', indexKey, id)
+end
+redis.call('DEL', KEYS[1], KEYS[3])
+
+redis.call('SADD', KEYS[2], id)
+for i = 4, 3 + setIndexes do
+  redis.call('SADD', KEYS[i], id)
+  redis.call('SADD', KEYS[3], KEYS[i])
+end
+for i = 4 + setIndexes, 3 + setIndexes + rangeIndexes do
+  if ARGV[arg] == '' then
+    redis.call('ZREM', KEYS[i], id)
+  else
+    redis.call('ZADD', KEYS[i], ARGV[arg], id)
+  end
+  arg = arg + 1
+end
+for i = 4 + setIndexes + rangeIndexes, 3 + setIndexes + rangeIndexes + idSets do
+  redis.call('DEL', KEYS[i])
+  local members = tonumber(ARGV[arg])
+  for j = arg + 1, arg + members do
+    redis.call('ZADD', KEYS[i], ARGV[j], ARGV[j])
+  end
+  arg = arg + 1 + members
+end
+for i = 4 + setIndexes + rangeIndexes + idSets, lastKey do
+  if ARGV[arg] == '+' then
+    redis.call('ZADD', KEYS[i], id, id)
+  else
+    redis.call('ZREM', KEYS[i], id)
+  end
+  changed('PUT', ARGV[arg + 1], ARGV[arg + 2])
+  arg = arg + 3
+end
+
+if ARGV[2] == 'value' then
+  redis.call('SET', KEYS[1], ARGV[arg])
+else
+  redis.call('HSET', KEYS[1], unpack(ARGV, arg))
+end
+-- The keyspace set carries the keyspace, followed by the hash tag of the partition if any
+changed('PUT', string.match(KEYS[2], '^[^{]*'), id)
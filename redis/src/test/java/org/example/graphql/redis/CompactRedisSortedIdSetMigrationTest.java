@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import java.util.List;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.persistence.RedisSortedIdSetMigration;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Tests the {@link RedisSortedIdSetMigration} of authors whose published book IDs are still part of their compact value.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class, properties = "redis.storage.mode=compact")
+public class CompactRedisSortedIdSetMigrationTest extends RedisSortedIdSetMigrationTest {
+
+  @Override
+  protected void storeLegacyIds(RedisAuthor author, List<Long> bookIds) {
+    RedisAuthor legacy = redisEntityCodec.decode(RedisAuthor.class, redisTemplate.opsForValue().get(authorKey(author)));
+    legacy.getPublishedBookIds().addAll(bookIds);
+    redisTemplate.opsForValue().set(authorKey(author), redisEntityCodec.encodeFull(legacy));
+  }
+
+  @Override
+  protected boolean legacyIdsLeft(RedisAuthor author) {
+    return !redisEntityCodec.decode(RedisAuthor.class, redisTemplate.opsForValue().get(authorKey(author))).getPublishedBookIds().isEmpty();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisBookRepository;
+import org.example.graphql.redis.persistence.RedisEntityCodec;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the {@link RedisEntityCodec.StorageMode#COMPACT} mode against a real Redis server: entities are stored as single Smile-encoded values under
+ * their short prefix, and read back with all their properties, including the embedded author of a book and the sorted set of published books.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class, properties = "redis.storage.mode=compact")
+@Testcontainers
+public class CompactRedisStorageTest {
+
+  private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  private RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Autowired
+  private RedisEntityCodec redisEntityCodec;
+
+  @Autowired
+  private RedisEntityReader redisEntityReader;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @Autowired
+  private RedisBookRepository redisBookRepository;
+
+  @Autowired
+  private BookAuthorMutations bookAuthorMutations;
+
+  @Test
+  void entitiesAreStoredAsSmileValuesUnderTheirPrefix() {
+    RedisAuthor author = saveAuthor("Compact", "Stored");
+    RedisBook book = createBook("Stored Compactly", 1999, author);
+
+    assertThat(redisEntityCodec.isCompact()).isTrue();
+    for (String key : List.of("a:" + author.getId(), "b:" + book.getId())) {
+      assertThat(redisTemplate.type(toBytes(key))).isEqualTo(DataType.STRING);
+      assertThat(Arrays.copyOf(redisTemplate.opsForValue().get(toBytes(key)), SMILE_HEADER.length)).isEqualTo(SMILE_HEADER);
+    }
+    assertThat(redisTemplate.hasKey(toBytes("author:" + author.getId()))).isFalse();
+    assertThat(redisTemplate.hasKey(toBytes("book:" + book.getId()))).isFalse();
+    // Keyspace sets and indexes are laid out as in hash mode
+    assertThat(redisTemplate.opsForSet().isMember(toBytes("author"), toBytes(author.getId().toString()))).isTrue();
+    assertThat(redisTemplate.opsForSet().isMember(toBytes("book:author.id:" + author.getId()), toBytes(book.getId().toString()))).isTrue();
+  }
+
+  @Test
+  void entitiesRoundTripWithAllTheirProperties() {
+    RedisAuthor author = saveAuthor("Ursula K.", "Le Guin");
+    RedisBook first = createBook("The Left Hand of Darkness", 1969, author);
+    RedisBook second = createBook("The Lathe of Heaven", 1971, author);
+
+    RedisAuthor readAuthor = redisEntityReader.findByIdOnPrimary(RedisAuthor.class, author.getId());
+    assertThat(readAuthor.getFirstName()).isEqualTo("Ursula K.");
+    assertThat(readAuthor.getLastName()).isEqualTo("Le Guin");
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10))
+        .containsExactly(first.getId(), second.getId());
+
+    RedisBook readBook = redisEntityReader.findByIdOnPrimary(RedisBook.class, second.getId());
+    assertThat(readBook.getTitle()).isEqualTo("The Lathe of Heaven");
+    assertThat(readBook.getPublishedYear()).isEqualTo(1971);
+    assertThat(readBook.getAuthor().getId()).isEqualTo(author.getId());
+    assertThat(readBook.getAuthor().getLastName()).isEqualTo("Le Guin");
+
+    assertThat(redisEntityReader.findAllById(RedisBook.class, List.of(second.getId(), first.getId()))).extracting(RedisBook::getTitle)
+        .containsExactly("The Lathe of Heaven", "The Left Hand of Darkness");
+    assertThat(redisEntityReader.findAllByIndex(RedisBook.class, "author.id", author.getId())).extracting(RedisBook::getId)
+        .containsExactlyInAnyOrder(first.getId(), second.getId());
+    assertThat(redisBookRepository.findByPublishedYearBetween(1969, 1971)).extracting(RedisBook::getId).contains(first.getId(), second.getId());
+
+    readAuthor.setFirstName("Ursula");
+    redisEntityWriter.save(readAuthor);
+    assertThat(redisEntityReader.findByIdOnPrimary(RedisAuthor.class, author.getId()).getFirstName()).isEqualTo("Ursula");
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10))
+        .containsExactly(first.getId(), second.getId());
+
+    assertThat(bookAuthorMutations.deleteAuthor(author.getId())).isTrue();
+    assertThat(redisEntityReader.findByIdOnPrimary(RedisAuthor.class, author.getId())).isNull();
+    assertThat(redisEntityReader.findAllById(RedisBook.class, List.of(first.getId(), second.getId()))).isEmpty();
+    assertThat(redisTemplate.hasKey(toBytes("b:" + first.getId()))).isFalse();
+  }
+
+  private RedisAuthor saveAuthor(String firstName, String lastName) {
+    RedisAuthor author = new RedisAuthor();
+    author.setFirstName(firstName);
+    author.setLastName(lastName);
+    return redisEntityWriter.save(author);
+  }
+
+  private RedisBook createBook(String title, int publishedYear, RedisAuthor author) {
+    RedisBook book = new RedisBook();
+    book.setTitle(title);
+    book.setPublishedYear(publishedYear);
+    return (RedisBook) bookAuthorMutations.createBook(book, author.getId());
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
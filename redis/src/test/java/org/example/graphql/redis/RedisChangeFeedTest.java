@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisChange;
+import org.example.graphql.redis.persistence.RedisChangeFeed;
+import org.example.graphql.redis.persistence.RedisChangeListener;
+import org.example.graphql.redis.persistence.RedisChangeStream;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the {@link RedisChangeStream} and {@link RedisChangeFeed} against a real Redis server: every write of the entity writer and the mutations
+ * records its changes in the stream, and the feed delivers them to the {@link RedisChangeListener} beans.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class,
+    properties = {"redis.changes.enabled=true", "redis.changes.poll-interval=20ms"})
+@Import(RedisChangeFeedTest.RecordingListener.class)
+@Testcontainers
+public class RedisChangeFeedTest {
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  private RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Autowired
+  private RedisChangeStream redisChangeStream;
+
+  @Autowired
+  private RedisChangeFeed redisChangeFeed;
+
+  @Autowired
+  private RecordingListener listener;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @Autowired
+  private BookAuthorMutations bookAuthorMutations;
+
+  @Test
+  void writesOfTheEntityWriterAreRecordedAndDelivered() {
+    RedisAuthor author = saveAuthor();
+    awaitChanges(RedisChange.put("author", author.getId()));
+    assertThat(redisTemplate.opsForStream().size(redisChangeStream.key(author.getId()))).isPositive();
+
+    redisEntityWriter.delete(RedisAuthor.class, author.getId());
+    awaitChanges(RedisChange.put("author", author.getId()), RedisChange.delete("author", author.getId()));
+    assertThat(redisChangeFeed.awaitLagAtMost(Duration.ofSeconds(1), Duration.ofSeconds(5))).isTrue();
+  }
+
+  @Test
+  void mutationsRecordTheChangesOfTheBookAndItsAuthor() {
+    RedisAuthor author = saveAuthor();
+    RedisBook book = new RedisBook();
+    book.setTitle("Changed");
+    book.setPublishedYear(2020);
+    Long bookId = bookAuthorMutations.createBook(book, author.getId()).getId();
+    RedisBook other = new RedisBook();
+    other.setTitle("Also Changed");
+    other.setPublishedYear(2021);
+    Long otherId = bookAuthorMutations.createBook(other, author.getId()).getId();
+    bookAuthorMutations.deleteBook(bookId);
+    bookAuthorMutations.deleteAuthor(author.getId());
+
+    awaitChanges(RedisChange.put("author", author.getId()),
+        RedisChange.put("book", bookId), RedisChange.put("author", author.getId()),
+        RedisChange.put("book", otherId), RedisChange.put("author", author.getId()),
+        RedisChange.delete("book", bookId), RedisChange.put("author", author.getId()),
+        RedisChange.delete("book", otherId), RedisChange.delete("author", author.getId()));
+  }
+
+  private RedisAuthor saveAuthor() {
+    RedisAuthor author = new RedisAuthor();
+    author.setFirstName("Stream");
+    author.setLastName("Feed");
+    return redisEntityWriter.save(author);
+  }
+
+  /**
+   * Waits until the listener received exactly the given changes of the entities they concern, in this order.
+   */
+  private void awaitChanges(RedisChange... expected) {
+    List<RedisChange> relevant = List.of();
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (System.currentTimeMillis() < deadline) {
+      relevant = listener.changes.stream().filter(change -> List.of(expected).stream()
+          .anyMatch(e -> e.keyspace().equals(change.keyspace()) && e.id().equals(change.id()))).toList();
+      if (relevant.size() >= expected.length) {
+        break;
+      }
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    assertThat(relevant).containsExactly(expected);
+  }
+
+  /**
+   * Records the changes delivered by the feed.
+   */
+  static class RecordingListener implements RedisChangeListener {
+
+    private final List<RedisChange> changes = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onChange(RedisChange change) {
+      changes.add(change);
+    }
+  }
+}
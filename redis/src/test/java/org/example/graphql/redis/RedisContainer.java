@@ -44,8 +44,15 @@ public class RedisContainer extends FixedHostPortGenericContainer<RedisContainer
    * with a timeout of 1 minute.
    */
   public RedisContainer() {
+    this(REDIS_PORT);
+  }
+
+  /**
+   * Constructs a new RedisContainer whose Redis server is reachable on the given host port, for tests running more than one server.
+   */
+  public RedisContainer(int hostPort) {
     super(REDIS_IMAGE);
-    withFixedExposedPort(REDIS_PORT, REDIS_PORT);
+    withFixedExposedPort(hostPort, REDIS_PORT);
     waitingFor(Wait.forListeningPort().withStartupTimeout(Duration.ofMinutes(1)));
   }
 }
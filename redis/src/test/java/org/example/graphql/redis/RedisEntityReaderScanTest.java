@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the {@code SSCAN} walk of the {@link RedisEntityReader} against a real Redis server with a small batch size, so that reading all authors
+ * takes many {@code SSCAN} pages and pipelined batches. Sets of up to 512 integers are stored compactly and returned in a single page, so the
+ * keyspace set is made larger than that.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class, properties = "redis.scan.batch-size=5")
+@Testcontainers
+public class RedisEntityReaderScanTest {
+
+  private static final int AUTHORS = 600;
+  private static final byte[] AUTHOR_KEYSPACE = toBytes("author");
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  private static List<Long> authorIds;
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  private RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Autowired
+  private RedisEntityReader redisEntityReader;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @BeforeEach
+  void saveAuthors() {
+    if (authorIds != null) {
+      return;
+    }
+    authorIds = new ArrayList<>();
+    for (int i = 0; i < AUTHORS; i++) {
+      RedisAuthor author = new RedisAuthor();
+      author.setFirstName("Scanned");
+      author.setLastName("Author " + i);
+      authorIds.add(redisEntityWriter.save(author).getId());
+    }
+  }
+
+  @Test
+  void readsAllEntitiesAcrossManyScanPages() {
+    long scansBefore = sscanCalls();
+
+    List<RedisAuthor> authors = redisEntityReader.findAll(RedisAuthor.class);
+
+    assertThat(authors).extracting(RedisAuthor::getId).containsExactlyInAnyOrderElementsOf(authorIds);
+    assertThat(authors).allMatch(author -> author.getFirstName().equals("Scanned"));
+    assertThat(sscanCalls() - scansBefore).isGreaterThan(AUTHORS / 10);
+  }
+
+  @Test
+  void idsWithoutAnEntityAreSkipped() {
+    // IDs left in the keyspace set whose entity is gone, as if it was deleted between the scan and the fetch
+    List<byte[]> missing = ids(2_000_000, 2_000_050);
+    redisTemplate.opsForSet().add(AUTHOR_KEYSPACE, missing.toArray(byte[][]::new));
+    try {
+      assertThat(redisEntityReader.findAll(RedisAuthor.class)).extracting(RedisAuthor::getId).containsExactlyInAnyOrderElementsOf(authorIds);
+    } finally {
+      redisTemplate.opsForSet().remove(AUTHOR_KEYSPACE, missing.toArray());
+    }
+  }
+
+  @Test
+  void entitiesReportedTwiceWhileTheSetShrinksAreReturnedOnce() {
+    List<byte[]> stale = ids(1_000_000, 1_004_000);
+    redisTemplate.opsForSet().add(AUTHOR_KEYSPACE, stale.toArray(byte[][]::new));
+    List<Long> read = new ArrayList<>();
+    try (Stream<RedisAuthor> authors = redisEntityReader.streamAll(RedisAuthor.class)) {
+      Iterator<RedisAuthor> iterator = authors.iterator();
+      while (read.size() < AUTHORS / 2 && iterator.hasNext()) {
+        read.add(iterator.next().getId());
+      }
+      // Shrinking the set rehashes it into a smaller table, after which SSCAN may report elements of partly visited buckets again. How many depends
+      // on the random hash seed of the server, see RedisPartitionedLayoutTest for an ID that is always reported twice
+      redisTemplate.opsForSet().remove(AUTHOR_KEYSPACE, stale.toArray());
+      iterator.forEachRemaining(author -> read.add(author.getId()));
+    }
+
+    assertThat(read).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(authorIds);
+  }
+
+  private long sscanCalls() {
+    Properties stats = redisTemplate.execute((RedisCallback<Properties>) connection -> connection.serverCommands().info("commandstats"));
+    String calls = stats.getProperty("cmdstat_sscan", "calls=0,");
+    return Long.parseLong(calls.substring("calls=".length(), calls.indexOf(',')));
+  }
+
+  private static List<byte[]> ids(long from, long to) {
+    return LongStream.range(from, to).mapToObj(id -> toBytes(Long.toString(id))).toList();
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
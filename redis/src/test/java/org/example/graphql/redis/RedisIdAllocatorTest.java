@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+import org.example.graphql.redis.persistence.RedisIdAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the {@link RedisIdAllocator} against a real Redis server, with two allocators standing in for two server instances that reserve their
+ * blocks of IDs from the same counter.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class)
+@Testcontainers
+public class RedisIdAllocatorTest {
+
+  private static final int BLOCK_SIZE = 7;
+  private static final int THREADS_PER_ALLOCATOR = 4;
+  private static final int IDS_PER_THREAD = 250;
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  private RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Test
+  void twoAllocatorsHandOutDisjointIdsAcrossBlocks() throws Exception {
+    String keyspace = "allocated";
+    List<RedisIdAllocator> allocators = List.of(new RedisIdAllocator(redisTemplate, BLOCK_SIZE), new RedisIdAllocator(redisTemplate, BLOCK_SIZE));
+    ExecutorService executor = Executors.newFixedThreadPool(allocators.size() * THREADS_PER_ALLOCATOR);
+    List<Future<List<Long>>> futures = new ArrayList<>();
+    try {
+      for (RedisIdAllocator allocator : allocators) {
+        for (int thread = 0; thread < THREADS_PER_ALLOCATOR; thread++) {
+          futures.add(executor.submit(() -> {
+            List<Long> ids = new ArrayList<>(IDS_PER_THREAD);
+            for (int i = 0; i < IDS_PER_THREAD; i++) {
+              ids.add(allocator.nextId(keyspace));
+            }
+            return ids;
+          }));
+        }
+      }
+      Set<Long> allIds = new HashSet<>();
+      for (Future<List<Long>> future : futures) {
+        List<Long> ids = future.get();
+        // Each thread sees the IDs of its allocator increase, even across blocks
+        assertThat(ids).isSorted();
+        allIds.addAll(ids);
+      }
+
+      int total = allocators.size() * THREADS_PER_ALLOCATOR * IDS_PER_THREAD;
+      assertThat(allIds).hasSize(total);
+      long reserved = Long.parseLong(new String(redisTemplate.opsForValue().get(toBytes("seq:" + keyspace)), StandardCharsets.UTF_8));
+      assertThat(reserved % BLOCK_SIZE).isZero();
+      // Each allocator leaves at most the rest of its current block unused
+      assertThat(reserved).isBetween((long) total, (long) total + allocators.size() * BLOCK_SIZE);
+      assertThat(allIds).allMatch(id -> id >= 1 && id <= reserved);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void allocatorsAlternatingBetweenBlocksNeverRepeatAnId() {
+    String keyspace = "alternating";
+    RedisIdAllocator first = new RedisIdAllocator(redisTemplate, BLOCK_SIZE);
+    RedisIdAllocator second = new RedisIdAllocator(redisTemplate, BLOCK_SIZE);
+    Set<Long> ids = new HashSet<>();
+    for (int i = 0; i < 10 * BLOCK_SIZE; i++) {
+      assertThat(ids.add(first.nextId(keyspace))).isTrue();
+      assertThat(ids.add(second.nextId(keyspace))).isTrue();
+    }
+
+    // The allocators took turns reserving the blocks, so each holds every other one
+    assertThat(ids).containsExactlyInAnyOrderElementsOf(LongStream.rangeClosed(1, 20L * BLOCK_SIZE).boxed().toList());
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.redis.persistence.RedisMutationScripts;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the Lua scripts of {@link RedisMutationScripts} against a real Redis server, checking the keys they leave behind: the book hash with the
+ * copied author fields, the keyspace set, the set and range indexes of the book, and the sorted set of the published books of the author.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class)
+@Testcontainers
+public class RedisMutationScriptsTest {
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  private RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Autowired
+  private RedisEntityReader redisEntityReader;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @Autowired
+  private BookAuthorMutations bookAuthorMutations;
+
+  @Test
+  void usesTheScriptsInHashMode() {
+    assertThat(bookAuthorMutations).isInstanceOf(RedisMutationScripts.class);
+  }
+
+  @Test
+  void createBookWritesTheBookWithItsIndexesAndAddsItToTheAuthor() {
+    RedisAuthor author = saveAuthor("Le Guin");
+
+    RedisBook created = createBook("The Dispossessed", 1974, author);
+
+    assertThat(created.getAuthor().getLastName()).isEqualTo("Le Guin");
+    String bookKey = "book:" + created.getId();
+    assertThat(hashField(bookKey, "title")).isEqualTo("The Dispossessed");
+    assertThat(hashField(bookKey, "author.id")).isEqualTo(author.getId().toString());
+    assertThat(hashField(bookKey, "author.lastName")).isEqualTo("Le Guin");
+    assertThat(members("book")).contains(created.getId().toString());
+    assertThat(members("book:author.id:" + author.getId())).containsExactly(created.getId().toString());
+    assertThat(members(bookKey + ":idx")).containsExactly("book:author.id:" + author.getId());
+    assertThat(redisTemplate.opsForZSet().score(toBytes("book:publishedYear"), toBytes(created.getId().toString()))).isEqualTo(1974.0);
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).containsExactly(created.getId());
+
+    RedisBook read = redisEntityReader.findByIdOnPrimary(RedisBook.class, created.getId());
+    assertThat(read.getTitle()).isEqualTo("The Dispossessed");
+    assertThat(read.getAuthor().getId()).isEqualTo(author.getId());
+  }
+
+  @Test
+  void createBookOfMissingAuthorWritesNothing() {
+    RedisBook book = new RedisBook();
+    book.setTitle("Orphan");
+    book.setPublishedYear(2001);
+
+    assertThat(bookAuthorMutations.createBook(book, Long.MAX_VALUE)).isNull();
+
+    assertThat(redisTemplate.hasKey(toBytes("book:" + book.getId()))).isFalse();
+    assertThat(members("book")).doesNotContain(book.getId().toString());
+    assertThat(redisTemplate.opsForZSet().score(toBytes("book:publishedYear"), toBytes(book.getId().toString()))).isNull();
+  }
+
+  @Test
+  void deleteBookRemovesTheBookWithItsIndexesAndFromTheAuthor() {
+    RedisAuthor author = saveAuthor("Herbert");
+    RedisBook kept = createBook("Dune", 1965, author);
+    RedisBook deleted = createBook("Dune Messiah", 1969, author);
+
+    assertThat(bookAuthorMutations.deleteBook(deleted.getId())).isTrue();
+
+    String id = deleted.getId().toString();
+    assertThat(redisTemplate.hasKey(toBytes("book:" + id))).isFalse();
+    assertThat(redisTemplate.hasKey(toBytes("book:" + id + ":idx"))).isFalse();
+    assertThat(members("book")).doesNotContain(id);
+    assertThat(members("book:author.id:" + author.getId())).containsExactly(kept.getId().toString());
+    assertThat(redisTemplate.opsForZSet().score(toBytes("book:publishedYear"), toBytes(id))).isNull();
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).containsExactly(kept.getId());
+    assertThat(bookAuthorMutations.deleteBook(deleted.getId())).isFalse();
+  }
+
+  @Test
+  void deleteAuthorRemovesTheAuthorAndAllTheirBooks() {
+    RedisAuthor author = saveAuthor("Tolkien");
+    RedisBook hobbit = createBook("The Hobbit", 1937, author);
+    RedisBook silmarillion = createBook("The Silmarillion", 1977, author);
+    assertThat(members("author:lastName:Tolkien")).contains(author.getId().toString());
+
+    assertThat(bookAuthorMutations.deleteAuthor(author.getId())).isTrue();
+
+    String authorKey = "author:" + author.getId();
+    assertThat(redisTemplate.hasKey(toBytes(authorKey))).isFalse();
+    assertThat(redisTemplate.hasKey(toBytes(authorKey + ":publishedBookIds"))).isFalse();
+    assertThat(redisTemplate.hasKey(toBytes(authorKey + ":idx"))).isFalse();
+    assertThat(members("author")).doesNotContain(author.getId().toString());
+    assertThat(members("author:lastName:Tolkien")).doesNotContain(author.getId().toString());
+    for (RedisBook book : new RedisBook[] {hobbit, silmarillion}) {
+      String id = book.getId().toString();
+      assertThat(redisTemplate.hasKey(toBytes("book:" + id))).isFalse();
+      assertThat(members("book")).doesNotContain(id);
+      assertThat(redisTemplate.opsForZSet().score(toBytes("book:publishedYear"), toBytes(id))).isNull();
+    }
+    assertThat(redisTemplate.hasKey(toBytes("book:author.id:" + author.getId()))).isFalse();
+    assertThat(bookAuthorMutations.deleteAuthor(author.getId())).isFalse();
+  }
+
+  @Test
+  void deleteBookScriptChangesNothingIfTheBookHasAnotherAuthor() {
+    RedisAuthor author = saveAuthor("Banks");
+    RedisBook book = createBook("Excession", 1996, author);
+    String bookKey = "book:" + book.getId();
+    String otherAuthorId = Long.toString(author.getId() + 1);
+
+    List<?> result = redisTemplate.execute(script("delete-book"),
+        keys(bookKey, "book", bookKey + ":idx", "book:publishedYear", "author:" + otherAuthorId + ":publishedBookIds"),
+        toBytes(book.getId().toString()), toBytes(otherAuthorId), toBytes("0"));
+
+    assertThat(result).hasSize(2);
+    assertThat(result.get(0)).isEqualTo(0L);
+    assertThat(new String((byte[]) result.get(1), StandardCharsets.UTF_8)).isEqualTo(author.getId().toString());
+    assertThat(hashField(bookKey, "title")).isEqualTo("Excession");
+    assertThat(members("book:author.id:" + author.getId())).containsExactly(book.getId().toString());
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).containsExactly(book.getId());
+  }
+
+  @Test
+  void deleteAuthorScriptChangesNothingIfTheAuthorHasOtherBooks() {
+    RedisAuthor author = saveAuthor("Wolfe");
+    RedisBook first = createBook("The Shadow of the Torturer", 1980, author);
+    RedisBook second = createBook("The Claw of the Conciliator", 1981, author);
+    String authorKey = "author:" + author.getId();
+    String firstKey = "book:" + first.getId();
+
+    List<?> result = redisTemplate.execute(script("delete-author"),
+        keys(authorKey, authorKey + ":publishedBookIds", "author", authorKey + ":idx", "book", "book:publishedYear", firstKey, firstKey + ":idx"),
+        toBytes(author.getId().toString()), toBytes("0"), toBytes("1"), toBytes(first.getId().toString()));
+
+    assertThat(result.get(0)).isEqualTo(0L);
+    assertThat(result.subList(1, result.size()).stream().map(id -> new String((byte[]) id, StandardCharsets.UTF_8)))
+        .containsExactly(first.getId().toString(), second.getId().toString());
+    assertThat(redisTemplate.hasKey(toBytes(authorKey))).isTrue();
+    assertThat(redisTemplate.hasKey(toBytes(firstKey))).isTrue();
+    assertThat(members("book:author.id:" + author.getId())).hasSize(2);
+
+    assertThat(bookAuthorMutations.deleteAuthor(author.getId())).isTrue();
+    assertThat(redisTemplate.hasKey(toBytes("book:" + second.getId()))).isFalse();
+  }
+
+  private RedisAuthor saveAuthor(String lastName) {
+    RedisAuthor author = new RedisAuthor();
+    author.setFirstName("Script");
+    author.setLastName(lastName);
+    return redisEntityWriter.save(author);
+  }
+
+  private RedisBook createBook(String title, int publishedYear, RedisAuthor author) {
+    RedisBook book = new RedisBook();
+    book.setTitle(title);
+    book.setPublishedYear(publishedYear);
+    return (RedisBook) bookAuthorMutations.createBook(book, author.getId());
+  }
+
+  private String hashField(String key, String field) {
+    Object value = redisTemplate.opsForHash().get(toBytes(key), toBytes(field));
+    return value != null ? new String((byte[]) value, StandardCharsets.UTF_8) : null;
+  }
+
+  private Set<String> members(String key) {
+    Set<byte[]> members = redisTemplate.opsForSet().members(toBytes(key));
+    return members.stream().map(member -> new String(member, StandardCharsets.UTF_8)).collect(Collectors.toSet());
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static RedisScript<List> script(String name) {
+    return RedisScript.of(new ClassPathResource("scripts/" + name + ".lua"), List.class);
+  }
+
+  private static List<byte[]> keys(String... keys) {
+    return Stream.of(keys).map(RedisMutationScriptsTest::toBytes).toList();
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.redis.persistence.RedisNearCache;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests that the {@link RedisNearCache} stays coherent with writes it does not see itself: changing or deleting a cached entity, or a sorted set
+ * stored under its key, through a separate connection, as another server instance would, drops the entry through the keyspace notifications.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class, properties = "redis.near-cache.max-entries=100")
+@Testcontainers
+public class RedisNearCacheTest {
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  private static LettuceConnectionFactory otherInstance;
+
+  @Autowired
+  private RedisNearCache nearCache;
+
+  @Autowired
+  private RedisEntityReader redisEntityReader;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @BeforeAll
+  static void connectOtherInstance() {
+    otherInstance = new LettuceConnectionFactory("localhost", 6379);
+    otherInstance.afterPropertiesSet();
+    otherInstance.start();
+  }
+
+  @AfterAll
+  static void disconnectOtherInstance() {
+    otherInstance.destroy();
+  }
+
+  @Test
+  void aWriteOfAnotherInstanceInvalidatesTheEntry() {
+    RedisAuthor author = cachedAuthor("Cached");
+
+    try (RedisConnection connection = otherInstance.getConnection()) {
+      connection.hashCommands().hSet(toBytes("author:" + author.getId()), toBytes("lastName"), toBytes("Changed Elsewhere"));
+    }
+
+    await(() -> nearCache.get("author:" + author.getId()) == null);
+    assertThat(redisEntityReader.findById(RedisAuthor.class, author.getId()).getLastName()).isEqualTo("Changed Elsewhere");
+  }
+
+  @Test
+  void aDeleteOfAnotherInstanceInvalidatesTheEntry() {
+    RedisAuthor author = cachedAuthor("Deleted");
+
+    try (RedisConnection connection = otherInstance.getConnection()) {
+      connection.keyCommands().del(toBytes("author:" + author.getId()));
+    }
+
+    await(() -> nearCache.get("author:" + author.getId()) == null);
+    assertThat(redisEntityReader.findById(RedisAuthor.class, author.getId())).isNull();
+  }
+
+  @Test
+  void aChangeOfASortedSetBelowTheKeyInvalidatesTheEntry() {
+    RedisAuthor author = cachedAuthor("Sorted");
+
+    try (RedisConnection connection = otherInstance.getConnection()) {
+      connection.zSetCommands().zAdd(toBytes("author:" + author.getId() + ":publishedBookIds"), 42, toBytes("42"));
+    }
+
+    await(() -> nearCache.get("author:" + author.getId()) == null);
+    assertThat(redisEntityReader.findById(RedisAuthor.class, author.getId()).getPublishedBookIds()).containsExactly(42L);
+  }
+
+  /**
+   * Saves an author and reads it once, which puts it in the near cache.
+   */
+  private RedisAuthor cachedAuthor(String lastName) {
+    RedisAuthor author = new RedisAuthor();
+    author.setFirstName("Near");
+    author.setLastName(lastName);
+    author = redisEntityWriter.save(author);
+    awaitNotificationsOfEarlierWrites();
+    assertThat(redisEntityReader.findById(RedisAuthor.class, author.getId()).getLastName()).isEqualTo(lastName);
+    assertThat(nearCache.get("author:" + author.getId())).isNotNull();
+    return author;
+  }
+
+  /**
+   * Waits until the notifications of the writes so far reached the cache, so they do not drop entries added afterwards. Notifications arrive in the
+   * order of the writes, so once a cached marker key written last is dropped, the earlier ones have been handled.
+   */
+  private void awaitNotificationsOfEarlierWrites() {
+    String marker = "author:marker";
+    nearCache.putIfUnchanged(marker, new byte[0], nearCache.stamp(marker));
+    try (RedisConnection connection = otherInstance.getConnection()) {
+      connection.stringCommands().set(toBytes(marker), new byte[0]);
+    }
+    await(() -> nearCache.get(marker) == null);
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void await(BooleanSupplier condition) {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (!condition.getAsBoolean()) {
+      assertThat(System.currentTimeMillis()).as("Timed out waiting for the keyspace notification").isLessThan(deadline);
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
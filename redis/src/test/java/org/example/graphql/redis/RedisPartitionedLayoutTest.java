@@ -0,0 +1,388 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lettuce.core.api.async.BaseRedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.output.ArrayOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisBookRepository;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.redis.persistence.RedisPartitions;
+import org.example.graphql.server.models.Author;
+import org.example.graphql.server.models.Book;
+import org.example.graphql.server.services.AuthorPersistenceService;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.example.graphql.server.services.BookPersistenceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the key layout of {@link RedisPartitions} against a standalone Redis server: the hash tags of the keys of an entity, books colocated with
+ * their author, the {@code save-entity} and {@code delete-entity} scripts that replace transactions, and reads across all partitions. As a
+ * standalone server does not enforce the hash slots of the keys of a script like Redis Cluster, the commands the scripts run are watched with
+ * {@code MONITOR} and their keys checked against the slot of the first key of the script.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class,
+    properties = {"redis.cluster.partitions=16", "redis.changes.enabled=true"})
+@Testcontainers
+public class RedisPartitionedLayoutTest {
+
+  private static final int PARTITIONS = 16;
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  private RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Autowired
+  private RedisEntityReader redisEntityReader;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @Autowired
+  private RedisBookRepository redisBookRepository;
+
+  @Autowired
+  private BookAuthorMutations bookAuthorMutations;
+
+  @Autowired
+  private AuthorPersistenceService authorPersistenceService;
+
+  @Autowired
+  private BookPersistenceService bookPersistenceService;
+
+  @Test
+  void savedEntitiesKeepAllTheirKeysInTheirPartition() {
+    RedisAuthor author = new RedisAuthor();
+    author.setFirstName("Ursula");
+    author.setLastName("Partitioned");
+    author.setPublishedBookIds(List.of(5L, 3L));
+    redisEntityWriter.save(author);
+
+    String authorKeyspace = "author{" + partitionOf(author.getId()) + "}";
+    String authorKey = authorKeyspace + ":" + author.getId();
+    assertThat(hashField(authorKey, "lastName")).isEqualTo("Partitioned");
+    assertThat(members(authorKeyspace)).contains(author.getId().toString());
+    assertThat(members(authorKeyspace + ":lastName:Partitioned")).containsExactly(author.getId().toString());
+    assertThat(members(authorKey + ":idx")).containsExactly(authorKeyspace + ":lastName:Partitioned");
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).containsExactly(3L, 5L);
+    assertThat(redisTemplate.hasKey(toBytes("author:" + author.getId()))).isFalse();
+
+    // Saving again replaces the index entries and the sorted ID set
+    author.setLastName("Repartitioned");
+    author.setPublishedBookIds(List.of(7L));
+    redisEntityWriter.save(author);
+    assertThat(members(authorKeyspace + ":lastName:Partitioned")).isEmpty();
+    assertThat(members(authorKeyspace + ":lastName:Repartitioned")).containsExactly(author.getId().toString());
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).containsExactly(7L);
+    assertThat(redisEntityReader.findByIdOnPrimary(RedisAuthor.class, author.getId()).getLastName()).isEqualTo("Repartitioned");
+  }
+
+  @Test
+  void booksAreColocatedWithTheirAuthor() {
+    RedisAuthor author = saveAuthor("Colocated");
+    int partition = partitionOf(author.getId());
+
+    RedisBook created = createBook("Created", 1990, author);
+    RedisBook saved = new RedisBook();
+    saved.setTitle("Saved");
+    saved.setPublishedYear(1991);
+    saved.setAuthor(author);
+    redisEntityWriter.save(saved);
+
+    String bookKeyspace = "book{" + partition + "}";
+    for (RedisBook book : List.of(created, saved)) {
+      assertThat(partitionOf(book.getId())).isEqualTo(partition);
+      assertThat(redisTemplate.hasKey(toBytes(bookKeyspace + ":" + book.getId()))).isTrue();
+      assertThat(members(bookKeyspace)).contains(book.getId().toString());
+    }
+    assertThat(members(bookKeyspace + ":author.id:" + author.getId()))
+        .containsExactlyInAnyOrder(created.getId().toString(), saved.getId().toString());
+    assertThat(redisTemplate.opsForZSet().score(toBytes(bookKeyspace + ":publishedYear"), toBytes(saved.getId().toString()))).isEqualTo(1991.0);
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).containsExactly(created.getId());
+    assertThat(redisEntityReader.findAllByIndex(RedisBook.class, "author.id", author.getId())).extracting(RedisBook::getTitle)
+        .containsExactlyInAnyOrder("Created", "Saved");
+  }
+
+  @Test
+  void readsCoverAllPartitions() {
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < PARTITIONS; i++) {
+      RedisAuthor author = saveAuthor("Spread");
+      ids.add(createBook("Spread " + i, 3000 + i, author).getId());
+    }
+    assertThat(ids.stream().map(this::partitionOf).collect(Collectors.toSet())).hasSizeGreaterThan(1);
+
+    assertThat(redisEntityReader.findAll(RedisBook.class)).extracting(RedisBook::getId).containsAll(ids);
+    assertThat(redisEntityReader.findAllById(RedisBook.class, ids)).hasSize(PARTITIONS);
+    assertThat(redisBookRepository.findByPublishedYearBetween(3000, 3000 + PARTITIONS - 1)).extracting(RedisBook::getId)
+        .containsExactlyInAnyOrderElementsOf(ids);
+  }
+
+  @Test
+  void scansReturnAnIdReportedTwiceOnce() {
+    RedisAuthor author = saveAuthor("Reported Twice");
+    String authorKeyspace = "author{" + partitionOf(author.getId()) + "}";
+    // A stray copy in another partition makes the scan of the entity keys report the ID twice
+    byte[] stray = toBytes("author{" + (partitionOf(author.getId()) + 1) % PARTITIONS + "}:" + author.getId());
+    redisTemplate.opsForHash().putAll(stray, redisTemplate.opsForHash().entries(toBytes(authorKeyspace + ":" + author.getId())));
+    try {
+      assertThat(redisEntityReader.streamIdsOnPrimary(RedisAuthor.class).filter(id -> id.equals(author.getId().toString()))).hasSize(2);
+      assertThat(redisEntityReader.findAll(RedisAuthor.class)).extracting(RedisAuthor::getId).containsOnlyOnce(author.getId());
+    } finally {
+      redisTemplate.delete(stray);
+    }
+  }
+
+  @Test
+  void getByIdsKeepsTheOrderOfTheIdsAcrossPartitions() {
+    List<Long> authorIds = new ArrayList<>();
+    List<Long> bookIds = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      RedisAuthor author = saveAuthor("Ordered " + i);
+      authorIds.add(0, author.getId());
+      bookIds.add(0, createBook("Ordered " + i, 2000 + i, author).getId());
+    }
+    authorIds.add(2, Long.MAX_VALUE);
+    bookIds.add(2, Long.MAX_VALUE);
+
+    assertThat(authorPersistenceService.getByIds(authorIds)).extracting(Author::getId)
+        .containsExactlyElementsOf(authorIds.stream().filter(id -> id != Long.MAX_VALUE).toList());
+    assertThat(bookPersistenceService.getByIds(bookIds)).extracting(Book::getId)
+        .containsExactlyElementsOf(bookIds.stream().filter(id -> id != Long.MAX_VALUE).toList());
+  }
+
+  @Test
+  void deletedEntitiesLeaveNoKeysBehind() {
+    RedisAuthor author = saveAuthor("Deleted");
+    String bookKeyspace = "book{" + partitionOf(author.getId()) + "}";
+    String authorKeyspace = "author{" + partitionOf(author.getId()) + "}";
+    RedisBook deleted = createBook("Deleted", 1980, author);
+    RedisBook kept = createBook("Kept", 1981, author);
+
+    redisEntityWriter.delete(RedisBook.class, deleted.getId());
+
+    String id = deleted.getId().toString();
+    assertThat(redisTemplate.hasKey(toBytes(bookKeyspace + ":" + id))).isFalse();
+    assertThat(redisTemplate.hasKey(toBytes(bookKeyspace + ":" + id + ":idx"))).isFalse();
+    assertThat(members(bookKeyspace)).doesNotContain(id);
+    assertThat(members(bookKeyspace + ":author.id:" + author.getId())).containsExactly(kept.getId().toString());
+    assertThat(redisTemplate.opsForZSet().score(toBytes(bookKeyspace + ":publishedYear"), toBytes(id))).isNull();
+
+    assertThat(bookAuthorMutations.deleteAuthor(author.getId())).isTrue();
+    assertThat(redisTemplate.hasKey(toBytes(authorKeyspace + ":" + author.getId()))).isFalse();
+    assertThat(redisTemplate.hasKey(toBytes(authorKeyspace + ":" + author.getId() + ":publishedBookIds"))).isFalse();
+    assertThat(redisTemplate.hasKey(toBytes(bookKeyspace + ":" + kept.getId()))).isFalse();
+    assertThat(members(authorKeyspace + ":lastName:Deleted")).isEmpty();
+  }
+
+  @Test
+  void scriptsOnlyTouchKeysInTheSlotOfTheirFirstKey() throws IOException {
+    try (ScriptKeyMonitor monitor = new ScriptKeyMonitor()) {
+      RedisAuthor author = monitor.check(() -> saveAuthor("Slotted"));
+      RedisBook created = monitor.check(() -> createBook("Created", 1990, author));
+      RedisBook saved = new RedisBook();
+      saved.setTitle("Saved");
+      saved.setPublishedYear(1991);
+      saved.setAuthor(author);
+      monitor.check(() -> redisEntityWriter.save(saved));
+      monitor.check(() -> bookAuthorMutations.deleteBook(created.getId()));
+      monitor.check(() -> createBook("Created Again", 1992, author));
+      monitor.check(() -> {
+        redisEntityWriter.delete(RedisBook.class, saved.getId());
+        return null;
+      });
+      monitor.check(() -> bookAuthorMutations.deleteAuthor(author.getId()));
+    }
+  }
+
+  private int partitionOf(Long id) {
+    return (int) (id % PARTITIONS);
+  }
+
+  private RedisAuthor saveAuthor(String lastName) {
+    RedisAuthor author = new RedisAuthor();
+    author.setFirstName("Partition");
+    author.setLastName(lastName);
+    return redisEntityWriter.save(author);
+  }
+
+  private RedisBook createBook(String title, int publishedYear, RedisAuthor author) {
+    RedisBook book = new RedisBook();
+    book.setTitle(title);
+    book.setPublishedYear(publishedYear);
+    return (RedisBook) bookAuthorMutations.createBook(book, author.getId());
+  }
+
+  private String hashField(String key, String field) {
+    Object value = redisTemplate.opsForHash().get(toBytes(key), toBytes(field));
+    return value != null ? new String((byte[]) value, StandardCharsets.UTF_8) : null;
+  }
+
+  private Set<String> members(String key) {
+    Set<byte[]> members = redisTemplate.opsForSet().members(toBytes(key));
+    return members.stream().map(member -> new String(member, StandardCharsets.UTF_8)).collect(Collectors.toSet());
+  }
+
+  private static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the commands the server runs from a {@code MONITOR} connection, asking the server for the keys of each command a script ran.
+   */
+  private final class ScriptKeyMonitor implements AutoCloseable {
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private int markers;
+
+    private ScriptKeyMonitor() throws IOException {
+      socket = new Socket("localhost", 6379);
+      socket.getOutputStream().write(toBytes("MONITOR\r\n"));
+      reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+      assertThat(reader.readLine()).isEqualTo("+OK");
+    }
+
+    /**
+     * Runs the given action, then checks that the scripts it ran only touched keys in the slot of their first key.
+     */
+    private <T> T check(Supplier<T> action) {
+      T result = action.get();
+      String marker = "marker-" + ++markers;
+      redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.echo(toBytes(marker)));
+      Set<Integer> scriptSlots = new HashSet<>();
+      Map<String, Integer> touchedSlots = new LinkedHashMap<>();
+      try {
+        for (String line = reader.readLine(); !line.contains(marker); line = reader.readLine()) {
+          List<byte[]> command = parse(line);
+          String name = new String(command.get(0), StandardCharsets.UTF_8).toUpperCase();
+          if (name.equals("EVAL") || name.equals("EVALSHA")) {
+            scriptSlots.add(ClusterSlotHashUtil.calculateSlot(command.get(3)));
+          } else if (line.contains(" lua] ")) {
+            for (Object key : keysOf(command)) {
+              touchedSlots.put(new String((byte[]) key, StandardCharsets.UTF_8), ClusterSlotHashUtil.calculateSlot((byte[]) key));
+            }
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      assertThat(scriptSlots).hasSize(1);
+      assertThat(touchedSlots).isNotEmpty();
+      touchedSlots.forEach((key, slot) -> assertThat(slot).as("Slot of " + key).isEqualTo(scriptSlots.iterator().next()));
+      return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> keysOf(List<byte[]> command) {
+      CommandArgs<byte[], byte[]> args = new CommandArgs<>(ByteArrayCodec.INSTANCE).add("GETKEYS");
+      command.forEach(args::add);
+      // The template only passes single replies through, so the array reply is read through Lettuce
+      return redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+        try {
+          return ((BaseRedisAsyncCommands<byte[], byte[]>) connection.getNativeConnection())
+              .dispatch(CommandType.COMMAND, new ArrayOutput<>(ByteArrayCodec.INSTANCE), args).get();
+        } catch (InterruptedException | ExecutionException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+    }
+
+    /**
+     * @return The arguments of a line of the {@code MONITOR} output, e.g. {@code +1700000000.000000 [0 lua] "SREM" "book{3}" "35"}.
+     */
+    private static List<byte[]> parse(String line) {
+      List<byte[]> arguments = new ArrayList<>();
+      ByteArrayOutputStream argument = new ByteArrayOutputStream();
+      boolean quoted = false;
+      for (int i = line.indexOf("] ") + 2; i < line.length(); i++) {
+        char c = line.charAt(i);
+        if (!quoted) {
+          quoted = c == '"';
+        } else if (c == '"') {
+          arguments.add(argument.toByteArray());
+          argument.reset();
+          quoted = false;
+        } else if (c == '\\') {
+          char escaped = line.charAt(++i);
+          switch (escaped) {
+            case 'n' -> argument.write('\n');
+            case 'r' -> argument.write('\r');
+            case 't' -> argument.write('\t');
+            case 'a' -> argument.write(7);
+            case 'b' -> argument.write('\b');
+            case 'x' -> {
+              argument.write(Integer.parseInt(line.substring(i + 1, i + 3), 16));
+              i += 2;
+            }
+            default -> argument.write(escaped);
+          }
+        } else {
+          argument.write(c);
+        }
+      }
+      return arguments;
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+}
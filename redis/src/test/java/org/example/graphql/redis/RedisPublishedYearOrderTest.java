@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.redis.services.RedisBookPersistenceService;
+import org.example.graphql.server.models.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the order of the books read from the published year index: by year and then by ID compared as a number, which Redis compares as text for
+ * books of the same year. The IDs are chosen so that the text order differs from the numeric one.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class)
+@Testcontainers
+public class RedisPublishedYearOrderTest {
+
+  private static final long SMALL_ID = 9_000_000_009L;
+  private static final long LARGE_ID = 90_000_000_010L;
+  private static final long LARGEST_ID = 900_000_000_011L;
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @Autowired
+  private RedisBookPersistenceService redisBookPersistenceService;
+
+  @Test
+  void booksOfTheSameYearAreOrderedByNumericId() {
+    saveBook(LARGEST_ID + 1000, 1501);
+    saveBook(LARGE_ID + 1000, 1500);
+    saveBook(SMALL_ID + 1000, 1500);
+    saveBook(LARGEST_ID + 1000 + 1, 1500);
+
+    assertThat(ids(redisBookPersistenceService.getByPublishedYear(1500)))
+        .containsExactly(SMALL_ID + 1000, LARGE_ID + 1000, LARGEST_ID + 1000 + 1);
+    assertThat(ids(redisBookPersistenceService.getByPublishedYearBetween(1500, 1501)))
+        .containsExactly(SMALL_ID + 1000, LARGE_ID + 1000, LARGEST_ID + 1000 + 1, LARGEST_ID + 1000);
+  }
+
+  @Test
+  void pagesOfTheNewestBooksKeepIdsAscendingWithinAYear() {
+    saveBook(LARGE_ID, 9999);
+    saveBook(SMALL_ID, 9999);
+    saveBook(LARGEST_ID, 9998);
+
+    assertThat(ids(redisBookPersistenceService.getOrderedByPublishedYear(true, 1))).containsExactly(SMALL_ID);
+    assertThat(ids(redisBookPersistenceService.getOrderedByPublishedYear(true, 2))).containsExactly(SMALL_ID, LARGE_ID);
+    assertThat(ids(redisBookPersistenceService.getOrderedByPublishedYear(true, 3))).containsExactly(SMALL_ID, LARGE_ID, LARGEST_ID);
+  }
+
+  @Test
+  void pagesOfTheOldestBooksKeepIdsAscendingWithinAYear() {
+    saveBook(LARGEST_ID + 2000, -9999);
+    saveBook(LARGE_ID + 2000, -9999);
+    saveBook(SMALL_ID + 2000, -9998);
+
+    assertThat(ids(redisBookPersistenceService.getOrderedByPublishedYear(false, 1))).containsExactly(LARGE_ID + 2000);
+    assertThat(ids(redisBookPersistenceService.getOrderedByPublishedYear(false, 3)))
+        .containsExactly(LARGE_ID + 2000, LARGEST_ID + 2000, SMALL_ID + 2000);
+  }
+
+  private void saveBook(long id, int publishedYear) {
+    RedisBook book = new RedisBook();
+    book.setId(id);
+    book.setTitle("Book " + id);
+    book.setPublishedYear(publishedYear);
+    redisEntityWriter.save(book);
+  }
+
+  private static List<Long> ids(List<Book> books) {
+    return books.stream().map(Book::getId).toList();
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.persistence.RedisEntityCodec;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.redis.persistence.RedisReplicaRouting;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.containers.Network;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the {@link RedisReplicaRouting} against a primary and a replica replicating from it: reads go to the replica while it is fresh, to the
+ * primary while it lags or fails, and the keys this instance wrote are read from the primary until the replica has the write.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class,
+    properties = {"redis.replicas.nodes=localhost:" + RedisReplicaRoutingTest.REPLICA_PORT, "redis.replicas.max-staleness=2s",
+        "redis.replicas.heartbeat-interval=50ms"})
+@Testcontainers
+public class RedisReplicaRoutingTest {
+
+  static final int REPLICA_PORT = 6380;
+
+  private static final Network NETWORK = Network.newNetwork();
+
+  @Container
+  private static final RedisContainer PRIMARY = new RedisContainer().withNetwork(NETWORK).withNetworkAliases("primary");
+
+  @Container
+  private static final RedisContainer REPLICA = new RedisContainer(REPLICA_PORT).withNetwork(NETWORK)
+      .withCommand("redis-server", "--replicaof", "primary", "6379");
+
+  private static LettuceConnectionFactory replicaConnectionFactory;
+  private static RedisTemplate<byte[], byte[]> replica;
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  private RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Autowired
+  private RedisReplicaRouting routing;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @Autowired
+  private RedisEntityReader redisEntityReader;
+
+  @Autowired
+  private RedisEntityCodec redisEntityCodec;
+
+  @BeforeAll
+  static void connectToReplica() {
+    replicaConnectionFactory = new LettuceConnectionFactory("localhost", REPLICA_PORT);
+    replicaConnectionFactory.afterPropertiesSet();
+    replicaConnectionFactory.start();
+    replica = new RedisTemplate<>();
+    replica.setConnectionFactory(replicaConnectionFactory);
+    replica.afterPropertiesSet();
+  }
+
+  @AfterAll
+  static void disconnectFromReplica() {
+    replicaConnectionFactory.destroy();
+  }
+
+  @BeforeEach
+  void awaitFreshReplica() {
+    await(() -> !routedToPrimary("unwritten"), "the replica to catch up with the primary");
+  }
+
+  @Test
+  void readsGoToAFreshReplica() {
+    byte[] key = bytes("replicated");
+    redisTemplate.opsForValue().set(key, bytes("value"));
+
+    await(() -> routing.read(List.of(), template -> !routing.isPrimary(template) && template.opsForValue().get(key) != null),
+        "the replica to serve the write of the primary");
+    assertThat(routing.getStalenessMillis()).containsKey("localhost:" + REPLICA_PORT);
+    assertThat(routing.getStalenessMillis().get("localhost:" + REPLICA_PORT)).isBetween(0L, 2000L);
+  }
+
+  @Test
+  void readsOfOwnWritesGoToThePrimaryAndALaggingReplicaIsSkipped() {
+    Properties replication = replica.execute((RedisCallback<Properties>) connection -> connection.serverCommands().info("replication"));
+    String primaryHost = replication.getProperty("master_host");
+    int primaryPort = Integer.parseInt(replication.getProperty("master_port"));
+    replica.execute((RedisCallback<Void>) connection -> {
+      connection.serverCommands().replicaOfNoOne();
+      return null;
+    });
+    try {
+      // The replica keeps its last heartbeat, so it counts as fresh for up to the maximum staleness without getting the writes
+      RedisAuthor author = new RedisAuthor();
+      author.setFirstName("Read");
+      author.setLastName("Own Writes");
+      author = redisEntityWriter.save(author);
+      String storageKey = new String(redisEntityCodec.storageKey(RedisAuthor.class, "author", bytes(String.valueOf(author.getId()))),
+          StandardCharsets.UTF_8);
+
+      assertThat(replica.hasKey(bytes(storageKey))).isFalse();
+      assertThat(routedToPrimary(storageKey)).isTrue();
+      assertThat(redisEntityReader.findById(RedisAuthor.class, author.getId())).isNotNull();
+      assertThat(routedToPrimary("unwritten")).isFalse();
+
+      await(() -> routedToPrimary("unwritten"), "the lagging replica to be skipped");
+      assertThat(routing.getStalenessMillis().get("localhost:" + REPLICA_PORT)).isGreaterThan(2000L);
+    } finally {
+      replica.execute((RedisCallback<Void>) connection -> {
+        connection.serverCommands().replicaOf(primaryHost, primaryPort);
+        return null;
+      });
+    }
+    await(() -> !routedToPrimary("unwritten"), "the replica to catch up again");
+  }
+
+  @Test
+  void aFailedReplicaReadFallsBackToThePrimary() {
+    byte[] key = bytes("fallback");
+    // Replicas are read-only, so the write fails on the replica and goes through on the primary
+    boolean readOnPrimary = routing.read(List.of(), template -> {
+      template.opsForValue().set(key, bytes("written"));
+      return routing.isPrimary(template);
+    });
+
+    assertThat(readOnPrimary).isTrue();
+    assertThat(redisTemplate.opsForValue().get(key)).isEqualTo(bytes("written"));
+  }
+
+  private boolean routedToPrimary(String storageKey) {
+    return routing.read(List.of(storageKey), routing::isPrimary);
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void await(BooleanSupplier condition, String description) {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!condition.getAsBoolean()) {
+      assertThat(System.currentTimeMillis()).as("Timed out waiting for " + description).isLessThan(deadline);
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.example.graphql.redis.models.RedisAuthor;
+import org.example.graphql.redis.models.RedisBook;
+import org.example.graphql.redis.persistence.RedisEntityCodec;
+import org.example.graphql.redis.persistence.RedisEntityReader;
+import org.example.graphql.redis.persistence.RedisEntityWriter;
+import org.example.graphql.redis.persistence.RedisSortedIdSetMigration;
+import org.example.graphql.server.services.BookAuthorMutations;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Tests the {@link RedisSortedIdSetMigration} of authors whose published book IDs are still stored as hash fields, as saved before they were kept
+ * in a sorted set.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, classes = MyApp.class)
+@Testcontainers
+public class RedisSortedIdSetMigrationTest {
+
+  @Container
+  private static final RedisContainer CONTAINER = new RedisContainer();
+
+  @Autowired
+  @Qualifier("rawRedisTemplate")
+  protected RedisTemplate<byte[], byte[]> redisTemplate;
+
+  @Autowired
+  protected RedisEntityCodec redisEntityCodec;
+
+  @Autowired
+  private RedisEntityReader redisEntityReader;
+
+  @Autowired
+  private RedisEntityWriter redisEntityWriter;
+
+  @Autowired
+  private RedisSortedIdSetMigration migration;
+
+  @Autowired
+  private BookAuthorMutations bookAuthorMutations;
+
+  @Test
+  void marksTheDatabaseAsMigratedOnStartup() {
+    assertThat(redisTemplate.hasKey(RedisSortedIdSetMigration.MIGRATED_KEY.getBytes(StandardCharsets.UTF_8))).isTrue();
+  }
+
+  @Test
+  void movesLegacyIdsIntoTheSortedSet() {
+    RedisAuthor author = saveAuthor();
+    List<Long> bookIds = saveBooks(author, 3);
+    storeLegacyIds(author, bookIds);
+
+    assertThat(migration.migrate()).isEqualTo(3);
+
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).isEqualTo(bookIds);
+    RedisAuthor migrated = redisEntityReader.findByIdOnPrimary(RedisAuthor.class, author.getId());
+    assertThat(migrated.getFirstName()).isEqualTo("Legacy");
+    assertThat(migrated.getPublishedBookIds()).isEqualTo(bookIds);
+    assertThat(legacyIdsLeft(author)).isFalse();
+
+    // Migrating again finds nothing left to move
+    assertThat(migration.migrate()).isZero();
+    assertThat(redisEntityReader.findSortedIds(RedisAuthor.class, author.getId(), "publishedBookIds", 0, 10)).isEqualTo(bookIds);
+  }
+
+  @Test
+  void deletesTheBooksOfMigratedAuthors() {
+    RedisAuthor author = saveAuthor();
+    List<Long> bookIds = saveBooks(author, 2);
+    storeLegacyIds(author, bookIds);
+    migration.migrate();
+
+    assertThat(bookAuthorMutations.deleteAuthor(author.getId())).isTrue();
+
+    for (Long bookId : bookIds) {
+      assertThat(redisEntityReader.findByIdOnPrimary(RedisBook.class, bookId)).isNull();
+    }
+  }
+
+  /**
+   * Stores the given IDs inside the given author the way earlier versions did.
+   */
+  protected void storeLegacyIds(RedisAuthor author, List<Long> bookIds) {
+    byte[] key = authorKey(author);
+    for (int i = 0; i < bookIds.size(); i++) {
+      redisTemplate.opsForHash().put(key, toBytes("publishedBookIds.[" + i + "]"), toBytes(bookIds.get(i).toString()));
+    }
+  }
+
+  /**
+   * @return Whether the given author still stores published book IDs inside itself.
+   */
+  protected boolean legacyIdsLeft(RedisAuthor author) {
+    return redisTemplate.opsForHash().keys(authorKey(author)).stream()
+        .anyMatch(field -> new String((byte[]) field, StandardCharsets.UTF_8).startsWith("publishedBookIds."));
+  }
+
+  protected byte[] authorKey(RedisAuthor author) {
+    return redisEntityCodec.storageKey(RedisAuthor.class, "author", toBytes(author.getId().toString()));
+  }
+
+  private RedisAuthor saveAuthor() {
+    RedisAuthor author = new RedisAuthor();
+    author.setFirstName("Legacy");
+    author.setLastName("Author");
+    return redisEntityWriter.save(author);
+  }
+
+  /**
+   * Saves books of the given author without adding them to the sorted set of the author.
+   */
+  private List<Long> saveBooks(RedisAuthor author, int count) {
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      RedisBook book = new RedisBook();
+      book.setTitle("Legacy Book " + i);
+      book.setPublishedYear(2000 + i);
+      book.setAuthor(author);
+      ids.add(redisEntityWriter.save(book).getId());
+    }
+    return ids;
+  }
+
+  protected static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
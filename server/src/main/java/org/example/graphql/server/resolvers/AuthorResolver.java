@@ -24,16 +24,25 @@
 
 package org.example.graphql.server.resolvers;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.example.graphql.server.factories.AuthorFactory;
 import org.example.graphql.server.models.Author;
 import org.example.graphql.server.models.Book;
 import org.example.graphql.server.services.AuthorPersistenceService;
+import org.example.graphql.server.services.BookAuthorMutations;
 import org.example.graphql.server.services.BookPersistenceService;
+import org.example.graphql.server.services.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.stereotype.Controller;
@@ -42,13 +51,15 @@ import org.springframework.stereotype.Controller;
  * GraphQL controller for managing {@link Author} and related {@link Book} data.
  * <p>
  * Provides query and mutation operations for authors, including fetching, creating, and deleting authors and their books. Uses
- * {@link AuthorPersistenceService} and {@link BookPersistenceService} for persistence operations and {@link AuthorFactory} for author creation.
+ * {@link AuthorPersistenceService} and {@link BookPersistenceService} for persistence operations and {@link AuthorFactory} for author creation. Each
+ * mutation runs as one {@link UnitOfWork}, so backends can apply the author and book changes of a mutation together. Backends providing
+ * {@link BookAuthorMutations} delete authors along with their books themselves.
  * </p>
  * Each method is annotated with either {@link QueryMapping} or {@link MutationMapping} to indicate whether it's a GraphQL query or mutation. The
  * {@link Argument} annotation is used to specify the arguments of the GraphQL query or mutation.
  *
  * @author Alexander Kombeiz
- * @version 1.03
+ * @version 1.07
  * @since 04-01-2024
  */
 @Controller
@@ -62,13 +73,21 @@ public class AuthorResolver {
 
   private final AuthorFactory authorFactory;
 
+  private final UnitOfWork unitOfWork;
+
+  private final BookAuthorMutations bookAuthorMutations;
+
   @Autowired
   public AuthorResolver(AuthorPersistenceService authorPersistenceService,
       BookPersistenceService bookPersistenceService,
-      AuthorFactory authorFactory) {
+      AuthorFactory authorFactory,
+      ObjectProvider<UnitOfWork> unitOfWork,
+      ObjectProvider<BookAuthorMutations> bookAuthorMutations) {
     this.authorPersistenceService = authorPersistenceService;
     this.bookPersistenceService = bookPersistenceService;
     this.authorFactory = authorFactory;
+    this.unitOfWork = unitOfWork.getIfAvailable(() -> UnitOfWork.DIRECT);
+    this.bookAuthorMutations = bookAuthorMutations.getIfAvailable();
   }
 
   @QueryMapping
@@ -83,13 +102,36 @@ public class AuthorResolver {
     return authorPersistenceService.getAll();
   }
 
+  @QueryMapping
+  public List<Author> authorsByLastName(@Argument String lastName) {
+    log.info("Fetching authors with lastName: {}", lastName);
+    return authorPersistenceService.getByLastName(lastName);
+  }
+
+  /**
+   * Resolves the books of all authors of a response together, fetching them with a single {@link BookPersistenceService#getByIds} call instead of
+   * one lookup per book. The books of each author are returned in the order of their IDs in {@link Author#getPublishedBookIds()}.
+   */
+  @BatchMapping(typeName = "Author", field = "books")
+  public List<List<Book>> books(List<Author> authors) {
+    List<Long> bookIds = authors.stream().flatMap(author -> author.getPublishedBookIds().stream()).distinct().toList();
+    log.info("Fetching {} books of {} authors", bookIds.size(), authors.size());
+    Map<Long, Book> booksById = bookPersistenceService.getByIds(bookIds).stream()
+        .collect(Collectors.toMap(Book::getId, Function.identity(), (first, second) -> first));
+    List<List<Book>> books = new ArrayList<>(authors.size());
+    for (Author author : authors) {
+      books.add(author.getPublishedBookIds().stream().map(booksById::get).filter(Objects::nonNull).toList());
+    }
+    return books;
+  }
+
   @MutationMapping
   public Author createAuthor(@Argument String firstName, @Argument String lastName) {
     log.info("Creating author with firstName: {} and lastName: {}", firstName, lastName);
     Author newAuthor = authorFactory.create();
     newAuthor.setFirstName(firstName);
     newAuthor.setLastName(lastName);
-    return authorPersistenceService.persist(newAuthor);
+    return unitOfWork.execute(() -> authorPersistenceService.persist(newAuthor));
   }
 
   /**
@@ -98,13 +140,24 @@ public class AuthorResolver {
   @MutationMapping
   public Boolean deleteAuthor(@Argument Long id) {
     log.info("Deleting author with id: {}", id);
+    return unitOfWork.execute(() -> doDeleteAuthor(id));
+  }
+
+  private Boolean doDeleteAuthor(Long id) {
+    if (bookAuthorMutations != null) {
+      boolean deleted = bookAuthorMutations.deleteAuthor(id);
+      if (!deleted) {
+        log.warn("Author with id {} not found.", id);
+      }
+      return deleted;
+    }
     Author author = authorPersistenceService.getById(id);
     if (author != null) {
       author.getPublishedBookIds().forEach(bookId -> {
         log.info("Deleting book with id: {} associated with author id: {}", bookId, id);
         bookPersistenceService.deleteById(bookId);
       });
-      authorPersistenceService.getById(id);
+      authorPersistenceService.deleteById(id);
       return true;
     } else {
       log.warn("Author with id {} not found.", id);
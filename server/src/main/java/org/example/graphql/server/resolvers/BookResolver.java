@@ -24,31 +24,40 @@
 
 package org.example.graphql.server.resolvers;
 
+import graphql.GraphQLError;
 import java.util.List;
 import org.example.graphql.server.factories.BookFactory;
 import org.example.graphql.server.models.Author;
 import org.example.graphql.server.models.Book;
+import org.example.graphql.server.models.PublishedYearCount;
 import org.example.graphql.server.services.AuthorPersistenceService;
+import org.example.graphql.server.services.BookAuthorMutations;
 import org.example.graphql.server.services.BookPersistenceService;
+import org.example.graphql.server.services.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.GraphQlExceptionHandler;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.execution.ErrorType;
 import org.springframework.stereotype.Controller;
 
 /**
  * GraphQL controller for managing {@link Book} and related {@link Author} data.
  * <p>
  * Provides query and mutation operations for authors, including fetching, creating, and deleting authors and their books. Uses
- * {@link BookPersistenceService} and {@link AuthorPersistenceService} for persistence operations and {@link BookFactory} for author creation.
+ * {@link BookPersistenceService} and {@link AuthorPersistenceService} for persistence operations and {@link BookFactory} for author creation. Each
+ * mutation runs as one {@link UnitOfWork}, so backends can apply the book and author changes of a mutation together. Backends providing
+ * {@link BookAuthorMutations} apply the mutations that change both a book and its author themselves.
  * </p>
  * Each method is annotated with either {@link QueryMapping} or {@link MutationMapping} to indicate whether it's a GraphQL query or mutation. The
  * {@link Argument} annotation is used to specify the arguments of the GraphQL query or mutation.
  *
  * @author Alexander Kombeiz
- * @version 1.03
+ * @version 1.08
  * @since 04-01-2024
  */
 @Controller
@@ -56,19 +65,29 @@ public class BookResolver {
 
   private static final Logger log = LoggerFactory.getLogger(BookResolver.class);
 
+  private static final int DEFAULT_FIRST = 20;
+
   private final BookPersistenceService bookPersistenceService;
 
   private final AuthorPersistenceService authorPersistenceService;
 
   private final BookFactory bookFactory;
 
+  private final UnitOfWork unitOfWork;
+
+  private final BookAuthorMutations bookAuthorMutations;
+
   @Autowired
   public BookResolver(BookPersistenceService bookPersistenceService,
       AuthorPersistenceService authorPersistenceService,
-      BookFactory bookFactory) {
+      BookFactory bookFactory,
+      ObjectProvider<UnitOfWork> unitOfWork,
+      ObjectProvider<BookAuthorMutations> bookAuthorMutations) {
     this.bookPersistenceService = bookPersistenceService;
     this.authorPersistenceService = authorPersistenceService;
     this.bookFactory = bookFactory;
+    this.unitOfWork = unitOfWork.getIfAvailable(() -> UnitOfWork.DIRECT);
+    this.bookAuthorMutations = bookAuthorMutations.getIfAvailable();
   }
 
   @QueryMapping
@@ -83,6 +102,79 @@ public class BookResolver {
     return bookPersistenceService.getAll();
   }
 
+  /**
+   * Returns up to {@code first} books whose title and author name contain every word of the query, ordered by ID. Without {@code first}, up to 20
+   * books are returned.
+   */
+  @QueryMapping
+  public List<Book> searchBooks(@Argument String query, @Argument Integer first) {
+    log.info("Searching books matching: {}", query);
+    return bookPersistenceService.search(query, limit(first));
+  }
+
+  @QueryMapping
+  public List<Book> booksByAuthor(@Argument Long authorId) {
+    log.info("Fetching books of author with id: {}", authorId);
+    return bookPersistenceService.getByAuthorId(authorId);
+  }
+
+  @QueryMapping
+  public List<Book> booksByPublishedYear(@Argument int publishedYear) {
+    log.info("Fetching books published in: {}", publishedYear);
+    return bookPersistenceService.getByPublishedYear(publishedYear);
+  }
+
+  /**
+   * Returns the books published between {@code fromYear} and {@code toYear}, both inclusive, ordered by published year and then by ID.
+   */
+  @QueryMapping
+  public List<Book> booksPublishedBetween(@Argument int fromYear, @Argument int toYear) {
+    log.info("Fetching books published between {} and {}", fromYear, toYear);
+    return bookPersistenceService.getByPublishedYearBetween(fromYear, toYear);
+  }
+
+  /**
+   * Returns up to {@code first} books ordered by published year, the most recent first if {@code descending}, and then by ID. Without {@code first},
+   * up to 20 books are returned.
+   */
+  @QueryMapping
+  public List<Book> booksOrderedByPublishedYear(@Argument Boolean descending, @Argument Integer first) {
+    log.info("Fetching books ordered by published year, descending: {}", descending);
+    return bookPersistenceService.getOrderedByPublishedYear(Boolean.TRUE.equals(descending), limit(first));
+  }
+
+  @QueryMapping
+  public List<PublishedYearCount> bookCountsByPublishedYear() {
+    log.info("Counting books by published year");
+    return bookPersistenceService.countByPublishedYear().entrySet().stream()
+        .map(entry -> new PublishedYearCount(entry.getKey(), entry.getValue()))
+        .toList();
+  }
+
+  @QueryMapping
+  public long bookCountByAuthor(@Argument Long authorId) {
+    log.info("Counting books of author with id: {}", authorId);
+    return bookPersistenceService.countByAuthorId(authorId);
+  }
+
+  private static int limit(Integer first) {
+    if (first == null) {
+      return DEFAULT_FIRST;
+    }
+    if (first < 0) {
+      throw new IllegalArgumentException("Argument 'first' must not be negative, but was " + first);
+    }
+    return first;
+  }
+
+  /**
+   * Reports invalid arguments as bad requests rather than internal errors.
+   */
+  @GraphQlExceptionHandler
+  public GraphQLError handleInvalidArgument(IllegalArgumentException e) {
+    return GraphQLError.newError().errorType(ErrorType.BAD_REQUEST).message(e.getMessage()).build();
+  }
+
   /**
    * Creates a new book with the specified title, published year, and author ID. Establishes a dependency relationship between the {@link Author} and
    * {@link Book} entities. The author, identified by the provided {@code authorId}, is associated with the newly created book.
@@ -92,6 +184,20 @@ public class BookResolver {
       @Argument Long authorId) {
     log.info("Creating book with title: {}, publishedYear: {}, and authorId: {}", title,
         publishedYear, authorId);
+    return unitOfWork.execute(() -> doCreateBook(title, publishedYear, authorId));
+  }
+
+  private Book doCreateBook(String title, int publishedYear, Long authorId) {
+    if (bookAuthorMutations != null) {
+      Book newBook = bookFactory.create();
+      newBook.setTitle(title);
+      newBook.setPublishedYear(publishedYear);
+      Book savedBook = bookAuthorMutations.createBook(newBook, authorId);
+      if (savedBook == null) {
+        log.warn("Author with id {} not found. Cannot create book.", authorId);
+      }
+      return savedBook;
+    }
     Author author = authorPersistenceService.getById(authorId);
     if (author != null) {
       Book newBook = bookFactory.create();
@@ -115,6 +221,17 @@ public class BookResolver {
   @MutationMapping
   public Boolean deleteBook(@Argument Long id) {
     log.info("Deleting book with id: {}", id);
+    return unitOfWork.execute(() -> doDeleteBook(id));
+  }
+
+  private Boolean doDeleteBook(Long id) {
+    if (bookAuthorMutations != null) {
+      boolean deleted = bookAuthorMutations.deleteBook(id);
+      if (!deleted) {
+        log.warn("Book with id {} not found.", id);
+      }
+      return deleted;
+    }
     Book book = bookPersistenceService.getById(id);
     if (book != null) {
       Author author = book.getAuthor();
@@ -24,7 +24,10 @@
 
 package org.example.graphql.server.services;
 
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import org.example.graphql.server.models.Author;
 
 /**
@@ -35,15 +38,34 @@ import org.example.graphql.server.models.Author;
  * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.01
+ * @version 1.03
  * @since 08-01-2024
  */
 public interface AuthorPersistenceService {
 
   Author getById(Long id);
 
+  /**
+   * Returns the authors with the given IDs, skipping IDs that do not exist. Implementations may fetch them concurrently; the default looks them up
+   * one after the other.
+   */
+  default List<Author> getByIds(Collection<Long> ids) {
+    return ids.stream().map(this::getById).filter(Objects::nonNull).toList();
+  }
+
   List<Author> getAll();
 
+  /**
+   * Returns all authors with the given last name, ordered by ID. The default scans all authors; backends with an index on the last name should answer
+   * from it instead.
+   */
+  default List<Author> getByLastName(String lastName) {
+    return getAll().stream()
+        .filter(author -> Objects.equals(author.getLastName(), lastName))
+        .sorted(Comparator.comparing(Author::getId))
+        .toList();
+  }
+
   Author persist(Author author);
 
   void deleteById(Long id);
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.server.services;
+
+import org.example.graphql.server.models.Book;
+
+/**
+ * Applies the mutations that change a book together with its author in a single step.
+ * <p>
+ * By default, the resolvers implement these mutations by reading and saving books and authors one at a time through the persistence services.
+ * Backends that are able to apply such a mutation atomically on their side, in fewer round trips, provide an implementation of this interface as a
+ * bean, which the resolvers then use instead.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public interface BookAuthorMutations {
+
+  /**
+   * Saves the given new book as a book of the author with the given ID and adds it to the published books of the author.
+   *
+   * @param book     the new book, with its title and published year set
+   * @param authorId the ID of the author
+   * @return the saved book, or {@code null} if there is no author with the given ID
+   */
+  Book createBook(Book book, Long authorId);
+
+  /**
+   * Deletes the book with the given ID and removes it from the published books of its author.
+   *
+   * @param id the ID of the book
+   * @return whether the book existed
+   */
+  boolean deleteBook(Long id);
+
+  /**
+   * Deletes the author with the given ID along with all their published books.
+   *
+   * @param id the ID of the author
+   * @return whether the author existed
+   */
+  boolean deleteAuthor(Long id);
+}
@@ -24,7 +24,14 @@
 
 package org.example.graphql.server.services;
 
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 import org.example.graphql.server.models.Book;
 
 /**
@@ -33,17 +40,97 @@ import org.example.graphql.server.models.Book;
  * Provides methods to retrieve, save, and delete {@link Book} objects. Supports fetching an author by ID, getting all authors, persisting an author,
  * and deleting an author by ID.
  * </p>
+ * <p>
+ * Books can also be queried by author and published year, counted and ordered. The defaults of these queries scan all books; backends with indexes
+ * should answer them from the indexes instead.
+ * </p>
  *
  * @author Alexander Kombeiz
- * @version 1.01
+ * @version 1.04
  * @since 08-01-2024
  */
 public interface BookPersistenceService {
 
   Book getById(Long id);
 
+  /**
+   * Returns the books with the given IDs, skipping IDs that do not exist. Implementations may fetch them concurrently; the default looks them up one
+   * after the other.
+   */
+  default List<Book> getByIds(Collection<Long> ids) {
+    return ids.stream().map(this::getById).filter(Objects::nonNull).toList();
+  }
+
   List<Book> getAll();
 
+  /**
+   * Returns up to {@code first} books whose title and author name contain all terms of the query, as split by {@link SearchTerms}, ordered by ID.
+   * The default scans all books; implementations should answer from an index instead.
+   */
+  default List<Book> search(String query, int first) {
+    Set<String> terms = SearchTerms.of(query);
+    if (terms.isEmpty() || first <= 0) {
+      return List.of();
+    }
+    return getAll().stream()
+        .filter(book -> SearchTerms.matches(book, terms))
+        .sorted(Comparator.comparing(Book::getId))
+        .limit(first)
+        .toList();
+  }
+
+  /**
+   * @return All books written by the author with the given ID, ordered by ID.
+   */
+  default List<Book> getByAuthorId(Long authorId) {
+    return getAll().stream()
+        .filter(book -> book.getAuthor() != null && Objects.equals(book.getAuthor().getId(), authorId))
+        .sorted(Comparator.comparing(Book::getId))
+        .toList();
+  }
+
+  /**
+   * @return All books published in the given year, ordered by ID.
+   */
+  default List<Book> getByPublishedYear(int publishedYear) {
+    return getByPublishedYearBetween(publishedYear, publishedYear);
+  }
+
+  /**
+   * @return All books published between the given years, both inclusive, ordered by published year and then by ID.
+   */
+  default List<Book> getByPublishedYearBetween(int fromYear, int toYear) {
+    return getAll().stream()
+        .filter(book -> book.getPublishedYear() >= fromYear && book.getPublishedYear() <= toYear)
+        .sorted(Comparator.comparingInt(Book::getPublishedYear).thenComparing(Book::getId))
+        .toList();
+  }
+
+  /**
+   * @return The number of books per published year, ordered by year.
+   */
+  default Map<Integer, Long> countByPublishedYear() {
+    return getAll().stream().collect(Collectors.groupingBy(Book::getPublishedYear, TreeMap::new, Collectors.counting()));
+  }
+
+  /**
+   * @return The number of books written by the author with the given ID.
+   */
+  default long countByAuthorId(Long authorId) {
+    return getByAuthorId(authorId).size();
+  }
+
+  /**
+   * @return Up to {@code first} books ordered by published year, the most recent first if {@code descending}, and then by ID.
+   */
+  default List<Book> getOrderedByPublishedYear(boolean descending, int first) {
+    Comparator<Book> byYear = Comparator.comparingInt(Book::getPublishedYear);
+    return getAll().stream()
+        .sorted((descending ? byYear.reversed() : byYear).thenComparing(Book::getId))
+        .limit(Math.max(first, 0))
+        .toList();
+  }
+
   Book persist(Book book);
 
   void deleteById(Long id);
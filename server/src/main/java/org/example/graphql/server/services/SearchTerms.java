@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.server.services;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import org.example.graphql.server.models.Author;
+import org.example.graphql.server.models.Book;
+
+/**
+ * Splits text into the terms books are searched by, so all backends match search queries the same way.
+ * <p>
+ * A term is a maximal run of letters and digits, converted to lower case. A book matches a query if its title and the first and last name of its
+ * author together contain every term of the query.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public final class SearchTerms {
+
+  private SearchTerms() {
+  }
+
+  /**
+   * @return The distinct terms of the given text, in the order they first occur; empty if the text is {@code null}.
+   */
+  public static Set<String> of(String text) {
+    Set<String> terms = new LinkedHashSet<>();
+    if (text == null) {
+      return terms;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (termChar && start < 0) {
+        start = i;
+      } else if (!termChar && start >= 0) {
+        terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * @return The distinct terms of the title of the given book and the name of its author.
+   */
+  public static Set<String> of(Book book) {
+    Set<String> terms = of(book.getTitle());
+    Author author = book.getAuthor();
+    if (author != null) {
+      terms.addAll(of(author.getFirstName()));
+      terms.addAll(of(author.getLastName()));
+    }
+    return terms;
+  }
+
+  /**
+   * @return {@code true} if the given book contains all of the given query terms, which must not be empty.
+   */
+  public static boolean matches(Book book, Set<String> queryTerms) {
+    return !queryTerms.isEmpty() && of(book).containsAll(queryTerms);
+  }
+}
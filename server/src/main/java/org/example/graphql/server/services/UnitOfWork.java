@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Alexander Kombeiz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.example.graphql.server.services;
+
+import java.util.function.Supplier;
+
+/**
+ * Groups the persistence operations of a single GraphQL mutation.
+ * <p>
+ * All changes made through the persistence services while {@link #execute(Supplier)} runs belong to one unit of work. Backends that are able to apply
+ * several changes atomically, or to make them durable together, provide an implementation of this interface as a bean. Without such a bean, the
+ * resolvers fall back to {@link #DIRECT}, which applies every change immediately.
+ * </p>
+ *
+ * @author Alexander Kombeiz
+ * @version 1.0
+ * @since 19-10-2026
+ */
+public interface UnitOfWork {
+
+  /**
+   * A unit of work that simply runs the mutation, applying each change as it is made.
+   */
+  UnitOfWork DIRECT = new UnitOfWork() {
+    @Override
+    public <R> R execute(Supplier<R> mutation) {
+      return mutation.get();
+    }
+  };
+
+  /**
+   * Runs the mutation as one unit of work. Nested calls join the outer unit of work.
+   *
+   * @param mutation the mutation to run
+   * @param <R>      the result type of the mutation
+   * @return the result of the mutation
+   */
+  <R> R execute(Supplier<R> mutation);
+}
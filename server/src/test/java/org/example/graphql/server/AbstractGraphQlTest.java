@@ -35,6 +35,7 @@ import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.graphql.execution.ErrorType;
 import org.springframework.graphql.test.tester.GraphQlTester;
 
 /**
@@ -197,6 +198,72 @@ public abstract class AbstractGraphQlTest<A extends Author, B extends Book> {
 
   @Test
   @Order(9)
+  void searchBooks() {
+    String query = "query { searchBooks(query: \"diary DOE\") { id } }";
+    List<Long> ids = graphQlTester.document(query).execute().path("data.searchBooks[*].id").entityList(Long.class).get();
+    Assertions.assertThat(ids).containsExactlyInAnyOrder(bookId2, bookId3);
+    String limited = "query { searchBooks(query: \"Java bloch\", first: 1) { title } }";
+    graphQlTester.document(limited).execute().path("data.searchBooks[*].title").entityList(String.class).containsExactly("Effective Java");
+    String unmatched = "query { searchBooks(query: \"diary java\") { id } }";
+    graphQlTester.document(unmatched).execute().path("data.searchBooks").entityList(Long.class).hasSize(0);
+    String unlimited = "query { searchBooks(query: \"diary\", first: null) { id } }";
+    graphQlTester.document(unlimited).execute().path("data.searchBooks[*].id").entityList(Long.class).hasSize(2);
+    String negative = "query { searchBooks(query: \"diary\", first: -1) { id } }";
+    graphQlTester.document(negative).execute().errors().satisfy(errors -> {
+      Assertions.assertThat(errors).hasSize(1);
+      Assertions.assertThat(errors.get(0).getErrorType()).isEqualTo(ErrorType.BAD_REQUEST);
+      Assertions.assertThat(errors.get(0).getMessage()).contains("first");
+    });
+  }
+
+  @Test
+  @Order(10)
+  void findBooksAndAuthorsByProperty() {
+    String byAuthor = String.format("query { booksByAuthor(authorId: \"%s\") { id } }", authorId2);
+    graphQlTester.document(byAuthor).execute().path("data.booksByAuthor[*].id").entityList(Long.class).containsExactly(bookId2, bookId3);
+    String byYear = "query { booksByPublishedYear(publishedYear: 2023) { title } }";
+    graphQlTester.document(byYear).execute().path("data.booksByPublishedYear[*].title").entityList(String.class)
+        .containsExactly("My Diary, Part 1", "My Diary, Part 2");
+    String between = "query { booksPublishedBetween(fromYear: 1990, toYear: 2010) { title } }";
+    graphQlTester.document(between).execute().path("data.booksPublishedBetween[*].title").entityList(String.class)
+        .containsExactly("Effective Java");
+    String byLastName = "query { authorsByLastName(lastName: \"Doe\") { firstName } }";
+    graphQlTester.document(byLastName).execute().path("data.authorsByLastName[*].firstName").entityList(String.class).containsExactly("John");
+    String unmatched = "query { authorsByLastName(lastName: \"Nobody\") { id } }";
+    graphQlTester.document(unmatched).execute().path("data.authorsByLastName").entityList(Long.class).hasSize(0);
+  }
+
+  @Test
+  @Order(11)
+  void countAndOrderBooksByPublishedYear() {
+    String counts = "query { bookCountsByPublishedYear { publishedYear count } }";
+    GraphQlTester.Response response = graphQlTester.document(counts).execute();
+    response.path("data.bookCountsByPublishedYear[*].publishedYear").entityList(Integer.class).containsExactly(2000, 2023);
+    response.path("data.bookCountsByPublishedYear[*].count").entityList(Integer.class).containsExactly(1, 2);
+    String byAuthor = String.format("query { bookCountByAuthor(authorId: \"%s\") }", authorId2);
+    graphQlTester.document(byAuthor).execute().path("data.bookCountByAuthor").entity(Integer.class).isEqualTo(2);
+    String newest = "query { booksOrderedByPublishedYear(descending: true, first: 2) { publishedYear } }";
+    graphQlTester.document(newest).execute().path("data.booksOrderedByPublishedYear[*].publishedYear").entityList(Integer.class)
+        .containsExactly(2023, 2023);
+    String oldest = "query { booksOrderedByPublishedYear(first: 1) { title } }";
+    graphQlTester.document(oldest).execute().path("data.booksOrderedByPublishedYear[*].title").entityList(String.class)
+        .containsExactly("Effective Java");
+  }
+
+  @Test
+  @Order(12)
+  void fetchAuthorsWithBooks() {
+    String query = "query { authors { lastName books { id title } } }";
+    GraphQlTester.Response response = graphQlTester.document(query).execute();
+    List<String> lastNames = response.path("data.authors[*].lastName").entityList(String.class).get();
+    int doe = lastNames.indexOf("Doe");
+    int bloch = lastNames.indexOf("Bloch");
+    response.path("data.authors[" + doe + "].books[*].id").entityList(Long.class).containsExactly(bookId2, bookId3);
+    response.path("data.authors[" + bloch + "].books[*].title").entityList(String.class).containsExactly("Effective Java");
+  }
+
+  @Test
+  @Order(13)
   void deleteAuthor() {
     String mutation = String.format("mutation { deleteAuthor(id: \"%s\") }", authorId1);
     graphQlTester.document(mutation).execute().path("data.deleteAuthor").entity(Boolean.class)
@@ -206,7 +273,7 @@ public abstract class AbstractGraphQlTest<A extends Author, B extends Book> {
   }
 
   @Test
-  @Order(10)
+  @Order(14)
   void deleteNonexistentAuthor() {
     String mutation = "mutation { deleteAuthor(id: 99) }";
     graphQlTester.document(mutation).execute().path("data.deleteAuthor").entity(Boolean.class)
@@ -214,7 +281,7 @@ public abstract class AbstractGraphQlTest<A extends Author, B extends Book> {
   }
 
   @Test
-  @Order(10)
+  @Order(14)
   void deleteBook() {
     String mutation = String.format("mutation { deleteBook(id: \"%s\") }", bookId3);
     graphQlTester.document(mutation).execute().path("data.deleteBook").entity(Boolean.class)
@@ -225,7 +292,7 @@ public abstract class AbstractGraphQlTest<A extends Author, B extends Book> {
   }
 
   @Test
-  @Order(11)
+  @Order(15)
   void deleteNonexistentBook() {
     String mutation = "mutation { deleteBook(id: 99) }";
     graphQlTester.document(mutation).execute().path("data.deleteBook").entity(Boolean.class)